@@ -16,12 +16,19 @@
 
 package org.jetbrains.jet.codegen;
 
+import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.asm4.ClassWriter;
+import org.jetbrains.asm4.MethodVisitor;
 import org.jetbrains.asm4.util.TraceClassVisitor;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jetbrains.asm4.Opcodes.*;
 
 @SuppressWarnings("IOResourceOpenedButNotSafelyClosed")
 public class ClassBuilderFactories {
@@ -106,6 +113,30 @@ public class ClassBuilderFactories {
         }
     };
 
+    public static ClassBuilderFactory STUBS = new ClassBuilderFactory() {
+        @NotNull
+        @Override
+        public ClassBuilderMode getClassBuilderMode() {
+            return ClassBuilderMode.STUBS;
+        }
+
+        @Override
+        public ClassBuilder newClassBuilder() {
+            return new StubBodiesBuilder(new BinaryClassWriter());
+        }
+
+        @Override
+        public String asText(ClassBuilder builder) {
+            throw new UnsupportedOperationException("STUBS generator asked for text");
+        }
+
+        @Override
+        public byte[] asBytes(ClassBuilder builder) {
+            ClassWriter visitor = (ClassWriter) builder.getVisitor();
+            return visitor.toByteArray();
+        }
+    };
+
     private ClassBuilderFactories() {
     }
 
@@ -126,6 +157,69 @@ public class ClassBuilderFactories {
         }
     }
 
+    private static class StubBodiesBuilder extends ClassBuilder.Concrete {
+        private final List<StubBodyMethodVisitor> methods = new ArrayList<StubBodyMethodVisitor>();
+
+        public StubBodiesBuilder(BinaryClassWriter binary) {
+            super(binary);
+        }
+
+        @NotNull
+        @Override
+        public MethodVisitor newMethod(
+                @Nullable PsiElement origin,
+                int access,
+                @NotNull String name,
+                @NotNull String desc,
+                @Nullable String signature,
+                @Nullable String[] exceptions
+        ) {
+            MethodVisitor visitor = super.newMethod(origin, access, name, desc, signature, exceptions);
+            if ((access & (ACC_ABSTRACT | ACC_NATIVE)) != 0) {
+                return visitor;
+            }
+            StubBodyMethodVisitor stub = new StubBodyMethodVisitor(visitor);
+            methods.add(stub);
+            return stub;
+        }
+
+        @Override
+        public void done() {
+            // Codegen doesn't generate bodies in ClassBuilderMode.STUBS, so they are added here, right before the class is finished
+            for (StubBodyMethodVisitor method : methods) {
+                method.generateStubBodyIfNeeded();
+            }
+            methods.clear();
+            super.done();
+        }
+    }
+
+    private static class StubBodyMethodVisitor extends MethodVisitor {
+        private boolean hasCode;
+
+        public StubBodyMethodVisitor(MethodVisitor mv) {
+            super(ASM4, mv);
+        }
+
+        @Override
+        public void visitCode() {
+            hasCode = true;
+            super.visitCode();
+        }
+
+        public void generateStubBodyIfNeeded() {
+            if (hasCode) return;
+
+            visitCode();
+            visitTypeInsn(NEW, "java/lang/UnsupportedOperationException");
+            visitInsn(DUP);
+            visitLdcInsn("ABI stub");
+            visitMethodInsn(INVOKESPECIAL, "java/lang/UnsupportedOperationException", "<init>", "(Ljava/lang/String;)V");
+            visitInsn(ATHROW);
+            FunctionCodegen.endVisit(this, "stub body", null);
+        }
+    }
+
     private static class TraceBuilder extends ClassBuilder.Concrete {
         public final BinaryClassWriter binary;
 
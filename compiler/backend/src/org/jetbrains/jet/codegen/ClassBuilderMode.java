@@ -25,4 +25,8 @@ public enum ClassBuilderMode {
      * Generating light classes: Only function signatures
      */
     LIGHT_CLASSES,
+    /**
+     * Generating ABI stubs: function signatures and Kotlin metadata, every method body throws UnsupportedOperationException
+     */
+    STUBS,
 }
@@ -44,6 +44,8 @@ public final class ClassFileFactory extends GenerationStateAware {
 
     private final Map<FqName, NamespaceCodegen> ns2codegen = new HashMap<FqName, NamespaceCodegen>();
     private final Map<String, ClassBuilderAndSourceFileList> generators = new LinkedHashMap<String, ClassBuilderAndSourceFileList>();
+    // Outputs created since the last call to releaseGeneratedClasses()
+    private final List<String> unreleasedFiles = new ArrayList<String>();
     private boolean isDone = false;
 
     public ClassFileFactory(@NotNull GenerationState state) {
@@ -67,6 +69,7 @@ public final class ClassFileFactory extends GenerationStateAware {
         state.getProgress().reportOutput(toIoFilesIgnoringNonPhysical(sourceFiles), new File(outputFilePath));
         ClassBuilder answer = builderFactory.newClassBuilder();
         generators.put(outputFilePath, new ClassBuilderAndSourceFileList(answer, sourceFiles));
+        unreleasedFiles.add(outputFilePath);
         return answer;
     }
 
@@ -81,12 +84,49 @@ public final class ClassFileFactory extends GenerationStateAware {
 
     public String asText(String file) {
         done();
-        return builderFactory.asText(generators.get(file).classBuilder);
+        return builderFactory.asText(getClassBuilder(file));
     }
 
     public byte[] asBytes(String file) {
         done();
-        return builderFactory.asBytes(generators.get(file).classBuilder);
+        return builderFactory.asBytes(getClassBuilder(file));
+    }
+
+    @NotNull
+    private ClassBuilder getClassBuilder(@NotNull String file) {
+        ClassBuilder classBuilder = generators.get(file).classBuilder;
+        if (classBuilder == null) {
+            throw new IllegalStateException("Class file has already been released: " + file);
+        }
+        return classBuilder;
+    }
+
+    /**
+     * Completes the namespace class, so that it's released by the next {@link #releaseGeneratedClasses(ClassFileConsumer)}.
+     * Nothing can be added to this namespace afterwards.
+     */
+    public void finishNamespace(@NotNull FqName fqName) {
+        NamespaceCodegen codegen = ns2codegen.remove(fqName);
+        if (codegen != null) {
+            codegen.done();
+        }
+    }
+
+    /**
+     * Passes all the classes generated since the previous call to the consumer and forgets their contents.
+     * Only complete classes may be released: all namespaces involved should be finished by {@link #finishNamespace(FqName)}.
+     * The paths of released files are still reported by {@link #files()} and {@link #getSourceFiles(String)}.
+     */
+    public void releaseGeneratedClasses(@NotNull ClassFileConsumer consumer) {
+        for (String file : unreleasedFiles) {
+            ClassBuilderAndSourceFileList pair = generators.get(file);
+            ClassBuilder classBuilder = pair.classBuilder;
+            if (classBuilder == null) continue;
+
+            consumer.consume(file, getSourceFiles(file), builderFactory.asBytes(classBuilder));
+            pair.classBuilder = null;
+        }
+        unreleasedFiles.clear();
     }
 
     public List<String> files() {
@@ -179,7 +219,7 @@ public final class ClassFileFactory extends GenerationStateAware {
     }
 
     private static class ClassBuilderAndSourceFileList {
-        private final ClassBuilder classBuilder;
+        private ClassBuilder classBuilder;
         private final Collection<? extends PsiFile> sourceFiles;
 
         private ClassBuilderAndSourceFileList(ClassBuilder classBuilder, Collection<? extends PsiFile> sourceFiles) {
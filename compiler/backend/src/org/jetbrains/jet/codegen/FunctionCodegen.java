@@ -129,9 +129,11 @@ public class FunctionCodegen extends ParentCodegenAwareImpl {
 
         if (isAbstractMethod(functionDescriptor, methodContext.getContextKind())) return;
 
-        generateMethodBody(mv, functionDescriptor, methodContext, jvmSignature, strategy);
+        if (state.getClassBuilderMode() == ClassBuilderMode.FULL) {
+            generateMethodBody(mv, functionDescriptor, methodContext, jvmSignature, strategy);
 
-        endVisit(mv, null, origin);
+            endVisit(mv, null, origin);
+        }
 
         generateBridgeIfNeeded(owner, state, v, jvmSignature.getAsmMethod(), functionDescriptor);
 
@@ -214,7 +214,7 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
 
     @Override
     protected void generateKotlinAnnotation() {
-        if (state.getClassBuilderMode() != ClassBuilderMode.FULL) {
+        if (state.getClassBuilderMode() == ClassBuilderMode.LIGHT_CLASSES) {
             return;
         }
 
@@ -1173,6 +1173,11 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
                    }
         );
 
+        if (state.getClassBuilderMode() == ClassBuilderMode.STUBS) {
+            // Delegating methods are usually generated along with the body of the constructor, which is skipped in this mode
+            generateDelegatesWithoutBodies();
+        }
+
         functionCodegen.generateDefaultIfNeeded(constructorContext, constructorSignature, constructorDescriptor,
                                                 OwnerKind.IMPLEMENTATION, DefaultParameterValueLoader.DEFAULT);
 
@@ -1254,6 +1259,19 @@ public class ImplementationBodyCodegen extends ClassBodyCodegen {
         iv.visitInsn(RETURN);
     }
 
+    private void generateDelegatesWithoutBodies() {
+        for (JetDelegationSpecifier specifier : myClass.getDelegationSpecifiers()) {
+            if (specifier instanceof JetDelegatorByExpressionSpecifier) {
+                JetType superType = bindingContext.get(BindingContext.TYPE, specifier.getTypeReference());
+                assert superType != null;
+                ClassDescriptor superClassDescriptor = (ClassDescriptor) superType.getConstructor().getDeclarationDescriptor();
+                assert superClassDescriptor != null;
+
+                generateDelegates(superClassDescriptor, StackValue.none());
+            }
+        }
+    }
+
     private void genSuperCallToDelegatorToSuperClass(InstructionAdapter iv) {
         iv.load(0, superClassAsmType);
         JetType superType = bindingContext.get(BindingContext.TYPE, superCall.getTypeReference());
@@ -19,6 +19,7 @@ package org.jetbrains.jet.codegen;
 import com.intellij.openapi.util.Pair;
 import com.intellij.util.containers.MultiMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.asm4.Type;
 import org.jetbrains.jet.codegen.state.GenerationState;
 import org.jetbrains.jet.lang.descriptors.ScriptDescriptor;
@@ -38,6 +39,19 @@ public class KotlinCodegenFacade {
     public static void compileCorrectFiles(
             @NotNull GenerationState state,
             @NotNull CompilationErrorHandler errorHandler
+    ) {
+        compileCorrectFiles(state, errorHandler, null);
+    }
+
+    /**
+     * @param consumer if not null, classes of each namespace are passed to it as soon as the namespace is generated,
+     *                 and are not retained by {@link ClassFileFactory} afterwards. Peak memory then depends on the largest namespace
+     *                 rather than on the whole module.
+     */
+    public static void compileCorrectFiles(
+            @NotNull GenerationState state,
+            @NotNull CompilationErrorHandler errorHandler,
+            @Nullable ClassFileConsumer consumer
     ) {
         for (JetFile file : state.getFiles()) {
             if (file.isScript()) {
@@ -58,6 +72,13 @@ public class KotlinCodegenFacade {
 
         for (Map.Entry<FqName, Collection<JetFile>> entry : namespaceGrouping.entrySet()) {
             generateNamespace(state, entry.getKey(), entry.getValue(), errorHandler);
+
+            if (consumer != null) {
+                ClassFileFactory factory = state.getFactory();
+                factory.finishNamespace(entry.getKey());
+                factory.releaseGeneratedClasses(consumer);
+                state.releaseCodegenData(entry.getValue());
+            }
         }
     }
 
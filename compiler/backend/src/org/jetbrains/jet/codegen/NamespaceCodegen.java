@@ -138,7 +138,7 @@ public class NamespaceCodegen extends MemberCodegen {
     }
 
     private void writeKotlinPackageAnnotationIfNeeded(@NotNull MemberMap members) {
-        if (state.getClassBuilderMode() != ClassBuilderMode.FULL) {
+        if (state.getClassBuilderMode() == ClassBuilderMode.LIGHT_CLASSES) {
             return;
         }
 
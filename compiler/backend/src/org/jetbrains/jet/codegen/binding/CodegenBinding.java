@@ -27,6 +27,7 @@ import org.jetbrains.jet.lang.descriptors.impl.ClassDescriptorImpl;
 import org.jetbrains.jet.lang.psi.*;
 import org.jetbrains.jet.lang.resolve.BindingContext;
 import org.jetbrains.jet.lang.resolve.BindingTrace;
+import org.jetbrains.jet.lang.resolve.DelegatingBindingTrace;
 import org.jetbrains.jet.lang.resolve.java.JvmAbi;
 import org.jetbrains.jet.lang.resolve.java.descriptor.ClassDescriptorFromJvmBytecode;
 import org.jetbrains.jet.lang.resolve.name.FqName;
@@ -34,6 +35,7 @@ import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
 import org.jetbrains.jet.lang.types.JetType;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+import org.jetbrains.jet.util.slicedmap.RemovableSlice;
 import org.jetbrains.jet.util.slicedmap.Slices;
 import org.jetbrains.jet.util.slicedmap.WritableSlice;
 
@@ -45,19 +47,22 @@ import static org.jetbrains.jet.lang.resolve.BindingContextUtils.descriptorToDec
 import static org.jetbrains.jet.lang.resolve.DescriptorUtils.isEnumClass;
 
 public class CodegenBinding {
-    public static final WritableSlice<ClassDescriptor, MutableClosure> CLOSURE = Slices.createSimpleSlice();
+    public static final RemovableSlice<ClassDescriptor, MutableClosure> CLOSURE = Slices.<ClassDescriptor, MutableClosure>sliceBuilder().build();
 
-    public static final WritableSlice<FunctionDescriptor, ClassDescriptor> CLASS_FOR_FUNCTION = Slices.createSimpleSlice();
+    public static final RemovableSlice<FunctionDescriptor, ClassDescriptor> CLASS_FOR_FUNCTION =
+            Slices.<FunctionDescriptor, ClassDescriptor>sliceBuilder().build();
 
     public static final WritableSlice<ScriptDescriptor, ClassDescriptor> CLASS_FOR_SCRIPT = Slices.createSimpleSlice();
 
-    public static final WritableSlice<DeclarationDescriptor, Type> ASM_TYPE = Slices.createSimpleSlice();
+    public static final RemovableSlice<DeclarationDescriptor, Type> ASM_TYPE = Slices.<DeclarationDescriptor, Type>sliceBuilder().build();
 
     public static final WritableSlice<ClassDescriptor, Boolean> ENUM_ENTRY_CLASS_NEED_SUBCLASS = Slices.createSimpleSetSlice();
 
-    public static final WritableSlice<ClassDescriptor, Collection<ClassDescriptor>> INNER_CLASSES = Slices.createSimpleSlice();
+    public static final RemovableSlice<ClassDescriptor, Collection<ClassDescriptor>> INNER_CLASSES =
+            Slices.<ClassDescriptor, Collection<ClassDescriptor>>sliceBuilder().build();
 
-    public static final WritableSlice<JetExpression, ClassDescriptorFromJvmBytecode> SAM_VALUE = Slices.createSimpleSlice();
+    public static final RemovableSlice<JetExpression, ClassDescriptorFromJvmBytecode> SAM_VALUE =
+            Slices.<JetExpression, ClassDescriptorFromJvmBytecode>sliceBuilder().build();
 
     private CodegenBinding() {
     }
@@ -69,6 +74,82 @@ public class CodegenBinding {
         }
     }
 
+    /**
+     * Forgets what {@link #initTrace} has recorded for the given files and can't be needed to generate other files:
+     * closures and names of anonymous classes and lambdas, inner class lists, SAM conversions.
+     * Named classes keep their closures and names because they can be referenced from anywhere.
+     */
+    public static void releaseLocalClasses(@NotNull final DelegatingBindingTrace bindingTrace, @NotNull Collection<JetFile> files) {
+        final BindingContext bindingContext = bindingTrace.getBindingContext();
+        JetTreeVisitorVoid visitor = new JetTreeVisitorVoid() {
+            @Override
+            public void visitExpression(JetExpression expression) {
+                bindingTrace.remove(SAM_VALUE, expression);
+                super.visitExpression(expression);
+            }
+
+            @Override
+            public void visitClass(JetClass klass) {
+                releaseInnerClasses(bindingContext.get(CLASS, klass));
+                super.visitClass(klass);
+            }
+
+            @Override
+            public void visitObjectDeclaration(JetObjectDeclaration declaration) {
+                ClassDescriptor classDescriptor = bindingContext.get(CLASS, declaration);
+                releaseInnerClasses(classDescriptor);
+                if (declaration.isObjectLiteral()) {
+                    releaseAnonymousClass(classDescriptor);
+                }
+                super.visitObjectDeclaration(declaration);
+            }
+
+            @Override
+            public void visitFunctionLiteralExpression(JetFunctionLiteralExpression expression) {
+                releaseClassForFunction(bindingContext.get(DECLARATION_TO_DESCRIPTOR, expression.getFunctionLiteral()));
+                super.visitFunctionLiteralExpression(expression);
+            }
+
+            @Override
+            public void visitCallableReferenceExpression(JetCallableReferenceExpression expression) {
+                releaseClassForFunction(bindingContext.get(FUNCTION, expression));
+                super.visitCallableReferenceExpression(expression);
+            }
+
+            @Override
+            public void visitNamedFunction(JetNamedFunction function) {
+                releaseClassForFunction(bindingContext.get(DECLARATION_TO_DESCRIPTOR, function));
+                super.visitNamedFunction(function);
+            }
+
+            private void releaseClassForFunction(@Nullable DeclarationDescriptor descriptor) {
+                if (!(descriptor instanceof FunctionDescriptor)) return;
+                FunctionDescriptor functionDescriptor = (FunctionDescriptor) descriptor;
+                ClassDescriptor classDescriptor = bindingContext.get(CLASS_FOR_FUNCTION, functionDescriptor);
+                if (classDescriptor == null) return;
+
+                releaseAnonymousClass(classDescriptor);
+                bindingTrace.remove(CLASS_FOR_FUNCTION, functionDescriptor);
+            }
+
+            private void releaseAnonymousClass(@Nullable ClassDescriptor classDescriptor) {
+                if (classDescriptor == null) return;
+                bindingTrace.remove(CLOSURE, classDescriptor);
+                bindingTrace.remove(ASM_TYPE, classDescriptor);
+                bindingTrace.remove(INNER_CLASSES, classDescriptor);
+            }
+
+            private void releaseInnerClasses(@Nullable ClassDescriptor classDescriptor) {
+                if (classDescriptor != null) {
+                    bindingTrace.remove(INNER_CLASSES, classDescriptor);
+                }
+            }
+        };
+        for (JetFile file : files) {
+            file.accept(visitor);
+        }
+    }
+
     public static boolean enumEntryNeedSubclass(BindingContext bindingContext, JetEnumEntry enumEntry) {
         return enumEntryNeedSubclass(bindingContext, bindingContext.get(CLASS, enumEntry));
     }
@@ -29,6 +29,7 @@ import org.jetbrains.jet.lang.resolve.BindingContext;
 import org.jetbrains.jet.lang.resolve.BindingTrace;
 import org.jetbrains.jet.lang.resolve.DelegatingBindingTrace;
 
+import java.util.Collection;
 import java.util.List;
 
 public class GenerationState {
@@ -59,7 +60,7 @@ public class GenerationState {
     private final SamWrapperClasses samWrapperClasses = new SamWrapperClasses(this);
 
     @NotNull
-    private final BindingTrace bindingTrace;
+    private final DelegatingBindingTrace bindingTrace;
 
     @NotNull
     private final JetTypeMapper typeMapper;
@@ -176,6 +177,13 @@ public class GenerationState {
         CodegenBinding.initTrace(getBindingTrace(), getFiles());
     }
 
+    /**
+     * Forgets the data recorded by {@link #beforeCompile()} which is not needed anymore once the given files are generated
+     */
+    public void releaseCodegenData(@NotNull Collection<JetFile> files) {
+        CodegenBinding.releaseLocalClasses(bindingTrace, files);
+    }
+
     private void markUsed() {
         if (used) {
             throw new IllegalStateException(GenerationState.class + " cannot be used more than once");
@@ -35,4 +35,22 @@ public class JVMConfigurationKeys {
             CompilerConfigurationKey.create("generate not-null assertions");
     public static final CompilerConfigurationKey<Boolean> GENERATE_NOT_NULL_PARAMETER_ASSERTIONS =
             CompilerConfigurationKey.create("generate not-null parameter assertions");
+
+    public static final CompilerConfigurationKey<Boolean> LOW_MEMORY_CODEGEN =
+            CompilerConfigurationKey.create("write classes and release codegen data per namespace");
+
+    public static final CompilerConfigurationKey<Integer> BODY_RESOLVE_THREADS =
+            CompilerConfigurationKey.create("number of threads to resolve function bodies in");
+
+    public static final CompilerConfigurationKey<Boolean> PARALLEL_PARSING =
+            CompilerConfigurationKey.create("parse source files in several threads");
+
+    public static final CompilerConfigurationKey<Boolean> ABI_ONLY =
+            CompilerConfigurationKey.create("generate declarations only, with method bodies that throw");
+
+    public static final CompilerConfigurationKey<Boolean> READ_CLASS_FILES =
+            CompilerConfigurationKey.create("read Java classes from class files without PSI");
+
+    public static final CompilerConfigurationKey<File> DESCRIPTOR_SNAPSHOT_DIRECTORY =
+            CompilerConfigurationKey.create("directory to keep descriptors of library classes in between compilations");
 }
@@ -21,6 +21,7 @@ import com.google.common.collect.Lists;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.cli.common.CLICompiler;
 import org.jetbrains.jet.cli.common.CLIConfigurationKeys;
 import org.jetbrains.jet.cli.common.ExitCode;
@@ -31,6 +32,10 @@ import org.jetbrains.jet.codegen.CompilationException;
 import org.jetbrains.jet.config.CommonConfigurationKeys;
 import org.jetbrains.jet.config.CompilerConfiguration;
 import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.BindingTraceStatistics;
+import org.jetbrains.jet.lang.types.checker.JetTypeChecker;
+import org.jetbrains.jet.lang.types.checker.SubtypingCache;
+import org.jetbrains.jet.storage.StorageStatistics;
 import org.jetbrains.jet.utils.KotlinPaths;
 import org.jetbrains.jet.utils.KotlinPathsFromHomeDir;
 import org.jetbrains.jet.utils.PathUtil;
@@ -113,9 +118,37 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
 
         configuration.put(JVMConfigurationKeys.GENERATE_NOT_NULL_ASSERTIONS, arguments.notNullAssertions);
         configuration.put(JVMConfigurationKeys.GENERATE_NOT_NULL_PARAMETER_ASSERTIONS, arguments.notNullParamAssertions);
+        configuration.put(JVMConfigurationKeys.LOW_MEMORY_CODEGEN, arguments.lowMemory);
+        configuration.put(JVMConfigurationKeys.PARALLEL_PARSING, arguments.parallelParsing);
+        configuration.put(JVMConfigurationKeys.ABI_ONLY, arguments.abiOnly);
+        configuration.put(JVMConfigurationKeys.READ_CLASS_FILES, arguments.readClassFiles);
+        if (arguments.descriptorCache != null) {
+            configuration.put(JVMConfigurationKeys.DESCRIPTOR_SNAPSHOT_DIRECTORY, new File(arguments.descriptorCache));
+        }
+
+        if (arguments.bodyResolveThreads != null) {
+            Integer threads = parseThreadCount(arguments.bodyResolveThreads);
+            if (threads == null) {
+                messageCollector.report(CompilerMessageSeverity.ERROR,
+                                        "Invalid number of threads for -Xbody-resolve-threads: " + arguments.bodyResolveThreads,
+                                        CompilerMessageLocation.NO_LOCATION);
+                return ExitCode.COMPILATION_ERROR;
+            }
+            configuration.put(JVMConfigurationKeys.BODY_RESOLVE_THREADS, threads);
+        }
 
         configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, messageCollector);
 
+        if (arguments.reportStorageStats) {
+            StorageStatistics.enableGlobally();
+        }
+        if (arguments.reportBindingStats) {
+            BindingTraceStatistics.enableGlobally();
+        }
+        if (arguments.subtypeCache) {
+            JetTypeChecker.INSTANCE.requestSubtypingCache(SubtypingCache.DEFAULT_SIZE);
+        }
+
         messageCollector.report(CompilerMessageSeverity.LOGGING, "Configuring the compilation environment",
                                 CompilerMessageLocation.NO_LOCATION);
         try {
@@ -154,6 +187,20 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
                                     MessageUtil.psiElementToMessageLocation(e.getElement()));
             return INTERNAL_ERROR;
         }
+        finally {
+            StorageStatistics statistics = StorageStatistics.getGlobal();
+            if (statistics != null) {
+                messageCollector.report(CompilerMessageSeverity.INFO, "Storage statistics:\n" + statistics.render(),
+                                        CompilerMessageLocation.NO_LOCATION);
+            }
+            SubtypingCache subtypingCache = JetTypeChecker.INSTANCE.getSubtypingCache();
+            if (subtypingCache != null) {
+                messageCollector.report(CompilerMessageSeverity.INFO, subtypingCache.render(), CompilerMessageLocation.NO_LOCATION);
+            }
+            StorageStatistics.disableGlobally();
+            BindingTraceStatistics.disableGlobally();
+            JetTypeChecker.INSTANCE.disableSubtypingCache();
+        }
     }
 
 
@@ -211,4 +258,15 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
         }
         return annotationsPath;
     }
+
+    @Nullable
+    private static Integer parseThreadCount(@NotNull String value) {
+        try {
+            int threads = Integer.parseInt(value);
+            return threads > 0 ? threads : null;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
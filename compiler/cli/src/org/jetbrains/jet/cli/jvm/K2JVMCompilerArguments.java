@@ -82,6 +82,33 @@ public class K2JVMCompilerArguments extends CommonCompilerArguments {
     @Argument(value = "kotlinHome", description = "Path to Kotlin compiler home directory, used for annotations and runtime libraries discovery")
     public String kotlinHome;
 
+    @Argument(value = "Xreport-storage-stats", description = "report hits, misses and computation time of compiler caches")
+    public boolean reportStorageStats;
+
+    @Argument(value = "Xreport-binding-stats", description = "report entry counts and estimated sizes of binding context slices")
+    public boolean reportBindingStats;
+
+    @Argument(value = "Xlow-memory", description = "write class files of each package as soon as they are generated, to reduce peak memory usage")
+    public boolean lowMemory;
+
+    @Argument(value = "Xbody-resolve-threads", description = "resolve function bodies in the given number of threads (experimental)")
+    public String bodyResolveThreads;
+
+    @Argument(value = "Xparallel-parsing", description = "parse source files in several threads (experimental)")
+    public boolean parallelParsing;
+
+    @Argument(value = "Xabi-only", description = "generate declarations only, without resolving function bodies; method bodies throw UnsupportedOperationException")
+    public boolean abiOnly;
+
+    @Argument(value = "Xsubtype-cache", description = "cache results of subtype checks and report the hit rate")
+    public boolean subtypeCache;
+
+    @Argument(value = "Xread-class-files", description = "read Java classes from class files directly, without building PSI for them (experimental)")
+    public boolean readClassFiles;
+
+    @Argument(value = "Xdescriptor-cache", description = "keep descriptors of library classes in the given directory between compilations (experimental)")
+    public String descriptorCache;
+
     public String getKotlinHome() {
         return kotlinHome;
     }
@@ -20,6 +20,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -33,6 +34,11 @@ public final class ClassPath implements Iterable<VirtualFile> {
         return roots.iterator();
     }
 
+    @NotNull
+    public List<VirtualFile> getRoots() {
+        return Collections.unmodifiableList(roots);
+    }
+
     public void add(@NotNull VirtualFile root) {
         roots.add(root);
     }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Package directories of the roots of a class path, and class files right in the roots: a class is looked up only in the roots
+ * which contain its package.
+ *
+ * Roots are numbered in the order they are added. Only roots which can't change (jars) should be indexed.
+ */
+/* package */ class ClassPathIndex {
+    // "a/b" -> directories of the package a.b in the roots containing it, in the order of roots
+    private final Map<String, List<Entry>> packageDirectories = Maps.newHashMap();
+    // "A.class" -> class files in the roots
+    private final Map<String, List<Entry>> topLevelClassFiles = Maps.newHashMap();
+
+    public void addRoot(int rootIndex, @NotNull VirtualFile root) {
+        for (VirtualFile child : root.getChildren()) {
+            if (child.isDirectory()) {
+                addPackageDirectory(rootIndex, child, child.getName());
+            }
+            else if (child.getName().endsWith(".class")) {
+                addEntry(topLevelClassFiles, child.getName(), rootIndex, child);
+            }
+        }
+    }
+
+    private void addPackageDirectory(int rootIndex, @NotNull VirtualFile directory, @NotNull String path) {
+        addEntry(packageDirectories, path, rootIndex, directory);
+        for (VirtualFile child : directory.getChildren()) {
+            if (child.isDirectory()) {
+                addPackageDirectory(rootIndex, child, path + "/" + child.getName());
+            }
+        }
+    }
+
+    private static void addEntry(@NotNull Map<String, List<Entry>> map, @NotNull String key, int rootIndex, @NotNull VirtualFile file) {
+        List<Entry> entries = map.get(key);
+        if (entries == null) {
+            entries = Lists.newArrayListWithCapacity(1);
+            map.put(key, entries);
+        }
+        entries.add(new Entry(rootIndex, file));
+    }
+
+    /**
+     * Finds a class file the way {@link CliVirtualFileFinder} does in every root: as many segments of the name as possible
+     * are package directories, the rest is the name of the class file, with '$' instead of dots
+     *
+     * @param result class files by the index of the root
+     */
+    public void findClassFiles(@NotNull String qualifiedName, @NotNull Map<Integer, VirtualFile> result) {
+        String[] segments = qualifiedName.split("\\.");
+        int n = segments.length;
+
+        String[] packagePaths = new String[n];
+        StringBuilder path = new StringBuilder();
+        for (int k = 1; k < n; k++) {
+            if (k > 1) path.append('/');
+            path.append(segments[k - 1]);
+            packagePaths[k] = path.toString();
+        }
+
+        // k is the number of segments which are package directories
+        for (int k = n - 1; k >= 0; k--) {
+            String fileName = joinClassName(segments, k) + ".class";
+            List<Entry> entries = k == 0 ? topLevelClassFiles.get(fileName) : packageDirectories.get(packagePaths[k]);
+            if (entries == null) continue;
+
+            for (Entry entry : entries) {
+                if (result.containsKey(entry.rootIndex)) continue;
+                if (k + 1 < n && containsRoot(packageDirectories.get(packagePaths[k + 1]), entry.rootIndex)) continue;
+
+                VirtualFile file = k == 0 ? entry.file : entry.file.findChild(fileName);
+                if (file != null) {
+                    result.put(entry.rootIndex, file);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param packagePath e.g. "a/b", not empty
+     * @param result directories of the package by the index of the root
+     */
+    public void findPackageDirectories(@NotNull String packagePath, @NotNull Map<Integer, VirtualFile> result) {
+        List<Entry> entries = packageDirectories.get(packagePath);
+        if (entries == null) return;
+
+        for (Entry entry : entries) {
+            result.put(entry.rootIndex, entry.file);
+        }
+    }
+
+    @NotNull
+    private static String joinClassName(@NotNull String[] segments, int from) {
+        StringBuilder sb = new StringBuilder(segments[from]);
+        for (int i = from + 1; i < segments.length; i++) {
+            sb.append('$').append(segments[i]);
+        }
+        return sb.toString();
+    }
+
+    private static boolean containsRoot(@Nullable List<Entry> entries, int rootIndex) {
+        if (entries == null) return false;
+        for (Entry entry : entries) {
+            if (entry.rootIndex == rootIndex) return true;
+        }
+        return false;
+    }
+
+    private static class Entry {
+        private final int rootIndex;
+        private final VirtualFile file;
+
+        private Entry(int rootIndex, @NotNull VirtualFile file) {
+            this.rootIndex = rootIndex;
+            this.file = file;
+        }
+    }
+}
@@ -16,19 +16,35 @@
 
 package org.jetbrains.jet.cli.jvm.compiler;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.vfs.StandardFileSystems;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.ClassFileFinder;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileFinder;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileKotlinClass;
 import org.jetbrains.jet.lang.resolve.kotlin.header.KotlinClassHeader;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 
-public class CliVirtualFileFinder implements VirtualFileFinder {
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CliVirtualFileFinder implements VirtualFileFinder, ClassFileFinder {
 
     @NotNull
     private final ClassPath classPath;
 
+    // Jars don't change during compilation, so their contents are indexed; directories are looked up every time
+    private final ClassPathIndex jarIndex = new ClassPathIndex();
+    private int indexedRootCount = 0;
+    // Classes in jars are read once and reused: after their members have been loaded, only headers of the classes are kept
+    private final Map<VirtualFile, VirtualFileKotlinClass> kotlinClassesInJars = Maps.newHashMap();
+    private final Set<VirtualFile> nonKotlinFilesInJars = Sets.newHashSet();
+
     public CliVirtualFileFinder(@NotNull ClassPath path) {
         classPath = path;
     }
@@ -36,18 +52,109 @@ public class CliVirtualFileFinder implements VirtualFileFinder {
     @Nullable
     @Override
     public VirtualFile find(@NotNull FqName className) {
-        for (VirtualFile root : classPath) {
-            VirtualFile fileInRoot = findFileInRoot(className.asString(), root);
-            if (fileInRoot != null) {
-                return fileInRoot;
+        VirtualFileKotlinClass kotlinClass = findKotlinClass(className);
+        return kotlinClass == null ? null : kotlinClass.getFile();
+    }
+
+    @Nullable
+    @Override
+    public synchronized VirtualFileKotlinClass findKotlinClass(@NotNull FqName className) {
+        List<VirtualFile> roots = classPath.getRoots();
+        updateIndex(roots);
+
+        Map<Integer, VirtualFile> filesInJars = Maps.newTreeMap();
+        jarIndex.findClassFiles(className.asString(), filesInJars);
+
+        for (int i = 0; i < roots.size(); i++) {
+            VirtualFile root = roots.get(i);
+            if (isJarRoot(root)) {
+                VirtualFile fileInJar = filesInJars.get(i);
+                VirtualFileKotlinClass classInJar = fileInJar == null ? null : getKotlinClassInJar(fileInJar);
+                if (classInJar != null) {
+                    return classInJar;
+                }
+            }
+            else {
+                VirtualFileKotlinClass classInRoot = findClassInRoot(className.asString(), root);
+                if (classInRoot != null) {
+                    return classInRoot;
+                }
             }
         }
         return null;
     }
 
+    @NotNull
+    @Override
+    public synchronized List<VirtualFile> findPackageDirectories(@NotNull String packagePath) {
+        List<VirtualFile> roots = classPath.getRoots();
+        updateIndex(roots);
+
+        Map<Integer, VirtualFile> directoriesInJars = Maps.newTreeMap();
+        if (!packagePath.isEmpty()) {
+            jarIndex.findPackageDirectories(packagePath, directoriesInJars);
+        }
+
+        List<VirtualFile> result = Lists.newArrayList();
+        for (int i = 0; i < roots.size(); i++) {
+            VirtualFile root = roots.get(i);
+            VirtualFile directory;
+            if (packagePath.isEmpty()) {
+                directory = root;
+            }
+            else if (isJarRoot(root)) {
+                directory = directoriesInJars.get(i);
+            }
+            else {
+                directory = root.findFileByRelativePath(packagePath);
+            }
+
+            if (directory != null && directory.isDirectory()) {
+                result.add(directory);
+            }
+        }
+        return result;
+    }
+
+    private void updateIndex(@NotNull List<VirtualFile> roots) {
+        for (; indexedRootCount < roots.size(); indexedRootCount++) {
+            VirtualFile root = roots.get(indexedRootCount);
+            if (isJarRoot(root)) {
+                jarIndex.addRoot(indexedRootCount, root);
+            }
+        }
+    }
+
+    private static boolean isJarRoot(@NotNull VirtualFile root) {
+        return StandardFileSystems.JAR_PROTOCOL.equals(root.getFileSystem().getProtocol());
+    }
+
+    @Nullable
+    private VirtualFileKotlinClass getKotlinClassInJar(@NotNull VirtualFile file) {
+        if (nonKotlinFilesInJars.contains(file)) return null;
+
+        VirtualFileKotlinClass kotlinClass = kotlinClassesInJars.get(file);
+        if (kotlinClass == null) {
+            kotlinClass = file.isValid() ? readKotlinClass(file) : null;
+            if (kotlinClass == null) {
+                nonKotlinFilesInJars.add(file);
+                return null;
+            }
+            kotlinClassesInJars.put(file, kotlinClass);
+        }
+        return kotlinClass;
+    }
+
+    @Nullable
+    private static VirtualFileKotlinClass readKotlinClass(@NotNull VirtualFile file) {
+        //NOTE: currently we use VirtualFileFinder to find Kotlin binaries only
+        VirtualFileKotlinClass kotlinClass = new VirtualFileKotlinClass(file);
+        return KotlinClassHeader.read(kotlinClass) != null ? kotlinClass : null;
+    }
+
     //NOTE: copied with some changes from CoreJavaFileManager
     @Nullable
-    private static VirtualFile findFileInRoot(@NotNull String qName, @NotNull VirtualFile root) {
+    private static VirtualFileKotlinClass findClassInRoot(@NotNull String qName, @NotNull VirtualFile root) {
         String pathRest = qName;
         VirtualFile cur = root;
 
@@ -70,10 +177,7 @@ public class CliVirtualFileFinder implements VirtualFileFinder {
                 //TODO: log
                 return null;
             }
-            //NOTE: currently we use VirtualFileFinder to find Kotlin binaries only
-            if (KotlinClassHeader.read(new VirtualFileKotlinClass(vFile)) != null) {
-                return vFile;
-            }
+            return readKotlinClass(vFile);
         }
         return null;
     }
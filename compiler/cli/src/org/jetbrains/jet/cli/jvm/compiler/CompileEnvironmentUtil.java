@@ -31,6 +31,7 @@ import org.jetbrains.jet.cli.common.messages.*;
 import org.jetbrains.jet.cli.common.modules.ModuleDescription;
 import org.jetbrains.jet.cli.common.modules.ModuleXmlParser;
 import org.jetbrains.jet.cli.jvm.JVMConfigurationKeys;
+import org.jetbrains.jet.codegen.ClassFileConsumer;
 import org.jetbrains.jet.codegen.ClassFileFactory;
 import org.jetbrains.jet.codegen.GeneratedClassLoader;
 import org.jetbrains.jet.codegen.state.GenerationState;
@@ -170,14 +171,7 @@ public class CompileEnvironmentUtil {
     // TODO: includeRuntime should be not a flag but a path to runtime
     private static void doWriteToJar(ClassFileFactory factory, OutputStream fos, @Nullable FqName mainClass, boolean includeRuntime) {
         try {
-            Manifest manifest = new Manifest();
-            Attributes mainAttributes = manifest.getMainAttributes();
-            mainAttributes.putValue("Manifest-Version", "1.0");
-            mainAttributes.putValue("Created-By", "JetBrains Kotlin");
-            if (mainClass != null) {
-                mainAttributes.putValue("Main-Class", mainClass.asString());
-            }
-            JarOutputStream stream = new JarOutputStream(fos, manifest);
+            JarOutputStream stream = new JarOutputStream(fos, createManifest(mainClass));
             for (String file : factory.files()) {
                 stream.putNextEntry(new JarEntry(file));
                 stream.write(factory.asBytes(file));
@@ -192,6 +186,18 @@ public class CompileEnvironmentUtil {
         }
     }
 
+    @NotNull
+    private static Manifest createManifest(@Nullable FqName mainClass) {
+        Manifest manifest = new Manifest();
+        Attributes mainAttributes = manifest.getMainAttributes();
+        mainAttributes.putValue("Manifest-Version", "1.0");
+        mainAttributes.putValue("Created-By", "JetBrains Kotlin");
+        if (mainClass != null) {
+            mainAttributes.putValue("Main-Class", mainClass.asString());
+        }
+        return manifest;
+    }
+
     public static void writeToJar(File jarPath, boolean jarRuntime, FqName mainClass, ClassFileFactory moduleFactory) {
         FileOutputStream outputStream = null;
         try {
@@ -300,6 +306,117 @@ public class CompileEnvironmentUtil {
         }
     }
 
+    /**
+     * Writes class files to a jar or to output directories as soon as they are generated,
+     * the same way {@link #writeOutputToDirOrJar} writes the contents of a {@link ClassFileFactory}
+     */
+    static class StreamingOutput implements ClassFileConsumer {
+        @Nullable private final File jar;
+        @Nullable private final OutputDirector outputDir;
+        private final boolean includeRuntime;
+        @Nullable private final FqName mainClass;
+        @NotNull private final MessageCollector messageCollector;
+
+        @Nullable private JarOutputStream jarStream = null;
+        @NotNull private final List<File> writtenClassFiles = new ArrayList<File>();
+        private boolean finished = false;
+
+        StreamingOutput(
+                @Nullable File jar,
+                @Nullable OutputDirector outputDir,
+                boolean includeRuntime,
+                @Nullable FqName mainClass,
+                @NotNull MessageCollector messageCollector
+        ) {
+            if (jar == null && outputDir == null) {
+                throw new CompileEnvironmentException("Output directory or jar file is not specified - no files will be saved to the disk");
+            }
+            this.jar = jar;
+            this.outputDir = outputDir;
+            this.includeRuntime = includeRuntime;
+            this.mainClass = mainClass;
+            this.messageCollector = messageCollector;
+        }
+
+        @Override
+        public void consume(@NotNull String relativeClassFilePath, @NotNull List<File> sourceFiles, @NotNull byte[] bytes) {
+            if (jar != null) {
+                try {
+                    JarOutputStream stream = getJarStream();
+                    stream.putNextEntry(new JarEntry(relativeClassFilePath));
+                    stream.write(bytes);
+                }
+                catch (IOException e) {
+                    throw new CompileEnvironmentException("Failed to generate jar file", e);
+                }
+            }
+            else {
+                assert outputDir != null;
+                messageCollector.report(
+                        CompilerMessageSeverity.OUTPUT,
+                        OutputMessageUtil.formatOutputMessage(sourceFiles, new File(relativeClassFilePath)),
+                        CompilerMessageLocation.NO_LOCATION);
+                File classFile = new File(outputDir.getOutputDirectory(sourceFiles), relativeClassFilePath);
+                writtenClassFiles.add(classFile);
+                try {
+                    FileUtil.writeToFile(classFile, bytes);
+                }
+                catch (IOException e) {
+                    throw new CompileEnvironmentException(e);
+                }
+            }
+        }
+
+        @NotNull
+        private JarOutputStream getJarStream() throws IOException {
+            if (jarStream == null) {
+                FileOutputStream outputStream;
+                try {
+                    outputStream = new FileOutputStream(jar);
+                }
+                catch (FileNotFoundException e) {
+                    throw new CompileEnvironmentException("Invalid jar path " + jar, e);
+                }
+                jarStream = new JarOutputStream(outputStream, createManifest(mainClass));
+            }
+            return jarStream;
+        }
+
+        /**
+         * Should be called when all the classes have been written successfully
+         */
+        void finish() {
+            finished = true;
+            if (jar == null) return;
+
+            try {
+                JarOutputStream stream = getJarStream();
+                if (includeRuntime) {
+                    writeRuntimeToJar(stream);
+                }
+                stream.finish();
+            }
+            catch (IOException e) {
+                throw new CompileEnvironmentException("Failed to generate jar file", e);
+            }
+        }
+
+        /**
+         * Doesn't leave a partially written jar or a part of the class files in the output directory if the compilation has failed
+         */
+        void close() {
+            ExceptionUtils.closeQuietly(jarStream);
+            if (finished) return;
+
+            if (jarStream != null) {
+                FileUtil.delete(jar);
+            }
+            for (File classFile : writtenClassFiles) {
+                FileUtil.delete(classFile);
+            }
+        }
+    }
+
     private static void reportOutputs(ClassFileFactory factory, MessageCollector messageCollector) {
         for (String outputFile : factory.files()) {
             List<File> sourceFiles = factory.getSourceFiles(outputFile);
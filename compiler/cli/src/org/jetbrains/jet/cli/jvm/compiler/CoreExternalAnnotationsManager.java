@@ -19,10 +19,11 @@ package org.jetbrains.jet.cli.jvm.compiler;
 import com.intellij.codeInsight.BaseExternalAnnotationsManager;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
+import com.intellij.psi.util.PsiFormatUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.resolver.ExternalAnnotationsIndex;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class CoreExternalAnnotationsManager extends BaseExternalAnnotationsManager {
@@ -31,14 +32,40 @@ public class CoreExternalAnnotationsManager extends BaseExternalAnnotationsManag
         System.setProperty("javax.xml.parsers.SAXParserFactory", "com.sun.org.apache.xerces.internal.jaxp.SAXParserFactoryImpl");
     }
 
-    private final List<VirtualFile> externalAnnotationsRoots = new ArrayList<VirtualFile>();
+    private final ExternalAnnotationsIndex index;
 
-    public CoreExternalAnnotationsManager(@NotNull PsiManager psiManager) {
+    public CoreExternalAnnotationsManager(@NotNull PsiManager psiManager, @NotNull ExternalAnnotationsIndex.WarningReporter warningReporter) {
         super(psiManager);
+        index = new ExternalAnnotationsIndex(psiManager.getProject(), warningReporter);
     }
 
     public void addExternalAnnotationsRoot(VirtualFile externalAnnotationsRoot) {
-        externalAnnotationsRoots.add(externalAnnotationsRoot);
+        index.addRoot(externalAnnotationsRoot);
+    }
+
+    @NotNull
+    public ExternalAnnotationsIndex getIndex() {
+        return index;
+    }
+
+    @Nullable
+    @Override
+    public PsiAnnotation findExternalAnnotation(@NotNull PsiModifierListOwner listOwner, @NotNull String annotationFQN) {
+        PsiAnnotation[] annotations = findExternalAnnotations(listOwner);
+        if (annotations == null) return null;
+        for (PsiAnnotation annotation : annotations) {
+            if (annotationFQN.equals(annotation.getQualifiedName())) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public PsiAnnotation[] findExternalAnnotations(@NotNull PsiModifierListOwner listOwner) {
+        String externalName = PsiFormatUtil.getExternalName(listOwner, false, Integer.MAX_VALUE);
+        return externalName == null ? null : index.findExternalAnnotations(externalName);
     }
 
     @Override
@@ -49,7 +76,7 @@ public class CoreExternalAnnotationsManager extends BaseExternalAnnotationsManag
     @NotNull
     @Override
     protected List<VirtualFile> getExternalAnnotationsRoots(@NotNull VirtualFile libraryFile) {
-        return externalAnnotationsRoots;
+        return index.getRoots();
     }
 
     @Override
@@ -25,10 +25,12 @@ import com.intellij.lang.java.JavaParserDefinition;
 import com.intellij.mock.MockApplication;
 import com.intellij.mock.MockProject;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.extensions.Extensions;
 import com.intellij.openapi.fileTypes.PlainTextFileType;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElementFinder;
@@ -37,6 +39,7 @@ import com.intellij.psi.PsiManager;
 import com.intellij.psi.impl.compiled.ClsCustomNavigationPolicy;
 import com.intellij.psi.impl.file.impl.JavaFileManager;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.jet.CompilerModeProvider;
 import org.jetbrains.jet.OperationModeProvider;
@@ -53,13 +56,24 @@ import org.jetbrains.jet.lang.parsing.JetParserDefinition;
 import org.jetbrains.jet.lang.parsing.JetScriptDefinitionProvider;
 import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.resolve.java.JetFilesProvider;
+import org.jetbrains.jet.lang.resolve.java.resolver.DescriptorSnapshotStorage;
+import org.jetbrains.jet.lang.resolve.java.resolver.ExternalAnnotationsIndex;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.ClassFileFinder;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileFinder;
 import org.jetbrains.jet.plugin.JetFileType;
+import org.jetbrains.jet.utils.ExceptionUtils;
 import org.jetbrains.jet.utils.PathUtil;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity.ERROR;
 import static org.jetbrains.jet.cli.common.messages.CompilerMessageSeverity.WARNING;
@@ -181,8 +195,15 @@ public class JetCoreEnvironment {
         CoreApplicationEnvironment.registerExtensionPoint(Extensions.getRootArea(), ClsCustomNavigationPolicy.EP_NAME,
                                                           ClsCustomNavigationPolicy.class);
 
-        annotationsManager = new CoreExternalAnnotationsManager(project.getComponent(PsiManager.class));
+        ExternalAnnotationsIndex.WarningReporter annotationsWarningReporter = new ExternalAnnotationsIndex.WarningReporter() {
+            @Override
+            public void reportWarning(@NotNull String message) {
+                report(WARNING, message);
+            }
+        };
+        annotationsManager = new CoreExternalAnnotationsManager(project.getComponent(PsiManager.class), annotationsWarningReporter);
         project.registerService(ExternalAnnotationsManager.class, annotationsManager);
+        project.registerService(ExternalAnnotationsIndex.class, annotationsManager.getIndex());
 
         for (File path : configuration.getList(JVMConfigurationKeys.CLASSPATH_KEY)) {
             addToClasspath(path);
@@ -190,14 +211,62 @@ public class JetCoreEnvironment {
         for (File path : configuration.getList(JVMConfigurationKeys.ANNOTATIONS_PATH_KEY)) {
             addExternalAnnotationsRoot(path);
         }
+        List<File> sourcePaths = new ArrayList<File>();
         for (String path : configuration.getList(CommonConfigurationKeys.SOURCE_ROOTS_KEY)) {
-            addSources(path);
+            addSources(path, sourcePaths);
+        }
+        if (configuration.get(JVMConfigurationKeys.PARALLEL_PARSING, false)) {
+            loadSourceFilesInParallel(sourcePaths);
+        }
+        else {
+            for (File path : sourcePaths) {
+                JetFile file = findSourceFile(path);
+                if (file != null) {
+                    sourceFiles.add(file);
+                }
+            }
         }
 
         JetScriptDefinitionProvider.getInstance(project).addScriptDefinitions(
                 configuration.getList(CommonConfigurationKeys.SCRIPT_DEFINITIONS_KEY));
 
-        project.registerService(VirtualFileFinder.class, new CliVirtualFileFinder(classPath));
+        CliVirtualFileFinder virtualFileFinder = new CliVirtualFileFinder(classPath);
+        project.registerService(VirtualFileFinder.class, virtualFileFinder);
+        if (configuration.get(JVMConfigurationKeys.READ_CLASS_FILES, false)) {
+            project.registerService(ClassFileFinder.class, virtualFileFinder);
+        }
+
+        File descriptorSnapshotDirectory = configuration.get(JVMConfigurationKeys.DESCRIPTOR_SNAPSHOT_DIRECTORY);
+        if (descriptorSnapshotDirectory != null) {
+            project.registerService(DescriptorSnapshotStorage.class,
+                                    new DescriptorSnapshotStorage(descriptorSnapshotDirectory, describeJavaResolutionConfiguration()));
+        }
+    }
+
+    /**
+     * Everything besides the class path which affects descriptors of Java classes: the compiler itself, the way classes are read
+     * and external annotations
+     */
+    @NotNull
+    private String describeJavaResolutionConfiguration() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("read class files: ").append(configuration.get(JVMConfigurationKeys.READ_CLASS_FILES, false)).append('\n');
+        appendFileStamps(sb, PathUtil.getJarPathForClass(JetCoreEnvironment.class));
+        for (File path : configuration.getList(JVMConfigurationKeys.ANNOTATIONS_PATH_KEY)) {
+            appendFileStamps(sb, path);
+        }
+        return sb.toString();
+    }
+
+    private static void appendFileStamps(@NotNull StringBuilder sb, @NotNull File file) {
+        sb.append(file.getAbsolutePath()).append(' ').append(file.length()).append(' ').append(file.lastModified()).append('\n');
+        File[] children = file.listFiles();
+        if (children != null) {
+            Arrays.sort(children);
+            for (File child : children) {
+                appendFileStamps(sb, child);
+            }
+        }
     }
 
     public CompilerConfiguration getConfiguration() {
@@ -227,27 +296,80 @@ public class JetCoreEnvironment {
         annotationsManager.addExternalAnnotationsRoot(PathUtil.jarFileOrDirectoryToVirtualFile(path));
     }
 
-    private void addSources(File file) {
+    private static void addSources(@NotNull File file, @NotNull List<File> sourcePaths) {
         if (file.isDirectory()) {
             File[] files = file.listFiles();
             if (files != null) {
                 for (File child : files) {
-                    addSources(child);
+                    addSources(child, sourcePaths);
                 }
             }
         }
         else {
-            VirtualFile fileByPath = getMyApplicationEnvironment().getLocalFileSystem().findFileByPath(file.getAbsolutePath());
-            if (fileByPath != null) {
-                PsiFile psiFile = PsiManager.getInstance(getProject()).findFile(fileByPath);
-                if (psiFile instanceof JetFile) {
-                    sourceFiles.add((JetFile) psiFile);
+            sourcePaths.add(file);
+        }
+    }
+
+    @Nullable
+    private JetFile findSourceFile(@NotNull File path) {
+        VirtualFile fileByPath = getMyApplicationEnvironment().getLocalFileSystem().findFileByPath(path.getAbsolutePath());
+        if (fileByPath == null) return null;
+
+        PsiFile psiFile = PsiManager.getInstance(getProject()).findFile(fileByPath);
+        return psiFile instanceof JetFile ? (JetFile) psiFile : null;
+    }
+
+    // Text and trees of source files are built lazily, on the first access. Loading them in advance (see PARALLEL_PARSING) lets several
+    // threads find, read, decode, lex and parse different files at once. The order of source files is the same as without it
+    private void loadSourceFilesInParallel(@NotNull List<File> sourcePaths) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                                                                                     sourcePaths.size())));
+        try {
+            List<Future<JetFile>> results = new ArrayList<Future<JetFile>>(sourcePaths.size());
+            for (final File path : sourcePaths) {
+                results.add(executor.submit(new Callable<JetFile>() {
+                    @Override
+                    public JetFile call() {
+                        return ApplicationManager.getApplication().runReadAction(new Computable<JetFile>() {
+                            @Override
+                            public JetFile compute() {
+                                JetFile file = findSourceFile(path);
+                                if (file != null) {
+                                    file.getViewProvider().getContents();
+                                    // The file element is parsed on the first access to its children
+                                    file.getNode().getFirstChildNode();
+                                }
+                                return file;
+                            }
+                        });
+                    }
+                }));
+            }
+
+            Iterator<File> paths = sourcePaths.iterator();
+            for (Future<JetFile> result : results) {
+                File path = paths.next();
+                try {
+                    JetFile file = result.get();
+                    if (file != null) {
+                        sourceFiles.add(file);
+                    }
+                }
+                catch (ExecutionException e) {
+                    report(ERROR, "Could not load source file " + path + ": " + e.getCause());
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw ExceptionUtils.rethrow(e);
                 }
             }
         }
+        finally {
+            executor.shutdown();
+        }
     }
 
-    private void addSources(String path) {
+    private void addSources(String path, @NotNull List<File> sourcePaths) {
         if (path == null) {
             return;
         }
@@ -262,7 +384,7 @@ public class JetCoreEnvironment {
             return;
         }
 
-        addSources(new File(path));
+        addSources(new File(path), sourcePaths);
     }
 
     private void addToClasspath(File path) {
@@ -18,6 +18,7 @@ package org.jetbrains.jet.cli.jvm.compiler;
 
 import com.google.common.base.Predicates;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.psi.PsiFile;
@@ -43,9 +44,11 @@ import org.jetbrains.jet.lang.psi.JetFile;
 import org.jetbrains.jet.lang.psi.JetPsiUtil;
 import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
 import org.jetbrains.jet.lang.resolve.BindingTrace;
+import org.jetbrains.jet.lang.resolve.BindingTraceStatistics;
 import org.jetbrains.jet.lang.resolve.ScriptNameUtil;
 import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
 import org.jetbrains.jet.lang.resolve.java.PackageClassUtils;
+import org.jetbrains.jet.lang.resolve.java.resolver.DescriptorSnapshotStorage;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.plugin.JetMainDetector;
 import org.jetbrains.jet.utils.ExceptionUtils;
@@ -53,6 +56,7 @@ import org.jetbrains.jet.utils.KotlinPaths;
 import org.jetbrains.jet.utils.PathUtil;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -70,6 +74,16 @@ public class KotlinToJVMBytecodeCompiler {
 
     @Nullable
     public static ClassFileFactory compileModule(CompilerConfiguration configuration, Module module, File directory) {
+        return compileModule(configuration, module, directory, null);
+    }
+
+    @Nullable
+    private static ClassFileFactory compileModule(
+            CompilerConfiguration configuration,
+            Module module,
+            File directory,
+            @Nullable ClassFileConsumer consumer
+    ) {
         List<String> sourceFiles = module.getSourceFiles();
         if (sourceFiles.isEmpty()) {
             throw new CompileEnvironmentException("No source files where defined in module " + module.getModuleName());
@@ -103,7 +117,7 @@ public class KotlinToJVMBytecodeCompiler {
             moduleEnvironment = JetCoreEnvironment.createForProduction(parentDisposable, compilerConfiguration);
 
 
-            GenerationState generationState = analyzeAndGenerate(moduleEnvironment);
+            GenerationState generationState = analyzeAndGenerate(moduleEnvironment, consumer);
             if (generationState == null) {
                 return null;
             }
@@ -127,6 +141,18 @@ public class KotlinToJVMBytecodeCompiler {
         CompileEnvironmentUtil.writeOutputToDirOrJar(jarPath, outputDir, jarRuntime, mainClass, moduleFactory, messageCollector);
     }
 
+    @NotNull
+    private static CompileEnvironmentUtil.StreamingOutput createStreamingOutput(
+            CompilerConfiguration configuration,
+            CompileEnvironmentUtil.OutputDirector outputDir,
+            File jarPath,
+            boolean jarRuntime,
+            FqName mainClass
+    ) {
+        MessageCollector messageCollector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE);
+        return new CompileEnvironmentUtil.StreamingOutput(jarPath, outputDir, jarRuntime, mainClass, messageCollector);
+    }
+
     public static boolean compileModules(
             CompilerConfiguration configuration,
             @NotNull final ModuleChunk chunk,
@@ -139,10 +165,6 @@ public class KotlinToJVMBytecodeCompiler {
             modules = Collections.<Module>singletonList(new ChunkAsOneModule(chunk));
         }
         for (Module module : modules) {
-            ClassFileFactory moduleFactory = compileModule(configuration, module, directory);
-            if (moduleFactory == null) {
-                return false;
-            }
             CompileEnvironmentUtil.OutputDirector outputDir = new CompileEnvironmentUtil.OutputDirector() {
                 @NotNull
                 @Override
@@ -158,7 +180,25 @@ public class KotlinToJVMBytecodeCompiler {
                 }
             };
 
-            writeOutput(configuration, moduleFactory, outputDir, jarPath, jarRuntime, null);
+            if (configuration.get(JVMConfigurationKeys.LOW_MEMORY_CODEGEN, false)) {
+                CompileEnvironmentUtil.StreamingOutput output = createStreamingOutput(configuration, outputDir, jarPath, jarRuntime, null);
+                try {
+                    if (compileModule(configuration, module, directory, output) == null) {
+                        return false;
+                    }
+                    output.finish();
+                }
+                finally {
+                    output.close();
+                }
+            }
+            else {
+                ClassFileFactory moduleFactory = compileModule(configuration, module, directory);
+                if (moduleFactory == null) {
+                    return false;
+                }
+                writeOutput(configuration, moduleFactory, outputDir, jarPath, jarRuntime, null);
+            }
         }
         return true;
     }
@@ -187,6 +227,24 @@ public class KotlinToJVMBytecodeCompiler {
     ) {
 
         FqName mainClass = findMainClass(environment.getSourceFiles());
+        CompileEnvironmentUtil.OutputDirector outputDirector = CompileEnvironmentUtil.singleDirectory(outputDir);
+
+        if (environment.getConfiguration().get(JVMConfigurationKeys.LOW_MEMORY_CODEGEN, false)) {
+            CompileEnvironmentUtil.StreamingOutput output =
+                    createStreamingOutput(environment.getConfiguration(), outputDirector, jar, includeRuntime, mainClass);
+            try {
+                GenerationState generationState = analyzeAndGenerate(environment, output);
+                if (generationState == null) {
+                    return false;
+                }
+                generationState.destroy();
+                output.finish();
+                return true;
+            }
+            finally {
+                output.close();
+            }
+        }
 
         GenerationState generationState = analyzeAndGenerate(environment);
         if (generationState == null) {
@@ -194,7 +252,6 @@ public class KotlinToJVMBytecodeCompiler {
         }
 
         try {
-            CompileEnvironmentUtil.OutputDirector outputDirector = CompileEnvironmentUtil.singleDirectory(outputDir);
             writeOutput(environment.getConfiguration(), generationState.getFactory(), outputDirector, jar, includeRuntime, mainClass);
             return true;
         }
@@ -258,6 +315,17 @@ public class KotlinToJVMBytecodeCompiler {
     @Nullable
     public static GenerationState analyzeAndGenerate(
             JetCoreEnvironment environment
+    ) {
+        return analyzeAndGenerate(environment, null);
+    }
+
+    /**
+     * @param consumer see {@link KotlinCodegenFacade#compileCorrectFiles(GenerationState, CompilationErrorHandler, ClassFileConsumer)}
+     */
+    @Nullable
+    private static GenerationState analyzeAndGenerate(
+            JetCoreEnvironment environment,
+            @Nullable ClassFileConsumer consumer
     ) {
         AnalyzeExhaust exhaust = analyze(environment);
 
@@ -267,7 +335,32 @@ public class KotlinToJVMBytecodeCompiler {
 
         exhaust.throwIfError();
 
-        return generate(environment, exhaust);
+        BindingTraceStatistics.Report bindingStatistics = exhaust.getBindingStatistics();
+        MessageCollector messageCollector = environment.getConfiguration().get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY);
+        if (bindingStatistics != null && messageCollector != null) {
+            messageCollector.report(
+                    CompilerMessageSeverity.INFO, "Binding context statistics:\n" + bindingStatistics.render(),
+                    CompilerMessageLocation.NO_LOCATION);
+        }
+
+        GenerationState generationState = generate(environment, exhaust, consumer);
+        saveDescriptorSnapshot(environment, messageCollector);
+        return generationState;
+    }
+
+    private static void saveDescriptorSnapshot(@NotNull JetCoreEnvironment environment, @Nullable MessageCollector messageCollector) {
+        DescriptorSnapshotStorage storage = ServiceManager.getService(environment.getProject(), DescriptorSnapshotStorage.class);
+        if (storage == null) return;
+
+        try {
+            storage.save();
+        }
+        catch (IOException e) {
+            if (messageCollector != null) {
+                messageCollector.report(CompilerMessageSeverity.WARNING, "Couldn't save descriptors of library classes: " + e.getMessage(),
+                                        CompilerMessageLocation.NO_LOCATION);
+            }
+        }
     }
 
     @Nullable
@@ -280,13 +373,16 @@ public class KotlinToJVMBytecodeCompiler {
                     @Override
                     public AnalyzeExhaust invoke() {
                         BindingTrace sharedTrace = CliLightClassGenerationSupport.getInstanceForCli(environment.getProject()).getTrace();
+                        // Declarations only: bodies are resolved just where declaration types are inferred from them
+                        boolean abiOnly = environment.getConfiguration().get(JVMConfigurationKeys.ABI_ONLY, false);
                         return AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
                                 environment.getProject(),
                                 environment.getSourceFiles(),
                                 sharedTrace,
                                 environment.getConfiguration().getList(JVMConfigurationKeys.SCRIPT_PARAMETERS),
-                                Predicates.<PsiFile>alwaysTrue(),
-                                false
+                                abiOnly ? Predicates.<PsiFile>alwaysFalse() : Predicates.<PsiFile>alwaysTrue(),
+                                false,
+                                environment.getConfiguration().get(JVMConfigurationKeys.BODY_RESOLVE_THREADS, 1)
                         );
                     }
                 }, environment.getSourceFiles()
@@ -298,17 +394,20 @@ public class KotlinToJVMBytecodeCompiler {
     @NotNull
     private static GenerationState generate(
             JetCoreEnvironment environment,
-            AnalyzeExhaust exhaust
+            AnalyzeExhaust exhaust,
+            @Nullable ClassFileConsumer consumer
     ) {
         Project project = environment.getProject();
         CompilerConfiguration configuration = environment.getConfiguration();
         GenerationState generationState = new GenerationState(
-                project, ClassBuilderFactories.BINARIES, Progress.DEAF, exhaust.getBindingContext(), environment.getSourceFiles(),
+                project,
+                configuration.get(JVMConfigurationKeys.ABI_ONLY, false) ? ClassBuilderFactories.STUBS : ClassBuilderFactories.BINARIES,
+                Progress.DEAF, exhaust.getBindingContext(), environment.getSourceFiles(),
                 configuration.get(JVMConfigurationKeys.GENERATE_NOT_NULL_ASSERTIONS, false),
                 configuration.get(JVMConfigurationKeys.GENERATE_NOT_NULL_PARAMETER_ASSERTIONS, false),
                 /*generateDeclaredClasses = */true
         );
-        KotlinCodegenFacade.compileCorrectFiles(generationState, CompilationErrorHandler.THROW_EXCEPTION);
+        KotlinCodegenFacade.compileCorrectFiles(generationState, CompilationErrorHandler.THROW_EXCEPTION, consumer);
 
         CompilerPluginContext context = new CompilerPluginContext(project, exhaust.getBindingContext(), environment.getSourceFiles());
         for (CompilerPlugin plugin : configuration.getList(CLIConfigurationKeys.COMPILER_PLUGINS)) {
@@ -24,6 +24,7 @@ import org.jetbrains.jet.lang.resolve.java.resolver.TraceBasedJavaResolverCache;
 import org.jetbrains.jet.lang.resolve.java.resolver.TraceBasedErrorReporter;
 import org.jetbrains.jet.lang.resolve.java.resolver.PsiBasedMethodSignatureChecker;
 import org.jetbrains.jet.lang.resolve.java.resolver.PsiBasedExternalAnnotationResolver;
+import org.jetbrains.jet.lang.resolve.java.resolver.JavaDescriptorSnapshotImpl;
 import org.jetbrains.jet.lang.resolve.java.JavaDescriptorResolver;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileKotlinClassFinder;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileFinder;
@@ -55,6 +56,7 @@ public class InjectorForJavaDescriptorResolver {
     private final TraceBasedErrorReporter traceBasedErrorReporter;
     private final PsiBasedMethodSignatureChecker psiBasedMethodSignatureChecker;
     private final PsiBasedExternalAnnotationResolver psiBasedExternalAnnotationResolver;
+    private final JavaDescriptorSnapshotImpl javaDescriptorSnapshot;
     private final JavaDescriptorResolver javaDescriptorResolver;
     private final VirtualFileKotlinClassFinder virtualFileKotlinClassFinder;
     private final VirtualFileFinder virtualFileFinder;
@@ -85,6 +87,7 @@ public class InjectorForJavaDescriptorResolver {
         this.traceBasedErrorReporter = new TraceBasedErrorReporter();
         this.psiBasedMethodSignatureChecker = new PsiBasedMethodSignatureChecker();
         this.psiBasedExternalAnnotationResolver = new PsiBasedExternalAnnotationResolver();
+        this.javaDescriptorSnapshot = new JavaDescriptorSnapshotImpl();
         this.javaDescriptorResolver = new JavaDescriptorResolver();
         this.virtualFileKotlinClassFinder = new VirtualFileKotlinClassFinder();
         this.virtualFileFinder = com.intellij.openapi.components.ServiceManager.getService(project, VirtualFileFinder.class);
@@ -106,6 +109,7 @@ public class InjectorForJavaDescriptorResolver {
         this.javaClassFinder.setProject(project);
 
         traceBasedExternalSignatureResolver.setAnnotationResolver(javaAnnotationResolver);
+        traceBasedExternalSignatureResolver.setProject(project);
         traceBasedExternalSignatureResolver.setTrace(bindingTrace);
 
         traceBasedJavaResolverCache.setTrace(bindingTrace);
@@ -115,7 +119,14 @@ public class InjectorForJavaDescriptorResolver {
         psiBasedMethodSignatureChecker.setAnnotationResolver(javaAnnotationResolver);
         psiBasedMethodSignatureChecker.setExternalSignatureResolver(traceBasedExternalSignatureResolver);
 
+        psiBasedExternalAnnotationResolver.setProject(project);
+
+        javaDescriptorSnapshot.setCache(traceBasedJavaResolverCache);
+        javaDescriptorSnapshot.setJavaClassFinder(javaClassFinder);
+        javaDescriptorSnapshot.setProject(project);
+
         this.javaDescriptorResolver.setClassResolver(javaClassResolver);
+        this.javaDescriptorResolver.setMemberResolver(javaMemberResolver);
         this.javaDescriptorResolver.setNamespaceResolver(javaNamespaceResolver);
 
         virtualFileKotlinClassFinder.setVirtualFileFinder(virtualFileFinder);
@@ -131,6 +142,7 @@ public class InjectorForJavaDescriptorResolver {
         javaClassResolver.setAnnotationResolver(javaAnnotationResolver);
         javaClassResolver.setCache(traceBasedJavaResolverCache);
         javaClassResolver.setDeserializedDescriptorResolver(deserializedDescriptorResolver);
+        javaClassResolver.setDescriptorSnapshot(javaDescriptorSnapshot);
         javaClassResolver.setFunctionResolver(javaFunctionResolver);
         javaClassResolver.setJavaClassFinder(javaClassFinder);
         javaClassResolver.setKotlinClassFinder(virtualFileKotlinClassFinder);
@@ -191,6 +203,7 @@ public class InjectorForJavaDescriptorResolver {
         javaSupertypeResolver.setTypeTransformer(javaTypeTransformer);
 
         javaClassFinder.initialize();
+        javaDescriptorSnapshot.initialize();
 
     }
     
@@ -36,6 +36,7 @@ import org.jetbrains.jet.lang.resolve.java.resolver.TraceBasedJavaResolverCache;
 import org.jetbrains.jet.lang.resolve.java.resolver.TraceBasedErrorReporter;
 import org.jetbrains.jet.lang.resolve.java.resolver.PsiBasedMethodSignatureChecker;
 import org.jetbrains.jet.lang.resolve.java.resolver.PsiBasedExternalAnnotationResolver;
+import org.jetbrains.jet.lang.resolve.java.resolver.JavaDescriptorSnapshotImpl;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileKotlinClassFinder;
 import org.jetbrains.jet.lang.resolve.NamespaceFactoryImpl;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileFinder;
@@ -95,6 +96,7 @@ public class InjectorForTopDownAnalyzerForJvm implements InjectorForTopDownAnaly
     private final TraceBasedErrorReporter traceBasedErrorReporter;
     private final PsiBasedMethodSignatureChecker psiBasedMethodSignatureChecker;
     private final PsiBasedExternalAnnotationResolver psiBasedExternalAnnotationResolver;
+    private final JavaDescriptorSnapshotImpl javaDescriptorSnapshot;
     private final VirtualFileKotlinClassFinder virtualFileKotlinClassFinder;
     private final NamespaceFactoryImpl namespaceFactory;
     private final VirtualFileFinder virtualFileFinder;
@@ -155,6 +157,7 @@ public class InjectorForTopDownAnalyzerForJvm implements InjectorForTopDownAnaly
         this.traceBasedErrorReporter = new TraceBasedErrorReporter();
         this.psiBasedMethodSignatureChecker = new PsiBasedMethodSignatureChecker();
         this.psiBasedExternalAnnotationResolver = new PsiBasedExternalAnnotationResolver();
+        this.javaDescriptorSnapshot = new JavaDescriptorSnapshotImpl();
         this.virtualFileKotlinClassFinder = new VirtualFileKotlinClassFinder();
         this.namespaceFactory = new NamespaceFactoryImpl();
         this.virtualFileFinder = com.intellij.openapi.components.ServiceManager.getService(project, VirtualFileFinder.class);
@@ -225,11 +228,13 @@ public class InjectorForTopDownAnalyzerForJvm implements InjectorForTopDownAnaly
         this.javaBridgeConfiguration.setJavaDescriptorResolver(javaDescriptorResolver);
 
         javaDescriptorResolver.setClassResolver(javaClassResolver);
+        javaDescriptorResolver.setMemberResolver(javaMemberResolver);
         javaDescriptorResolver.setNamespaceResolver(javaNamespaceResolver);
 
         javaClassFinder.setProject(project);
 
         traceBasedExternalSignatureResolver.setAnnotationResolver(javaAnnotationResolver);
+        traceBasedExternalSignatureResolver.setProject(project);
         traceBasedExternalSignatureResolver.setTrace(bindingTrace);
 
         traceBasedJavaResolverCache.setTrace(bindingTrace);
@@ -239,6 +244,12 @@ public class InjectorForTopDownAnalyzerForJvm implements InjectorForTopDownAnaly
         psiBasedMethodSignatureChecker.setAnnotationResolver(javaAnnotationResolver);
         psiBasedMethodSignatureChecker.setExternalSignatureResolver(traceBasedExternalSignatureResolver);
 
+        psiBasedExternalAnnotationResolver.setProject(project);
+
+        javaDescriptorSnapshot.setCache(traceBasedJavaResolverCache);
+        javaDescriptorSnapshot.setJavaClassFinder(javaClassFinder);
+        javaDescriptorSnapshot.setProject(project);
+
         virtualFileKotlinClassFinder.setVirtualFileFinder(virtualFileFinder);
 
         this.namespaceFactory.setModuleDescriptor(moduleDescriptor);
@@ -314,6 +325,7 @@ public class InjectorForTopDownAnalyzerForJvm implements InjectorForTopDownAnaly
         javaClassResolver.setAnnotationResolver(javaAnnotationResolver);
         javaClassResolver.setCache(traceBasedJavaResolverCache);
         javaClassResolver.setDeserializedDescriptorResolver(deserializedDescriptorResolver);
+        javaClassResolver.setDescriptorSnapshot(javaDescriptorSnapshot);
         javaClassResolver.setFunctionResolver(javaFunctionResolver);
         javaClassResolver.setJavaClassFinder(javaClassFinder);
         javaClassResolver.setKotlinClassFinder(virtualFileKotlinClassFinder);
@@ -382,6 +394,7 @@ public class InjectorForTopDownAnalyzerForJvm implements InjectorForTopDownAnaly
         javaSupertypeResolver.setTypeTransformer(javaTypeTransformer);
 
         javaClassFinder.initialize();
+        javaDescriptorSnapshot.initialize();
 
     }
     
@@ -433,6 +446,10 @@ public class InjectorForTopDownAnalyzerForJvm implements InjectorForTopDownAnaly
         return this.javaBridgeConfiguration;
     }
     
+    public JavaDescriptorResolver getJavaDescriptorResolver() {
+        return this.javaDescriptorResolver;
+    }
+    
     public NamespaceFactoryImpl getNamespaceFactory() {
         return this.namespaceFactory;
     }
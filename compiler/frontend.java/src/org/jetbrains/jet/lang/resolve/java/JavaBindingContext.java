@@ -16,9 +16,12 @@
 
 package org.jetbrains.jet.lang.resolve.java;
 
-import org.jetbrains.jet.lang.descriptors.DeclarationDescriptor;
-import org.jetbrains.jet.lang.descriptors.NamespaceDescriptor;
+import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaElement;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaField;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaMethod;
 import org.jetbrains.jet.util.slicedmap.BasicWritableSlice;
 import org.jetbrains.jet.util.slicedmap.Slices;
 import org.jetbrains.jet.util.slicedmap.WritableSlice;
@@ -39,6 +42,20 @@ public class JavaBindingContext {
     public static final WritableSlice<DeclarationDescriptor, List<String>> LOAD_FROM_JAVA_SIGNATURE_ERRORS =
             new BasicWritableSlice<DeclarationDescriptor, List<String>>(Slices.ONLY_REWRITE_TO_EQUAL, true);
 
+    /**
+     * Descriptors of classes and members read from class files without PSI, which are recorded in {@link BindingContext#CLASS},
+     * {@link BindingContext#FUNCTION} etc. otherwise
+     */
+    public static final WritableSlice<JavaClass, ClassDescriptor> BINARY_CLASS = Slices.createSimpleSlice();
+    public static final WritableSlice<JavaMethod, SimpleFunctionDescriptor> BINARY_FUNCTION = Slices.createSimpleSlice();
+    public static final WritableSlice<JavaElement, ConstructorDescriptor> BINARY_CONSTRUCTOR = Slices.createSimpleSlice();
+    public static final WritableSlice<JavaField, PropertyDescriptor> BINARY_VARIABLE = Slices.createSimpleSlice();
+
+    /**
+     * @see BindingContext#DESCRIPTOR_TO_DECLARATION
+     */
+    public static final WritableSlice<FunctionDescriptor, JavaMethod> DESCRIPTOR_TO_BINARY_METHOD = Slices.createSimpleSlice();
+
     private JavaBindingContext() {
     }
 }
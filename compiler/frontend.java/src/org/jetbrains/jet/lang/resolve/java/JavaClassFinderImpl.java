@@ -16,6 +16,8 @@
 
 package org.jetbrains.jet.lang.resolve.java;
 
+import com.intellij.ide.highlighter.JavaClassFileType;
+import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -27,6 +29,10 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaPackage;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaClass;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaClassFinder;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaPackage;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.ClassFileFinder;
 import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaClassImpl;
 import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaPackageImpl;
 import org.jetbrains.jet.lang.resolve.name.FqName;
@@ -42,6 +48,11 @@ public class JavaClassFinderImpl implements JavaClassFinder {
     private GlobalSearchScope javaSearchScope;
     private JavaPsiFacadeKotlinHacks javaFacade;
 
+    // Not null if class files are read without PSI, then PSI is used only for sources
+    @Nullable
+    private BinaryJavaClassFinder binaryClassFinder;
+    private GlobalSearchScope sourceSearchScope;
+
     @Inject
     public void setProject(@NotNull Project project) {
         this.project = project;
@@ -73,11 +84,27 @@ public class JavaClassFinderImpl implements JavaClassFinder {
             }
         };
         javaFacade = new JavaPsiFacadeKotlinHacks(project);
+
+        ClassFileFinder classFileFinder = ServiceManager.getService(project, ClassFileFinder.class);
+        if (classFileFinder != null) {
+            binaryClassFinder = new BinaryJavaClassFinder(classFileFinder);
+            sourceSearchScope = new DelegatingGlobalSearchScope(javaSearchScope) {
+                @Override
+                public boolean contains(VirtualFile file) {
+                    return myBaseScope.contains(file) && file.getFileType() != JavaClassFileType.INSTANCE;
+                }
+            };
+        }
     }
 
     @Nullable
     @Override
     public JavaClass findClass(@NotNull FqName fqName) {
+        if (binaryClassFinder != null) {
+            BinaryJavaClass binaryClass = binaryClassFinder.findClass(fqName);
+            if (binaryClass != null) return binaryClass;
+        }
+
         PsiClass psiClass = javaFacade.findClass(fqName.asString(), javaSearchScope);
         if (psiClass == null) return null;
 
@@ -98,6 +125,11 @@ public class JavaClassFinderImpl implements JavaClassFinder {
     @Override
     public JavaPackage findPackage(@NotNull FqName fqName) {
         PsiPackage psiPackage = javaFacade.findPackage(fqName.asString());
-        return psiPackage == null ? null : new JavaPackageImpl(psiPackage);
+        if (psiPackage == null) return null;
+
+        if (binaryClassFinder != null) {
+            return new BinaryJavaPackage(binaryClassFinder, new JavaPackageImpl(psiPackage, sourceSearchScope));
+        }
+        return new JavaPackageImpl(psiPackage);
     }
 }
@@ -29,7 +29,10 @@ import org.jetbrains.jet.lang.descriptors.TypeParameterDescriptor;
 import org.jetbrains.jet.lang.descriptors.Visibilities;
 import org.jetbrains.jet.lang.resolve.java.resolver.JavaSupertypeResolver;
 import org.jetbrains.jet.lang.resolve.java.structure.*;
-import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaMethodImpl;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaClassifierType;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaType;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaTypeSubstitutor;
+import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaTypeImpl;
 import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaTypeSubstitutorImpl;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
@@ -124,10 +127,9 @@ class PropagationHeuristics {
         return null;
     }
 
-    @SuppressWarnings("unchecked")
     @NotNull
-    static List<JavaMethodImpl> getSuperMethods(@NotNull JavaMethod method) {
-        return (List) new SuperMethodCollector(method).collect();
+    static List<JavaMethod> getSuperMethods(@NotNull JavaMethod method) {
+        return new SuperMethodCollector(method).collect();
     }
 
     private PropagationHeuristics() {
@@ -206,7 +208,7 @@ class PropagationHeuristics {
                         parameterFromSuper.isVararg()
                 ));
 
-                if (!Comparing.equal(originalType, typeFromSuper)) {
+                if (!typesEqual(originalType, typeFromSuper)) {
                     return false;
                 }
             }
@@ -214,6 +216,25 @@ class PropagationHeuristics {
             return true;
         }
 
+        // Types from class files are compared to types from sources by their text
+        private static boolean typesEqual(@Nullable JavaType type1, @Nullable JavaType type2) {
+            if (Comparing.equal(type1, type2)) return true;
+            if (type1 == null || type2 == null || type1.getClass() == type2.getClass()) return false;
+            if (!(type1 instanceof BinaryJavaType) && !(type2 instanceof BinaryJavaType)) return false;
+            return Comparing.equal(getCanonicalText(type1), getCanonicalText(type2));
+        }
+
+        @Nullable
+        private static String getCanonicalText(@NotNull JavaType type) {
+            if (type instanceof BinaryJavaType) {
+                return ((BinaryJavaType) type).getCanonicalText();
+            }
+            if (type instanceof JavaTypeImpl) {
+                return ((JavaTypeImpl<?>) type).getPsi().getCanonicalText();
+            }
+            return null;
+        }
+
         @NotNull
         private static JavaType varargToArray(@NotNull JavaType type, boolean isVararg) {
             return isVararg ? JavaElementFactory.getInstance().createArrayType(((JavaArrayType) type).getComponentType()) : type;
@@ -227,7 +248,9 @@ class PropagationHeuristics {
                 JavaType value = entry.getValue();
                 erasedMap.put(entry.getKey(), value == null ? null : erasure(value));
             }
-            return JavaTypeSubstitutorImpl.create(erasedMap);
+            return type instanceof BinaryJavaClassifierType
+                   ? BinaryJavaTypeSubstitutor.create(erasedMap)
+                   : JavaTypeSubstitutorImpl.create(erasedMap);
         }
 
         private static boolean canHaveSuperMethod(@NotNull JavaMethod method) {
@@ -34,6 +34,7 @@ import org.jetbrains.jet.lang.resolve.BindingContext;
 import org.jetbrains.jet.lang.resolve.BindingContextUtils;
 import org.jetbrains.jet.lang.resolve.BindingTrace;
 import org.jetbrains.jet.lang.resolve.DescriptorUtils;
+import org.jetbrains.jet.lang.resolve.java.JavaBindingContext;
 import org.jetbrains.jet.lang.resolve.java.jetAsJava.JetClsMethod;
 import org.jetbrains.jet.lang.resolve.java.mapping.JavaToKotlinClassMap;
 import org.jetbrains.jet.lang.resolve.java.resolver.DescriptorResolverUtils;
@@ -72,7 +73,7 @@ public class SignaturesPropagationData {
             @Nullable JetType receiverType,
             @NotNull List<ValueParameterDescriptor> autoValueParameters, // descriptors built by parameters resolver
             @NotNull List<TypeParameterDescriptor> autoTypeParameters, // descriptors built by signature resolver
-            @NotNull JavaMethodImpl method,
+            @NotNull JavaMethod method,
             @NotNull BindingTrace trace
     ) {
         this.containingClass = containingClass;
@@ -215,7 +216,7 @@ public class SignaturesPropagationData {
     }
 
     private static List<FunctionDescriptor> getSuperFunctionsForMethod(
-            @NotNull JavaMethodImpl method,
+            @NotNull JavaMethod method,
             @NotNull BindingTrace trace,
             @NotNull ClassDescriptor containingClass
     ) {
@@ -223,10 +224,10 @@ public class SignaturesPropagationData {
 
         Map<ClassDescriptor, JetType> superclassToSupertype = getSuperclassToSupertypeMap(containingClass);
 
-        Multimap<FqName, Pair<FunctionDescriptor, JavaMethodImpl>> superclassToFunctions =
+        Multimap<FqName, Pair<FunctionDescriptor, JavaMethod>> superclassToFunctions =
                 getSuperclassToFunctionsMultimap(method, trace.getBindingContext(), containingClass);
 
-        for (JavaMethodImpl superMethod : PropagationHeuristics.getSuperMethods(method)) {
+        for (JavaMethod superMethod : PropagationHeuristics.getSuperMethods(method)) {
             JavaClass javaClass = superMethod.getContainingClass();
             FqName classFqName = javaClass.getFqName();
             assert classFqName != null : "Class FQ name should not be null: " + javaClass;
@@ -238,8 +239,9 @@ public class SignaturesPropagationData {
                 continue;
             }
 
-            DeclarationDescriptor superFun = superMethod.getPsi() instanceof JetClsMethod
-                                             ? trace.get(BindingContext.DECLARATION_TO_DESCRIPTOR, ((JetClsMethod) superMethod.getPsi()).getOrigin())
+            PsiElement superMethodPsi = superMethod instanceof JavaMethodImpl ? ((JavaMethodImpl) superMethod).getPsi() : null;
+            DeclarationDescriptor superFun = superMethodPsi instanceof JetClsMethod
+                                             ? trace.get(BindingContext.DECLARATION_TO_DESCRIPTOR, ((JetClsMethod) superMethodPsi).getOrigin())
                                              : findSuperFunction(superclassToFunctions.get(classFqName), superMethod);
             if (superFun == null) {
                 // Super methods which are Object methods in interfaces are not loaded by JDR.
@@ -268,12 +270,12 @@ public class SignaturesPropagationData {
     }
 
     @NotNull
-    private static Multimap<FqName, Pair<FunctionDescriptor, JavaMethodImpl>> getSuperclassToFunctionsMultimap(
+    private static Multimap<FqName, Pair<FunctionDescriptor, JavaMethod>> getSuperclassToFunctionsMultimap(
             @NotNull JavaMethod method,
             @NotNull BindingContext bindingContext,
             @NotNull ClassDescriptor containingClass
     ) {
-        Multimap<FqName, Pair<FunctionDescriptor, JavaMethodImpl>> result = HashMultimap.create();
+        Multimap<FqName, Pair<FunctionDescriptor, JavaMethod>> result = HashMultimap.create();
 
         Name functionName = method.getName();
         int parameterCount = method.getValueParameters().size();
@@ -289,7 +291,13 @@ public class SignaturesPropagationData {
                     fun.getValueParameters().size() + (fun.getReceiverParameter() != null ? 1 : 0) == parameterCount) {
                     PsiElement declaration = BindingContextUtils.descriptorToDeclaration(bindingContext, fun);
                     if (declaration instanceof PsiMethod) {
-                        result.put(fqName, Pair.create(fun, new JavaMethodImpl((PsiMethod) declaration)));
+                        result.put(fqName, Pair.<FunctionDescriptor, JavaMethod>create(fun, new JavaMethodImpl((PsiMethod) declaration)));
+                        continue;
+                    }
+
+                    JavaMethod binaryMethod = bindingContext.get(JavaBindingContext.DESCRIPTOR_TO_BINARY_METHOD, fun);
+                    if (binaryMethod != null) {
+                        result.put(fqName, Pair.create(fun, binaryMethod));
                     } // else declaration is null or JetNamedFunction: both cases are processed later
                 }
             }
@@ -299,12 +307,24 @@ public class SignaturesPropagationData {
 
     @Nullable
     private static DeclarationDescriptor findSuperFunction(
-            @NotNull Collection<Pair<FunctionDescriptor, JavaMethodImpl>> superFunctionCandidates,
-            @NotNull JavaMethodImpl superMethod
+            @NotNull Collection<Pair<FunctionDescriptor, JavaMethod>> superFunctionCandidates,
+            @NotNull JavaMethod superMethod
     ) {
-        PsiManager psiManager = PsiManager.getInstance(superMethod.getPsi().getProject());
-        for (Pair<FunctionDescriptor, JavaMethodImpl> candidate : superFunctionCandidates) {
-            if (psiManager.areElementsEquivalent(candidate.second.getPsi(), superMethod.getPsi())) {
+        if (!(superMethod instanceof JavaMethodImpl)) {
+            // Methods read from class files are created once per class, so they are compared by identity
+            for (Pair<FunctionDescriptor, JavaMethod> candidate : superFunctionCandidates) {
+                if (candidate.second.equals(superMethod)) {
+                    return candidate.first;
+                }
+            }
+            return null;
+        }
+
+        PsiMethod superMethodPsi = ((JavaMethodImpl) superMethod).getPsi();
+        PsiManager psiManager = PsiManager.getInstance(superMethodPsi.getProject());
+        for (Pair<FunctionDescriptor, JavaMethod> candidate : superFunctionCandidates) {
+            if (candidate.second instanceof JavaMethodImpl &&
+                psiManager.areElementsEquivalent(((JavaMethodImpl) candidate.second).getPsi(), superMethodPsi)) {
                 return candidate.first;
             }
         }
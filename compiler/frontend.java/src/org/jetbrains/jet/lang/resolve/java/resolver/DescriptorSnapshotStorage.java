@@ -0,0 +1,272 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.resolver;
+
+import com.intellij.openapi.util.io.FileUtil;
+import jet.Function0;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.descriptors.serialization.ClassData;
+import org.jetbrains.jet.descriptors.serialization.JavaProtoBufUtil;
+import org.jetbrains.jet.lang.resolve.java.JvmAbi;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.utils.ExceptionUtils;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Serialized descriptors of classes from class path jars, kept in a directory between compilations with a file per jar.
+ * A file is discarded as a whole when the jar, a jar which its classes depend on, or the configuration which affects Java resolution
+ * (e.g. external annotations) changes. A single class is discarded when a class it depends on is now found in another jar,
+ * i.e. the class path was reordered or the class is shadowed. New classes are serialized and added to the files on {@link #save()}
+ */
+public class DescriptorSnapshotStorage {
+    private static final int FORMAT_VERSION = 2;
+
+    public interface ClassLocator {
+        /**
+         * @return path to the jar in which the class is found on the class path, or null if it's not found in a jar
+         */
+        @Nullable
+        String findJar(@NotNull FqName fqName);
+    }
+
+    public static class Entry {
+        private final byte[] data;
+        private final Map<FqName, String> dependencies;
+
+        /**
+         * @param dependencies classes which the serialized descriptor references, mapped to the jars they were found in
+         */
+        public Entry(@NotNull byte[] data, @NotNull Map<FqName, String> dependencies) {
+            this.data = data;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private static class JarSnapshot {
+        private final Map<FqName, Entry> classes = new LinkedHashMap<FqName, Entry>();
+    }
+
+    private final File directory;
+    private final String configurationHash;
+
+    private final Map<String, JarSnapshot> snapshots = new HashMap<String, JarSnapshot>();
+    private final Map<String, Map<FqName, Function0<Entry>>> pendingClasses = new LinkedHashMap<String, Map<FqName, Function0<Entry>>>();
+
+    /**
+     * @param configuration a description of everything besides the class path which affects resolved Java descriptors
+     */
+    public DescriptorSnapshotStorage(@NotNull File directory, @NotNull String configuration) {
+        this.directory = directory;
+        this.configurationHash = md5(configuration);
+    }
+
+    @Nullable
+    public synchronized ClassData findClass(@NotNull String jarPath, @NotNull FqName fqName, @NotNull ClassLocator locator) {
+        JarSnapshot snapshot = getSnapshot(jarPath);
+        Entry entry = snapshot.classes.get(fqName);
+        if (entry == null) return null;
+
+        for (Map.Entry<FqName, String> dependency : entry.dependencies.entrySet()) {
+            if (!dependency.getValue().equals(locator.findJar(dependency.getKey()))) {
+                // The class will be serialized again and replaced on save
+                snapshot.classes.remove(fqName);
+                return null;
+            }
+        }
+
+        return ClassData.read(entry.data, JavaProtoBufUtil.getExtensionRegistry());
+    }
+
+    /**
+     * @param serializer computes the entry on save, or returns null if the class can't be saved
+     */
+    public synchronized void addPendingClass(@NotNull String jarPath, @NotNull FqName fqName, @NotNull Function0<Entry> serializer) {
+        if (getSnapshot(jarPath).classes.containsKey(fqName)) return;
+
+        Map<FqName, Function0<Entry>> classes = pendingClasses.get(jarPath);
+        if (classes == null) {
+            classes = new LinkedHashMap<FqName, Function0<Entry>>();
+            pendingClasses.put(jarPath, classes);
+        }
+        classes.put(fqName, serializer);
+    }
+
+    public synchronized void save() throws IOException {
+        Set<String> changedJars = new LinkedHashSet<String>();
+        // Serialization may resolve more classes, which are added to the pending ones
+        while (!pendingClasses.isEmpty()) {
+            Map<String, Map<FqName, Function0<Entry>>> classesByJar = new LinkedHashMap<String, Map<FqName, Function0<Entry>>>(pendingClasses);
+            pendingClasses.clear();
+
+            for (Map.Entry<String, Map<FqName, Function0<Entry>>> classes : classesByJar.entrySet()) {
+                JarSnapshot snapshot = getSnapshot(classes.getKey());
+                for (Map.Entry<FqName, Function0<Entry>> pendingClass : classes.getValue().entrySet()) {
+                    Entry entry = pendingClass.getValue().invoke();
+                    if (entry == null) continue;
+
+                    snapshot.classes.put(pendingClass.getKey(), entry);
+                    changedJars.add(classes.getKey());
+                }
+            }
+        }
+
+        for (String jarPath : changedJars) {
+            write(jarPath, snapshots.get(jarPath));
+        }
+    }
+
+    @NotNull
+    private JarSnapshot getSnapshot(@NotNull String jarPath) {
+        JarSnapshot snapshot = snapshots.get(jarPath);
+        if (snapshot == null) {
+            snapshot = read(jarPath);
+            snapshots.put(jarPath, snapshot);
+        }
+        return snapshot;
+    }
+
+    @NotNull
+    private File getSnapshotFile(@NotNull String jarPath) {
+        return new File(directory, new File(jarPath).getName() + "-" + Integer.toHexString(jarPath.hashCode()) + ".bin");
+    }
+
+    @NotNull
+    private JarSnapshot read(@NotNull String jarPath) {
+        JarSnapshot snapshot = new JarSnapshot();
+        File file = getSnapshotFile(jarPath);
+        if (!file.isFile()) return snapshot;
+
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != FORMAT_VERSION || in.readInt() != JvmAbi.VERSION) return snapshot;
+                if (!configurationHash.equals(in.readUTF()) || !jarPath.equals(in.readUTF())) return snapshot;
+
+                String[] jars = new String[in.readInt()];
+                for (int i = 0; i < jars.length; i++) {
+                    jars[i] = in.readUTF();
+                    File jarFile = new File(jars[i]);
+                    if (jarFile.length() != in.readLong() || jarFile.lastModified() != in.readLong()) {
+                        return new JarSnapshot();
+                    }
+                }
+
+                int classCount = in.readInt();
+                for (int i = 0; i < classCount; i++) {
+                    FqName fqName = new FqName(in.readUTF());
+
+                    int dependencyCount = in.readInt();
+                    Map<FqName, String> dependencies = new LinkedHashMap<FqName, String>();
+                    for (int j = 0; j < dependencyCount; j++) {
+                        FqName dependency = new FqName(in.readUTF());
+                        int jarIndex = in.readInt();
+                        if (jarIndex < 0 || jarIndex >= jars.length) return new JarSnapshot();
+                        dependencies.put(dependency, jars[jarIndex]);
+                    }
+
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    snapshot.classes.put(fqName, new Entry(data, dependencies));
+                }
+                return snapshot;
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException e) {
+            // A broken snapshot is rebuilt on save
+            return new JarSnapshot();
+        }
+    }
+
+    private void write(@NotNull String jarPath, @NotNull JarSnapshot snapshot) throws IOException {
+        FileUtil.createDirectory(directory);
+        File file = getSnapshotFile(jarPath);
+        File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(JvmAbi.VERSION);
+            out.writeUTF(configurationHash);
+            out.writeUTF(jarPath);
+
+            Map<String, Integer> jarIndices = new LinkedHashMap<String, Integer>();
+            jarIndices.put(jarPath, 0);
+            for (Entry entry : snapshot.classes.values()) {
+                for (String jar : entry.dependencies.values()) {
+                    if (!jarIndices.containsKey(jar)) {
+                        jarIndices.put(jar, jarIndices.size());
+                    }
+                }
+            }
+
+            out.writeInt(jarIndices.size());
+            for (String jar : jarIndices.keySet()) {
+                File jarFile = new File(jar);
+                out.writeUTF(jar);
+                out.writeLong(jarFile.length());
+                out.writeLong(jarFile.lastModified());
+            }
+
+            out.writeInt(snapshot.classes.size());
+            for (Map.Entry<FqName, Entry> entry : snapshot.classes.entrySet()) {
+                out.writeUTF(entry.getKey().asString());
+
+                Map<FqName, String> dependencies = entry.getValue().dependencies;
+                out.writeInt(dependencies.size());
+                for (Map.Entry<FqName, String> dependency : dependencies.entrySet()) {
+                    out.writeUTF(dependency.getKey().asString());
+                    out.writeInt(jarIndices.get(dependency.getValue()));
+                }
+
+                byte[] data = entry.getValue().data;
+                out.writeInt(data.length);
+                out.write(data);
+            }
+        }
+        finally {
+            out.close();
+        }
+
+        FileUtil.rename(tempFile, file);
+    }
+
+    @NotNull
+    private static String md5(@NotNull String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw ExceptionUtils.rethrow(e);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw ExceptionUtils.rethrow(e);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.resolver;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiElementFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * External annotations from annotations.xml files of a fixed set of roots, indexed by external names of the annotated elements
+ * (see {@link com.intellij.psi.util.PsiFormatUtil#getExternalName}).
+ *
+ * The files of a package are parsed with SAX once, on the first lookup of an element in this package, and only the text of
+ * annotations is kept. PSI of the annotations of an element is created from this text on the first request for them.
+ * A file which can't be parsed is reported and skipped as a whole
+ */
+public class ExternalAnnotationsIndex {
+    public interface WarningReporter {
+        void reportWarning(@NotNull String message);
+    }
+
+    private static final String ANNOTATIONS_XML = "annotations.xml";
+    private static final PsiAnnotation[] NO_ANNOTATIONS = new PsiAnnotation[0];
+
+    private static class Item {
+        private final List<String> texts = new ArrayList<String>(1);
+        private PsiAnnotation[] annotations;
+    }
+
+    private final Project project;
+    private final WarningReporter warningReporter;
+    private final List<VirtualFile> roots = new ArrayList<VirtualFile>();
+
+    // Package FQ name -> external name -> annotations
+    private final Map<String, Map<String, Item>> packages = new HashMap<String, Map<String, Item>>();
+
+    public ExternalAnnotationsIndex(@NotNull Project project, @NotNull WarningReporter warningReporter) {
+        this.project = project;
+        this.warningReporter = warningReporter;
+    }
+
+    public synchronized void addRoot(@NotNull VirtualFile root) {
+        roots.add(root);
+        packages.clear();
+    }
+
+    @NotNull
+    public synchronized List<VirtualFile> getRoots() {
+        return new ArrayList<VirtualFile>(roots);
+    }
+
+    /**
+     * @return annotations of the element with the given external name, or null if it has none
+     */
+    @Nullable
+    public synchronized PsiAnnotation[] findExternalAnnotations(@NotNull String externalName) {
+        if (roots.isEmpty()) return null;
+
+        Item item = findItem(externalName);
+        if (item == null) return null;
+
+        if (item.annotations == null) {
+            item.annotations = createAnnotations(item.texts);
+        }
+        return item.annotations.length == 0 ? null : item.annotations;
+    }
+
+    @Nullable
+    private Item findItem(@NotNull String externalName) {
+        int classNameEnd = externalName.indexOf(' ');
+        String classFqName = classNameEnd < 0 ? externalName : externalName.substring(0, classNameEnd);
+
+        // The package of a nested class can't be told from its FQ name, so every prefix is tried
+        for (int end = classFqName.lastIndexOf('.'); ; end = classFqName.lastIndexOf('.', end - 1)) {
+            Item item = getPackage(end < 0 ? "" : classFqName.substring(0, end)).get(externalName);
+            if (item != null || end < 0) return item;
+        }
+    }
+
+    @NotNull
+    private Map<String, Item> getPackage(@NotNull String packageFqName) {
+        Map<String, Item> items = packages.get(packageFqName);
+        if (items == null) {
+            items = new HashMap<String, Item>();
+            String path = packageFqName.isEmpty() ? ANNOTATIONS_XML : packageFqName.replace('.', '/') + "/" + ANNOTATIONS_XML;
+            for (VirtualFile root : roots) {
+                VirtualFile file = root.findFileByRelativePath(path);
+                if (file != null) {
+                    addFile(file, items);
+                }
+            }
+            packages.put(packageFqName, items.isEmpty() ? Collections.<String, Item>emptyMap() : items);
+        }
+        return items;
+    }
+
+    private void addFile(@NotNull VirtualFile file, @NotNull Map<String, Item> items) {
+        Map<String, List<String>> fileItems = parse(file);
+        if (fileItems == null) return;
+
+        for (Map.Entry<String, List<String>> entry : fileItems.entrySet()) {
+            Item item = items.get(entry.getKey());
+            if (item == null) {
+                item = new Item();
+                items.put(entry.getKey(), item);
+            }
+            item.texts.addAll(entry.getValue());
+        }
+    }
+
+    /**
+     * @return texts of annotations by external names of the elements, or null if the file is malformed
+     */
+    @Nullable
+    private Map<String, List<String>> parse(@NotNull VirtualFile file) {
+        final Map<String, List<String>> items = new LinkedHashMap<String, List<String>>();
+        try {
+            InputStream stream = file.getInputStream();
+            try {
+                SAXParserFactory.newInstance().newSAXParser().parse(stream, new DefaultHandler() {
+                    private List<String> item;
+                    private StringBuilder annotation;
+                    private int argumentCount;
+
+                    @Override
+                    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+                        if ("item".equals(qName)) {
+                            String name = getAttribute(attributes, "name", qName);
+                            item = items.get(name);
+                            if (item == null) {
+                                item = new ArrayList<String>(1);
+                                items.put(name, item);
+                            }
+                        }
+                        else if ("annotation".equals(qName) && item != null) {
+                            annotation = new StringBuilder("@").append(getAttribute(attributes, "name", qName));
+                            argumentCount = 0;
+                        }
+                        else if ("val".equals(qName) && annotation != null) {
+                            String name = attributes.getValue("name");
+                            annotation.append(argumentCount++ == 0 ? "(" : ", ")
+                                    .append(name != null ? name : "value").append('=').append(getAttribute(attributes, "val", qName));
+                        }
+                    }
+
+                    @Override
+                    public void endElement(String uri, String localName, String qName) throws SAXException {
+                        if ("item".equals(qName)) {
+                            item = null;
+                        }
+                        else if ("annotation".equals(qName) && annotation != null) {
+                            if (argumentCount > 0) annotation.append(')');
+                            item.add(annotation.toString());
+                            annotation = null;
+                        }
+                    }
+                });
+            }
+            finally {
+                stream.close();
+            }
+            return items;
+        }
+        catch (Exception e) {
+            warningReporter.reportWarning("Couldn't read external annotations from " + file.getPath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @NotNull
+    private static String getAttribute(@NotNull Attributes attributes, @NotNull String name, @NotNull String tag) throws SAXException {
+        String value = attributes.getValue(name);
+        if (value == null) {
+            throw new SAXException("No '" + name + "' attribute for " + tag);
+        }
+        return value;
+    }
+
+    @NotNull
+    private PsiAnnotation[] createAnnotations(@NotNull List<String> texts) {
+        if (texts.isEmpty()) return NO_ANNOTATIONS;
+
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        PsiAnnotation[] result = new PsiAnnotation[texts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = factory.createAnnotationFromText(texts.get(i), null);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.resolver;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.JarFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import jet.Function0;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.descriptors.serialization.ClassData;
+import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
+import org.jetbrains.jet.lang.resolve.DescriptorUtils;
+import org.jetbrains.jet.lang.resolve.java.JavaClassFinder;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaClass;
+import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaClassImpl;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.FqNameUnsafe;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class JavaDescriptorSnapshotImpl implements JavaDescriptorSnapshot {
+    private Project project;
+    private JavaResolverCache cache;
+    private JavaClassFinder javaClassFinder;
+
+    // Null if descriptor snapshots are not enabled
+    @Nullable
+    private DescriptorSnapshotStorage storage;
+
+    private final DescriptorSnapshotStorage.ClassLocator classLocator = new DescriptorSnapshotStorage.ClassLocator() {
+        @Nullable
+        @Override
+        public String findJar(@NotNull FqName fqName) {
+            JavaClass javaClass = javaClassFinder.findClass(fqName);
+            return javaClass == null ? null : getJarPath(javaClass);
+        }
+    };
+
+    @Inject
+    public void setProject(Project project) {
+        this.project = project;
+    }
+
+    @Inject
+    public void setCache(JavaResolverCache cache) {
+        this.cache = cache;
+    }
+
+    @Inject
+    public void setJavaClassFinder(JavaClassFinder javaClassFinder) {
+        this.javaClassFinder = javaClassFinder;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        storage = ServiceManager.getService(project, DescriptorSnapshotStorage.class);
+    }
+
+    @Nullable
+    @Override
+    public ClassData findClass(@NotNull JavaClass javaClass) {
+        if (storage == null || javaClass.getOuterClass() != null) return null;
+
+        String jarPath = getJarPath(javaClass);
+        FqName fqName = javaClass.getFqName();
+        return jarPath == null || fqName == null ? null : storage.findClass(jarPath, fqName, classLocator);
+    }
+
+    @Override
+    public void recordClass(@NotNull final JavaClass javaClass, @NotNull final ClassDescriptor descriptor) {
+        if (storage == null || javaClass.getOuterClass() != null) return;
+
+        String jarPath = getJarPath(javaClass);
+        FqName fqName = javaClass.getFqName();
+        if (jarPath == null || fqName == null) return;
+
+        storage.addPendingClass(jarPath, fqName, new Function0<DescriptorSnapshotStorage.Entry>() {
+            @Override
+            public DescriptorSnapshotStorage.Entry invoke() {
+                return serialize(javaClass, descriptor);
+            }
+        });
+    }
+
+    @Nullable
+    private DescriptorSnapshotStorage.Entry serialize(@NotNull JavaClass javaClass, @NotNull ClassDescriptor descriptor) {
+        ClassData classData = JavaDescriptorSnapshotUtils.serializeClass(javaClass, descriptor, cache);
+        if (classData == null) return null;
+
+        Map<FqName, String> dependencies = new LinkedHashMap<FqName, String>();
+        for (ClassDescriptor referencedClass : JavaDescriptorSnapshotUtils.collectReferencedClasses(descriptor)) {
+            FqNameUnsafe fqName = DescriptorUtils.getFQName(referencedClass);
+            if (!fqName.isSafe()) return null;
+            if (fqName.toSafe().firstSegmentIs(KotlinBuiltIns.BUILT_INS_PACKAGE_NAME)) continue;
+
+            // Classes which are not in jars (e.g. sources) can't be checked for changes, so a class depending on them isn't saved
+            // The jar is recorded to discard the class when the dependency is found in another jar, e.g. after reordering the class path
+            String jarPath = classLocator.findJar(fqName.toSafe());
+            if (jarPath == null) return null;
+            dependencies.put(fqName.toSafe(), jarPath);
+        }
+
+        return new DescriptorSnapshotStorage.Entry(classData.toBytes(), dependencies);
+    }
+
+    @Nullable
+    private static String getJarPath(@NotNull JavaClass javaClass) {
+        VirtualFile file;
+        if (javaClass instanceof BinaryJavaClass) {
+            file = ((BinaryJavaClass) javaClass).getFile();
+        }
+        else if (javaClass instanceof JavaClassImpl) {
+            PsiFile psiFile = ((JavaClassImpl) javaClass).getPsi().getContainingFile();
+            file = psiFile == null ? null : psiFile.getVirtualFile();
+        }
+        else {
+            return null;
+        }
+        if (file == null) return null;
+
+        String path = file.getPath();
+        int separator = path.indexOf(JarFileSystem.JAR_SEPARATOR);
+        return separator < 0 ? null : path.substring(0, separator);
+    }
+}
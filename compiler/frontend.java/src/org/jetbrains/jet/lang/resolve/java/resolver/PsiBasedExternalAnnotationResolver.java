@@ -17,38 +17,95 @@
 package org.jetbrains.jet.lang.resolve.java.resolver;
 
 import com.intellij.codeInsight.ExternalAnnotationsManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiAnnotation;
 import com.intellij.psi.PsiModifierListOwner;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaAnnotation;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaAnnotationOwner;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaClass;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaMember;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaValueParameter;
 import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaAnnotationImpl;
 import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaAnnotationOwnerImpl;
 import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaElementCollectionFromPsiArrayUtil;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 
+import javax.inject.Inject;
 import java.util.Collection;
 import java.util.Collections;
 
 public class PsiBasedExternalAnnotationResolver implements ExternalAnnotationResolver {
+    private Project project;
+
+    @Inject
+    public void setProject(Project project) {
+        this.project = project;
+    }
+
     @Nullable
     @Override
     public JavaAnnotation findExternalAnnotation(@NotNull JavaAnnotationOwner owner, @NotNull FqName fqName) {
-        PsiAnnotation psiAnnotation = findExternalAnnotation(((JavaAnnotationOwnerImpl) owner).getPsi(), fqName);
-        return psiAnnotation == null ? null : new JavaAnnotationImpl(psiAnnotation);
+        if (owner instanceof JavaAnnotationOwnerImpl) {
+            PsiAnnotation psiAnnotation = findExternalAnnotation(((JavaAnnotationOwnerImpl) owner).getPsi(), fqName);
+            return psiAnnotation == null ? null : new JavaAnnotationImpl(psiAnnotation);
+        }
+
+        PsiAnnotation[] annotations = findIndexedAnnotations(owner);
+        if (annotations == null) return null;
+        for (PsiAnnotation annotation : annotations) {
+            if (fqName.asString().equals(annotation.getQualifiedName())) {
+                return new JavaAnnotationImpl(annotation);
+            }
+        }
+        return null;
     }
 
     @NotNull
     @Override
     public Collection<JavaAnnotation> findExternalAnnotations(@NotNull JavaAnnotationOwner owner) {
-        PsiModifierListOwner psiOwner = ((JavaAnnotationOwnerImpl) owner).getPsi();
-        PsiAnnotation[] annotations = ExternalAnnotationsManager.getInstance(psiOwner.getProject()).findExternalAnnotations(psiOwner);
+        PsiAnnotation[] annotations;
+        if (owner instanceof JavaAnnotationOwnerImpl) {
+            PsiModifierListOwner psiOwner = ((JavaAnnotationOwnerImpl) owner).getPsi();
+            annotations = ExternalAnnotationsManager.getInstance(psiOwner.getProject()).findExternalAnnotations(psiOwner);
+        }
+        else {
+            annotations = findIndexedAnnotations(owner);
+        }
         return annotations == null
                ? Collections.<JavaAnnotation>emptyList()
                : JavaElementCollectionFromPsiArrayUtil.annotations(annotations);
     }
 
+    /**
+     * Elements read from class files have no PSI, so their annotations can only be found by their external names in the index,
+     * which is available in the compiler
+     */
+    @Nullable
+    private PsiAnnotation[] findIndexedAnnotations(@NotNull JavaAnnotationOwner owner) {
+        String externalName = getExternalName(owner);
+        if (externalName == null) return null;
+
+        ExternalAnnotationsIndex index = ServiceManager.getService(project, ExternalAnnotationsIndex.class);
+        return index == null ? null : index.findExternalAnnotations(externalName);
+    }
+
+    @Nullable
+    private static String getExternalName(@NotNull JavaAnnotationOwner owner) {
+        if (owner instanceof BinaryJavaClass) {
+            return ((BinaryJavaClass) owner).getExternalName();
+        }
+        else if (owner instanceof BinaryJavaMember) {
+            return ((BinaryJavaMember) owner).getExternalName();
+        }
+        else if (owner instanceof BinaryJavaValueParameter) {
+            return ((BinaryJavaValueParameter) owner).getExternalName();
+        }
+        return null;
+    }
+
     @Nullable
     public static PsiAnnotation findExternalAnnotation(@NotNull PsiModifierListOwner owner, @NotNull FqName fqName) {
         return ExternalAnnotationsManager.getInstance(owner.getProject()).findExternalAnnotation(owner, fqName.asString());
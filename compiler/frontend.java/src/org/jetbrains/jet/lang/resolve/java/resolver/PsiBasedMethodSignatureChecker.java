@@ -171,6 +171,15 @@ public class PsiBasedMethodSignatureChecker implements MethodSignatureChecker {
             @NotNull List<String> signatureErrors,
             @NotNull List<FunctionDescriptor> superFunctions
     ) {
+        if (!(method instanceof JavaMethodImpl)) {
+            // Methods read from class files have no PSI to build the hierarchical signature, only their own signature is checked
+            if (reportSignatureErrors && !signatureErrors.isEmpty() &&
+                !RawTypesCheck.hasRawTypesInSignature(method) && !containsErrorType(superFunctions, descriptor)) {
+                externalSignatureResolver.reportSignatureErrors(descriptor, signatureErrors);
+            }
+            return;
+        }
+
         JavaMethodImpl methodWithPsi = (JavaMethodImpl) method;
         if (!RawTypesCheck.hasRawTypesInHierarchicalSignature(methodWithPsi) &&
             isMethodReturnTypeCompatible(methodWithPsi) &&
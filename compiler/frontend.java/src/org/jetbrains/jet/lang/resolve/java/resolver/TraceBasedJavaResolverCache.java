@@ -34,6 +34,7 @@ import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaElement;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaField;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaMethod;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaField;
 import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaClassImpl;
 import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaElementImpl;
 import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaFieldImpl;
@@ -45,6 +46,7 @@ import org.jetbrains.jet.rt.annotation.AssertInvisibleInResolver;
 import javax.inject.Inject;
 
 import static org.jetbrains.jet.lang.resolve.BindingContext.*;
+import static org.jetbrains.jet.lang.resolve.java.JavaBindingContext.*;
 import static org.jetbrains.jet.lang.resolve.java.resolver.DescriptorResolverUtils.fqNameByClass;
 
 public class TraceBasedJavaResolverCache implements JavaResolverCache {
@@ -73,12 +75,18 @@ public class TraceBasedJavaResolverCache implements JavaResolverCache {
     @Nullable
     @Override
     public SimpleFunctionDescriptor getMethod(@NotNull JavaMethod method) {
+        if (!(method instanceof JavaMethodImpl)) {
+            return trace.get(BINARY_FUNCTION, method);
+        }
         return trace.get(FUNCTION, ((JavaMethodImpl) method).getPsi());
     }
 
     @Nullable
     @Override
     public ConstructorDescriptor getConstructor(@NotNull JavaElement constructor) {
+        if (!(constructor instanceof JavaElementImpl)) {
+            return trace.get(BINARY_CONSTRUCTOR, constructor);
+        }
         return trace.get(CONSTRUCTOR, ((JavaElementImpl) constructor).getPsi());
     }
 
@@ -96,38 +104,66 @@ public class TraceBasedJavaResolverCache implements JavaResolverCache {
             }
         }
 
+        if (!(javaClass instanceof JavaClassImpl)) {
+            return trace.get(BINARY_CLASS, javaClass);
+        }
         return trace.get(CLASS, ((JavaClassImpl) javaClass).getPsi());
     }
 
     @Override
     public void recordMethod(@NotNull JavaMethod method, @NotNull SimpleFunctionDescriptor descriptor) {
+        if (!(method instanceof JavaMethodImpl)) {
+            trace.record(BINARY_FUNCTION, method, descriptor);
+            trace.record(DESCRIPTOR_TO_BINARY_METHOD, descriptor, method);
+            return;
+        }
         BindingContextUtils.recordFunctionDeclarationToDescriptor(trace, ((JavaMethodImpl) method).getPsi(), descriptor);
     }
 
     @Override
     public void recordConstructor(@NotNull JavaElement element, @NotNull ConstructorDescriptor descriptor) {
+        if (!(element instanceof JavaElementImpl)) {
+            trace.record(BINARY_CONSTRUCTOR, element, descriptor);
+            return;
+        }
         trace.record(CONSTRUCTOR, ((JavaElementImpl) element).getPsi(), descriptor);
     }
 
     @Override
     public void recordField(@NotNull JavaField field, @NotNull PropertyDescriptor descriptor) {
+        if (field instanceof BinaryJavaField) {
+            trace.record(BINARY_VARIABLE, field, descriptor);
+            Object constantValue = ((BinaryJavaField) field).getConstantValue();
+            if (constantValue != null && AnnotationUtils.isPropertyAcceptableAsAnnotationParameter(descriptor)) {
+                recordCompileTimeInitializer(descriptor, constantValue);
+            }
+            return;
+        }
+
         PsiField psiField = ((JavaFieldImpl) field).getPsi();
         trace.record(VARIABLE, psiField, descriptor);
 
         if (AnnotationUtils.isPropertyAcceptableAsAnnotationParameter(descriptor)) {
             PsiExpression initializer = psiField.getInitializer();
             if (initializer instanceof PsiLiteralExpression) {
-                CompileTimeConstant<?> constant = JavaAnnotationArgumentResolver
-                        .resolveCompileTimeConstantValue(((PsiLiteralExpression) initializer).getValue(), descriptor.getType());
-                if (constant != null) {
-                    trace.record(COMPILE_TIME_INITIALIZER, descriptor, constant);
-                }
+                recordCompileTimeInitializer(descriptor, ((PsiLiteralExpression) initializer).getValue());
             }
         }
     }
 
+    private void recordCompileTimeInitializer(@NotNull PropertyDescriptor descriptor, @Nullable Object value) {
+        CompileTimeConstant<?> constant = JavaAnnotationArgumentResolver.resolveCompileTimeConstantValue(value, descriptor.getType());
+        if (constant != null) {
+            trace.record(COMPILE_TIME_INITIALIZER, descriptor, constant);
+        }
+    }
+
     @Override
     public void recordClass(@NotNull JavaClass javaClass, @NotNull ClassDescriptor descriptor) {
+        if (!(javaClass instanceof JavaClassImpl)) {
+            trace.record(BINARY_CLASS, javaClass, descriptor);
+            return;
+        }
         trace.record(CLASS, ((JavaClassImpl) javaClass).getPsi(), descriptor);
     }
 
@@ -143,6 +179,8 @@ public class TraceBasedJavaResolverCache implements JavaResolverCache {
 
     @Override
     public void recordPackage(@NotNull JavaElement element, @NotNull NamespaceDescriptor descriptor) {
+        // Packages with classes from class files have no PSI to record
+        if (!(element instanceof JavaElementImpl)) return;
         trace.record(NAMESPACE, ((JavaElementImpl) element).getPsi(), descriptor);
     }
 }
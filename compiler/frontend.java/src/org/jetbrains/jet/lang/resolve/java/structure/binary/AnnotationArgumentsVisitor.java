@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.asm4.AnnotationVisitor;
+import org.jetbrains.asm4.Type;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaAnnotationArgument;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jetbrains.asm4.Opcodes.ASM4;
+
+/**
+ * Records arguments of an annotation, elements of an array argument or the default value of an annotation method
+ */
+/* package */ class AnnotationArgumentsVisitor extends AnnotationVisitor {
+    private final BinaryJavaClassFinder finder;
+    private final List<JavaAnnotationArgument> arguments;
+    // The name for the default value of an annotation method, which ASM visits without a name
+    @Nullable
+    private final Name defaultName;
+
+    public AnnotationArgumentsVisitor(
+            @NotNull BinaryJavaClassFinder finder,
+            @NotNull List<JavaAnnotationArgument> arguments,
+            @Nullable Name defaultName
+    ) {
+        super(ASM4);
+        this.finder = finder;
+        this.arguments = arguments;
+        this.defaultName = defaultName;
+    }
+
+    @Nullable
+    private Name name(@Nullable String name) {
+        return name == null ? defaultName : Name.identifier(name);
+    }
+
+    @Override
+    public void visit(String name, Object value) {
+        arguments.add(createArgument(name(name), value));
+    }
+
+    @NotNull
+    private JavaAnnotationArgument createArgument(@Nullable Name name, @NotNull Object value) {
+        if (value instanceof Type) {
+            SignatureParser parser = new SignatureParser(((Type) value).getDescriptor(), finder, TypeParameterScope.EMPTY, null);
+            return new BinaryJavaClassObjectAnnotationArgument(name, parser.parseType());
+        }
+        else if (value.getClass().isArray()) {
+            // ASM visits arrays of primitive values as values
+            int length = Array.getLength(value);
+            List<JavaAnnotationArgument> elements = new ArrayList<JavaAnnotationArgument>(length);
+            for (int i = 0; i < length; i++) {
+                elements.add(new BinaryJavaLiteralAnnotationArgument(null, Array.get(value, i)));
+            }
+            return new BinaryJavaArrayAnnotationArgument(name, elements);
+        }
+        return new BinaryJavaLiteralAnnotationArgument(name, value);
+    }
+
+    @Override
+    public void visitEnum(String name, String desc, String value) {
+        String enumInternalName = desc.substring(1, desc.length() - 1);
+        arguments.add(new BinaryJavaReferenceAnnotationArgument(name(name), enumInternalName, value, finder));
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String name, String desc) {
+        BinaryJavaAnnotation annotation = new BinaryJavaAnnotation(desc, finder);
+        arguments.add(new BinaryJavaAnnotationAsAnnotationArgument(name(name), annotation));
+        return annotation.recordArguments();
+    }
+
+    @Override
+    public AnnotationVisitor visitArray(String name) {
+        List<JavaAnnotationArgument> elements = new ArrayList<JavaAnnotationArgument>();
+        arguments.add(new BinaryJavaArrayAnnotationArgument(name(name), elements));
+        return new AnnotationArgumentsVisitor(finder, elements, null);
+    }
+}
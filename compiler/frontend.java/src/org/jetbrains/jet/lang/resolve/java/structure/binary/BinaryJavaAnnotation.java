@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.*;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class BinaryJavaAnnotation implements JavaAnnotation {
+    private final String desc;
+    private final BinaryJavaClassFinder finder;
+    private final List<JavaAnnotationArgument> arguments = new ArrayList<JavaAnnotationArgument>(1);
+
+    /**
+     * @param desc descriptor of the annotation class, e.g. {@code "Ljava/lang/Deprecated;"}
+     */
+    /* package */ BinaryJavaAnnotation(@NotNull String desc, @NotNull BinaryJavaClassFinder finder) {
+        this.desc = desc;
+        this.finder = finder;
+    }
+
+    /**
+     * @return the visitor which records arguments of the annotation, which is added to the list
+     */
+    @NotNull
+    /* package */ static AnnotationArgumentsVisitor record(
+            @NotNull String desc,
+            @NotNull BinaryJavaClassFinder finder,
+            @NotNull List<JavaAnnotation> annotations
+    ) {
+        BinaryJavaAnnotation annotation = new BinaryJavaAnnotation(desc, finder);
+        annotations.add(annotation);
+        return annotation.recordArguments();
+    }
+
+    @NotNull
+    /* package */ AnnotationArgumentsVisitor recordArguments() {
+        return new AnnotationArgumentsVisitor(finder, arguments, null);
+    }
+
+    /**
+     * Default values of annotation methods are used for arguments which are not specified
+     */
+    @Override
+    @Nullable
+    public JavaAnnotationArgument findArgument(@NotNull Name name) {
+        for (JavaAnnotationArgument argument : arguments) {
+            if (name.equals(argument.getName())) {
+                return argument;
+            }
+        }
+
+        BinaryJavaClass annotationClass = finder.findClassByInternalName(getInternalName());
+        if (annotationClass == null) return null;
+
+        for (JavaMethod method : annotationClass.getMethods()) {
+            if (method.getName().equals(name) && method.getValueParameters().isEmpty()) {
+                return ((BinaryJavaMethod) method).getAnnotationParameterDefaultValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @NotNull
+    public Collection<JavaAnnotationArgument> getArguments() {
+        return arguments;
+    }
+
+    @Override
+    @Nullable
+    public FqName getFqName() {
+        return new FqName(getInternalName().replace('/', '.').replace('$', '.')).intern();
+    }
+
+    @NotNull
+    private String getInternalName() {
+        return desc.substring(1, desc.length() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + ": " + desc;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaAnnotation;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaAnnotationAsAnnotationArgument;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+public class BinaryJavaAnnotationAsAnnotationArgument extends BinaryJavaAnnotationArgument implements JavaAnnotationAsAnnotationArgument {
+    private final JavaAnnotation annotation;
+
+    public BinaryJavaAnnotationAsAnnotationArgument(@Nullable Name name, @NotNull JavaAnnotation annotation) {
+        super(name);
+        this.annotation = annotation;
+    }
+
+    @Override
+    @NotNull
+    public JavaAnnotation getAnnotation() {
+        return annotation;
+    }
+}
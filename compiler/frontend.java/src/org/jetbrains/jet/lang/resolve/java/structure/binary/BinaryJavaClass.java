@@ -0,0 +1,499 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.asm4.*;
+import org.jetbrains.jet.lang.descriptors.Visibility;
+import org.jetbrains.jet.lang.resolve.java.structure.*;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.utils.ExceptionUtils;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.jetbrains.asm4.ClassReader.*;
+import static org.jetbrains.asm4.Opcodes.*;
+
+/**
+ * A class read from its class file with ASM. Only the declarations are read, the code and the debug information are skipped.
+ * The class is structured the same way as a class file stub in the IDE: e.g. {@code java.lang.Enum} is not a supertype of enums
+ */
+public class BinaryJavaClass implements JavaClass, TypeParameterScope {
+    public static final String JAVA_LANG_OBJECT = "java/lang/Object";
+    private static final String JAVA_LANG_ENUM = "java/lang/Enum";
+    private static final String JAVA_LANG_ANNOTATION = "java/lang/annotation/Annotation";
+
+    private final VirtualFile file;
+    private final BinaryJavaClassFinder finder;
+
+    private String internalName;
+    private int access;
+    @Nullable
+    private String signature;
+    @Nullable
+    private String superName;
+    private String[] interfaces;
+    // InnerClasses attribute entries by the internal names of the classes
+    private final Map<String, InnerClassEntry> innerClassEntries = new LinkedHashMap<String, InnerClassEntry>(0);
+
+    private final List<JavaAnnotation> annotations = new ArrayList<JavaAnnotation>(0);
+    private final List<JavaMethod> methods = new ArrayList<JavaMethod>();
+    private final List<JavaField> fields = new ArrayList<JavaField>();
+
+    private boolean signatureParsed;
+    private List<JavaTypeParameter> typeParameters;
+    private List<JavaClassifierType> supertypes;
+    private int extendsListSize;
+
+    /* package */ BinaryJavaClass(@NotNull VirtualFile file, @NotNull BinaryJavaClassFinder finder) {
+        this.file = file;
+        this.finder = finder;
+
+        try {
+            new ClassReader(file.contentsToByteArray()).accept(new Reader(), SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+        }
+        catch (IOException e) {
+            throw ExceptionUtils.rethrow(e);
+        }
+
+        InnerClassEntry entry = innerClassEntries.get(internalName);
+        if (entry != null) {
+            access = entry.access;
+        }
+    }
+
+    private class Reader extends ClassVisitor {
+        public Reader() {
+            super(ASM4);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            BinaryJavaClass.this.internalName = name;
+            BinaryJavaClass.this.access = access;
+            BinaryJavaClass.this.signature = signature;
+            BinaryJavaClass.this.superName = superName;
+            BinaryJavaClass.this.interfaces = interfaces != null ? interfaces : new String[0];
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+            innerClassEntries.put(name, new InnerClassEntry(outerName, innerName, access));
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            return BinaryJavaAnnotation.record(desc, finder, annotations);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            if ((access & ACC_SYNTHETIC) != 0) return null;
+
+            final BinaryJavaField field = new BinaryJavaField(BinaryJavaClass.this, access, name, desc, signature, value);
+            fields.add(field);
+            return new FieldVisitor(ASM4) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                    return field.recordAnnotation(desc);
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            if ((access & (ACC_SYNTHETIC | ACC_BRIDGE)) != 0 || "<clinit>".equals(name)) return null;
+            if (isSyntheticEnumMethod(access, name, desc)) return null;
+
+            final BinaryJavaMethod method = new BinaryJavaMethod(BinaryJavaClass.this, access, name, desc, signature);
+            methods.add(method);
+            return new MethodVisitor(ASM4) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                    return method.recordAnnotation(desc);
+                }
+
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+                    return method.recordParameterAnnotation(parameter, desc);
+                }
+
+                @Override
+                public AnnotationVisitor visitAnnotationDefault() {
+                    return method.recordAnnotationParameterDefaultValue();
+                }
+            };
+        }
+    }
+
+    // values() and valueOf() of enums are not loaded from the class file, they are created by the resolver
+    private boolean isSyntheticEnumMethod(int access, @NotNull String name, @NotNull String desc) {
+        if ((this.access & ACC_ENUM) == 0 || (access & ACC_STATIC) == 0) return false;
+        return "values".equals(name) && desc.equals("()[L" + internalName + ";") ||
+               "valueOf".equals(name) && desc.equals("(Ljava/lang/String;)L" + internalName + ";");
+    }
+
+    private static class InnerClassEntry {
+        @Nullable
+        private final String outerName;
+        @Nullable
+        private final String innerName;
+        private final int access;
+
+        private InnerClassEntry(@Nullable String outerName, @Nullable String innerName, int access) {
+            this.outerName = outerName;
+            this.innerName = innerName;
+            this.access = access;
+        }
+
+        private boolean isMember() {
+            return outerName != null && innerName != null;
+        }
+    }
+
+    @NotNull
+    public VirtualFile getFile() {
+        return file;
+    }
+
+    @NotNull
+    /* package */ String getInternalName() {
+        return internalName;
+    }
+
+    @NotNull
+    /* package */ BinaryJavaClassFinder getFinder() {
+        return finder;
+    }
+
+    /**
+     * @return true if this is a member class which has a reference to an instance of its outer class
+     */
+    /* package */ boolean hasOuterInstance() {
+        InnerClassEntry entry = innerClassEntries.get(internalName);
+        return entry != null && entry.isMember() && (access & ACC_STATIC) == 0 && (access & ACC_INTERFACE) == 0;
+    }
+
+    /**
+     * @return true if the extends list is not empty, i.e. {@code java.lang.Object} is not implicitly the first supertype
+     */
+    /* package */ boolean hasSuperclass() {
+        parseSignature();
+        return extendsListSize > 0;
+    }
+
+    @NotNull
+    @Override
+    public Name getName() {
+        InnerClassEntry entry = innerClassEntries.get(internalName);
+        if (entry != null && entry.innerName != null) {
+            return Name.identifier(entry.innerName);
+        }
+        return Name.identifier(internalName.substring(internalName.lastIndexOf('/') + 1));
+    }
+
+    /**
+     * @return null for local and anonymous classes
+     */
+    @Nullable
+    @Override
+    public FqName getFqName() {
+        String fqName = computeFqName(internalName);
+        return fqName == null ? null : new FqName(fqName).intern();
+    }
+
+    @Nullable
+    private String computeFqName(@NotNull String name) {
+        InnerClassEntry entry = innerClassEntries.get(name);
+        if (entry == null) {
+            return name.replace('/', '.');
+        }
+        if (!entry.isMember()) return null;
+
+        //noinspection ConstantConditions
+        String outerFqName = computeFqName(entry.outerName);
+        return outerFqName == null ? null : outerFqName + "." + entry.innerName;
+    }
+
+    /**
+     * @return the name of a class referenced from this class file as it is written in Java, as in PSI of class files:
+     * '$' separates nested classes only where the InnerClasses attribute says so, and javac lists there every nested class
+     * which a class file refers to
+     */
+    @NotNull
+    /* package */ String getCanonicalName(@NotNull String internalName) {
+        String fqName = computeFqName(internalName);
+        return fqName != null ? fqName : internalName.replace('/', '.');
+    }
+
+    @NotNull
+    public String getExternalName() {
+        FqName fqName = getFqName();
+        return fqName != null ? fqName.asString() : internalName.replace('/', '.');
+    }
+
+    @Override
+    public boolean isInterface() {
+        return (access & ACC_INTERFACE) != 0;
+    }
+
+    @Override
+    public boolean isAnnotationType() {
+        return (access & ACC_ANNOTATION) != 0;
+    }
+
+    @Override
+    public boolean isEnum() {
+        return (access & ACC_ENUM) != 0;
+    }
+
+    @Override
+    public boolean isAbstract() {
+        return BinaryJavaElementUtil.isAbstract(access);
+    }
+
+    @Override
+    public boolean isStatic() {
+        return BinaryJavaElementUtil.isStatic(access);
+    }
+
+    @Override
+    public boolean isFinal() {
+        return BinaryJavaElementUtil.isFinal(access);
+    }
+
+    @NotNull
+    @Override
+    public Visibility getVisibility() {
+        return BinaryJavaElementUtil.getVisibility(access);
+    }
+
+    @NotNull
+    @Override
+    public Collection<JavaAnnotation> getAnnotations() {
+        return annotations;
+    }
+
+    @Nullable
+    @Override
+    public JavaAnnotation findAnnotation(@NotNull FqName fqName) {
+        return BinaryJavaElementUtil.findAnnotation(annotations, fqName);
+    }
+
+    @Nullable
+    @Override
+    public JavaClass getOuterClass() {
+        InnerClassEntry entry = innerClassEntries.get(internalName);
+        if (entry == null || !entry.isMember()) return null;
+        //noinspection ConstantConditions
+        return finder.findClassByInternalName(entry.outerName);
+    }
+
+    @NotNull
+    @Override
+    public Collection<JavaClass> getInnerClasses() {
+        List<JavaClass> result = new ArrayList<JavaClass>(0);
+        for (Map.Entry<String, InnerClassEntry> mapEntry : innerClassEntries.entrySet()) {
+            InnerClassEntry entry = mapEntry.getValue();
+            if (!internalName.equals(entry.outerName) || entry.innerName == null || (entry.access & ACC_SYNTHETIC) != 0) continue;
+
+            BinaryJavaClass innerClass = finder.findClassByInternalName(mapEntry.getKey());
+            if (innerClass != null) {
+                result.add(innerClass);
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    @Override
+    public List<JavaTypeParameter> getTypeParameters() {
+        parseSignature();
+        return typeParameters;
+    }
+
+    @NotNull
+    @Override
+    public Collection<JavaClassifierType> getSupertypes() {
+        parseSignature();
+        return supertypes;
+    }
+
+    private synchronized void parseSignature() {
+        if (signatureParsed) return;
+
+        List<BinaryJavaClassifierType> superTypes = null;
+        if (signature != null) {
+            try {
+                SignatureParser parser = new SignatureParser(signature, finder, this, this);
+                typeParameters = parser.parseTypeParameters(this);
+                superTypes = parser.parseClassTypes();
+            }
+            catch (SignatureParser.InvalidSignatureException ignored) {
+                // A malformed generic signature is ignored, the supertypes are taken from the superclass and interface names
+            }
+        }
+        if (superTypes == null) {
+            typeParameters = Collections.emptyList();
+            superTypes = new ArrayList<BinaryJavaClassifierType>(interfaces.length + 1);
+            if (superName != null) {
+                superTypes.add(BinaryJavaClassifierType.classType(
+                        finder, superName, getCanonicalName(superName), null, Collections.<JavaType>emptyList()));
+            }
+            for (String anInterface : interfaces) {
+                superTypes.add(BinaryJavaClassifierType.classType(
+                        finder, anInterface, getCanonicalName(anInterface), null, Collections.<JavaType>emptyList()));
+            }
+        }
+
+        // The superclass goes first in the signature, if there is no superclass (i.e. in java.lang.Object), there are only interfaces
+        List<JavaClassifierType> extendsList = new ArrayList<JavaClassifierType>(1);
+        List<JavaClassifierType> implementsList = new ArrayList<JavaClassifierType>(superTypes.size());
+        for (int i = 0; i < superTypes.size(); i++) {
+            BinaryJavaClassifierType type = superTypes.get(i);
+            boolean isSuperclass = i == 0 && superName != null;
+            if (isSuperclass) {
+                String name = type.getInternalName();
+                if (JAVA_LANG_OBJECT.equals(name) || isEnum() && JAVA_LANG_ENUM.equals(name)) continue;
+                extendsList.add(type);
+            }
+            else if (isInterface()) {
+                if (isAnnotationType() && JAVA_LANG_ANNOTATION.equals(type.getInternalName())) continue;
+                extendsList.add(type);
+            }
+            else {
+                implementsList.add(type);
+            }
+        }
+
+        extendsListSize = extendsList.size();
+        List<JavaClassifierType> result = new ArrayList<JavaClassifierType>(extendsList.size() + implementsList.size());
+        result.addAll(extendsList);
+        result.addAll(implementsList);
+        supertypes = result;
+
+        signatureParsed = true;
+    }
+
+    @Nullable
+    @Override
+    public JavaTypeParameter findTypeParameter(@NotNull String name) {
+        for (JavaTypeParameter typeParameter : getTypeParameters()) {
+            if (typeParameter.getName().asString().equals(name)) {
+                return typeParameter;
+            }
+        }
+        if (hasOuterInstance()) {
+            JavaClass outerClass = getOuterClass();
+            if (outerClass instanceof BinaryJavaClass) {
+                return ((BinaryJavaClass) outerClass).findTypeParameter(name);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Constructors are included, as in {@link com.intellij.psi.PsiClass#getMethods()}
+     */
+    @NotNull
+    @Override
+    public Collection<JavaMethod> getMethods() {
+        return methods;
+    }
+
+    @NotNull
+    @Override
+    public Collection<JavaMethod> getAllMethods() {
+        List<JavaMethod> result = new ArrayList<JavaMethod>();
+        for (BinaryJavaClass javaClass : getAllClasses()) {
+            result.addAll(javaClass.methods);
+        }
+        return result;
+    }
+
+    @NotNull
+    @Override
+    public Collection<JavaField> getFields() {
+        return fields;
+    }
+
+    @NotNull
+    @Override
+    public Collection<JavaField> getAllFields() {
+        List<JavaField> result = new ArrayList<JavaField>();
+        for (BinaryJavaClass javaClass : getAllClasses()) {
+            result.addAll(javaClass.fields);
+        }
+        return result;
+    }
+
+    /**
+     * @return this class and all its superclasses and interfaces which are found, each once
+     */
+    @NotNull
+    private Collection<BinaryJavaClass> getAllClasses() {
+        Set<BinaryJavaClass> result = new LinkedHashSet<BinaryJavaClass>();
+        collectAllClasses(this, result);
+        return result;
+    }
+
+    private static void collectAllClasses(@NotNull BinaryJavaClass javaClass, @NotNull Set<BinaryJavaClass> result) {
+        if (!result.add(javaClass)) return;
+        for (JavaClassifierType supertype : javaClass.getDefaultType().getSupertypes()) {
+            JavaClassifier classifier = supertype.getClassifier();
+            if (classifier instanceof BinaryJavaClass) {
+                collectAllClasses((BinaryJavaClass) classifier, result);
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public Collection<JavaMethod> getConstructors() {
+        List<JavaMethod> result = new ArrayList<JavaMethod>(1);
+        for (JavaMethod method : methods) {
+            if (method.isConstructor()) {
+                result.add(method);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the raw type of this class, as {@link com.intellij.psi.PsiElementFactory#createType(com.intellij.psi.PsiClass)}
+     */
+    @NotNull
+    @Override
+    public JavaClassifierType getDefaultType() {
+        return BinaryJavaClassifierType.classType(this, Collections.<JavaType>emptyList());
+    }
+
+    @NotNull
+    @Override
+    public OriginKind getOriginKind() {
+        return OriginKind.COMPILED;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + ": " + internalName;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads Java classes right from class files, reading every class file once.
+ * Classes are identified by their internal names ("java/util/Map$Entry"), every class is loaded once
+ */
+public class BinaryJavaClassFinder {
+    private static final String CLASS_FILE_EXTENSION = ".class";
+
+    private final ClassFileFinder classFileFinder;
+
+    private final Map<String, BinaryJavaClass> classes = Maps.newHashMap();
+    private final Set<String> missingClasses = Sets.newHashSet();
+
+    public BinaryJavaClassFinder(@NotNull ClassFileFinder classFileFinder) {
+        this.classFileFinder = classFileFinder;
+    }
+
+    /**
+     * Tries to find the class for every possible split of the name into a package name and a class name, the longest package first
+     */
+    @Nullable
+    public synchronized BinaryJavaClass findClass(@NotNull FqName fqName) {
+        List<Name> segments = fqName.pathSegments();
+        for (int packageSegments = segments.size() - 1; packageSegments >= 0; packageSegments--) {
+            StringBuilder internalName = new StringBuilder();
+            for (int i = 0; i < segments.size(); i++) {
+                if (i > 0) {
+                    internalName.append(i <= packageSegments ? '/' : '$');
+                }
+                internalName.append(segments.get(i).asString());
+            }
+
+            BinaryJavaClass javaClass = findClassByInternalName(internalName.toString());
+            if (javaClass != null && fqName.equals(javaClass.getFqName())) {
+                return javaClass;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    public synchronized BinaryJavaClass findClassByInternalName(@NotNull String internalName) {
+        BinaryJavaClass javaClass = classes.get(internalName);
+        if (javaClass != null || missingClasses.contains(internalName)) return javaClass;
+
+        int lastSlash = internalName.lastIndexOf('/');
+        String packagePath = lastSlash < 0 ? "" : internalName.substring(0, lastSlash);
+        String fileName = internalName.substring(lastSlash + 1) + CLASS_FILE_EXTENSION;
+
+        for (VirtualFile directory : classFileFinder.findPackageDirectories(packagePath)) {
+            VirtualFile file = directory.findChild(fileName);
+            if (file == null || !file.isValid()) continue;
+
+            javaClass = new BinaryJavaClass(file, this);
+            if (internalName.equals(javaClass.getInternalName())) {
+                classes.put(internalName, javaClass);
+                return javaClass;
+            }
+        }
+
+        missingClasses.add(internalName);
+        return null;
+    }
+
+    /**
+     * @return top level classes of the package, a class from an earlier class path root hides the classes with the same name
+     */
+    @NotNull
+    public synchronized List<JavaClass> findClassesInPackage(@NotNull FqName packageFqName) {
+        String packagePath = packageFqName.isRoot() ? "" : packageFqName.asString().replace('.', '/');
+        Set<String> classNames = Sets.newLinkedHashSet();
+        for (VirtualFile directory : classFileFinder.findPackageDirectories(packagePath)) {
+            for (VirtualFile file : directory.getChildren()) {
+                String fileName = file.getName();
+                if (!fileName.endsWith(CLASS_FILE_EXTENSION) || file.isDirectory()) continue;
+
+                String className = fileName.substring(0, fileName.length() - CLASS_FILE_EXTENSION.length());
+                if (className.equals("package-info")) continue;
+
+                // A nested class is found in the class file of its outer class
+                int dollar = className.indexOf('$');
+                if (dollar > 0 && directory.findChild(className.substring(0, dollar) + CLASS_FILE_EXTENSION) != null) continue;
+
+                classNames.add(className);
+            }
+        }
+
+        List<JavaClass> result = Lists.newArrayListWithCapacity(classNames.size());
+        for (String className : classNames) {
+            BinaryJavaClass javaClass = findClassByInternalName(packagePath.isEmpty() ? className : packagePath + "/" + className);
+            if (javaClass != null && javaClass.getOuterClass() == null && javaClass.getFqName() != null) {
+                result.add(javaClass);
+            }
+        }
+        return result;
+    }
+}
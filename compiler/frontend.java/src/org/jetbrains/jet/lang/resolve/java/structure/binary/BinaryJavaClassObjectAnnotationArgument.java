@@ -0,0 +1,38 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaClassObjectAnnotationArgument;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaType;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+public class BinaryJavaClassObjectAnnotationArgument extends BinaryJavaAnnotationArgument implements JavaClassObjectAnnotationArgument {
+    private final JavaType referencedType;
+
+    public BinaryJavaClassObjectAnnotationArgument(@Nullable Name name, @NotNull JavaType referencedType) {
+        super(name);
+        this.referencedType = referencedType;
+    }
+
+    @NotNull
+    @Override
+    public JavaType getReferencedType() {
+        return referencedType;
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import com.intellij.openapi.util.Comparing;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.*;
+
+import java.util.*;
+
+import static org.jetbrains.jet.lang.resolve.java.resolver.DescriptorResolverUtils.erasure;
+
+/**
+ * A reference to a class by its internal name or to a type parameter by its name, resolved on the first request
+ */
+public class BinaryJavaClassifierType extends BinaryJavaType implements JavaClassifierType {
+    private final BinaryJavaClassFinder finder;
+    // Internal name of the class or name of the type parameter
+    private final String name;
+    // Name of the class as written in Java, see BinaryJavaClass#getCanonicalName; the name of the type parameter
+    private final String canonicalName;
+    private final boolean isTypeParameter;
+    @Nullable
+    private final TypeParameterScope scope;
+    // Not null only for inner classes of generic classes, as in "Outer<T>.Inner"
+    @Nullable
+    private final BinaryJavaClassifierType outerType;
+    private final List<JavaType> typeArguments;
+
+    private boolean resolved;
+    private JavaClassifier classifier;
+
+    private BinaryJavaClassifierType(
+            @NotNull BinaryJavaClassFinder finder,
+            @NotNull String name,
+            @NotNull String canonicalName,
+            boolean isTypeParameter,
+            @Nullable TypeParameterScope scope,
+            @Nullable BinaryJavaClassifierType outerType,
+            @NotNull List<JavaType> typeArguments
+    ) {
+        this.finder = finder;
+        this.name = name;
+        this.canonicalName = canonicalName;
+        this.isTypeParameter = isTypeParameter;
+        this.scope = scope;
+        this.outerType = outerType;
+        this.typeArguments = typeArguments;
+    }
+
+    @NotNull
+    /* package */ static BinaryJavaClassifierType classType(
+            @NotNull BinaryJavaClassFinder finder,
+            @NotNull String internalName,
+            @NotNull String canonicalName,
+            @Nullable BinaryJavaClassifierType outerType,
+            @NotNull List<JavaType> typeArguments
+    ) {
+        return new BinaryJavaClassifierType(finder, internalName, canonicalName, false, null, outerType, typeArguments);
+    }
+
+    @NotNull
+    /* package */ static BinaryJavaClassifierType javaLangObjectType(@NotNull BinaryJavaClassFinder finder) {
+        return classType(finder, BinaryJavaClass.JAVA_LANG_OBJECT, "java.lang.Object", null, Collections.<JavaType>emptyList());
+    }
+
+    @NotNull
+    /* package */ static BinaryJavaClassifierType classType(@NotNull BinaryJavaClass javaClass, @NotNull List<JavaType> typeArguments) {
+        BinaryJavaClassifierType type = new BinaryJavaClassifierType(
+                javaClass.getFinder(), javaClass.getInternalName(), javaClass.getExternalName(), false, null, null, typeArguments);
+        type.setClassifier(javaClass);
+        return type;
+    }
+
+    @NotNull
+    /* package */ static BinaryJavaClassifierType typeParameterReference(
+            @NotNull BinaryJavaClassFinder finder,
+            @NotNull String name,
+            @NotNull TypeParameterScope scope
+    ) {
+        return new BinaryJavaClassifierType(finder, name, name, true, scope, null, Collections.<JavaType>emptyList());
+    }
+
+    @NotNull
+    /* package */ static BinaryJavaClassifierType typeParameterType(
+            @NotNull BinaryJavaTypeParameter typeParameter,
+            @NotNull BinaryJavaClassFinder finder
+    ) {
+        String name = typeParameter.getName().asString();
+        BinaryJavaClassifierType type = new BinaryJavaClassifierType(finder, name, name, true, null, null, Collections.<JavaType>emptyList());
+        type.setClassifier(typeParameter);
+        return type;
+    }
+
+    private void setClassifier(@Nullable JavaClassifier classifier) {
+        this.classifier = classifier;
+        resolved = true;
+    }
+
+    @NotNull
+    /* package */ String getInternalName() {
+        assert !isTypeParameter : "Type parameter has no internal name: " + name;
+        return name;
+    }
+
+    @Nullable
+    @Override
+    public synchronized JavaClassifier getClassifier() {
+        if (!resolved) {
+            if (isTypeParameter) {
+                assert scope != null : "Type parameter reference without a scope: " + name;
+                setClassifier(scope.findTypeParameter(name));
+            }
+            else {
+                setClassifier(finder.findClassByInternalName(name));
+            }
+        }
+        return classifier;
+    }
+
+    @NotNull
+    @Override
+    public JavaTypeSubstitutor getSubstitutor() {
+        if (!(getClassifier() instanceof JavaClass)) return JavaTypeSubstitutor.EMPTY;
+
+        Map<JavaTypeParameter, JavaType> substitutionMap = new HashMap<JavaTypeParameter, JavaType>();
+        collectSubstitution(substitutionMap);
+        return BinaryJavaTypeSubstitutor.create(substitutionMap);
+    }
+
+    private void collectSubstitution(@NotNull Map<JavaTypeParameter, JavaType> substitutionMap) {
+        JavaClassifier classifier = getClassifier();
+        if (!(classifier instanceof JavaClass)) return;
+
+        List<JavaTypeParameter> typeParameters = ((JavaClass) classifier).getTypeParameters();
+        // Raw types and types with a wrong number of arguments substitute nulls, which means erasure
+        boolean hasArguments = typeArguments.size() == typeParameters.size();
+        for (int i = 0; i < typeParameters.size(); i++) {
+            substitutionMap.put(typeParameters.get(i), hasArguments ? typeArguments.get(i) : null);
+        }
+
+        if (outerType != null) {
+            outerType.collectSubstitution(substitutionMap);
+        }
+    }
+
+    /**
+     * @return supertypes of the class substituted with the arguments of this type, or erased if this type is raw;
+     * java.lang.Object is a supertype of every class without a superclass, except itself
+     */
+    @NotNull
+    @Override
+    public Collection<JavaClassifierType> getSupertypes() {
+        JavaClassifier classifier = getClassifier();
+        if (classifier instanceof JavaTypeParameter) {
+            Collection<JavaClassifierType> upperBounds = ((JavaTypeParameter) classifier).getUpperBounds();
+            return upperBounds.isEmpty() ? Collections.singletonList(createJavaLangObjectType()) : upperBounds;
+        }
+        if (!(classifier instanceof BinaryJavaClass)) return Collections.emptyList();
+
+        BinaryJavaClass javaClass = (BinaryJavaClass) classifier;
+        List<JavaClassifierType> supertypes = new ArrayList<JavaClassifierType>();
+        if (!javaClass.hasSuperclass() && !BinaryJavaClass.JAVA_LANG_OBJECT.equals(javaClass.getInternalName())) {
+            supertypes.add(createJavaLangObjectType());
+        }
+        supertypes.addAll(javaClass.getSupertypes());
+
+        boolean isRaw = isRaw();
+        JavaTypeSubstitutor substitutor = getSubstitutor();
+        List<JavaClassifierType> result = new ArrayList<JavaClassifierType>(supertypes.size());
+        for (JavaClassifierType supertype : supertypes) {
+            JavaType substituted = isRaw ? erasure(supertype) : substitutor.substitute(supertype);
+            if (substituted instanceof JavaClassifierType) {
+                result.add((JavaClassifierType) substituted);
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    private BinaryJavaClassifierType createJavaLangObjectType() {
+        return javaLangObjectType(finder);
+    }
+
+    @NotNull
+    @Override
+    public String getPresentableText() {
+        if (isTypeParameter) return name;
+
+        StringBuilder sb = new StringBuilder(getShortName());
+        if (!typeArguments.isEmpty()) {
+            sb.append('<');
+            for (int i = 0; i < typeArguments.size(); i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(getPresentableText(typeArguments.get(i)));
+            }
+            sb.append('>');
+        }
+        return sb.toString();
+    }
+
+    @NotNull
+    private static String getPresentableText(@NotNull JavaType type) {
+        if (type instanceof JavaClassifierType) {
+            return ((JavaClassifierType) type).getPresentableText();
+        }
+        else if (type instanceof JavaArrayType) {
+            return getPresentableText(((JavaArrayType) type).getComponentType()) + "[]";
+        }
+        else if (type instanceof JavaWildcardType) {
+            JavaWildcardType wildcardType = (JavaWildcardType) type;
+            JavaType bound = wildcardType.getBound();
+            if (bound == null) return "?";
+            return (wildcardType.isExtends() ? "? extends " : "? super ") + getPresentableText(bound);
+        }
+        return ((BinaryJavaType) type).getCanonicalText();
+    }
+
+    @NotNull
+    private String getShortName() {
+        return canonicalName.substring(canonicalName.lastIndexOf('.') + 1);
+    }
+
+    @Override
+    public boolean isRaw() {
+        JavaClassifier classifier = getClassifier();
+        return typeArguments.isEmpty() && classifier instanceof JavaClass && !((JavaClass) classifier).getTypeParameters().isEmpty();
+    }
+
+    @NotNull
+    @Override
+    public List<JavaType> getTypeArguments() {
+        return typeArguments;
+    }
+
+    @NotNull
+    @Override
+    public String getCanonicalText() {
+        if (isTypeParameter) return name;
+
+        StringBuilder sb = new StringBuilder();
+        if (outerType != null) {
+            sb.append(outerType.getCanonicalText()).append('.').append(getShortName());
+        }
+        else {
+            sb.append(canonicalName);
+        }
+        if (!typeArguments.isEmpty()) {
+            sb.append('<');
+            for (int i = 0; i < typeArguments.size(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append(((BinaryJavaType) typeArguments.get(i)).getCanonicalText());
+            }
+            sb.append('>');
+        }
+        return sb.toString();
+    }
+
+    @NotNull
+    @Override
+    /* package */ BinaryJavaType substitute(@NotNull BinaryJavaTypeSubstitutor substitutor) {
+        if (isTypeParameter) {
+            JavaClassifier classifier = getClassifier();
+            if (!(classifier instanceof JavaTypeParameter) || !substitutor.getSubstitutionMap().containsKey(classifier)) return this;
+
+            JavaType substituted = substitutor.substitute((JavaTypeParameter) classifier);
+            if (substituted == null) {
+                JavaType erased = erasure(this);
+                return erased instanceof BinaryJavaType ? (BinaryJavaType) erased : this;
+            }
+            return (BinaryJavaType) substituted;
+        }
+
+        if (typeArguments.isEmpty() && outerType == null) return this;
+
+        List<JavaType> substitutedArguments = new ArrayList<JavaType>(typeArguments.size());
+        for (JavaType argument : typeArguments) {
+            substitutedArguments.add(((BinaryJavaType) argument).substitute(substitutor));
+        }
+        BinaryJavaClassifierType substitutedOuterType = outerType == null ? null : (BinaryJavaClassifierType) outerType.substitute(substitutor);
+        BinaryJavaClassifierType result = classType(finder, name, canonicalName, substitutedOuterType, substitutedArguments);
+        if (resolved) {
+            result.setClassifier(classifier);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BinaryJavaClassifierType)) return false;
+
+        BinaryJavaClassifierType other = (BinaryJavaClassifierType) o;
+        if (isTypeParameter != other.isTypeParameter || !name.equals(other.name)) return false;
+        if (isTypeParameter) {
+            return Comparing.equal(getClassifier(), other.getClassifier());
+        }
+        return typeArguments.equals(other.typeArguments) && Comparing.equal(outerType, other.outerType);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + typeArguments.hashCode();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaField;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaType;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import static org.jetbrains.asm4.Opcodes.ACC_ENUM;
+
+public class BinaryJavaField extends BinaryJavaMember implements JavaField {
+    private final String desc;
+    @Nullable
+    private final String signature;
+    @Nullable
+    private final Object constantValue;
+
+    private BinaryJavaType type;
+
+    /* package */ BinaryJavaField(
+            @NotNull BinaryJavaClass containingClass,
+            int access,
+            @NotNull String name,
+            @NotNull String desc,
+            @Nullable String signature,
+            @Nullable Object constantValue
+    ) {
+        super(containingClass, access, name);
+        this.desc = desc;
+        this.signature = signature;
+        this.constantValue = constantValue;
+    }
+
+    @NotNull
+    @Override
+    public Name getName() {
+        return Name.identifier(getBinaryName());
+    }
+
+    @Override
+    public boolean isEnumEntry() {
+        return (getAccess() & ACC_ENUM) != 0;
+    }
+
+    @NotNull
+    @Override
+    public synchronized JavaType getType() {
+        if (type == null) {
+            BinaryJavaClass containingClass = getContainingClass();
+            if (signature != null) {
+                try {
+                    type = new SignatureParser(signature, containingClass.getFinder(), containingClass, containingClass).parseType();
+                }
+                catch (SignatureParser.InvalidSignatureException ignored) {
+                    // A malformed generic signature is ignored, the descriptor is used instead
+                }
+            }
+            if (type == null) {
+                type = new SignatureParser(desc, containingClass.getFinder(), containingClass, containingClass).parseType();
+            }
+        }
+        return type;
+    }
+
+    /**
+     * @return the value of the ConstantValue attribute of a static final field, which is the value of its initializer
+     */
+    @Nullable
+    public Object getConstantValue() {
+        // Values of boolean, byte, char and short constants are stored as ints
+        if (!(constantValue instanceof Integer)) return constantValue;
+
+        int value = (Integer) constantValue;
+        switch (desc.charAt(0)) {
+            case 'Z': return value != 0;
+            case 'B': return (byte) value;
+            case 'C': return (char) value;
+            case 'S': return (short) value;
+            default: return constantValue;
+        }
+    }
+
+    @NotNull
+    @Override
+    public String getExternalName() {
+        return getContainingClass().getExternalName() + " " + getBinaryName();
+    }
+}
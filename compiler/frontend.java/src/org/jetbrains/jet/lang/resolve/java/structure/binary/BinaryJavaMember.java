@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.descriptors.Visibility;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaAnnotation;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaMember;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public abstract class BinaryJavaMember implements JavaMember {
+    private final BinaryJavaClass containingClass;
+    private final int access;
+    private final String name;
+    private final List<JavaAnnotation> annotations = new ArrayList<JavaAnnotation>(0);
+
+    protected BinaryJavaMember(@NotNull BinaryJavaClass containingClass, int access, @NotNull String name) {
+        this.containingClass = containingClass;
+        this.access = access;
+        this.name = name;
+    }
+
+    @NotNull
+    @Override
+    public BinaryJavaClass getContainingClass() {
+        return containingClass;
+    }
+
+    /**
+     * @return the name of the member in the class file, e.g. {@code "<init>"} for constructors
+     */
+    @NotNull
+    /* package */ String getBinaryName() {
+        return name;
+    }
+
+    @NotNull
+    /* package */ AnnotationArgumentsVisitor recordAnnotation(@NotNull String desc) {
+        return BinaryJavaAnnotation.record(desc, containingClass.getFinder(), annotations);
+    }
+
+    @NotNull
+    @Override
+    public Collection<JavaAnnotation> getAnnotations() {
+        return annotations;
+    }
+
+    @Nullable
+    @Override
+    public JavaAnnotation findAnnotation(@NotNull FqName fqName) {
+        return BinaryJavaElementUtil.findAnnotation(annotations, fqName);
+    }
+
+    @Override
+    public boolean isAbstract() {
+        return BinaryJavaElementUtil.isAbstract(access);
+    }
+
+    @Override
+    public boolean isStatic() {
+        return BinaryJavaElementUtil.isStatic(access);
+    }
+
+    @Override
+    public boolean isFinal() {
+        return BinaryJavaElementUtil.isFinal(access);
+    }
+
+    @NotNull
+    @Override
+    public Visibility getVisibility() {
+        return BinaryJavaElementUtil.getVisibility(access);
+    }
+
+    protected int getAccess() {
+        return access;
+    }
+
+    /**
+     * @return the name of the member as in external annotations, see {@link com.intellij.psi.util.PsiFormatUtil#getExternalName}
+     */
+    @NotNull
+    public abstract String getExternalName();
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + ": " + containingClass.getInternalName() + "." + name;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.asm4.Type;
+import org.jetbrains.jet.lang.resolve.java.structure.*;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.*;
+
+import static org.jetbrains.asm4.Opcodes.ACC_VARARGS;
+
+public class BinaryJavaMethod extends BinaryJavaMember implements JavaMethod, TypeParameterScope {
+    private static final String CONSTRUCTOR_NAME = "<init>";
+    private static final String SYNTHETIC_PARAMETER_ANNOTATION = "Ljava/lang/Synthetic;";
+
+    private final String desc;
+    @Nullable
+    private final String signature;
+
+    // Annotations of parameters by their index in the descriptor, which includes synthetic parameters
+    private final Map<Integer, List<JavaAnnotation>> parameterAnnotations = new HashMap<Integer, List<JavaAnnotation>>(0);
+    @Nullable
+    private List<JavaAnnotationArgument> annotationParameterDefaultValue;
+
+    private boolean signatureParsed;
+    private List<JavaTypeParameter> typeParameters;
+    private List<JavaValueParameter> valueParameters;
+    private JavaType returnType;
+
+    /* package */ BinaryJavaMethod(
+            @NotNull BinaryJavaClass containingClass,
+            int access,
+            @NotNull String name,
+            @NotNull String desc,
+            @Nullable String signature
+    ) {
+        super(containingClass, access, name);
+        this.desc = desc;
+        this.signature = signature;
+    }
+
+    @Nullable
+    /* package */ AnnotationArgumentsVisitor recordParameterAnnotation(int parameter, @NotNull String desc) {
+        if (SYNTHETIC_PARAMETER_ANNOTATION.equals(desc)) return null;
+
+        List<JavaAnnotation> annotations = parameterAnnotations.get(parameter);
+        if (annotations == null) {
+            annotations = new ArrayList<JavaAnnotation>(1);
+            parameterAnnotations.put(parameter, annotations);
+        }
+        return BinaryJavaAnnotation.record(desc, getContainingClass().getFinder(), annotations);
+    }
+
+    @NotNull
+    /* package */ AnnotationArgumentsVisitor recordAnnotationParameterDefaultValue() {
+        annotationParameterDefaultValue = new ArrayList<JavaAnnotationArgument>(1);
+        return new AnnotationArgumentsVisitor(getContainingClass().getFinder(), annotationParameterDefaultValue,
+                                              Name.identifier(getBinaryName()));
+    }
+
+    @NotNull
+    @Override
+    public Name getName() {
+        return isConstructor() ? getContainingClass().getName() : Name.identifier(getBinaryName());
+    }
+
+    @Override
+    public boolean isConstructor() {
+        return CONSTRUCTOR_NAME.equals(getBinaryName());
+    }
+
+    @Override
+    public boolean isVararg() {
+        return (getAccess() & ACC_VARARGS) != 0;
+    }
+
+    @Override
+    public boolean hasAnnotationParameterDefaultValue() {
+        return getAnnotationParameterDefaultValue() != null;
+    }
+
+    /**
+     * @return the default value of the annotation method, or null if this is not an annotation method or it has no default value
+     */
+    @Nullable
+    public JavaAnnotationArgument getAnnotationParameterDefaultValue() {
+        List<JavaAnnotationArgument> value = annotationParameterDefaultValue;
+        return value == null || value.isEmpty() ? null : value.get(0);
+    }
+
+    @NotNull
+    @Override
+    public List<JavaTypeParameter> getTypeParameters() {
+        parseSignature();
+        return typeParameters;
+    }
+
+    @NotNull
+    @Override
+    public List<JavaValueParameter> getValueParameters() {
+        parseSignature();
+        return valueParameters;
+    }
+
+    @Nullable
+    @Override
+    public JavaType getReturnType() {
+        parseSignature();
+        return returnType;
+    }
+
+    private synchronized void parseSignature() {
+        if (signatureParsed) return;
+
+        if (signature != null) {
+            try {
+                parseSignature(signature, true);
+                signatureParsed = true;
+                return;
+            }
+            catch (SignatureParser.InvalidSignatureException ignored) {
+                // A malformed generic signature is ignored, the descriptor is used instead
+            }
+        }
+        parseSignature(desc, false);
+        signatureParsed = true;
+    }
+
+    private void parseSignature(@NotNull String signatureOrDesc, boolean isGeneric) {
+        BinaryJavaClass containingClass = getContainingClass();
+        SignatureParser parser = new SignatureParser(signatureOrDesc, containingClass.getFinder(), this, containingClass);
+        List<JavaTypeParameter> typeParameters = parser.parseTypeParameters(this);
+        List<BinaryJavaType> parameterTypes = parser.parseParameterTypes();
+        BinaryJavaType type = parser.parseType();
+
+        // Descriptors of constructors of enums and inner classes have synthetic parameters, generic signatures don't
+        int descriptorParameterCount = Type.getArgumentTypes(desc).length;
+        int syntheticParameterCount;
+        if (isGeneric) {
+            syntheticParameterCount = Math.max(descriptorParameterCount - parameterTypes.size(), 0);
+        }
+        else if (isConstructor() && containingClass.isEnum()) {
+            syntheticParameterCount = Math.min(2, parameterTypes.size());
+        }
+        else if (isConstructor() && containingClass.hasOuterInstance()) {
+            syntheticParameterCount = Math.min(1, parameterTypes.size());
+        }
+        else {
+            syntheticParameterCount = 0;
+        }
+        if (!isGeneric) {
+            parameterTypes = parameterTypes.subList(syntheticParameterCount, parameterTypes.size());
+        }
+
+        List<JavaValueParameter> parameters = new ArrayList<JavaValueParameter>(parameterTypes.size());
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            List<JavaAnnotation> annotations = parameterAnnotations.get(i + syntheticParameterCount);
+            boolean vararg = isVararg() && i == parameterTypes.size() - 1;
+            parameters.add(new BinaryJavaValueParameter(
+                    this, i, parameterTypes.get(i),
+                    annotations != null ? annotations : Collections.<JavaAnnotation>emptyList(), vararg));
+        }
+
+        this.typeParameters = typeParameters;
+        this.valueParameters = parameters;
+        this.returnType = isConstructor() ? null : type;
+    }
+
+    @Nullable
+    @Override
+    public JavaTypeParameter findTypeParameter(@NotNull String name) {
+        for (JavaTypeParameter typeParameter : getTypeParameters()) {
+            if (typeParameter.getName().asString().equals(name)) {
+                return typeParameter;
+            }
+        }
+        return getContainingClass().findTypeParameter(name);
+    }
+
+    /**
+     * @see JavaSignatureFormatter#formatMethod(JavaMethod)
+     */
+    @NotNull
+    public String formatSignature() {
+        StringBuilder sb = new StringBuilder(getName().asString());
+        appendParameters(sb);
+        return sb.toString();
+    }
+
+    @NotNull
+    @Override
+    public String getExternalName() {
+        StringBuilder sb = new StringBuilder(getContainingClass().getExternalName()).append(' ');
+        JavaType type = getReturnType();
+        if (type != null) {
+            sb.append(((BinaryJavaType) type).getCanonicalText()).append(' ');
+        }
+        sb.append(getName().asString());
+        appendParameters(sb);
+        return sb.toString();
+    }
+
+    private void appendParameters(@NotNull StringBuilder sb) {
+        sb.append('(');
+        List<JavaValueParameter> parameters = getValueParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) sb.append(", ");
+            JavaValueParameter parameter = parameters.get(i);
+            JavaType type = parameter.getType();
+            if (parameter.isVararg() && type instanceof BinaryJavaArrayType) {
+                JavaType componentType = ((BinaryJavaArrayType) type).getComponentType();
+                sb.append(((BinaryJavaType) componentType).getCanonicalText()).append("...");
+            }
+            else {
+                sb.append(((BinaryJavaType) type).getCanonicalText());
+            }
+        }
+        sb.append(')');
+    }
+}
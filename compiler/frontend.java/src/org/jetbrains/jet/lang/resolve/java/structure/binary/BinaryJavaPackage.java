@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaPackage;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A package whose classes are read from class files, and the source classes are taken from the package of sources
+ */
+public class BinaryJavaPackage implements JavaPackage {
+    private final BinaryJavaClassFinder finder;
+    private final JavaPackage sourcePackage;
+
+    /**
+     * @param sourcePackage the package which doesn't contain classes from class files
+     */
+    public BinaryJavaPackage(@NotNull BinaryJavaClassFinder finder, @NotNull JavaPackage sourcePackage) {
+        this.finder = finder;
+        this.sourcePackage = sourcePackage;
+    }
+
+    @NotNull
+    @Override
+    public Collection<JavaClass> getClasses() {
+        Collection<JavaClass> sourceClasses = sourcePackage.getClasses();
+        List<JavaClass> binaryClasses = finder.findClassesInPackage(getFqName());
+        List<JavaClass> result = new ArrayList<JavaClass>(binaryClasses.size() + sourceClasses.size());
+        result.addAll(binaryClasses);
+        result.addAll(sourceClasses);
+        return result;
+    }
+
+    @NotNull
+    @Override
+    public Collection<JavaPackage> getSubPackages() {
+        Collection<JavaPackage> sourceSubPackages = sourcePackage.getSubPackages();
+        List<JavaPackage> result = new ArrayList<JavaPackage>(sourceSubPackages.size());
+        for (JavaPackage subPackage : sourceSubPackages) {
+            result.add(new BinaryJavaPackage(finder, subPackage));
+        }
+        return result;
+    }
+
+    @NotNull
+    @Override
+    public FqName getFqName() {
+        return sourcePackage.getFqName();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + ": " + getFqName();
+    }
+}
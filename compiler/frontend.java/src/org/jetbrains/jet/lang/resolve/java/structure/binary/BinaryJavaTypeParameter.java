@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.*;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.Collection;
+
+public class BinaryJavaTypeParameter implements JavaTypeParameter {
+    private final JavaTypeParameterListOwner owner;
+    private final int index;
+    private final Name name;
+    private final Collection<JavaClassifierType> upperBounds;
+    private final BinaryJavaClassFinder finder;
+
+    /* package */ BinaryJavaTypeParameter(
+            @NotNull JavaTypeParameterListOwner owner,
+            int index,
+            @NotNull Name name,
+            @NotNull Collection<JavaClassifierType> upperBounds,
+            @NotNull BinaryJavaClassFinder finder
+    ) {
+        this.owner = owner;
+        this.index = index;
+        this.name = name;
+        this.upperBounds = upperBounds;
+        this.finder = finder;
+    }
+
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @NotNull
+    @Override
+    public Name getName() {
+        return name;
+    }
+
+    /**
+     * @return bounds other than java.lang.Object, as class file stubs do
+     */
+    @NotNull
+    @Override
+    public Collection<JavaClassifierType> getUpperBounds() {
+        return upperBounds;
+    }
+
+    @Nullable
+    @Override
+    public JavaTypeParameterListOwner getOwner() {
+        return owner;
+    }
+
+    @NotNull
+    @Override
+    public JavaType getType() {
+        return BinaryJavaClassifierType.typeParameterType(this, finder);
+    }
+
+    @NotNull
+    @Override
+    public JavaTypeProvider getTypeProvider() {
+        return new BinaryJavaTypeProvider(finder);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + ": " + name;
+    }
+}
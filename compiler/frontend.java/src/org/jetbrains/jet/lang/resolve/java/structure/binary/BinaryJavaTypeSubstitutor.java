@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaType;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaTypeParameter;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaTypeSubstitutor;
+
+import java.util.Map;
+
+/**
+ * Substitutes types of type parameters in binary types; a type parameter mapped to null is erased
+ */
+public class BinaryJavaTypeSubstitutor implements JavaTypeSubstitutor {
+    private final Map<JavaTypeParameter, JavaType> substitutionMap;
+
+    private BinaryJavaTypeSubstitutor(@NotNull Map<JavaTypeParameter, JavaType> substitutionMap) {
+        this.substitutionMap = substitutionMap;
+    }
+
+    @NotNull
+    public static JavaTypeSubstitutor create(@NotNull Map<JavaTypeParameter, JavaType> substitutionMap) {
+        return substitutionMap.isEmpty() ? EMPTY : new BinaryJavaTypeSubstitutor(substitutionMap);
+    }
+
+    @NotNull
+    @Override
+    public JavaType substitute(@NotNull JavaType type) {
+        return ((BinaryJavaType) type).substitute(this);
+    }
+
+    @Nullable
+    @Override
+    public JavaType substitute(@NotNull JavaTypeParameter typeParameter) {
+        if (substitutionMap.containsKey(typeParameter)) {
+            return substitutionMap.get(typeParameter);
+        }
+        return typeParameter.getType();
+    }
+
+    @NotNull
+    @Override
+    public Map<JavaTypeParameter, JavaType> getSubstitutionMap() {
+        return substitutionMap;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + ": " + substitutionMap;
+    }
+}
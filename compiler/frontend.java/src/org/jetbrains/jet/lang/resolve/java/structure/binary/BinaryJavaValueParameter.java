@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaAnnotation;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaType;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaValueParameter;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.Collection;
+import java.util.List;
+
+public class BinaryJavaValueParameter implements JavaValueParameter {
+    private final BinaryJavaMethod method;
+    private final int index;
+    private final BinaryJavaType type;
+    private final List<JavaAnnotation> annotations;
+    private final boolean isVararg;
+
+    /* package */ BinaryJavaValueParameter(
+            @NotNull BinaryJavaMethod method,
+            int index,
+            @NotNull BinaryJavaType type,
+            @NotNull List<JavaAnnotation> annotations,
+            boolean isVararg
+    ) {
+        this.method = method;
+        this.index = index;
+        this.type = type;
+        this.annotations = annotations;
+        this.isVararg = isVararg;
+    }
+
+    @NotNull
+    public BinaryJavaMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Names of parameters are not known without the debug information, which is not read
+     */
+    @Nullable
+    @Override
+    public Name getName() {
+        return null;
+    }
+
+    @NotNull
+    @Override
+    public JavaType getType() {
+        return type;
+    }
+
+    @Override
+    public boolean isVararg() {
+        return isVararg;
+    }
+
+    @NotNull
+    @Override
+    public Collection<JavaAnnotation> getAnnotations() {
+        return annotations;
+    }
+
+    @Nullable
+    @Override
+    public JavaAnnotation findAnnotation(@NotNull FqName fqName) {
+        return BinaryJavaElementUtil.findAnnotation(annotations, fqName);
+    }
+
+    @NotNull
+    public String getExternalName() {
+        return method.getExternalName() + " " + index;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + ": " + method.getExternalName() + " #" + index;
+    }
+}
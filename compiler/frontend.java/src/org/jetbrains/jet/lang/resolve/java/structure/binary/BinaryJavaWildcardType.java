@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaType;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaTypeProvider;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaWildcardType;
+
+public class BinaryJavaWildcardType extends BinaryJavaType implements JavaWildcardType {
+    private final BinaryJavaType bound;
+    private final boolean isExtends;
+    private final BinaryJavaClassFinder finder;
+
+    public BinaryJavaWildcardType(@Nullable BinaryJavaType bound, boolean isExtends, @NotNull BinaryJavaClassFinder finder) {
+        this.bound = bound;
+        this.isExtends = isExtends;
+        this.finder = finder;
+    }
+
+    @Nullable
+    @Override
+    public JavaType getBound() {
+        return bound;
+    }
+
+    @Override
+    public boolean isExtends() {
+        return isExtends;
+    }
+
+    @NotNull
+    @Override
+    public JavaTypeProvider getTypeProvider() {
+        return new BinaryJavaTypeProvider(finder);
+    }
+
+    @NotNull
+    @Override
+    public String getCanonicalText() {
+        if (bound == null) return "?";
+        return (isExtends ? "? extends " : "? super ") + bound.getCanonicalText();
+    }
+
+    @NotNull
+    @Override
+    /* package */ BinaryJavaType substitute(@NotNull BinaryJavaTypeSubstitutor substitutor) {
+        if (bound == null) return this;
+        BinaryJavaType substitutedBound = bound.substitute(substitutor);
+        if (substitutedBound == bound) return this;
+        if (substitutedBound instanceof BinaryJavaWildcardType) {
+            // "? extends T" with "? extends A" for T is "? extends A", with "? super A" for T it's just "?"
+            BinaryJavaWildcardType wildcard = (BinaryJavaWildcardType) substitutedBound;
+            return wildcard.bound == null || wildcard.isExtends == isExtends ? wildcard : new BinaryJavaWildcardType(null, true, finder);
+        }
+        return new BinaryJavaWildcardType(substitutedBound, isExtends, finder);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BinaryJavaWildcardType)) return false;
+        BinaryJavaWildcardType other = (BinaryJavaWildcardType) o;
+        return isExtends == other.isExtends && (bound == null ? other.bound == null : bound.equals(other.bound));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (bound == null ? 0 : bound.hashCode()) + (isExtends ? 1 : 0);
+    }
+}
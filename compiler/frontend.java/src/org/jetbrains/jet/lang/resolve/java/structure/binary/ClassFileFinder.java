@@ -0,0 +1,35 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Class files of the class path, which Java classes are loaded from with {@link BinaryJavaClassFinder}, without PSI.
+ * When registered as a project service, {@link org.jetbrains.jet.lang.resolve.java.JavaClassFinderImpl} uses it
+ */
+public interface ClassFileFinder {
+    /**
+     * @param packagePath segments of the package name separated by '/', e.g. "java/util", or an empty string for the root package
+     * @return directories of the package in the class path roots, in the order of roots
+     */
+    @NotNull
+    List<VirtualFile> findPackageDirectories(@NotNull String packagePath);
+}
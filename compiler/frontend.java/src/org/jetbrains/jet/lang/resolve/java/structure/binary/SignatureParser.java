@@ -0,0 +1,225 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaClassifierType;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaType;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaTypeParameter;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaTypeParameterListOwner;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parses generic signatures (JVMS 4.3.4) and descriptors (JVMS 4.3.2, 4.3.3), which are signatures without generics.
+ * References to type parameters are resolved in the scope when they are first requested, so that bounds of type parameters
+ * can refer to the parameters being parsed
+ */
+/* package */ class SignatureParser {
+    private final String signature;
+    private final BinaryJavaClassFinder finder;
+    private final TypeParameterScope scope;
+    // The class file of the signature, which knows how its references to nested classes are written in Java
+    @Nullable
+    private final BinaryJavaClass referencingClass;
+    private int position = 0;
+
+    public SignatureParser(
+            @NotNull String signature,
+            @NotNull BinaryJavaClassFinder finder,
+            @NotNull TypeParameterScope scope,
+            @Nullable BinaryJavaClass referencingClass
+    ) {
+        this.signature = signature;
+        this.finder = finder;
+        this.scope = scope;
+        this.referencingClass = referencingClass;
+    }
+
+    public boolean atEnd() {
+        return position >= signature.length() || signature.charAt(position) == '^';
+    }
+
+    /**
+     * Parses formal type parameters, e.g. {@code "<K:Ljava/lang/Object;V:Ljava/lang/Object;>"}, if the signature starts with them
+     */
+    @NotNull
+    public List<JavaTypeParameter> parseTypeParameters(@NotNull JavaTypeParameterListOwner owner) {
+        if (atEnd() || current() != '<') return Collections.emptyList();
+        position++;
+
+        List<JavaTypeParameter> result = new ArrayList<JavaTypeParameter>(1);
+        while (current() != '>') {
+            int colon = signature.indexOf(':', position);
+            if (colon <= position) throw error();
+            String name = signature.substring(position, colon);
+            position = colon;
+
+            List<JavaClassifierType> upperBounds = new ArrayList<JavaClassifierType>(1);
+            while (current() == ':') {
+                position++;
+                // The class bound is empty if there are only interface bounds
+                if (current() == ':') continue;
+
+                BinaryJavaType bound = parseType();
+                if (bound instanceof BinaryJavaClassifierType && !"java.lang.Object".equals(bound.getCanonicalText())) {
+                    upperBounds.add((BinaryJavaClassifierType) bound);
+                }
+            }
+            result.add(new BinaryJavaTypeParameter(owner, result.size(), Name.identifier(name), upperBounds, finder));
+        }
+        position++;
+        return result;
+    }
+
+    /**
+     * Parses the rest of a class signature: the superclass and the interfaces
+     */
+    @NotNull
+    public List<BinaryJavaClassifierType> parseClassTypes() {
+        List<BinaryJavaClassifierType> result = new ArrayList<BinaryJavaClassifierType>(2);
+        while (!atEnd()) {
+            BinaryJavaType type = parseType();
+            if (!(type instanceof BinaryJavaClassifierType)) throw error();
+            result.add((BinaryJavaClassifierType) type);
+        }
+        return result;
+    }
+
+    @NotNull
+    public List<BinaryJavaType> parseParameterTypes() {
+        if (current() != '(') throw error();
+        position++;
+
+        List<BinaryJavaType> result = new ArrayList<BinaryJavaType>(2);
+        while (current() != ')') {
+            result.add(parseType());
+        }
+        position++;
+        return result;
+    }
+
+    @NotNull
+    public BinaryJavaType parseType() {
+        char c = current();
+        switch (c) {
+            case 'L':
+                return parseClassType();
+            case 'T':
+                int semicolon = signature.indexOf(';', position);
+                if (semicolon < 0) throw error();
+                String name = signature.substring(position + 1, semicolon);
+                position = semicolon + 1;
+                return BinaryJavaClassifierType.typeParameterReference(finder, name, scope);
+            case '[':
+                position++;
+                return new BinaryJavaArrayType(parseType());
+            default:
+                BinaryJavaPrimitiveType primitiveType = BinaryJavaPrimitiveType.byDescriptor(c);
+                if (primitiveType == null) throw error();
+                position++;
+                return primitiveType;
+        }
+    }
+
+    @NotNull
+    private BinaryJavaClassifierType parseClassType() {
+        position++;
+
+        StringBuilder internalName = new StringBuilder();
+        String canonicalName = null;
+        BinaryJavaClassifierType outerType = null;
+        while (true) {
+            int start = position;
+            while (current() != '<' && current() != '.' && current() != ';') {
+                position++;
+            }
+            internalName.append(signature, start, position);
+            if (canonicalName == null) {
+                canonicalName = referencingClass != null
+                                ? referencingClass.getCanonicalName(internalName.toString())
+                                : internalName.toString().replace('/', '.');
+            }
+            else {
+                canonicalName = canonicalName + "." + signature.substring(start, position);
+            }
+
+            List<JavaType> typeArguments = current() == '<' ? parseTypeArguments() : Collections.<JavaType>emptyList();
+            BinaryJavaClassifierType type =
+                    BinaryJavaClassifierType.classType(finder, internalName.toString(), canonicalName, outerType, typeArguments);
+            if (current() == ';') {
+                position++;
+                return type;
+            }
+
+            // An inner class of a generic class, e.g. "Ljava/util/Outer<TT;>.Inner;"
+            position++;
+            outerType = typeArguments.isEmpty() && outerType == null ? null : type;
+            internalName.append('$');
+        }
+    }
+
+    @NotNull
+    private List<JavaType> parseTypeArguments() {
+        position++;
+
+        List<JavaType> result = new ArrayList<JavaType>(2);
+        while (current() != '>') {
+            switch (current()) {
+                case '*':
+                    position++;
+                    result.add(new BinaryJavaWildcardType(null, true, finder));
+                    break;
+                case '+':
+                    position++;
+                    result.add(new BinaryJavaWildcardType(parseType(), true, finder));
+                    break;
+                case '-':
+                    position++;
+                    result.add(new BinaryJavaWildcardType(parseType(), false, finder));
+                    break;
+                default:
+                    result.add(parseType());
+            }
+        }
+        position++;
+        return result;
+    }
+
+    private char current() {
+        if (position >= signature.length()) throw error();
+        return signature.charAt(position);
+    }
+
+    @NotNull
+    private InvalidSignatureException error() {
+        return new InvalidSignatureException("Unexpected signature at " + position + ": " + signature);
+    }
+
+    /**
+     * Thrown for a malformed signature. The JVM ignores malformed Signature attributes, so callers fall back to the descriptor
+     */
+    public static class InvalidSignatureException extends RuntimeException {
+        public InvalidSignatureException(@NotNull String message) {
+            super(message);
+        }
+    }
+}
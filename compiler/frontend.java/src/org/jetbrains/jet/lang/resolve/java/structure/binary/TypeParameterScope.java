@@ -0,0 +1,37 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.structure.binary;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaTypeParameter;
+
+/**
+ * Type parameters visible in a signature: of a method, then of its class, then of the outer classes of the class
+ */
+/* package */ interface TypeParameterScope {
+    TypeParameterScope EMPTY = new TypeParameterScope() {
+        @Nullable
+        @Override
+        public JavaTypeParameter findTypeParameter(@NotNull String name) {
+            return null;
+        }
+    };
+
+    @Nullable
+    JavaTypeParameter findTypeParameter(@NotNull String name);
+}
@@ -51,6 +51,6 @@ public class JavaAnnotationImpl extends JavaElementImpl<PsiAnnotation> implement
     @Nullable
     public FqName getFqName() {
         String qualifiedName = getPsi().getQualifiedName();
-        return qualifiedName == null ? null : new FqName(qualifiedName);
+        return qualifiedName == null ? null : new FqName(qualifiedName).intern();
     }
 }
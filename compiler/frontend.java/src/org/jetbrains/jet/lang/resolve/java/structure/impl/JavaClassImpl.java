@@ -51,7 +51,7 @@ public class JavaClassImpl extends JavaClassifierImpl<PsiClass> implements JavaC
     @Nullable
     public FqName getFqName() {
         String qualifiedName = getPsi().getQualifiedName();
-        return qualifiedName == null ? null : new FqName(qualifiedName);
+        return qualifiedName == null ? null : new FqName(qualifiedName).intern();
     }
 
     @NotNull
@@ -20,11 +20,16 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaArrayType;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaElementFactory;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaType;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaArrayType;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.BinaryJavaType;
 
 public class JavaElementFactoryImpl extends JavaElementFactory {
     @NotNull
     @Override
     public JavaArrayType createArrayType(@NotNull JavaType elementType) {
+        if (elementType instanceof BinaryJavaType) {
+            return new BinaryJavaArrayType((BinaryJavaType) elementType);
+        }
         return new JavaArrayTypeImpl(((JavaTypeImpl) elementType).getPsi().createArrayType());
     }
 }
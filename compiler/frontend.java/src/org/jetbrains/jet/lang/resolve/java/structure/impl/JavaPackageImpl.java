@@ -17,36 +17,60 @@
 package org.jetbrains.jet.lang.resolve.java.structure.impl;
 
 import com.intellij.psi.PsiPackage;
+import com.intellij.psi.search.GlobalSearchScope;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaPackage;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import static org.jetbrains.jet.lang.resolve.java.structure.impl.JavaElementCollectionFromPsiArrayUtil.classes;
 import static org.jetbrains.jet.lang.resolve.java.structure.impl.JavaElementCollectionFromPsiArrayUtil.packages;
 
 public class JavaPackageImpl extends JavaElementImpl<PsiPackage> implements JavaPackage {
+    @Nullable
+    private final GlobalSearchScope classScope;
+
     public JavaPackageImpl(@NotNull PsiPackage psiPackage) {
+        this(psiPackage, null);
+    }
+
+    /**
+     * @param classScope the scope of classes of this package and its subpackages, or null for all classes
+     */
+    public JavaPackageImpl(@NotNull PsiPackage psiPackage, @Nullable GlobalSearchScope classScope) {
         super(psiPackage);
+        this.classScope = classScope;
     }
 
     @Override
     @NotNull
     public Collection<JavaClass> getClasses() {
-        return classes(getPsi().getClasses());
+        return classes(classScope == null ? getPsi().getClasses() : getPsi().getClasses(classScope));
     }
 
     @Override
     @NotNull
     public Collection<JavaPackage> getSubPackages() {
-        return packages(getPsi().getSubPackages());
+        if (classScope == null) {
+            return packages(getPsi().getSubPackages());
+        }
+
+        PsiPackage[] subPackages = getPsi().getSubPackages();
+        List<JavaPackage> result = new ArrayList<JavaPackage>(subPackages.length);
+        for (PsiPackage subPackage : subPackages) {
+            result.add(new JavaPackageImpl(subPackage, classScope));
+        }
+        return result;
     }
 
     @Override
     @NotNull
     public FqName getFqName() {
-        return new FqName(getPsi().getQualifiedName());
+        return new FqName(getPsi().getQualifiedName()).intern();
     }
 }
@@ -25,4 +25,10 @@ public interface VirtualFileFinder {
     // TODO: support scope
     @Nullable
     VirtualFile find(@NotNull FqName className);
+
+    /**
+     * @return the class in the file which {@link #find} returns; implementations may reuse classes which have already been read
+     */
+    @Nullable
+    KotlinJvmBinaryClass findKotlinClass(@NotNull FqName className);
 }
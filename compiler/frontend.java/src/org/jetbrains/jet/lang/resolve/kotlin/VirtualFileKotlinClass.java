@@ -28,13 +28,24 @@ import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.utils.ExceptionUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.jetbrains.asm4.ClassReader.*;
 import static org.jetbrains.asm4.Opcodes.ASM4;
 
+/**
+ * The class file is read once, on the first request: its name, annotations and annotations of its members are recorded
+ * and then replayed to every visitor. The class name and annotations (the header) are kept as long as this object,
+ * annotations of members only until they are replayed: their only user caches them, so a class kept by a finder
+ * doesn't retain them.
+ */
 public class VirtualFileKotlinClass implements KotlinJvmBinaryClass {
+    private static final RecordedAnnotation[] NO_ANNOTATIONS = new RecordedAnnotation[0];
+    private static final RecordedArgument[] NO_ARGUMENTS = new RecordedArgument[0];
+
     private final VirtualFile file;
-    private JvmClassName className;
+    private volatile ClassData data;
 
     public VirtualFileKotlinClass(@NotNull VirtualFile file) {
         this.file = file;
@@ -45,122 +56,175 @@ public class VirtualFileKotlinClass implements KotlinJvmBinaryClass {
         return file;
     }
 
+    @NotNull
+    private ClassData getData() {
+        ClassData result = data;
+        if (result == null) {
+            result = readClassData(readFile());
+            data = result;
+        }
+        return result;
+    }
+
+    @NotNull
+    private byte[] readFile() {
+        try {
+            return file.contentsToByteArray();
+        }
+        catch (IOException e) {
+            throw ExceptionUtils.rethrow(e);
+        }
+    }
+
     @NotNull
     @Override
     public JvmClassName getClassName() {
-        if (className == null) {
-            try {
-                new ClassReader(file.contentsToByteArray()).accept(new ClassVisitor(ASM4) {
-                    @Override
-                    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-                        className = JvmClassName.byInternalName(name);
-                    }
-                }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
-            }
-            catch (IOException e) {
-                throw ExceptionUtils.rethrow(e);
-            }
-        }
+        return getData().className;
+    }
 
-        return className;
+    @Override
+    public void loadClassAnnotations(@NotNull AnnotationVisitor annotationVisitor) {
+        replayAnnotations(getData().classAnnotations, annotationVisitor);
     }
 
     @Override
-    public void loadClassAnnotations(@NotNull final AnnotationVisitor annotationVisitor) {
-        try {
-            new ClassReader(file.contentsToByteArray()).accept(new ClassVisitor(ASM4) {
-                @Override
-                public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                    return convertAnnotationVisitor(annotationVisitor, desc);
-                }
+    public void loadMemberAnnotations(@NotNull MemberVisitor memberVisitor) {
+        ClassData classData = getData();
+        MemberData memberData = classData.members;
+        classData.members = null;
+        if (memberData == null) {
+            // Already replayed once: the file is read again
+            memberData = readClassData(readFile()).members;
+            assert memberData != null;
+        }
 
-                @Override
-                public void visitEnd() {
-                    annotationVisitor.visitEnd();
-                }
-            }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+        for (int i = 0; i < memberData.names.length; i++) {
+            Name name = Name.guess(memberData.names[i]);
+            String desc = memberData.descs[i];
+            AnnotationVisitor v = i < memberData.fieldCount ? memberVisitor.visitField(name, desc) : memberVisitor.visitMethod(name, desc);
+            if (v != null) {
+                replayAnnotations(memberData.annotations[i], v);
+            }
         }
-        catch (IOException e) {
-            throw ExceptionUtils.rethrow(e);
+    }
+
+    private static void replayAnnotations(@NotNull RecordedAnnotation[] annotations, @NotNull AnnotationVisitor visitor) {
+        for (RecordedAnnotation annotation : annotations) {
+            AnnotationArgumentVisitor v = visitor.visitAnnotation(classNameFromAsmDesc(annotation.desc));
+            if (v != null) {
+                replayArguments(annotation.arguments, v);
+            }
         }
+        visitor.visitEnd();
     }
 
-    @Nullable
-    private static org.jetbrains.asm4.AnnotationVisitor convertAnnotationVisitor(@NotNull AnnotationVisitor visitor, @NotNull String desc) {
-        AnnotationArgumentVisitor v = visitor.visitAnnotation(classNameFromAsmDesc(desc));
-        return v == null ? null : convertAnnotationVisitor(v);
+    private static void replayArguments(@NotNull RecordedArgument[] arguments, @NotNull AnnotationArgumentVisitor v) {
+        for (RecordedArgument argument : arguments) {
+            String name = argument.name;
+            if (argument.elements != null) {
+                AnnotationArgumentVisitor av = v.visitArray(Name.guess(name));
+                if (av != null) {
+                    replayArguments(argument.elements, av);
+                }
+            }
+            else if (argument.enumEntry != null) {
+                v.visitEnum(Name.identifier(name), classNameFromAsmDesc(argument.enumDesc), Name.identifier(argument.enumEntry));
+            }
+            else {
+                v.visit(name == null ? null : Name.identifier(name), argument.value);
+            }
+        }
+        v.visitEnd();
     }
 
     @NotNull
-    private static org.jetbrains.asm4.AnnotationVisitor convertAnnotationVisitor(@NotNull final AnnotationArgumentVisitor v) {
-        return new org.jetbrains.asm4.AnnotationVisitor(ASM4) {
+    private static ClassData readClassData(@NotNull byte[] bytes) {
+        final ClassData classData = new ClassData();
+        final MemberData memberData = new MemberData();
+        final List<RecordedAnnotation> classAnnotations = new ArrayList<RecordedAnnotation>(2);
+        // ClassReader visits all fields before methods
+        final List<String> memberNames = new ArrayList<String>();
+        final List<String> memberDescs = new ArrayList<String>();
+        final List<RecordedAnnotation[]> memberAnnotations = new ArrayList<RecordedAnnotation[]>();
+
+        new ClassReader(bytes).accept(new ClassVisitor(ASM4) {
             @Override
-            public void visit(String name, Object value) {
-                v.visit(name == null ? null : Name.identifier(name), value);
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                classData.className = JvmClassName.byInternalName(name);
             }
 
             @Override
-            public org.jetbrains.asm4.AnnotationVisitor visitArray(String name) {
-                AnnotationArgumentVisitor av = v.visitArray(Name.guess(name));
-                return av == null ? null : convertAnnotationVisitor(av);
+            public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                return recordAnnotation(desc, classAnnotations);
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+                memberData.fieldCount++;
+                final List<RecordedAnnotation> annotations = addMember(name, desc);
+
+                return new FieldVisitor(ASM4) {
+                    @Override
+                    public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                        return recordAnnotation(desc, annotations);
+                    }
+
+                    @Override
+                    public void visitEnd() {
+                        memberAnnotations.add(toAnnotationArray(annotations));
+                    }
+                };
             }
 
             @Override
-            public void visitEnum(String name, String desc, String value) {
-                v.visitEnum(Name.identifier(name), classNameFromAsmDesc(desc), Name.identifier(value));
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                final List<RecordedAnnotation> annotations = addMember(name, desc);
+
+                return new MethodVisitor(ASM4) {
+                    @Override
+                    public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                        return recordAnnotation(desc, annotations);
+                    }
+
+                    @Override
+                    public void visitEnd() {
+                        memberAnnotations.add(toAnnotationArray(annotations));
+                    }
+                };
             }
 
+            @NotNull
+            private List<RecordedAnnotation> addMember(@NotNull String name, @NotNull String desc) {
+                memberNames.add(name);
+                memberDescs.add(desc);
+                return new ArrayList<RecordedAnnotation>(0);
+            }
+        }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+
+        classData.classAnnotations = toAnnotationArray(classAnnotations);
+        memberData.names = memberNames.toArray(new String[memberNames.size()]);
+        memberData.descs = memberDescs.toArray(new String[memberDescs.size()]);
+        memberData.annotations = memberAnnotations.toArray(new RecordedAnnotation[memberAnnotations.size()][]);
+        classData.members = memberData;
+        return classData;
+    }
+
+    @NotNull
+    private static org.jetbrains.asm4.AnnotationVisitor recordAnnotation(
+            @NotNull final String desc,
+            @NotNull final List<RecordedAnnotation> result
+    ) {
+        return new RecordingArgumentVisitor() {
             @Override
-            public void visitEnd() {
-                v.visitEnd();
+            protected void done(@NotNull RecordedArgument[] arguments) {
+                result.add(new RecordedAnnotation(desc, arguments));
             }
         };
     }
 
-    @Override
-    public void loadMemberAnnotations(@NotNull final MemberVisitor memberVisitor) {
-        try {
-            new ClassReader(file.contentsToByteArray()).accept(new ClassVisitor(ASM4) {
-                @Override
-                public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
-                    final AnnotationVisitor v = memberVisitor.visitField(Name.guess(name), desc);
-                    if (v == null) return null;
-
-                    return new FieldVisitor(ASM4) {
-                        @Override
-                        public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                            return convertAnnotationVisitor(v, desc);
-                        }
-
-                        @Override
-                        public void visitEnd() {
-                            v.visitEnd();
-                        }
-                    };
-                }
-
-                @Override
-                public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-                    final AnnotationVisitor v = memberVisitor.visitMethod(Name.guess(name), desc);
-                    if (v == null) return null;
-
-                    return new MethodVisitor(ASM4) {
-                        @Override
-                        public org.jetbrains.asm4.AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                            return convertAnnotationVisitor(v, desc);
-                        }
-
-                        @Override
-                        public void visitEnd() {
-                            v.visitEnd();
-                        }
-                    };
-                }
-            }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
-        }
-        catch (IOException e) {
-            throw ExceptionUtils.rethrow(e);
-        }
+    @NotNull
+    private static RecordedAnnotation[] toAnnotationArray(@NotNull List<RecordedAnnotation> annotations) {
+        return annotations.isEmpty() ? NO_ANNOTATIONS : annotations.toArray(new RecordedAnnotation[annotations.size()]);
     }
 
     @NotNull
@@ -183,4 +247,89 @@ public class VirtualFileKotlinClass implements KotlinJvmBinaryClass {
     public String toString() {
         return getClass().getSimpleName() + ": " + file.toString();
     }
+
+    private static class ClassData {
+        private JvmClassName className;
+        private RecordedAnnotation[] classAnnotations;
+        // null once replayed
+        @Nullable
+        private volatile MemberData members;
+    }
+
+    private static class MemberData {
+        // Fields go first, then methods, in the order of the class file
+        private int fieldCount;
+        private String[] names;
+        private String[] descs;
+        private RecordedAnnotation[][] annotations;
+    }
+
+    private static class RecordedAnnotation {
+        private final String desc;
+        private final RecordedArgument[] arguments;
+
+        private RecordedAnnotation(@NotNull String desc, @NotNull RecordedArgument[] arguments) {
+            this.desc = desc;
+            this.arguments = arguments;
+        }
+    }
+
+    // A plain value, an enum entry (enumDesc and enumEntry are not null) or an array (elements are not null)
+    private static class RecordedArgument {
+        private final String name;
+        private final Object value;
+        private final String enumDesc;
+        private final String enumEntry;
+        private final RecordedArgument[] elements;
+
+        private RecordedArgument(
+                @Nullable String name,
+                @Nullable Object value,
+                @Nullable String enumDesc,
+                @Nullable String enumEntry,
+                @Nullable RecordedArgument[] elements
+        ) {
+            this.name = name;
+            this.value = value;
+            this.enumDesc = enumDesc;
+            this.enumEntry = enumEntry;
+            this.elements = elements;
+        }
+    }
+
+    private abstract static class RecordingArgumentVisitor extends org.jetbrains.asm4.AnnotationVisitor {
+        private final List<RecordedArgument> arguments = new ArrayList<RecordedArgument>(1);
+
+        public RecordingArgumentVisitor() {
+            super(ASM4);
+        }
+
+        protected abstract void done(@NotNull RecordedArgument[] arguments);
+
+        @Override
+        public void visit(String name, Object value) {
+            arguments.add(new RecordedArgument(name, value, null, null, null));
+        }
+
+        @Override
+        public void visitEnum(String name, String desc, String value) {
+            arguments.add(new RecordedArgument(name, null, desc, value, null));
+        }
+
+        @Override
+        public org.jetbrains.asm4.AnnotationVisitor visitArray(final String name) {
+            final List<RecordedArgument> outerArguments = arguments;
+            return new RecordingArgumentVisitor() {
+                @Override
+                protected void done(@NotNull RecordedArgument[] elements) {
+                    outerArguments.add(new RecordedArgument(name, null, null, null, elements));
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+            done(arguments.isEmpty() ? NO_ARGUMENTS : arguments.toArray(new RecordedArgument[arguments.size()]));
+        }
+    }
 }
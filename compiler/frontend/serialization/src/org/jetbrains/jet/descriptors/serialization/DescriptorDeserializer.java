@@ -19,6 +19,7 @@ package org.jetbrains.jet.descriptors.serialization;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.descriptors.serialization.descriptors.AnnotationDeserializer;
+import org.jetbrains.jet.descriptors.serialization.descriptors.DeserializedCallableFactory;
 import org.jetbrains.jet.descriptors.serialization.descriptors.DeserializedTypeParameterDescriptor;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
@@ -53,7 +54,7 @@ public class DescriptorDeserializer {
         return new DescriptorDeserializer(storageManager,
                 new TypeDeserializer(storageManager, null, nameResolver, descriptorFinder,
                                      "Deserializer for " + containingDeclaration.getName(), NONE),
-                containingDeclaration, nameResolver, annotationDeserializer);
+                containingDeclaration, nameResolver, annotationDeserializer, DeserializedCallableFactory.DEFAULT);
     }
 
     @NotNull
@@ -64,13 +65,28 @@ public class DescriptorDeserializer {
             @NotNull NameResolver nameResolver,
             @NotNull AnnotationDeserializer annotationDeserializer
     ) {
-        return new DescriptorDeserializer(storageManager, typeDeserializer, containingDeclaration, nameResolver, annotationDeserializer);
+        return create(storageManager, typeDeserializer, containingDeclaration, nameResolver, annotationDeserializer,
+                      DeserializedCallableFactory.DEFAULT);
+    }
+
+    @NotNull
+    public static DescriptorDeserializer create(
+            @NotNull StorageManager storageManager,
+            @NotNull TypeDeserializer typeDeserializer,
+            @NotNull DeclarationDescriptor containingDeclaration,
+            @NotNull NameResolver nameResolver,
+            @NotNull AnnotationDeserializer annotationDeserializer,
+            @NotNull DeserializedCallableFactory callableFactory
+    ) {
+        return new DescriptorDeserializer(storageManager, typeDeserializer, containingDeclaration, nameResolver, annotationDeserializer,
+                                          callableFactory);
     }
 
     private final DeclarationDescriptor containingDeclaration;
     private final NameResolver nameResolver;
     private final TypeDeserializer typeDeserializer;
     private final AnnotationDeserializer annotationDeserializer;
+    private final DeserializedCallableFactory callableFactory;
 
     private final StorageManager storageManager;
 
@@ -79,13 +95,15 @@ public class DescriptorDeserializer {
             @NotNull TypeDeserializer typeDeserializer,
             @NotNull DeclarationDescriptor containingDeclaration,
             @NotNull NameResolver nameResolver,
-            @NotNull AnnotationDeserializer annotationDeserializer
+            @NotNull AnnotationDeserializer annotationDeserializer,
+            @NotNull DeserializedCallableFactory callableFactory
     ) {
         this.storageManager = storageManager;
         this.typeDeserializer = typeDeserializer;
         this.containingDeclaration = containingDeclaration;
         this.nameResolver = nameResolver;
         this.annotationDeserializer = annotationDeserializer;
+        this.callableFactory = callableFactory;
     }
 
     @NotNull
@@ -116,7 +134,7 @@ public class DescriptorDeserializer {
                         return descriptors;
                     }
                 });
-        return create(storageManager, childTypeDeserializer, descriptor, nameResolver, annotationDeserializer);
+        return create(storageManager, childTypeDeserializer, descriptor, nameResolver, annotationDeserializer, callableFactory);
     }
 
     @NotNull
@@ -211,7 +229,7 @@ public class DescriptorDeserializer {
             return new PropertyDescriptorForObjectImpl(containingDeclaration, annotations, visibility, name, objectClass);
         }
 
-        return new PropertyDescriptorImpl(
+        return callableFactory.createProperty(
                 containingDeclaration,
                 annotations,
                 modality(Flags.MODALITY.get(flags)),
@@ -225,7 +243,7 @@ public class DescriptorDeserializer {
     @NotNull
     private CallableMemberDescriptor loadFunction(@NotNull Callable proto) {
         int flags = proto.getFlags();
-        SimpleFunctionDescriptorImpl function = new SimpleFunctionDescriptorImpl(
+        SimpleFunctionDescriptorImpl function = callableFactory.createFunction(
                 containingDeclaration,
                 getAnnotations(proto, proto.getFlags(), AnnotatedCallableKind.FUNCTION),
                 nameResolver.getName(proto.getName()),
@@ -28,12 +28,18 @@ public class NameResolver {
     private final ProtoBuf.SimpleNameTable simpleNames;
     private final ProtoBuf.QualifiedNameTable qualifiedNames;
 
+    // Every name is referenced many times in a class, so names are resolved once per index
+    private final Name[] names;
+    private final FqName[] fqNames;
+
     public NameResolver(
             @NotNull ProtoBuf.SimpleNameTable simpleNames,
             @NotNull ProtoBuf.QualifiedNameTable qualifiedNames
     ) {
         this.simpleNames = simpleNames;
         this.qualifiedNames = qualifiedNames;
+        this.names = new Name[simpleNames.getNameCount()];
+        this.fqNames = new FqName[qualifiedNames.getQualifiedNameCount()];
     }
 
     @NotNull
@@ -48,8 +54,12 @@ public class NameResolver {
 
     @NotNull
     public Name getName(int index) {
-        String name = simpleNames.getName(index);
-        return Name.guess(name);
+        Name name = names[index];
+        if (name == null) {
+            name = Name.guess(simpleNames.getName(index));
+            names[index] = name;
+        }
+        return name;
     }
 
     @NotNull
@@ -66,7 +76,7 @@ public class NameResolver {
             QualifiedName mustBeNull = renderFqName(sb, packageFqNameProto, QualifiedName.Kind.PACKAGE);
             assert mustBeNull == null : "Prefix of an fqName must be all of kind PACKAGE";
 
-            packageFqName = new FqName(sb.toString());
+            packageFqName = new FqName(sb.toString()).intern();
         }
         else {
             packageFqName = FqName.ROOT;
@@ -94,6 +104,16 @@ public class NameResolver {
 
     @NotNull
     public FqName getFqName(int index) {
+        FqName fqName = fqNames[index];
+        if (fqName == null) {
+            fqName = computeFqName(index).intern();
+            fqNames[index] = fqName;
+        }
+        return fqName;
+    }
+
+    @NotNull
+    private FqName computeFqName(int index) {
         QualifiedName qualifiedName = qualifiedNames.getQualifiedName(index);
         Name shortName = getName(qualifiedName.getShortName());
         if (!qualifiedName.hasParentQualifiedName()) {
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.descriptors.serialization.descriptors;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.descriptors.CallableMemberDescriptor;
+import org.jetbrains.jet.lang.descriptors.DeclarationDescriptor;
+import org.jetbrains.jet.lang.descriptors.Modality;
+import org.jetbrains.jet.lang.descriptors.Visibility;
+import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
+import org.jetbrains.jet.lang.descriptors.impl.PropertyDescriptorImpl;
+import org.jetbrains.jet.lang.descriptors.impl.SimpleFunctionDescriptorImpl;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.List;
+
+/**
+ * Creates descriptors of deserialized functions and properties, which are then initialized by the deserializer.
+ * Lets the descriptors of members record where they come from
+ */
+public interface DeserializedCallableFactory {
+    DeserializedCallableFactory DEFAULT = new DeserializedCallableFactory() {
+        @NotNull
+        @Override
+        public SimpleFunctionDescriptorImpl createFunction(
+                @NotNull DeclarationDescriptor containingDeclaration,
+                @NotNull List<AnnotationDescriptor> annotations,
+                @NotNull Name name,
+                @NotNull CallableMemberDescriptor.Kind kind
+        ) {
+            return new SimpleFunctionDescriptorImpl(containingDeclaration, annotations, name, kind);
+        }
+
+        @NotNull
+        @Override
+        public PropertyDescriptorImpl createProperty(
+                @NotNull DeclarationDescriptor containingDeclaration,
+                @NotNull List<AnnotationDescriptor> annotations,
+                @NotNull Modality modality,
+                @NotNull Visibility visibility,
+                boolean isVar,
+                @NotNull Name name,
+                @NotNull CallableMemberDescriptor.Kind kind
+        ) {
+            return new PropertyDescriptorImpl(containingDeclaration, annotations, modality, visibility, isVar, name, kind);
+        }
+    };
+
+    @NotNull
+    SimpleFunctionDescriptorImpl createFunction(
+            @NotNull DeclarationDescriptor containingDeclaration,
+            @NotNull List<AnnotationDescriptor> annotations,
+            @NotNull Name name,
+            @NotNull CallableMemberDescriptor.Kind kind
+    );
+
+    @NotNull
+    PropertyDescriptorImpl createProperty(
+            @NotNull DeclarationDescriptor containingDeclaration,
+            @NotNull List<AnnotationDescriptor> annotations,
+            @NotNull Modality modality,
+            @NotNull Visibility visibility,
+            boolean isVar,
+            @NotNull Name name,
+            @NotNull CallableMemberDescriptor.Kind kind
+    );
+}
@@ -79,6 +79,16 @@ public class DeserializedClassDescriptor extends AbstractClassDescriptor impleme
             @NotNull AnnotationDeserializer annotationResolver,
             @NotNull DescriptorFinder descriptorFinder,
             @NotNull ClassData classData
+    ) {
+        this(storageManager, annotationResolver, descriptorFinder, classData, DeserializedCallableFactory.DEFAULT);
+    }
+
+    public DeserializedClassDescriptor(
+            @NotNull StorageManager storageManager,
+            @NotNull AnnotationDeserializer annotationResolver,
+            @NotNull DescriptorFinder descriptorFinder,
+            @NotNull ClassData classData,
+            @NotNull DeserializedCallableFactory callableFactory
     ) {
         super(classData.getNameResolver().getClassId(classData.getClassProto().getFqName()).getRelativeClassName().shortName());
         NameResolver nameResolver = classData.getNameResolver();
@@ -90,7 +100,7 @@ public class DeserializedClassDescriptor extends AbstractClassDescriptor impleme
         TypeDeserializer notNullTypeDeserializer = new TypeDeserializer(storageManager, null, nameResolver,
                                                                         descriptorFinder, "Deserializer for class " + name, NONE);
         DescriptorDeserializer outerDeserializer = DescriptorDeserializer.create(storageManager, notNullTypeDeserializer,
-                                                                                 this, nameResolver, annotationResolver);
+                                                                                 this, nameResolver, annotationResolver, callableFactory);
         List<TypeParameterDescriptor> typeParameters = new ArrayList<TypeParameterDescriptor>(classProto.getTypeParameterCount());
         this.deserializer = outerDeserializer.createChildDeserializer(this, classProto.getTypeParameterList(), typeParameters);
         this.typeDeserializer = deserializer.getTypeDeserializer();
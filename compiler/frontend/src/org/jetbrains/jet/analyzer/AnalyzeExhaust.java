@@ -20,6 +20,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.ModuleDescriptor;
 import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.BindingTraceStatistics;
 import org.jetbrains.jet.lang.resolve.BodiesResolveContext;
 import org.jetbrains.jet.lang.types.ErrorUtils;
 
@@ -27,35 +28,46 @@ public class AnalyzeExhaust {
     public static final AnalyzeExhaust EMPTY = success(BindingContext.EMPTY, ErrorUtils.getErrorModule());
 
     public static AnalyzeExhaust success(@NotNull BindingContext bindingContext, @NotNull ModuleDescriptor module) {
-        return new AnalyzeExhaust(bindingContext, module, null, null);
+        return new AnalyzeExhaust(bindingContext, module, null, null, null);
     }
 
     public static AnalyzeExhaust success(@NotNull BindingContext bindingContext,
             @Nullable BodiesResolveContext bodiesResolveContext,
             @NotNull ModuleDescriptor module
     ) {
-        return new AnalyzeExhaust(bindingContext, module, bodiesResolveContext, null);
+        return success(bindingContext, bodiesResolveContext, module, null);
+    }
+
+    public static AnalyzeExhaust success(@NotNull BindingContext bindingContext,
+            @Nullable BodiesResolveContext bodiesResolveContext,
+            @NotNull ModuleDescriptor module,
+            @Nullable BindingTraceStatistics.Report bindingStatistics
+    ) {
+        return new AnalyzeExhaust(bindingContext, module, bodiesResolveContext, null, bindingStatistics);
     }
 
     public static AnalyzeExhaust error(@NotNull BindingContext bindingContext, @NotNull Throwable error) {
-        return new AnalyzeExhaust(bindingContext, ErrorUtils.getErrorModule(), null, error);
+        return new AnalyzeExhaust(bindingContext, ErrorUtils.getErrorModule(), null, error, null);
     }
 
     private final BindingContext bindingContext;
     private final Throwable error;
     private final BodiesResolveContext bodiesResolveContext;
     private final ModuleDescriptor moduleDescriptor;
+    private final BindingTraceStatistics.Report bindingStatistics;
 
     private AnalyzeExhaust(
             @NotNull BindingContext bindingContext,
             @NotNull ModuleDescriptor moduleDescriptor,
             @Nullable BodiesResolveContext bodiesResolveContext,
-            @Nullable Throwable error
+            @Nullable Throwable error,
+            @Nullable BindingTraceStatistics.Report bindingStatistics
     ) {
         this.bindingContext = bindingContext;
         this.error = error;
         this.bodiesResolveContext = bodiesResolveContext;
         this.moduleDescriptor = moduleDescriptor;
+        this.bindingStatistics = bindingStatistics;
     }
 
     @Nullable
@@ -68,6 +80,14 @@ public class AnalyzeExhaust {
         return bindingContext;
     }
 
+    /**
+     * Only available when {@link BindingTraceStatistics} were enabled before the analysis
+     */
+    @Nullable
+    public BindingTraceStatistics.Report getBindingStatistics() {
+        return bindingStatistics;
+    }
+
     @NotNull
     public Throwable getError() {
         if (error == null) throw new IllegalStateException("Should be called only for error analyze result");
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.cfg;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Immutable data flow facts about densely numbered variables: several bit sets ("planes") of the same meaning for every variable.
+ * States are merged by a union of every plane, so facts should be encoded so that a set bit is the weaker (more conservative) one.
+ */
+public final class BitVectorState {
+    private final BitSet[] planes;
+
+    private BitVectorState(@NotNull BitSet[] planes) {
+        this.planes = planes;
+    }
+
+    @NotNull
+    public static BitVectorState empty(int planeCount) {
+        BitSet[] planes = new BitSet[planeCount];
+        for (int i = 0; i < planeCount; i++) {
+            planes[i] = new BitSet();
+        }
+        return new BitVectorState(planes);
+    }
+
+    public int getPlaneCount() {
+        return planes.length;
+    }
+
+    public boolean get(int plane, int index) {
+        return planes[plane].get(index);
+    }
+
+    /**
+     * @return the indices of the variables which have a bit set in this plane
+     */
+    @NotNull
+    public BitSet getPlane(int plane) {
+        return (BitSet) planes[plane].clone();
+    }
+
+    /**
+     * @param values a value for every plane
+     * @return this state if nothing has changed
+     */
+    @NotNull
+    public BitVectorState set(int index, @NotNull boolean... values) {
+        assert values.length == planes.length : "Expected " + planes.length + " values, got " + values.length;
+
+        BitSet[] newPlanes = null;
+        for (int i = 0; i < planes.length; i++) {
+            if (planes[i].get(index) == values[i]) continue;
+            if (newPlanes == null) {
+                newPlanes = planes.clone();
+            }
+            newPlanes[i] = (BitSet) planes[i].clone();
+            newPlanes[i].set(index, values[i]);
+        }
+        return newPlanes == null ? this : new BitVectorState(newPlanes);
+    }
+
+    @NotNull
+    public static BitVectorState merge(@NotNull List<BitVectorState> states, int planeCount) {
+        if (states.isEmpty()) return empty(planeCount);
+
+        BitVectorState first = states.get(0);
+        BitSet[] newPlanes = null;
+        for (int i = 1; i < states.size(); i++) {
+            BitVectorState state = states.get(i);
+            if (state == first) continue;
+            if (newPlanes == null) {
+                newPlanes = new BitSet[planeCount];
+                for (int plane = 0; plane < planeCount; plane++) {
+                    newPlanes[plane] = (BitSet) first.planes[plane].clone();
+                }
+            }
+            for (int plane = 0; plane < planeCount; plane++) {
+                newPlanes[plane].or(state.planes[plane]);
+            }
+        }
+        return newPlanes == null ? first : new BitVectorState(newPlanes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BitVectorState)) return false;
+        return Arrays.equals(planes, ((BitVectorState) o).planes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(planes);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(planes);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.cfg;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy;
+import org.jetbrains.jet.lang.cfg.PseudocodeTraverser.TraversalOrder;
+import org.jetbrains.jet.lang.cfg.pseudocode.Instruction;
+import org.jetbrains.jet.lang.cfg.pseudocode.LocalDeclarationInstruction;
+import org.jetbrains.jet.lang.cfg.pseudocode.Pseudocode;
+
+import java.util.*;
+
+/**
+ * Instructions of a pseudocode numbered in the order {@link PseudocodeTraverser#collectData} visits them (with bodies of local
+ * declarations inlined if they are analysed), with previous and dependent instructions as indices.
+ *
+ * Start instructions are fixed: they have no previous instructions and are never recomputed. A local declaration instruction gets
+ * the data of the last instruction of its body.
+ */
+public class InstructionGraph {
+    private final Pseudocode pseudocode;
+    private final TraversalOrder traversalOrder;
+
+    private final List<Instruction> instructions;
+    private final Map<Instruction, Integer> indices;
+    private final boolean[] fixed;
+    private final int[][] previous;
+    private final int[][] dependents;
+    private final int[] copiedFrom;
+
+    @NotNull
+    public static InstructionGraph create(
+            @NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder, @NotNull LookInsideStrategy lookInside
+    ) {
+        List<Instruction> instructions = Lists.newArrayList();
+        List<Collection<Instruction>> previousInstructions = Lists.newArrayList();
+        Map<Instruction, Instruction> localDeclarationResults = Maps.newHashMap();
+        numberInstructions(pseudocode, traversalOrder, lookInside, Collections.<Instruction>emptyList(), false,
+                           instructions, previousInstructions, localDeclarationResults);
+        return new InstructionGraph(pseudocode, traversalOrder, instructions, previousInstructions, localDeclarationResults);
+    }
+
+    private InstructionGraph(
+            @NotNull Pseudocode pseudocode,
+            @NotNull TraversalOrder traversalOrder,
+            @NotNull List<Instruction> instructions,
+            @NotNull List<Collection<Instruction>> previousInstructions,
+            @NotNull Map<Instruction, Instruction> localDeclarationResults
+    ) {
+        this.pseudocode = pseudocode;
+        this.traversalOrder = traversalOrder;
+        this.instructions = Collections.unmodifiableList(instructions);
+
+        int count = instructions.size();
+        indices = Maps.newHashMapWithExpectedSize(count);
+        for (int i = 0; i < count; i++) {
+            indices.put(instructions.get(i), i);
+        }
+
+        fixed = new boolean[count];
+        previous = new int[count][];
+        copiedFrom = new int[count];
+        List<List<Integer>> dependentLists = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            dependentLists.add(Lists.<Integer>newArrayList());
+        }
+
+        for (int i = 0; i < count; i++) {
+            Instruction localDeclarationResult = localDeclarationResults.get(instructions.get(i));
+            copiedFrom[i] = localDeclarationResult != null ? indices.get(localDeclarationResult) : -1;
+            if (copiedFrom[i] >= 0) {
+                dependentLists.get(copiedFrom[i]).add(i);
+            }
+
+            Collection<Instruction> previousOfInstruction = previousInstructions.get(i);
+            fixed[i] = previousOfInstruction == null;
+            List<Integer> previousIndices = Lists.newArrayList();
+            if (previousOfInstruction != null) {
+                for (Instruction previousInstruction : previousOfInstruction) {
+                    Integer index = indices.get(previousInstruction);
+                    if (index == null) continue;
+                    previousIndices.add(index);
+                    dependentLists.get(index).add(i);
+                }
+            }
+            previous[i] = toArray(previousIndices);
+        }
+
+        dependents = new int[count][];
+        for (int i = 0; i < count; i++) {
+            dependents[i] = toArray(dependentLists.get(i));
+        }
+    }
+
+    @NotNull
+    private static int[] toArray(@NotNull List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+    private static void numberInstructions(
+            @NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder, @NotNull LookInsideStrategy lookInside,
+            @NotNull Collection<Instruction> previousSubGraphInstructions, boolean isLocal,
+            @NotNull List<Instruction> instructions,
+            @NotNull List<Collection<Instruction>> previousInstructions,
+            @NotNull Map<Instruction, Instruction> localDeclarationResults
+    ) {
+        Instruction startInstruction = PseudocodeTraverser.getStartInstruction(pseudocode, traversalOrder);
+        for (Instruction instruction : PseudocodeTraverser.getInstructions(pseudocode, traversalOrder)) {
+            Collection<Instruction> previousOfInstruction = PseudocodeTraverser.getPreviousInstruction(instruction, traversalOrder);
+            if (!isLocal && PseudocodeTraverser.isStartInstruction(instruction, traversalOrder)) {
+                instructions.add(instruction);
+                previousInstructions.add(null);
+                continue;
+            }
+
+            if (PseudocodeTraverser.shouldLookInside(instruction, lookInside)) {
+                Pseudocode subroutinePseudocode = ((LocalDeclarationInstruction) instruction).getBody();
+                numberInstructions(subroutinePseudocode, traversalOrder, lookInside, previousOfInstruction, true,
+                                   instructions, previousInstructions, localDeclarationResults);
+                localDeclarationResults.put(instruction, PseudocodeTraverser.getLastInstruction(subroutinePseudocode, traversalOrder));
+                instructions.add(instruction);
+                previousInstructions.add(Collections.<Instruction>emptyList());
+                continue;
+            }
+
+            if (instruction == startInstruction && !previousSubGraphInstructions.isEmpty()) {
+                Collection<Instruction> allPreviousInstructions = Lists.newArrayList(previousOfInstruction);
+                allPreviousInstructions.addAll(previousSubGraphInstructions);
+                previousOfInstruction = allPreviousInstructions;
+            }
+            instructions.add(instruction);
+            previousInstructions.add(previousOfInstruction);
+        }
+    }
+
+    @NotNull
+    public Instruction getStartInstruction() {
+        return PseudocodeTraverser.getStartInstruction(pseudocode, traversalOrder);
+    }
+
+    public int size() {
+        return instructions.size();
+    }
+
+    @NotNull
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    @NotNull
+    public Instruction getInstruction(int index) {
+        return instructions.get(index);
+    }
+
+    /**
+     * @return the index of the instruction, or -1 if it is not a part of this graph
+     */
+    public int indexOf(@NotNull Instruction instruction) {
+        Integer index = indices.get(instruction);
+        return index != null ? index : -1;
+    }
+
+    public boolean isFixed(int index) {
+        return fixed[index];
+    }
+
+    @NotNull
+    public int[] getPrevious(int index) {
+        return previous[index];
+    }
+
+    /**
+     * @return instructions whose data depends on the data of this one
+     */
+    @NotNull
+    public int[] getDependents(int index) {
+        return dependents[index];
+    }
+
+    /**
+     * @return the index of the instruction whose data this local declaration instruction gets, or -1
+     */
+    public int getCopiedFrom(int index) {
+        return copiedFrom[index];
+    }
+
+    @NotNull
+    public Pseudocode getPseudocode() {
+        return pseudocode;
+    }
+}
@@ -44,6 +44,8 @@ import org.jetbrains.jet.plugin.JetMainDetector;
 
 import java.util.*;
 
+import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.ANALYSE_LOCAL_DECLARATIONS;
+import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.SKIP_LOCAL_DECLARATIONS;
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.TraversalOrder.BACKWARD;
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.TraversalOrder.FORWARD;
 import static org.jetbrains.jet.lang.cfg.PseudocodeVariablesData.VariableUseState.*;
@@ -69,20 +71,20 @@ public class JetFlowInformationProvider {
     }
 
     private void collectReturnExpressions(@NotNull final Collection<JetElement> returnedExpressions) {
-        final Set<Instruction> instructions = Sets.newHashSet(pseudocode.getInstructions());
+        final InstructionGraph graph = pseudocodeVariablesData.getInstructionGraph(FORWARD, SKIP_LOCAL_DECLARATIONS);
         SubroutineExitInstruction exitInstruction = pseudocode.getExitInstruction();
         for (Instruction previousInstruction : exitInstruction.getPreviousInstructions()) {
             previousInstruction.accept(new InstructionVisitor() {
                 @Override
                 public void visitReturnValue(ReturnValueInstruction instruction) {
-                    if (instructions.contains(instruction)) { //exclude non-local return expressions
+                    if (graph.indexOf(instruction) >= 0) { //exclude non-local return expressions
                         returnedExpressions.add(instruction.getElement());
                     }
                 }
 
                 @Override
                 public void visitReturnNoValue(ReturnNoValueInstruction instruction) {
-                    if (instructions.contains(instruction)) {
+                    if (graph.indexOf(instruction) >= 0) {
                         returnedExpressions.add(instruction.getElement());
                     }
                 }
@@ -188,7 +190,8 @@ public class JetFlowInformationProvider {
 
         final Map<Instruction, DiagnosticFactory> reportedDiagnosticMap = Maps.newHashMap();
 
-        PseudocodeTraverser.traverse(pseudocode, FORWARD, initializers, new InstructionDataAnalyzeStrategy<Map<VariableDescriptor, PseudocodeVariablesData.VariableInitState>>() {
+        InstructionGraph graph = pseudocodeVariablesData.getInstructionGraph(FORWARD, ANALYSE_LOCAL_DECLARATIONS);
+        PseudocodeTraverser.traverse(graph, initializers, new InstructionDataAnalyzeStrategy<Map<VariableDescriptor, PseudocodeVariablesData.VariableInitState>>() {
             @Override
             public void execute(@NotNull Instruction instruction,
                     @Nullable Map<VariableDescriptor, VariableInitState> in,
@@ -446,8 +449,7 @@ public class JetFlowInformationProvider {
                 assert in != null && out != null;
                 VariableContext ctxt = new VariableUseContext(instruction, reportedDiagnosticMap, in, out);
                 Set<VariableDescriptor> declaredVariables = pseudocodeVariablesData.getDeclaredVariables(instruction.getOwner(), false);
-                VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false,
-                                                                      trace.getBindingContext());
+                VariableDescriptor variableDescriptor = pseudocodeVariablesData.extractVariableDescriptorIfAny(instruction, false);
                 if (variableDescriptor == null || !declaredVariables.contains(variableDescriptor) ||
                     !DescriptorUtils.isLocal(variableDescriptor.getContainingDeclaration(), variableDescriptor)) return;
                 PseudocodeVariablesData.VariableUseState variableUseState = in.get(variableDescriptor);
@@ -510,7 +512,8 @@ public class JetFlowInformationProvider {
                 }
             }
         };
-        PseudocodeTraverser.traverse(pseudocode, BACKWARD, variableStatusData, variableStatusAnalyzeStrategy);
+        PseudocodeTraverser.traverse(pseudocodeVariablesData.getInstructionGraph(BACKWARD, ANALYSE_LOCAL_DECLARATIONS), variableStatusData,
+                                     variableStatusAnalyzeStrategy);
     }
 
 ////////////////////////////////////////////////////////////////////////////////
@@ -520,7 +523,7 @@ public class JetFlowInformationProvider {
         assert pseudocode != null;
         final Map<Instruction, DiagnosticFactory> reportedDiagnosticMap = Maps.newHashMap();
         PseudocodeTraverser.traverse(
-                pseudocode, FORWARD, new InstructionAnalyzeStrategy() {
+                pseudocodeVariablesData.getInstructionGraph(FORWARD, ANALYSE_LOCAL_DECLARATIONS), new InstructionAnalyzeStrategy() {
             @Override
             public void execute(@NotNull Instruction instruction) {
                 if (!(instruction instanceof ReadValueInstruction)) return;
@@ -612,7 +615,7 @@ public class JetFlowInformationProvider {
         ) {
             this.instruction = instruction;
             reportedDiagnosticMap = map;
-            variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true, trace.getBindingContext());
+            variableDescriptor = pseudocodeVariablesData.extractVariableDescriptorIfAny(instruction, true);
         }
     }
 
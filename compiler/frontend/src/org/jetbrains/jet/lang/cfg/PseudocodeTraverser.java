@@ -23,10 +23,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.cfg.pseudocode.*;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.TraversalOrder.FORWARD;
 
@@ -38,26 +35,26 @@ public class PseudocodeTraverser {
     }
     
     @NotNull
-    private static Instruction getStartInstruction(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder) {
+    /* package */ static Instruction getStartInstruction(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder) {
         return traversalOrder == FORWARD ? pseudocode.getEnterInstruction() : pseudocode.getSinkInstruction();
     }
 
     @NotNull
-    private static Instruction getLastInstruction(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder) {
+    /* package */ static Instruction getLastInstruction(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder) {
         return traversalOrder == FORWARD ? pseudocode.getSinkInstruction() : pseudocode.getEnterInstruction();
     }
 
     @NotNull
-    private static List<Instruction> getInstructions(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder) {
+    /* package */ static List<Instruction> getInstructions(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder traversalOrder) {
         return traversalOrder == FORWARD ? pseudocode.getInstructions() : pseudocode.getReversedInstructions();
     }
 
     @NotNull
-    private static Collection<Instruction> getPreviousInstruction(@NotNull Instruction instruction, @NotNull TraversalOrder traversalOrder) {
+    /* package */ static Collection<Instruction> getPreviousInstruction(@NotNull Instruction instruction, @NotNull TraversalOrder traversalOrder) {
         return traversalOrder == FORWARD ? instruction.getPreviousInstructions() : instruction.getNextInstructions();
     }
 
-    private static boolean isStartInstruction(@NotNull Instruction instruction, @NotNull TraversalOrder traversalOrder) {
+    /* package */ static boolean isStartInstruction(@NotNull Instruction instruction, @NotNull TraversalOrder traversalOrder) {
         return traversalOrder == FORWARD ? instruction instanceof SubroutineEnterInstruction
                                          : instruction instanceof SubroutineSinkInstruction;
     }
@@ -67,7 +64,7 @@ public class PseudocodeTraverser {
         SKIP_LOCAL_DECLARATIONS
     }
 
-    private static boolean shouldLookInside(Instruction instruction, LookInsideStrategy lookInside) {
+    /* package */ static boolean shouldLookInside(Instruction instruction, LookInsideStrategy lookInside) {
         return lookInside == LookInsideStrategy.ANALYSE_LOCAL_DECLARATIONS && instruction instanceof LocalDeclarationInstruction;
     }
 
@@ -162,6 +159,76 @@ public class PseudocodeTraverser {
         }
     }
 
+    /**
+     * Same as {@link #collectData}, but for data encoded as bit vectors. Only the instructions whose incoming data has changed
+     * are recomputed, in the same order as {@link #collectData} visits them.
+     */
+    @NotNull
+    public static Map<Instruction, Edges<BitVectorState>> collectBitVectorData(
+            @NotNull InstructionGraph graph,
+            @NotNull BitVectorState initialDataValue, @NotNull BitVectorState initialDataValueForEnterInstruction,
+            @NotNull InstructionBitVectorTransferStrategy transferStrategy) {
+
+        int count = graph.size();
+        int planeCount = initialDataValue.getPlaneCount();
+        BitVectorState[] in = new BitVectorState[count];
+        BitVectorState[] out = new BitVectorState[count];
+        Arrays.fill(in, initialDataValue);
+        Arrays.fill(out, initialDataValue);
+
+        Instruction startInstruction = graph.getStartInstruction();
+        BitSet dirty = new BitSet(count);
+        for (int i = 0; i < count; i++) {
+            if (!graph.isFixed(i)) {
+                dirty.set(i);
+            }
+            else if (graph.getInstruction(i) == startInstruction) {
+                in[i] = initialDataValueForEnterInstruction;
+                out[i] = initialDataValueForEnterInstruction;
+            }
+        }
+
+        List<BitVectorState> incomingEdgesData = Lists.newArrayList();
+        int i = dirty.nextSetBit(0);
+        while (i >= 0) {
+            dirty.clear(i);
+
+            BitVectorState newIn;
+            BitVectorState newOut;
+            int copiedFrom = graph.getCopiedFrom(i);
+            if (copiedFrom >= 0) {
+                newIn = in[copiedFrom];
+                newOut = out[copiedFrom];
+            }
+            else {
+                incomingEdgesData.clear();
+                for (int previousIndex : graph.getPrevious(i)) {
+                    incomingEdgesData.add(out[previousIndex]);
+                }
+                newIn = BitVectorState.merge(incomingEdgesData, planeCount);
+                newOut = transferStrategy.execute(graph.getInstruction(i), newIn);
+            }
+
+            if (!newIn.equals(in[i]) || !newOut.equals(out[i])) {
+                in[i] = newIn;
+                out[i] = newOut;
+                for (int dependent : graph.getDependents(i)) {
+                    dirty.set(dependent);
+                }
+            }
+
+            // Continue the current pass, start the next one when it's over
+            int next = dirty.nextSetBit(i + 1);
+            i = next >= 0 ? next : dirty.nextSetBit(0);
+        }
+
+        Map<Instruction, Edges<BitVectorState>> edgesMap = Maps.newLinkedHashMap();
+        for (int index = 0; index < count; index++) {
+            edgesMap.put(graph.getInstruction(index), Edges.create(in[index], out[index]));
+        }
+        return edgesMap;
+    }
+
     public static void traverse(
             @NotNull Pseudocode pseudocode, TraversalOrder traversalOrder,
             InstructionAnalyzeStrategy instructionAnalyzeStrategy) {
@@ -191,10 +258,42 @@ public class PseudocodeTraverser {
         }
     }
 
+    /**
+     * Same as {@link #traverse(Pseudocode, TraversalOrder, InstructionAnalyzeStrategy)} for the pseudocode, traversal order
+     * of the graph, if it was built with {@link LookInsideStrategy#ANALYSE_LOCAL_DECLARATIONS}
+     */
+    public static void traverse(@NotNull InstructionGraph graph, @NotNull InstructionAnalyzeStrategy instructionAnalyzeStrategy) {
+        for (Instruction instruction : graph.getInstructions()) {
+            instructionAnalyzeStrategy.execute(instruction);
+        }
+    }
+
+    /**
+     * Same as {@link #traverse(Pseudocode, TraversalOrder, Map, InstructionDataAnalyzeStrategy)} for the pseudocode, traversal order
+     * of the graph, if it was built with {@link LookInsideStrategy#ANALYSE_LOCAL_DECLARATIONS}
+     */
+    public static <D> void traverse(
+            @NotNull InstructionGraph graph,
+            @NotNull Map<Instruction, Edges<D>> edgesMap,
+            @NotNull InstructionDataAnalyzeStrategy<D> instructionDataAnalyzeStrategy) {
+        for (Instruction instruction : graph.getInstructions()) {
+            Edges<D> edges = edgesMap.get(instruction);
+            instructionDataAnalyzeStrategy.execute(instruction, edges != null ? edges.in : null, edges != null ? edges.out : null);
+        }
+    }
+
     public interface InstructionDataMergeStrategy<D> {
         Edges<D> execute(@NotNull Instruction instruction, @NotNull Collection<D> incomingEdgesData);
     }
 
+    public interface InstructionBitVectorTransferStrategy {
+        /**
+         * @return the data after the instruction, which is enterData itself if the instruction doesn't change it
+         */
+        @NotNull
+        BitVectorState execute(@NotNull Instruction instruction, @NotNull BitVectorState enterData);
+    }
+
     public interface InstructionDataAnalyzeStrategy<D> {
         void execute(@NotNull Instruction instruction, @Nullable D enterData, @Nullable D exitData);
     }
@@ -16,6 +16,7 @@
 
 package org.jetbrains.jet.lang.cfg;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.jetbrains.annotations.NotNull;
@@ -28,10 +29,7 @@ import org.jetbrains.jet.lang.psi.JetDeclaration;
 import org.jetbrains.jet.lang.psi.JetProperty;
 import org.jetbrains.jet.lang.resolve.BindingContext;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.ANALYSE_LOCAL_DECLARATIONS;
 import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.SKIP_LOCAL_DECLARATIONS;
@@ -46,6 +44,26 @@ public class PseudocodeVariablesData {
     private final Map<Pseudocode, Set<VariableDescriptor>> usedVariablesForDeclaration = Maps.newHashMap();
 
     private Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> variableInitializers;
+    private Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> variableUseStatusData;
+
+    private final Map<Instruction, VariableDescriptor> referencedVariables = Maps.newHashMap();
+    private final Map<Instruction, VariableDescriptor> accessedVariables = Maps.newHashMap();
+    private final Map<List<Object>, InstructionGraph> instructionGraphs = Maps.newHashMap();
+
+    // Variables are numbered densely, data flow facts about them are kept in bit vectors
+    private final List<VariableDescriptor> variables = Lists.newArrayList();
+    private final Map<VariableDescriptor, Integer> variableIndices = Maps.newHashMap();
+
+    // The variable is known at the instruction, in both analyses
+    private static final int PRESENT = 0;
+
+    // Initialization analysis: a variable is known to be initialized or declared if the bit is not set on every incoming edge
+    private static final int NOT_INITIALIZED = 1;
+    private static final int NOT_DECLARED = 2;
+    private static final int INIT_PLANE_COUNT = 3;
+
+    // Use analysis: a plane per level of VariableUseState.importance
+    private static final int USE_PLANE_COUNT = 4;
 
     public PseudocodeVariablesData(@NotNull Pseudocode pseudocode, @NotNull BindingContext bindingContext) {
         this.pseudocode = pseudocode;
@@ -57,16 +75,53 @@ public class PseudocodeVariablesData {
         return pseudocode;
     }
 
+    /**
+     * Same as {@link PseudocodeUtil#extractVariableDescriptorIfAny}, computed once per instruction
+     */
+    @Nullable
+    public VariableDescriptor extractVariableDescriptorIfAny(@NotNull Instruction instruction, boolean onlyReference) {
+        Map<Instruction, VariableDescriptor> cache = onlyReference ? referencedVariables : accessedVariables;
+        VariableDescriptor variableDescriptor = cache.get(instruction);
+        if (variableDescriptor == null && !cache.containsKey(instruction)) {
+            variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, onlyReference, bindingContext);
+            cache.put(instruction, variableDescriptor);
+        }
+        return variableDescriptor;
+    }
+
+    /**
+     * @return the graph of the pseudocode of this data, built once and shared by all the analyses and checks of the declaration
+     */
+    @NotNull
+    public InstructionGraph getInstructionGraph(@NotNull TraversalOrder traversalOrder, @NotNull LookInsideStrategy lookInside) {
+        return getInstructionGraph(pseudocode, traversalOrder, lookInside);
+    }
+
+    @NotNull
+    private InstructionGraph getInstructionGraph(
+            @NotNull Pseudocode pseudocode,
+            @NotNull TraversalOrder traversalOrder,
+            @NotNull LookInsideStrategy lookInside
+    ) {
+        List<Object> key = Arrays.<Object>asList(pseudocode, traversalOrder, lookInside);
+        InstructionGraph graph = instructionGraphs.get(key);
+        if (graph == null) {
+            graph = InstructionGraph.create(pseudocode, traversalOrder, lookInside);
+            instructionGraphs.put(key, graph);
+        }
+        return graph;
+    }
+
     @NotNull
     public Set<VariableDescriptor> getUsedVariables(@NotNull Pseudocode pseudocode) {
         Set<VariableDescriptor> usedVariables = usedVariablesForDeclaration.get(pseudocode);
         if (usedVariables == null) {
             final Set<VariableDescriptor> result = Sets.newHashSet();
-            PseudocodeTraverser.traverse(pseudocode, FORWARD, new InstructionAnalyzeStrategy() {
+            InstructionGraph graph = getInstructionGraph(pseudocode, FORWARD, ANALYSE_LOCAL_DECLARATIONS);
+            PseudocodeTraverser.traverse(graph, new InstructionAnalyzeStrategy() {
                 @Override
                 public void execute(@NotNull Instruction instruction) {
-                    VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false,
-                                                                                                          bindingContext);
+                    VariableDescriptor variableDescriptor = extractVariableDescriptorIfAny(instruction, false);
                     if (variableDescriptor != null) {
                         result.add(variableDescriptor);
                     }
@@ -135,24 +190,28 @@ public class PseudocodeVariablesData {
 
         Set<VariableDescriptor> usedVariables = getUsedVariables(pseudocode);
         Set<VariableDescriptor> declaredVariables = getDeclaredVariables(pseudocode, false);
-        Map<VariableDescriptor, VariableInitState> initialMap = Collections.emptyMap();
-        Map<VariableDescriptor, VariableInitState> initialMapForStartInstruction = prepareInitializersMapForStartInstruction(
+        BitVectorState initialState = BitVectorState.empty(INIT_PLANE_COUNT);
+        BitVectorState initialStateForStartInstruction = prepareInitializersStateForStartInstruction(
                 usedVariables, declaredVariables);
 
-        Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> variableInitializersMap = PseudocodeTraverser.collectData(
-                pseudocode, FORWARD, SKIP_LOCAL_DECLARATIONS,
-                initialMap, initialMapForStartInstruction, new PseudocodeTraverser.InstructionDataMergeStrategy<Map<VariableDescriptor, VariableInitState>>() {
+        Map<Instruction, Edges<BitVectorState>> variableInitializersData = PseudocodeTraverser.collectBitVectorData(
+                getInstructionGraph(pseudocode, FORWARD, SKIP_LOCAL_DECLARATIONS),
+                initialState, initialStateForStartInstruction, new InstructionBitVectorTransferStrategy() {
+            @NotNull
             @Override
-            public Edges<Map<VariableDescriptor, VariableInitState>> execute(
-                    @NotNull Instruction instruction, @NotNull Collection<Map<VariableDescriptor, VariableInitState>> incomingEdgesData) {
-
-                Map<VariableDescriptor, VariableInitState> enterInstructionData = mergeIncomingEdgesDataForInitializers(incomingEdgesData);
-                Map<VariableDescriptor, VariableInitState> exitInstructionData =
-                        addVariableInitStateFromCurrentInstructionIfAny(instruction, enterInstructionData);
-                return Edges.create(enterInstructionData, exitInstructionData);
+            public BitVectorState execute(@NotNull Instruction instruction, @NotNull BitVectorState enterData) {
+                return addVariableInitStateFromCurrentInstructionIfAny(instruction, enterData);
             }
         });
 
+        Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> variableInitializersMap =
+                createStateViews(variableInitializersData, new StateDecoder<VariableInitState>() {
+                    @NotNull
+                    @Override
+                    public VariableInitState decode(@NotNull BitVectorState state, int index) {
+                        return VariableInitState.create(!state.get(NOT_INITIALIZED, index), !state.get(NOT_DECLARED, index));
+                    }
+                });
 
         for (LocalDeclarationInstruction localDeclarationInstruction : pseudocode.getLocalDeclarations()) {
             Pseudocode localPseudocode = localDeclarationInstruction.getBody();
@@ -170,138 +229,205 @@ public class PseudocodeVariablesData {
     }
 
     @NotNull
-    private static Map<VariableDescriptor, VariableInitState> prepareInitializersMapForStartInstruction(
+    private BitVectorState prepareInitializersStateForStartInstruction(
             @NotNull Collection<VariableDescriptor> usedVariables,
             @NotNull Collection<VariableDescriptor> declaredVariables) {
 
-        Map<VariableDescriptor, VariableInitState> initialMapForStartInstruction = Maps.newHashMap();
-        VariableInitState initializedForExternalVariable = VariableInitState.create(true);
-        VariableInitState notInitializedForDeclaredVariable = VariableInitState.create(false);
-
+        // Declared variables are not initialized, external ones are; none of them is declared yet
+        BitVectorState state = BitVectorState.empty(INIT_PLANE_COUNT);
         for (VariableDescriptor variable : usedVariables) {
-            if (declaredVariables.contains(variable)) {
-                initialMapForStartInstruction.put(variable, notInitializedForDeclaredVariable);
-            }
-            else {
-                initialMapForStartInstruction.put(variable, initializedForExternalVariable);
-            }
+            state = state.set(getVariableIndex(variable), true, declaredVariables.contains(variable), true);
         }
-        return initialMapForStartInstruction;
+        return state;
     }
 
     @NotNull
-    private static Map<VariableDescriptor, VariableInitState> mergeIncomingEdgesDataForInitializers(
-            @NotNull Collection<Map<VariableDescriptor, VariableInitState>> incomingEdgesData) {
-
-        Set<VariableDescriptor> variablesInScope = Sets.newHashSet();
-        for (Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData) {
-            variablesInScope.addAll(edgeData.keySet());
-        }
-
-        Map<VariableDescriptor, VariableInitState> enterInstructionData = Maps.newHashMap();
-        for (VariableDescriptor variable : variablesInScope) {
-            boolean isInitialized = true;
-            boolean isDeclared = true;
-            for (Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData) {
-                VariableInitState initState = edgeData.get(variable);
-                if (initState != null) {
-                    if (!initState.isInitialized) {
-                        isInitialized = false;
-                    }
-                    if (!initState.isDeclared) {
-                        isDeclared = false;
-                    }
-                }
-            }
-            enterInstructionData.put(variable, VariableInitState.create(isInitialized, isDeclared));
-        }
-        return enterInstructionData;
-    }
-
-    @NotNull
-    private Map<VariableDescriptor, VariableInitState> addVariableInitStateFromCurrentInstructionIfAny(
-            @NotNull Instruction instruction, @NotNull Map<VariableDescriptor, VariableInitState> enterInstructionData) {
+    private BitVectorState addVariableInitStateFromCurrentInstructionIfAny(
+            @NotNull Instruction instruction, @NotNull BitVectorState enterInstructionData) {
 
         if (!(instruction instanceof WriteValueInstruction) && !(instruction instanceof VariableDeclarationInstruction)) {
             return enterInstructionData;
         }
-        VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, bindingContext);
+        VariableDescriptor variable = extractVariableDescriptorIfAny(instruction, false);
         if (variable == null) {
             return enterInstructionData;
         }
-        Map<VariableDescriptor, VariableInitState> exitInstructionData = Maps.newHashMap(enterInstructionData);
+        int index = getVariableIndex(variable);
+        boolean isKnown = enterInstructionData.get(PRESENT, index);
         if (instruction instanceof WriteValueInstruction) {
-            VariableInitState enterInitState = enterInstructionData.get(variable);
-            VariableInitState initializationAtThisElement =
-                    VariableInitState.create(((WriteValueInstruction) instruction).getElement() instanceof JetProperty, enterInitState);
-            exitInstructionData.put(variable, initializationAtThisElement);
+            boolean isDeclaredHere = ((WriteValueInstruction) instruction).getElement() instanceof JetProperty;
+            boolean isDeclared = isDeclaredHere || (isKnown && !enterInstructionData.get(NOT_DECLARED, index));
+            return enterInstructionData.set(index, true, false, !isDeclared);
         }
         else { // instruction instanceof VariableDeclarationInstruction
-            VariableInitState enterInitState = enterInstructionData.get(variable);
-            if (enterInitState == null || !enterInitState.isInitialized || !enterInitState.isDeclared) {
-                boolean isInitialized = enterInitState != null && enterInitState.isInitialized;
-                VariableInitState variableDeclarationInfo = VariableInitState.create(isInitialized, true);
-                exitInstructionData.put(variable, variableDeclarationInfo);
-            }
+            boolean isInitialized = isKnown && !enterInstructionData.get(NOT_INITIALIZED, index);
+            return enterInstructionData.set(index, true, !isInitialized, false);
         }
-        return exitInstructionData;
     }
 
 // variable use
 
     @NotNull
     public Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> getVariableUseStatusData() {
-        Map<VariableDescriptor, VariableUseState> sinkInstructionData = Maps.newHashMap();
+        if (variableUseStatusData == null) {
+            variableUseStatusData = computeVariableUseStatusData();
+        }
+        return variableUseStatusData;
+    }
+
+    @NotNull
+    private Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> computeVariableUseStatusData() {
+        BitVectorState sinkInstructionData = BitVectorState.empty(USE_PLANE_COUNT);
         for (VariableDescriptor usedVariable : getUsedVariables(pseudocode)) {
-            sinkInstructionData.put(usedVariable, VariableUseState.UNUSED);
+            sinkInstructionData = sinkInstructionData.set(getVariableIndex(usedVariable), VariableUseState.UNUSED.encode());
         }
-        InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>> collectVariableUseStatusStrategy =
-                new InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>>() {
-                    @Override
-                    public Edges<Map<VariableDescriptor, VariableUseState>> execute(
-                            @NotNull Instruction instruction,
-                            @NotNull Collection<Map<VariableDescriptor, VariableUseState>> incomingEdgesData
-                    ) {
-
-                        Map<VariableDescriptor, VariableUseState> enterResult = Maps.newHashMap();
-                        for (Map<VariableDescriptor, VariableUseState> edgeData : incomingEdgesData) {
-                            for (Map.Entry<VariableDescriptor, VariableUseState> entry : edgeData.entrySet()) {
-                                VariableDescriptor variableDescriptor = entry.getKey();
-                                VariableUseState variableUseState = entry.getValue();
-                                enterResult.put(variableDescriptor, variableUseState.merge(enterResult.get(variableDescriptor)));
-                            }
-                        }
-                        VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true,
-                                                                                                              bindingContext);
-                        if (variableDescriptor == null ||
-                            (!(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction))) {
-                            return Edges.create(enterResult, enterResult);
+        InstructionBitVectorTransferStrategy collectVariableUseStatusStrategy = new InstructionBitVectorTransferStrategy() {
+            @NotNull
+            @Override
+            public BitVectorState execute(@NotNull Instruction instruction, @NotNull BitVectorState enterResult) {
+                VariableDescriptor variableDescriptor = extractVariableDescriptorIfAny(instruction, true);
+                if (variableDescriptor == null ||
+                    (!(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction))) {
+                    return enterResult;
+                }
+                int index = getVariableIndex(variableDescriptor);
+                if (instruction instanceof ReadValueInstruction) {
+                    return enterResult.set(index, VariableUseState.LAST_READ.encode());
+                }
+                //instruction instanceof WriteValueInstruction
+                VariableUseState variableUseState = VariableUseState.decode(enterResult, index);
+                if (variableUseState == null) {
+                    variableUseState = VariableUseState.UNUSED;
+                }
+                switch (variableUseState) {
+                    case UNUSED:
+                    case ONLY_WRITTEN_NEVER_READ:
+                        return enterResult.set(index, VariableUseState.ONLY_WRITTEN_NEVER_READ.encode());
+                    default: // LAST_WRITTEN, LAST_READ
+                        return enterResult.set(index, VariableUseState.LAST_WRITTEN.encode());
+                }
+            }
+        };
+        Map<Instruction, Edges<BitVectorState>> variableUseStatusData = PseudocodeTraverser.collectBitVectorData(
+                getInstructionGraph(pseudocode, BACKWARD, ANALYSE_LOCAL_DECLARATIONS),
+                BitVectorState.empty(USE_PLANE_COUNT), sinkInstructionData, collectVariableUseStatusStrategy);
+        return createStateViews(variableUseStatusData, new StateDecoder<VariableUseState>() {
+            @NotNull
+            @Override
+            public VariableUseState decode(@NotNull BitVectorState state, int index) {
+                return VariableUseState.decode(state, index);
+            }
+        });
+    }
+
+// bit vector encoding
+
+    private int getVariableIndex(@NotNull VariableDescriptor variable) {
+        Integer index = variableIndices.get(variable);
+        if (index == null) {
+            index = variables.size();
+            variables.add(variable);
+            variableIndices.put(variable, index);
+        }
+        return index;
+    }
+
+    @NotNull
+    private <S> Map<Instruction, Edges<Map<VariableDescriptor, S>>> createStateViews(
+            @NotNull Map<Instruction, Edges<BitVectorState>> data,
+            @NotNull StateDecoder<S> decoder
+    ) {
+        Map<BitVectorState, Map<VariableDescriptor, S>> views = new IdentityHashMap<BitVectorState, Map<VariableDescriptor, S>>();
+        Map<Instruction, Edges<Map<VariableDescriptor, S>>> result = Maps.newLinkedHashMap();
+        for (Map.Entry<Instruction, Edges<BitVectorState>> entry : data.entrySet()) {
+            Edges<BitVectorState> edges = entry.getValue();
+            result.put(entry.getKey(), Edges.create(getStateView(views, edges.in, decoder), getStateView(views, edges.out, decoder)));
+        }
+        return result;
+    }
+
+    @NotNull
+    private <S> Map<VariableDescriptor, S> getStateView(
+            @NotNull Map<BitVectorState, Map<VariableDescriptor, S>> views,
+            @NotNull BitVectorState state,
+            @NotNull StateDecoder<S> decoder
+    ) {
+        Map<VariableDescriptor, S> view = views.get(state);
+        if (view == null) {
+            view = new StateView<S>(state, decoder);
+            views.put(state, view);
+        }
+        return view;
+    }
+
+    private interface StateDecoder<S> {
+        @NotNull
+        S decode(@NotNull BitVectorState state, int index);
+    }
+
+    /**
+     * Read-only map view of the variables known in this state (the ones with the {@link #PRESENT} bit set)
+     */
+    private class StateView<S> extends AbstractMap<VariableDescriptor, S> {
+        private final BitVectorState state;
+        private final StateDecoder<S> decoder;
+
+        private StateView(@NotNull BitVectorState state, @NotNull StateDecoder<S> decoder) {
+            this.state = state;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public S get(Object key) {
+            //noinspection SuspiciousMethodCalls
+            Integer index = variableIndices.get(key);
+            if (index == null || !state.get(PRESENT, index)) return null;
+            return decoder.decode(state, index);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @NotNull
+        @Override
+        public Set<Entry<VariableDescriptor, S>> entrySet() {
+            final BitSet present = state.getPlane(PRESENT);
+            return new AbstractSet<Entry<VariableDescriptor, S>>() {
+                @NotNull
+                @Override
+                public Iterator<Entry<VariableDescriptor, S>> iterator() {
+                    return new Iterator<Entry<VariableDescriptor, S>>() {
+                        private int index = present.nextSetBit(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return index >= 0;
                         }
-                        Map<VariableDescriptor, VariableUseState> exitResult = Maps.newHashMap(enterResult);
-                        if (instruction instanceof ReadValueInstruction) {
-                            exitResult.put(variableDescriptor, VariableUseState.LAST_READ);
+
+                        @Override
+                        public Entry<VariableDescriptor, S> next() {
+                            if (index < 0) throw new NoSuchElementException();
+                            Entry<VariableDescriptor, S> entry =
+                                    new SimpleImmutableEntry<VariableDescriptor, S>(variables.get(index), decoder.decode(state, index));
+                            index = present.nextSetBit(index + 1);
+                            return entry;
                         }
-                        else { //instruction instanceof WriteValueInstruction
-                            VariableUseState variableUseState = enterResult.get(variableDescriptor);
-                            if (variableUseState == null) {
-                                variableUseState = VariableUseState.UNUSED;
-                            }
-                            switch (variableUseState) {
-                                case UNUSED:
-                                case ONLY_WRITTEN_NEVER_READ:
-                                    exitResult.put(variableDescriptor, VariableUseState.ONLY_WRITTEN_NEVER_READ);
-                                    break;
-                                case LAST_WRITTEN:
-                                case LAST_READ:
-                                    exitResult.put(variableDescriptor, VariableUseState.LAST_WRITTEN);
-                            }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
                         }
-                        return Edges.create(enterResult, exitResult);
-                    }
-                };
-        return PseudocodeTraverser.collectData(pseudocode, BACKWARD, ANALYSE_LOCAL_DECLARATIONS,
-                                               Collections.<VariableDescriptor, VariableUseState>emptyMap(),
-                                               sinkInstructionData, collectVariableUseStatusStrategy);
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return present.cardinality();
+                }
+            };
+        }
     }
 
     public static class VariableInitState {
@@ -327,14 +453,6 @@ public class PseudocodeVariablesData {
             if (isDeclared) return VS_FT;
             return VS_FF;
         }
-
-        private static VariableInitState create(boolean isInitialized) {
-            return create(isInitialized, false);
-        }
-
-        private static VariableInitState create(boolean isDeclaredHere, @Nullable VariableInitState mergedEdgesData) {
-            return create(true, isDeclaredHere || (mergedEdgesData != null && mergedEdgesData.isDeclared));
-        }
     }
 
     public static enum VariableUseState {
@@ -349,9 +467,29 @@ public class PseudocodeVariablesData {
             this.importance = importance;
         }
 
-        private VariableUseState merge(@Nullable VariableUseState variableUseState) {
-            if (variableUseState == null || importance > variableUseState.importance) return this;
-            return variableUseState;
+        // Every state sets the PRESENT bit and one bit per level of importance, so that merging states (a union of bits)
+        // yields the most important one
+        @NotNull
+        private boolean[] encode() {
+            boolean[] planes = new boolean[USE_PLANE_COUNT];
+            planes[PRESENT] = true;
+            for (int i = 1; i <= importance; i++) {
+                planes[i] = true;
+            }
+            return planes;
+        }
+
+        @Nullable
+        private static VariableUseState decode(@NotNull BitVectorState state, int index) {
+            if (!state.get(PRESENT, index)) return null;
+            int importance = 0;
+            while (importance + 1 < USE_PLANE_COUNT && state.get(importance + 1, index)) {
+                importance++;
+            }
+            for (VariableUseState useState : values()) {
+                if (useState.importance == importance) return useState;
+            }
+            throw new IllegalStateException("Unknown importance: " + importance);
         }
 
         public static boolean isUsed(@Nullable VariableUseState variableUseState) {
@@ -75,6 +75,8 @@ public class PseudocodeImpl implements Pseudocode {
     private final List<Instruction> instructions = new ArrayList<Instruction>();
 
     private Set<LocalDeclarationInstruction> localDeclarations = null;
+    // Computed once the pseudocode is post-processed and doesn't change anymore
+    private List<Instruction> reversedInstructions = null;
     //todo getters
     private final Map<JetElement, Instruction> representativeInstructions = new HashMap<JetElement, Instruction>();
     private final Map<JetExpression, LoopInfo> loopInfo = Maps.newHashMap();
@@ -133,6 +135,14 @@ public class PseudocodeImpl implements Pseudocode {
     @NotNull
     @Override
     public List<Instruction> getReversedInstructions() {
+        if (reversedInstructions == null) {
+            reversedInstructions = Collections.unmodifiableList(computeReversedInstructions());
+        }
+        return reversedInstructions;
+    }
+
+    @NotNull
+    private List<Instruction> computeReversedInstructions() {
         LinkedHashSet<Instruction> traversedInstructions = Sets.newLinkedHashSet();
         traverseFollowingInstructions(sinkInstruction, traversedInstructions, false);
         if (traversedInstructions.size() < instructions.size()) {
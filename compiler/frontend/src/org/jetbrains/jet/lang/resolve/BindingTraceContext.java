@@ -79,6 +79,15 @@ public class BindingTraceContext implements BindingTrace {
         return new BindingTraceContext(new TrackingSlicedMap(TRACK_WITH_STACK_TRACES));
     }
 
+    @NotNull
+    /*package*/ SlicedMap getMap() {
+        return map;
+    }
+
+    /*package*/ int getDiagnosticsCount() {
+        return diagnosticList.size();
+    }
+
     @Override
     public void report(@NotNull Diagnostic diagnostic) {
         diagnosticList.add(diagnostic);
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.util.slicedmap.SlicedMap;
+import org.jetbrains.jet.util.slicedmap.SlicedMapKey;
+import org.jetbrains.jet.util.slicedmap.WritableSlice;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts temporary traces and the entries they commit, and measures the footprint of binding contexts (see {@link #report(BindingTrace)})
+ */
+public class BindingTraceStatistics {
+    private static volatile BindingTraceStatistics global = null;
+
+    /**
+     * Starts collecting statistics of a compilation from scratch, until {@link #disableGlobally()} is called
+     */
+    @NotNull
+    public static synchronized BindingTraceStatistics enableGlobally() {
+        global = new BindingTraceStatistics();
+        return global;
+    }
+
+    public static synchronized void disableGlobally() {
+        global = null;
+    }
+
+    @Nullable
+    public static BindingTraceStatistics getGlobal() {
+        return global;
+    }
+
+    private final ConcurrentMap<String, TraceCounters> tracesByDebugName = new ConcurrentHashMap<String, TraceCounters>();
+    private final ConcurrentMap<String, AtomicLong> committedEntriesBySlice = new ConcurrentHashMap<String, AtomicLong>();
+
+    /*package*/ static void temporaryTraceCreated(@NotNull String debugName) {
+        BindingTraceStatistics statistics = global;
+        if (statistics != null) {
+            statistics.getTraceCounters(debugName).created.incrementAndGet();
+        }
+    }
+
+    /*package*/ static void temporaryTraceCommitted(@NotNull String debugName) {
+        BindingTraceStatistics statistics = global;
+        if (statistics != null) {
+            statistics.getTraceCounters(debugName).committed.incrementAndGet();
+        }
+    }
+
+    /*package*/ static void entryCommitted(@NotNull WritableSlice<?, ?> slice) {
+        BindingTraceStatistics statistics = global;
+        if (statistics != null) {
+            String sliceName = String.valueOf(slice);
+            AtomicLong counter = statistics.committedEntriesBySlice.get(sliceName);
+            if (counter == null) {
+                counter = getOrCreate(statistics.committedEntriesBySlice, sliceName, new AtomicLong());
+            }
+            counter.incrementAndGet();
+        }
+    }
+
+    @NotNull
+    private TraceCounters getTraceCounters(@NotNull String debugName) {
+        TraceCounters counters = tracesByDebugName.get(debugName);
+        if (counters != null) return counters;
+        return getOrCreate(tracesByDebugName, debugName, new TraceCounters(debugName));
+    }
+
+    @NotNull
+    private static <K, V> V getOrCreate(@NotNull ConcurrentMap<K, V> map, @NotNull K key, @NotNull V newValue) {
+        V value = map.get(key);
+        if (value != null) return value;
+
+        V oldValue = map.putIfAbsent(key, newValue);
+        return oldValue != null ? oldValue : newValue;
+    }
+
+    @NotNull
+    public List<TraceCounters> getTraceCounters() {
+        List<TraceCounters> result = new ArrayList<TraceCounters>(tracesByDebugName.values());
+        Collections.sort(result, new Comparator<TraceCounters>() {
+            @Override
+            public int compare(TraceCounters c1, TraceCounters c2) {
+                long n1 = c1.getCreated();
+                long n2 = c2.getCreated();
+                if (n1 != n2) return n1 < n2 ? 1 : -1;
+                return c1.getDebugName().compareTo(c2.getDebugName());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Takes a snapshot of the counters collected so far together with the contents of the given trace.
+     * Slices can only be measured for a {@link BindingTraceContext}, other traces contribute counters only.
+     */
+    @NotNull
+    public Report report(@NotNull BindingTrace trace) {
+        Map<String, SliceFootprint> slices = new LinkedHashMap<String, SliceFootprint>();
+        int diagnosticsCount = 0;
+        if (trace instanceof BindingTraceContext) {
+            BindingTraceContext context = (BindingTraceContext) trace;
+            measure(context.getMap(), slices);
+            diagnosticsCount = context.getDiagnosticsCount();
+        }
+        for (Map.Entry<String, AtomicLong> entry : committedEntriesBySlice.entrySet()) {
+            getOrCreateFootprint(slices, entry.getKey()).committedEntries = entry.getValue().get();
+        }
+
+        List<SliceFootprint> sortedSlices = new ArrayList<SliceFootprint>(slices.values());
+        Collections.sort(sortedSlices, new Comparator<SliceFootprint>() {
+            @Override
+            public int compare(SliceFootprint f1, SliceFootprint f2) {
+                long s1 = f1.getEstimatedBytes();
+                long s2 = f2.getEstimatedBytes();
+                if (s1 != s2) return s1 < s2 ? 1 : -1;
+                long c1 = f1.getCommittedEntries();
+                long c2 = f2.getCommittedEntries();
+                if (c1 != c2) return c1 < c2 ? 1 : -1;
+                return f1.getSliceName().compareTo(f2.getSliceName());
+            }
+        });
+
+        List<TraceCounters> traces = new ArrayList<TraceCounters>();
+        for (TraceCounters counters : getTraceCounters()) {
+            traces.add(counters.copy());
+        }
+        return new Report(sortedSlices, traces, diagnosticsCount);
+    }
+
+    private static void measure(@NotNull SlicedMap map, @NotNull Map<String, SliceFootprint> slices) {
+        // A value referenced from several entries (e.g. the same type of many expressions) is only counted once,
+        // for the slice which happens to come first
+        Set<Object> seenValues = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map) {
+            SliceFootprint footprint = getOrCreateFootprint(slices, String.valueOf(entry.getKey().getSlice()));
+            footprint.entries++;
+            footprint.estimatedBytes += MAP_ENTRY_SIZE;
+
+            Object value = entry.getValue();
+            if (value != null && seenValues.add(value)) {
+                footprint.estimatedBytes += ShallowSizes.of(value);
+            }
+        }
+    }
+
+    @NotNull
+    private static SliceFootprint getOrCreateFootprint(@NotNull Map<String, SliceFootprint> slices, @NotNull String sliceName) {
+        SliceFootprint footprint = slices.get(sliceName);
+        if (footprint == null) {
+            footprint = new SliceFootprint(sliceName);
+            slices.put(sliceName, footprint);
+        }
+        return footprint;
+    }
+
+    // A LinkedHashMap entry with compressed oops, plus its slot in the table
+    private static final int MAP_ENTRY_SIZE = 40 + 4;
+
+    /**
+     * Estimates shallow sizes assuming a 64-bit VM with compressed oops: a 12 byte header and 8 byte alignment.
+     * Keys are not counted at all: these are PSI elements and descriptors, which are retained by their owners anyway.
+     */
+    private static class ShallowSizes {
+        private static final int HEADER_SIZE = 12;
+        private static final int ARRAY_HEADER_SIZE = 16;
+        private static final int REFERENCE_SIZE = 4;
+
+        private static final ConcurrentMap<Class<?>, Long> SIZES = new ConcurrentHashMap<Class<?>, Long>();
+
+        public static long of(@NotNull Object value) {
+            Class<?> aClass = value.getClass();
+            if (aClass.isArray()) {
+                Class<?> componentType = aClass.getComponentType();
+                int elementSize = componentType.isPrimitive() ? primitiveSize(componentType) : REFERENCE_SIZE;
+                return align(ARRAY_HEADER_SIZE + (long) elementSize * java.lang.reflect.Array.getLength(value));
+            }
+
+            Long size = SIZES.get(aClass);
+            if (size == null) {
+                size = computeInstanceSize(aClass);
+                SIZES.put(aClass, size);
+            }
+            return size;
+        }
+
+        private static long computeInstanceSize(@NotNull Class<?> aClass) {
+            long size = HEADER_SIZE;
+            for (Class<?> c = aClass; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) continue;
+                    Class<?> type = field.getType();
+                    size += type.isPrimitive() ? primitiveSize(type) : REFERENCE_SIZE;
+                }
+            }
+            return align(size);
+        }
+
+        private static int primitiveSize(@NotNull Class<?> type) {
+            if (type == long.class || type == double.class) return 8;
+            if (type == int.class || type == float.class) return 4;
+            if (type == short.class || type == char.class) return 2;
+            return 1;
+        }
+
+        private static long align(long size) {
+            return (size + 7) & ~7L;
+        }
+    }
+
+    public static class TraceCounters {
+        private final String debugName;
+        private final AtomicLong created;
+        private final AtomicLong committed;
+
+        private TraceCounters(@NotNull String debugName) {
+            this(debugName, 0, 0);
+        }
+
+        private TraceCounters(@NotNull String debugName, long created, long committed) {
+            this.debugName = debugName;
+            this.created = new AtomicLong(created);
+            this.committed = new AtomicLong(committed);
+        }
+
+        @NotNull
+        public String getDebugName() {
+            return debugName;
+        }
+
+        public long getCreated() {
+            return created.get();
+        }
+
+        /**
+         * A trace committed several times (e.g. once per chained trace on top of it) is counted several times
+         */
+        public long getCommitted() {
+            return committed.get();
+        }
+
+        @NotNull
+        private TraceCounters copy() {
+            return new TraceCounters(debugName, created.get(), committed.get());
+        }
+    }
+
+    public static class SliceFootprint {
+        private final String sliceName;
+        private int entries;
+        private long estimatedBytes;
+        private long committedEntries;
+
+        private SliceFootprint(@NotNull String sliceName) {
+            this.sliceName = sliceName;
+        }
+
+        @NotNull
+        public String getSliceName() {
+            return sliceName;
+        }
+
+        /**
+         * The number of entries in the measured context
+         */
+        public int getEntries() {
+            return entries;
+        }
+
+        /**
+         * Map entries plus shallow sizes of the values, see {@link ShallowSizes}
+         */
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+
+        /**
+         * The number of entries committed from temporary traces into their parents, at any level
+         */
+        public long getCommittedEntries() {
+            return committedEntries;
+        }
+    }
+
+    public static class Report {
+        private final List<SliceFootprint> slices;
+        private final List<TraceCounters> temporaryTraces;
+        private final int diagnosticsCount;
+
+        private Report(@NotNull List<SliceFootprint> slices, @NotNull List<TraceCounters> temporaryTraces, int diagnosticsCount) {
+            this.slices = Collections.unmodifiableList(slices);
+            this.temporaryTraces = Collections.unmodifiableList(temporaryTraces);
+            this.diagnosticsCount = diagnosticsCount;
+        }
+
+        /**
+         * Sorted by the estimated size, largest first
+         */
+        @NotNull
+        public List<SliceFootprint> getSlices() {
+            return slices;
+        }
+
+        @NotNull
+        public List<TraceCounters> getTemporaryTraces() {
+            return temporaryTraces;
+        }
+
+        public int getDiagnosticsCount() {
+            return diagnosticsCount;
+        }
+
+        public long getTotalEstimatedBytes() {
+            long total = 0;
+            for (SliceFootprint slice : slices) {
+                total += slice.getEstimatedBytes();
+            }
+            return total;
+        }
+
+        @NotNull
+        public String render() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%-60s %10s %12s %12s%n", "Slice", "Entries", "Est. KB", "Committed"));
+            for (SliceFootprint slice : slices) {
+                sb.append(String.format("%-60s %10d %12d %12d%n",
+                                        slice.getSliceName(),
+                                        slice.getEntries(),
+                                        slice.getEstimatedBytes() / 1024,
+                                        slice.getCommittedEntries()));
+            }
+            sb.append(String.format("%-60s %10s %12d%n", "Total", "", getTotalEstimatedBytes() / 1024));
+            sb.append(String.format("Diagnostics: %d%n%n", diagnosticsCount));
+
+            sb.append(String.format("%-60s %10s %10s%n", "Temporary trace", "Created", "Committed"));
+            for (TraceCounters counters : temporaryTraces) {
+                sb.append(String.format("%-60s %10d %10d%n", counters.getDebugName(), counters.getCreated(), counters.getCommitted()));
+            }
+            return sb.toString();
+        }
+    }
+}
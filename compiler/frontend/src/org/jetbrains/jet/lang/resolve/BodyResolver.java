@@ -49,9 +49,12 @@ import org.jetbrains.jet.lexer.JetTokens;
 import org.jetbrains.jet.util.Box;
 import org.jetbrains.jet.util.slicedmap.WritableSlice;
 import org.jetbrains.jet.util.ReenteringLazyValueComputationException;
+import org.jetbrains.jet.utils.ExceptionUtils;
 
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.jetbrains.jet.lang.descriptors.ReceiverParameterDescriptor.NO_RECEIVER_PARAMETER;
 import static org.jetbrains.jet.lang.diagnostics.Errors.*;
@@ -61,6 +64,17 @@ import static org.jetbrains.jet.lang.resolve.calls.results.OverloadResolutionRes
 import static org.jetbrains.jet.lang.types.TypeUtils.NO_EXPECTED_TYPE;
 
 public class BodyResolver {
+    private static final ThreadFactory BODY_RESOLVE_THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "Body resolution " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
     @NotNull
     private BodiesResolveContext context;
     @NotNull
@@ -437,7 +451,10 @@ public class BodyResolver {
         // Top-level properties & properties of objects
         for (Map.Entry<JetProperty, PropertyDescriptor> entry : this.context.getProperties().entrySet()) {
             JetProperty property = entry.getKey();
-            if (!context.completeAnalysisNeeded(property)) continue;
+            if (!context.completeAnalysisNeeded(property)) {
+                resolveConstantInitializer(property, entry.getValue());
+                continue;
+            }
             if (processed.contains(property)) continue;
 
             PropertyDescriptor propertyDescriptor = entry.getValue();
@@ -623,6 +640,18 @@ public class BodyResolver {
         };
     }
 
+    // Constant initializers are written to class files along with fields, so they are resolved even when bodies are not
+    private void resolveConstantInitializer(@NotNull JetProperty property, @NotNull PropertyDescriptor propertyDescriptor) {
+        JetExpression initializer = property.getInitializer();
+        if (initializer == null || property.getTypeRef() == null || propertyDescriptor.isVar()) return;
+
+        JetType type = propertyDescriptor.getType();
+        KotlinBuiltIns builtIns = KotlinBuiltIns.getInstance();
+        if (!builtIns.isPrimitiveType(type) && !builtIns.getStringType().equals(type)) return;
+
+        resolvePropertyInitializer(property, propertyDescriptor, initializer, getScopeForProperty(property));
+    }
+
     public void resolvePropertyInitializer(
             @NotNull JetProperty property,
             @NotNull PropertyDescriptor propertyDescriptor,
@@ -649,20 +678,89 @@ public class BodyResolver {
     }
 
     private void resolveFunctionBodies() {
+        int threads = topDownAnalysisParameters.getBodyResolveThreads();
+        if (threads > 1 && !topDownAnalysisParameters.isDeclaredLocally() && this.context.getFunctions().size() > 1) {
+            resolveFunctionBodiesInParallel(threads);
+            return;
+        }
+
         for (Map.Entry<JetNamedFunction, SimpleFunctionDescriptor> entry : this.context.getFunctions().entrySet()) {
-            JetNamedFunction declaration = entry.getKey();
             SimpleFunctionDescriptor descriptor = entry.getValue();
 
             computeDeferredType(descriptor.getReturnType());
 
-            JetScope declaringScope = this.context.getDeclaringScopes().apply(declaration);
-            assert declaringScope != null;
+            resolveNamedFunction(trace, entry.getKey(), descriptor);
+        }
+    }
 
-            resolveAnnotationArguments(declaringScope, declaration);
-            resolveFunctionBody(trace, declaration, descriptor, declaringScope);
+    // Every body is resolved into its own trace, and the traces are committed in the order of declarations,
+    // so that the result doesn't depend on scheduling. The trace given to the analyzer is shared by all threads
+    private void resolveFunctionBodiesInParallel(int threads) {
+        // Return types are needed to resolve calls from other bodies, and lazy values computing them are not thread-safe,
+        // so all of them are computed right into the shared trace, one after another, before any body is resolved.
+        // Lazy values capture the trace they were created with, so they can't be pointed at a trace of a function.
+        // Thus, unlike the sequential resolution, records and diagnostics of inferred types precede those of all bodies
+        for (SimpleFunctionDescriptor descriptor : this.context.getFunctions().values()) {
+            computeDeferredType(descriptor.getReturnType());
+        }
+        computeDeferredTypes();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, BODY_RESOLVE_THREAD_FACTORY);
+        try {
+            List<Future<DelegatingBindingTrace>> results = new ArrayList<Future<DelegatingBindingTrace>>();
+            for (Map.Entry<JetNamedFunction, SimpleFunctionDescriptor> entry : this.context.getFunctions().entrySet()) {
+                final JetNamedFunction declaration = entry.getKey();
+                final SimpleFunctionDescriptor descriptor = entry.getValue();
+                results.add(executor.submit(new Callable<DelegatingBindingTrace>() {
+                    @Override
+                    public DelegatingBindingTrace call() {
+                        DelegatingBindingTrace functionTrace = new DelegatingBindingTrace(
+                                trace.getBindingContext(), "Trace for body of " + descriptor.getName());
+                        resolveNamedFunction(functionTrace, declaration, descriptor);
+                        return functionTrace;
+                    }
+                }));
+            }
 
-            assert descriptor.getReturnType() != null;
+            List<DelegatingBindingTrace> functionTraces = new ArrayList<DelegatingBindingTrace>(results.size());
+            for (Future<DelegatingBindingTrace> result : results) {
+                functionTraces.add(getResult(result));
+            }
+            for (DelegatingBindingTrace functionTrace : functionTraces) {
+                functionTrace.addAllMyDataTo(trace);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @NotNull
+    private static <T> T getResult(@NotNull Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw ExceptionUtils.rethrow(e);
         }
+        catch (ExecutionException e) {
+            throw ExceptionUtils.rethrow(e.getCause());
+        }
+    }
+
+    private void resolveNamedFunction(
+            @NotNull BindingTrace trace,
+            @NotNull JetNamedFunction declaration,
+            @NotNull SimpleFunctionDescriptor descriptor
+    ) {
+        JetScope declaringScope = this.context.getDeclaringScopes().apply(declaration);
+        assert declaringScope != null;
+
+        annotationResolver.resolveAnnotationsArguments(declaringScope, declaration.getModifierList(), trace);
+        resolveFunctionBody(trace, declaration, descriptor, declaringScope);
+
+        assert descriptor.getReturnType() != null;
     }
 
     public void resolveFunctionBody(
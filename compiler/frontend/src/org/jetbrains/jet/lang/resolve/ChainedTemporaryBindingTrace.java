@@ -21,11 +21,11 @@ import org.jetbrains.annotations.Nullable;
 public class ChainedTemporaryBindingTrace extends TemporaryBindingTrace {
 
     public static ChainedTemporaryBindingTrace create(TemporaryBindingTrace trace, String debugName, @Nullable Object resolutionSubjectForMessage) {
-        return new ChainedTemporaryBindingTrace(trace, AnalyzingUtils.formDebugNameForBindingTrace(debugName, resolutionSubjectForMessage));
+        return new ChainedTemporaryBindingTrace(trace, debugName, resolutionSubjectForMessage);
     }
 
-    private ChainedTemporaryBindingTrace(TemporaryBindingTrace trace, String debugName) {
-        super(trace, debugName);
+    private ChainedTemporaryBindingTrace(TemporaryBindingTrace trace, String debugName, @Nullable Object resolutionSubjectForMessage) {
+        super(trace, debugName, resolutionSubjectForMessage);
     }
 
     @Override
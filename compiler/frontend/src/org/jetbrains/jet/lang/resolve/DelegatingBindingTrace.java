@@ -29,19 +29,30 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Records go to this trace, reads fall through to the parent context for everything not recorded here.
+ * Many of these traces are created and thrown away without recording anything (e.g. for every candidate of a call),
+ * so all the storage is allocated on first write.
+ */
 public class DelegatingBindingTrace implements BindingTrace {
-    @SuppressWarnings("ConstantConditions")
-    private final MutableSlicedMap map = BindingTraceContext.TRACK_REWRITES ? new TrackingSlicedMap(BindingTraceContext.TRACK_WITH_STACK_TRACES) : SlicedMapImpl.create();
+    @Nullable
+    private MutableSlicedMap map = null;
+    @Nullable
+    private List<Diagnostic> diagnostics = null;
 
     private final BindingContext parentContext;
-    private final List<Diagnostic> diagnostics = Lists.newArrayList();
-    private final String name;
+    private final String debugName;
+    @Nullable
+    private final Object resolutionSubjectForMessage;
 
-    private final BindingContext bindingContext = new BindingContext() {
+    @Nullable
+    private BindingContext bindingContext = null;
+
+    private class MyBindingContext implements BindingContext {
         @NotNull
         @Override
         public Diagnostics getDiagnostics() {
-            ArrayList<Diagnostic> mergedDiagnostics = new ArrayList<Diagnostic>(diagnostics);
+            ArrayList<Diagnostic> mergedDiagnostics = diagnostics != null ? new ArrayList<Diagnostic>(diagnostics) : new ArrayList<Diagnostic>();
             mergedDiagnostics.addAll(parentContext.getDiagnostics().noSuppression().all());
             return new DiagnosticsWithSuppression(this, mergedDiagnostics);
         }
@@ -63,29 +74,46 @@ public class DelegatingBindingTrace implements BindingTrace {
         @Override
         public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
             ImmutableMap<K, V> parentContents = parentContext.getSliceContents(slice);
+            if (map == null) return parentContents;
             ImmutableMap<K, V> currentContents = map.getSliceContents(slice);
             return ImmutableMap.<K, V>builder().putAll(parentContents).putAll(currentContents).build();
         }
-    };
+    }
 
     public DelegatingBindingTrace(BindingContext parentContext, String debugName) {
-        this.parentContext = parentContext;
-        this.name = debugName;
+        this(parentContext, debugName, null);
     }
 
+    /**
+     * @param resolutionSubjectForMessage is only rendered (see {@link AnalyzingUtils#formDebugNameForBindingTrace}) in toString()
+     */
     public DelegatingBindingTrace(BindingContext parentContext, String debugName, @Nullable Object resolutionSubjectForMessage) {
-        this(parentContext, AnalyzingUtils.formDebugNameForBindingTrace(debugName, resolutionSubjectForMessage));
+        this.parentContext = parentContext;
+        this.debugName = debugName;
+        this.resolutionSubjectForMessage = resolutionSubjectForMessage;
     }
 
     @Override
     @NotNull
     public BindingContext getBindingContext() {
+        if (bindingContext == null) {
+            bindingContext = new MyBindingContext();
+        }
         return bindingContext;
     }
 
+    @NotNull
+    @SuppressWarnings("ConstantConditions")
+    private MutableSlicedMap getOrCreateMap() {
+        if (map == null) {
+            map = BindingTraceContext.TRACK_REWRITES ? new TrackingSlicedMap(BindingTraceContext.TRACK_WITH_STACK_TRACES) : SlicedMapImpl.create();
+        }
+        return map;
+    }
+
     @Override
     public <K, V> void record(WritableSlice<K, V> slice, K key, V value) {
-        map.put(slice, key, value);
+        getOrCreateMap().put(slice, key, value);
     }
 
     @Override
@@ -93,9 +121,18 @@ public class DelegatingBindingTrace implements BindingTrace {
         record(slice, key, true);
     }
 
+    /**
+     * Removes a value recorded in this trace, values of the parent context are not affected
+     */
+    public <K, V> void remove(@NotNull RemovableSlice<K, V> slice, K key) {
+        if (map != null) {
+            map.remove(slice, key);
+        }
+    }
+
     @Override
     public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
-        V value = map.get(slice, key);
+        V value = (map != null ? map : SlicedMap.DO_NOTHING).get(slice, key);
         if (slice instanceof Slices.SetSlice) {
             assert value != null;
             if (value.equals(true)) return value;
@@ -110,8 +147,10 @@ public class DelegatingBindingTrace implements BindingTrace {
     @NotNull
     @Override
     public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
-        Collection<K> keys = map.getKeys(slice);
         Collection<K> fromParent = parentContext.getKeys(slice);
+        if (map == null) return fromParent;
+
+        Collection<K> keys = map.getKeys(slice);
         if (keys.isEmpty()) return fromParent;
         if (fromParent.isEmpty()) return keys;
 
@@ -130,6 +169,18 @@ public class DelegatingBindingTrace implements BindingTrace {
     }
 
     public void addAllMyDataTo(@NotNull BindingTrace trace, @Nullable TraceEntryFilter filter, boolean commitDiagnostics) {
+        if (map != null) {
+            addAllEntriesTo(trace, map, filter);
+        }
+
+        if (!commitDiagnostics || diagnostics == null) return;
+
+        for (Diagnostic diagnostic : diagnostics) {
+            trace.report(diagnostic);
+        }
+    }
+
+    private static void addAllEntriesTo(@NotNull BindingTrace trace, @NotNull MutableSlicedMap map, @Nullable TraceEntryFilter filter) {
         for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map) {
             SlicedMapKey slicedMapKey = entry.getKey();
 
@@ -140,28 +191,35 @@ public class DelegatingBindingTrace implements BindingTrace {
             if (filter == null || filter.accept(slice, key)) {
                 //noinspection unchecked
                 trace.record(slice, key, value);
+                BindingTraceStatistics.entryCommitted(slice);
             }
         }
+    }
 
-        if (!commitDiagnostics) return;
+    /*package*/ String getDebugName() {
+        return debugName;
+    }
 
-        for (Diagnostic diagnostic : diagnostics) {
-            trace.report(diagnostic);
-        }
+    @TestOnly
+    /*package*/ boolean hasStorage() {
+        return map != null || diagnostics != null || bindingContext != null;
     }
 
     public void clear() {
-        map.clear();
-        diagnostics.clear();
+        map = null;
+        diagnostics = null;
     }
 
     @Override
     public void report(@NotNull Diagnostic diagnostic) {
+        if (diagnostics == null) {
+            diagnostics = Lists.newArrayList();
+        }
         diagnostics.add(diagnostic);
     }
 
     @Override
     public String toString() {
-        return name;
+        return AnalyzingUtils.formDebugNameForBindingTrace(debugName, resolutionSubjectForMessage);
     }
 }
@@ -24,7 +24,9 @@ import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.psi.*;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
+import org.jetbrains.jet.lang.resolve.scopes.RedeclarationHandler;
 import org.jetbrains.jet.lang.resolve.scopes.WritableScope;
+import org.jetbrains.jet.lang.resolve.scopes.WritableScopeImpl;
 
 import javax.inject.Inject;
 import java.util.Collection;
@@ -80,44 +82,81 @@ public class ImportsResolver {
     }
 
     private void processImports(@NotNull LookupMode lookupMode, @NotNull JetScope rootScope) {
+        JetScope defaultImportsScope = createDefaultImportsScope(lookupMode, rootScope);
         for (JetFile file : context.getNamespaceDescriptors().keySet()) {
             WritableScope namespaceScope = context.getNamespaceScopes().get(file);
-            processImportsInFile(lookupMode, namespaceScope, Lists.newArrayList(file.getImportDirectives()), rootScope);
+            processImportsInFile(lookupMode, namespaceScope, Lists.newArrayList(file.getImportDirectives()), rootScope, defaultImportsScope);
         }
         for (JetScript script : context.getScripts().keySet()) {
             WritableScope scriptScope = context.getScriptScopes().get(script);
-            processImportsInFile(lookupMode, scriptScope, script.getImportDirectives(), rootScope);
+            processImportsInFile(lookupMode, scriptScope, script.getImportDirectives(), rootScope, defaultImportsScope);
         }
     }
 
-    private void processImportsInFile(@NotNull LookupMode lookupMode, WritableScope scope, List<JetImportDirective> directives, JetScope rootScope) {
-        processImportsInFile(lookupMode, scope, directives, rootScope, moduleDescriptor, trace, qualifiedExpressionResolver, importsFactory);
+    @NotNull
+    private JetScope createDefaultImportsScope(@NotNull LookupMode lookupMode, @NotNull JetScope rootScope) {
+        return createDefaultImportsScope(lookupMode, rootScope, moduleDescriptor, trace, qualifiedExpressionResolver, importsFactory);
     }
 
-    public static void processImportsInFile(
-            LookupMode lookupMode,
-            @NotNull WritableScope namespaceScope,
-            @NotNull List<JetImportDirective> importDirectives,
+    private void processImportsInFile(
+            @NotNull LookupMode lookupMode,
+            WritableScope scope,
+            List<JetImportDirective> directives,
+            JetScope rootScope,
+            JetScope defaultImportsScope
+    ) {
+        processImportsInFile(lookupMode, scope, directives, rootScope, defaultImportsScope, moduleDescriptor, trace, qualifiedExpressionResolver);
+    }
+
+    /**
+     * Default imports are the same for every file, so they are resolved once into a scope which is imported by all files
+     */
+    @NotNull
+    public static JetScope createDefaultImportsScope(
+            @NotNull LookupMode lookupMode,
             @NotNull JetScope rootScope,
             @NotNull ModuleDescriptor module,
             @NotNull BindingTrace trace,
             @NotNull QualifiedExpressionResolver qualifiedExpressionResolver,
             @NotNull JetImportsFactory importsFactory
     ) {
-
-        Importer.DelayedImporter delayedImporter = new Importer.DelayedImporter(namespaceScope);
-        if (lookupMode == LookupMode.EVERYTHING) {
-            namespaceScope.clearImports();
-        }
+        WritableScope defaultImportsScope = new WritableScopeImpl(JetScope.EMPTY, rootScope.getContainingDeclaration(),
+                                                                  RedeclarationHandler.DO_NOTHING, "Default imports scope");
+        Importer.DelayedImporter delayedImporter = new Importer.DelayedImporter(defaultImportsScope);
 
         for (ImportPath defaultImportPath : module.getDefaultImports()) {
             TemporaryBindingTrace temporaryTrace = TemporaryBindingTrace.create(
                     trace, "transient trace to resolve default imports"); //not to trace errors of default imports
 
             JetImportDirective defaultImportDirective = importsFactory.createImportDirective(defaultImportPath);
-            qualifiedExpressionResolver.processImportReference(defaultImportDirective, rootScope, namespaceScope, delayedImporter,
+            // The scope to check visibility used to be the scope of a file. There's no file here, but it doesn't matter:
+            // visibility is only checked to report errors, and the errors of default imports go to the temporary trace
+            qualifiedExpressionResolver.processImportReference(defaultImportDirective, rootScope, rootScope, delayedImporter,
                                                                temporaryTrace, module, lookupMode);
         }
+        delayedImporter.processImports();
+
+        return defaultImportsScope.changeLockLevel(WritableScope.LockLevel.READING);
+    }
+
+    public static void processImportsInFile(
+            LookupMode lookupMode,
+            @NotNull WritableScope namespaceScope,
+            @NotNull List<JetImportDirective> importDirectives,
+            @NotNull JetScope rootScope,
+            @NotNull JetScope defaultImportsScope,
+            @NotNull ModuleDescriptor module,
+            @NotNull BindingTrace trace,
+            @NotNull QualifiedExpressionResolver qualifiedExpressionResolver
+    ) {
+
+        Importer.DelayedImporter delayedImporter = new Importer.DelayedImporter(namespaceScope);
+        if (lookupMode == LookupMode.EVERYTHING) {
+            namespaceScope.clearImports();
+        }
+
+        // Explicit imports are processed later and take precedence over the default ones
+        namespaceScope.importScope(defaultImportsScope);
 
         Map<JetImportDirective, Collection<? extends DeclarationDescriptor>> resolvedDirectives = Maps.newHashMap();
 
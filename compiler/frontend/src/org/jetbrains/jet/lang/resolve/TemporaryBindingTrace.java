@@ -29,23 +29,30 @@ public class TemporaryBindingTrace extends DelegatingBindingTrace {
     }
 
     public static TemporaryBindingTrace create(@NotNull BindingTrace trace, String debugName, @Nullable Object resolutionSubjectForMessage) {
-        return create(trace, AnalyzingUtils.formDebugNameForBindingTrace(debugName, resolutionSubjectForMessage));
+        return new TemporaryBindingTrace(trace, debugName, resolutionSubjectForMessage);
     }
 
     protected final BindingTrace trace;
 
     protected TemporaryBindingTrace(@NotNull BindingTrace trace, String debugName) {
-        super(trace.getBindingContext(), debugName);
+        this(trace, debugName, null);
+    }
+
+    protected TemporaryBindingTrace(@NotNull BindingTrace trace, String debugName, @Nullable Object resolutionSubjectForMessage) {
+        super(trace.getBindingContext(), debugName, resolutionSubjectForMessage);
         this.trace = trace;
+        BindingTraceStatistics.temporaryTraceCreated(String.valueOf(debugName));
     }
 
     public void commit() {
         addAllMyDataTo(trace);
         clear();
+        BindingTraceStatistics.temporaryTraceCommitted(String.valueOf(getDebugName()));
     }
 
     public void commit(@NotNull TraceEntryFilter filter, boolean commitDiagnostics) {
         addAllMyDataTo(trace, filter, commitDiagnostics);
         clear();
+        BindingTraceStatistics.temporaryTraceCommitted(String.valueOf(getDebugName()));
     }
 }
@@ -32,16 +32,31 @@ public class TopDownAnalysisParameters {
     private final boolean declaredLocally;
     @NotNull
     private final List<AnalyzerScriptParameter> scriptParameters;
+    private final int bodyResolveThreads;
 
     public TopDownAnalysisParameters(
             @NotNull Predicate<PsiFile> analyzeCompletely,
             boolean analyzingBootstrapLibrary,
             boolean declaredLocally,
             @NotNull List<AnalyzerScriptParameter> scriptParameters) {
+        this(analyzeCompletely, analyzingBootstrapLibrary, declaredLocally, scriptParameters, 1);
+    }
+
+    /**
+     * @param bodyResolveThreads the number of threads function bodies are resolved in, see {@link BodyResolver}
+     */
+    public TopDownAnalysisParameters(
+            @NotNull Predicate<PsiFile> analyzeCompletely,
+            boolean analyzingBootstrapLibrary,
+            boolean declaredLocally,
+            @NotNull List<AnalyzerScriptParameter> scriptParameters,
+            int bodyResolveThreads) {
+        assert bodyResolveThreads > 0 : "Number of threads should be positive: " + bodyResolveThreads;
         this.analyzeCompletely = analyzeCompletely;
         this.analyzingBootstrapLibrary = analyzingBootstrapLibrary;
         this.declaredLocally = declaredLocally;
         this.scriptParameters = scriptParameters;
+        this.bodyResolveThreads = bodyResolveThreads;
     }
 
     @NotNull
@@ -61,4 +76,8 @@ public class TopDownAnalysisParameters {
     public List<AnalyzerScriptParameter> getScriptParameters() {
         return scriptParameters;
     }
+
+    public int getBodyResolveThreads() {
+        return bodyResolveThreads;
+    }
 }
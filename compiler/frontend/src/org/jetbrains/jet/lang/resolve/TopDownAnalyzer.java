@@ -34,6 +34,7 @@ import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
 import org.jetbrains.jet.lang.resolve.scopes.WritableScope;
 import org.jetbrains.jet.lang.resolve.scopes.WritableScopeImpl;
+import org.jetbrains.jet.lang.types.checker.JetTypeChecker;
 import org.jetbrains.jet.lang.types.expressions.ExpressionTypingContext;
 import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
 
@@ -123,6 +124,9 @@ public class TopDownAnalyzer {
         context.debug("Enter");
 
         typeHierarchyResolver.process(outerScope, owner, declarations);
+        if (!topDownAnalysisParameters.isDeclaredLocally()) {
+            JetTypeChecker.INSTANCE.startRequestedSubtypingCache();
+        }
         declarationResolver.process(outerScope);
         overrideResolver.process();
 
@@ -134,6 +138,8 @@ public class TopDownAnalyzer {
             bodyResolver.resolveBodies();
         }
 
+        compactScopes();
+
         context.debug("Exit");
         context.printDebugOutput(System.out);
     }
@@ -152,6 +158,21 @@ public class TopDownAnalyzer {
         }
     }
 
+    private void compactScopes() {
+        for (MutableClassDescriptor mutableClassDescriptor : context.getClasses().values()) {
+            mutableClassDescriptor.compactScopes();
+        }
+        for (MutableClassDescriptor mutableClassDescriptor : context.getObjects().values()) {
+            mutableClassDescriptor.compactScopes();
+        }
+        for (WritableScope namespaceScope : context.getNamespaceScopes().values()) {
+            namespaceScope.compact();
+        }
+        for (NamespaceDescriptorImpl namespaceDescriptor : context.getNamespaceDescriptors().values()) {
+            namespaceDescriptor.getMemberScope().compact();
+        }
+    }
+
     public static void processStandardLibraryNamespace(
             @NotNull Project project,
             @NotNull BindingTrace trace,
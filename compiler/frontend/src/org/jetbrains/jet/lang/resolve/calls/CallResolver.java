@@ -18,6 +18,7 @@ package org.jetbrains.jet.lang.resolve.calls;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
 import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
@@ -35,6 +36,7 @@ import org.jetbrains.jet.lang.resolve.calls.results.OverloadResolutionResults;
 import org.jetbrains.jet.lang.resolve.calls.results.OverloadResolutionResultsImpl;
 import org.jetbrains.jet.lang.resolve.calls.results.ResolutionDebugInfo;
 import org.jetbrains.jet.lang.resolve.calls.results.ResolutionResultsHandler;
+import org.jetbrains.jet.lang.resolve.calls.results.ResolutionStatus;
 import org.jetbrains.jet.lang.resolve.calls.tasks.*;
 import org.jetbrains.jet.lang.resolve.calls.util.DelegatingCall;
 import org.jetbrains.jet.lang.resolve.calls.util.ExpressionAsFunctionDescriptor;
@@ -53,6 +55,7 @@ import javax.inject.Inject;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.jetbrains.jet.lang.descriptors.ReceiverParameterDescriptor.NO_RECEIVER_PARAMETER;
 import static org.jetbrains.jet.lang.diagnostics.Errors.*;
@@ -540,25 +543,42 @@ public class CallResolver {
             @NotNull CallTransformer<D, F> callTransformer
     ) {
 
+        // Candidates with a certainly wrong receiver are resolved only if there's no applicable candidate, to report them;
+        // the resolved calls are collected in the order of candidates anyway
+        ReceiverTypeIndex receiverTypeIndex = new ReceiverTypeIndex();
+        List<Collection<ResolvedCallWithTrace<F>>> callsForContexts = Lists.newArrayList();
+        Map<Integer, CallCandidateResolutionContext<D>> postponedContexts = Maps.newLinkedHashMap();
+        boolean hasApplicableCall = false;
+
         for (ResolutionCandidate<D> resolutionCandidate : task.getCandidates()) {
             TemporaryBindingTrace candidateTrace = TemporaryBindingTrace.create(
                     task.trace, "trace to resolve candidate");
             Collection<CallCandidateResolutionContext<D>> contexts = callTransformer.createCallContexts(resolutionCandidate, task, candidateTrace);
             for (CallCandidateResolutionContext<D> context : contexts) {
+                if (receiverTypeIndex.hasCertainlyWrongReceiver(context.candidateCall)) {
+                    postponedContexts.put(callsForContexts.size(), context);
+                    callsForContexts.add(null);
+                    continue;
+                }
 
-                candidateResolver.performResolutionForCandidateCall(context, task);
-
-                /* important for 'variable as function case': temporary bind reference to descriptor (will be rewritten)
-                to have a binding to variable while 'invoke' call resolve */
-                task.tracing.bindReference(context.candidateCall.getTrace(), context.candidateCall);
-
-                Collection<ResolvedCallWithTrace<F>> calls = callTransformer.transformCall(context, this, task);
-
+                Collection<ResolvedCallWithTrace<F>> calls = performResolutionForContext(context, task, callTransformer);
                 for (ResolvedCallWithTrace<F> call : calls) {
-                    task.tracing.bindReference(call.getTrace(), call);
-                    task.tracing.bindResolvedCall(call.getTrace(), call);
-                    task.getResolvedCalls().add(call);
+                    ResolutionStatus status = call.getStatus();
+                    hasApplicableCall |= status.isSuccess() || status == ResolutionStatus.INCOMPLETE_TYPE_INFERENCE;
                 }
+                callsForContexts.add(calls);
+            }
+        }
+
+        if (!hasApplicableCall) {
+            for (Map.Entry<Integer, CallCandidateResolutionContext<D>> entry : postponedContexts.entrySet()) {
+                callsForContexts.set(entry.getKey(), performResolutionForContext(entry.getValue(), task, callTransformer));
+            }
+        }
+
+        for (Collection<ResolvedCallWithTrace<F>> calls : callsForContexts) {
+            if (calls != null) {
+                task.getResolvedCalls().addAll(calls);
             }
         }
 
@@ -569,4 +589,26 @@ public class CallResolver {
         }
         return results;
     }
+
+    @NotNull
+    private <D extends CallableDescriptor, F extends D> Collection<ResolvedCallWithTrace<F>> performResolutionForContext(
+            @NotNull CallCandidateResolutionContext<D> context,
+            @NotNull ResolutionTask<D, F> task,
+            @NotNull CallTransformer<D, F> callTransformer
+    ) {
+        candidateResolver.performResolutionForCandidateCall(context, task);
+
+        /* important for 'variable as function case': temporary bind reference to descriptor (will be rewritten)
+        to have a binding to variable while 'invoke' call resolve */
+        task.tracing.bindReference(context.candidateCall.getTrace(), context.candidateCall);
+
+        // 'transformCall' may return a lazy view, which creates new calls on every iteration
+        List<ResolvedCallWithTrace<F>> calls = Lists.newArrayList(callTransformer.transformCall(context, this, task));
+
+        for (ResolvedCallWithTrace<F> call : calls) {
+            task.tracing.bindReference(call.getTrace(), call);
+            task.tracing.bindResolvedCall(call.getTrace(), call);
+        }
+        return calls;
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.calls;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.descriptors.CallableDescriptor;
+import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
+import org.jetbrains.jet.lang.descriptors.ReceiverParameterDescriptor;
+import org.jetbrains.jet.lang.descriptors.TypeParameterDescriptor;
+import org.jetbrains.jet.lang.resolve.calls.model.ResolvedCall;
+import org.jetbrains.jet.lang.resolve.calls.util.ExpressionAsFunctionDescriptor;
+import org.jetbrains.jet.lang.resolve.scopes.receivers.ReceiverValue;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.TypeConstructor;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Type constructors of receiver argument types together with the constructors of all their supertypes.
+ *
+ * If the (erased) receiver type of an extension has a class constructor which is not among them, the receiver type check
+ * ({@link org.jetbrains.jet.lang.types.checker.TypeCheckingProcedure#findCorrespondingSupertype}) certainly fails,
+ * so such a candidate can't be successful and is looked at only if no other candidate is.
+ */
+/* package */ class ReceiverTypeIndex {
+    private final Map<TypeConstructor, Set<TypeConstructor>> supertypeConstructors = Maps.newHashMap();
+
+    public boolean hasCertainlyWrongReceiver(@NotNull ResolvedCall<?> call) {
+        CallableDescriptor descriptor = call.getCandidateDescriptor();
+        if (descriptor instanceof ExpressionAsFunctionDescriptor) return false;
+
+        ReceiverParameterDescriptor receiverParameter = descriptor.getReceiverParameter();
+        ReceiverValue receiverArgument = call.getReceiverArgument();
+        if (receiverParameter == null || !receiverArgument.exists()) return false;
+
+        JetType receiverArgumentType = receiverArgument.getType();
+        if (receiverArgumentType.isError() || KotlinBuiltIns.getInstance().isNothingOrNullableNothing(receiverArgumentType)) {
+            return false;
+        }
+
+        Set<TypeConstructor> argumentSupertypes = getSupertypeConstructors(receiverArgumentType.getConstructor());
+        for (TypeConstructor receiverConstructor : getErasedReceiverConstructors(receiverParameter, descriptor)) {
+            if (!argumentSupertypes.contains(receiverConstructor)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the class constructors of {@link CallResolverUtil#getErasedReceiverType}: the constructors of every upper bound
+     * if the receiver type is a type parameter of the candidate. Error types, {@code Nothing} and constructors of type parameters
+     * and intersections are skipped, since the receiver argument type may be their subtype without having them among its supertypes
+     */
+    @NotNull
+    private static Collection<TypeConstructor> getErasedReceiverConstructors(
+            @NotNull ReceiverParameterDescriptor receiverParameter,
+            @NotNull CallableDescriptor descriptor
+    ) {
+        JetType receiverType = receiverParameter.getType();
+        Collection<JetType> erasedTypes = Collections.singletonList(receiverType);
+        for (TypeParameterDescriptor typeParameter : descriptor.getTypeParameters()) {
+            if (typeParameter.getTypeConstructor().equals(receiverType.getConstructor())) {
+                erasedTypes = typeParameter.getUpperBounds();
+            }
+        }
+
+        List<TypeConstructor> result = Lists.newArrayList();
+        for (JetType type : erasedTypes) {
+            if (type.isError() || KotlinBuiltIns.getInstance().isNothingOrNullableNothing(type)) continue;
+            if (!(type.getConstructor().getDeclarationDescriptor() instanceof ClassDescriptor)) continue;
+            result.add(type.getConstructor());
+        }
+        return result;
+    }
+
+    @NotNull
+    private Set<TypeConstructor> getSupertypeConstructors(@NotNull TypeConstructor constructor) {
+        Set<TypeConstructor> result = supertypeConstructors.get(constructor);
+        if (result == null) {
+            result = Sets.newHashSet();
+            collectSupertypeConstructors(constructor, result);
+            supertypeConstructors.put(constructor, result);
+        }
+        return result;
+    }
+
+    private static void collectSupertypeConstructors(@NotNull TypeConstructor constructor, @NotNull Set<TypeConstructor> result) {
+        if (!result.add(constructor)) return;
+        for (JetType supertype : constructor.getSupertypes()) {
+            collectSupertypeConstructors(supertype.getConstructor(), result);
+        }
+    }
+}
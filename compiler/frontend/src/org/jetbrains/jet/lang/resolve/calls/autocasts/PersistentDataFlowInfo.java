@@ -0,0 +1,329 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.calls.autocasts;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.TypeUtils;
+import org.jetbrains.jet.utils.PersistentHashMap;
+
+import java.util.*;
+
+import static org.jetbrains.jet.lang.resolve.calls.autocasts.Nullability.NOT_NULL;
+
+/**
+ * Data flow info as two persistent maps: every operation creates a new info sharing most of the structure with the old one,
+ * and lookups take O(log n) time, independently of how many operations produced this info.
+ *
+ * Possible types of a value are kept as a list, the most recently established type first. Every type remembers if the value
+ * was known to be not null when the type was established: such types are made not-nullable in {@link #getPossibleTypes(DataFlowValue)}.
+ * The not-nullable original type of a value is possible if the value was known to be not null after any of the operations
+ * which produced this info.
+ *
+ * Infos which are merged by {@link #and(DataFlowInfo)} and {@link #or(DataFlowInfo)} usually come from the same one, so only the entries
+ * which differ (see {@link PersistentHashMap#changedEntries(PersistentHashMap)}) are merged, and the rest of the maps is shared.
+ */
+/* package */ class PersistentDataFlowInfo implements DataFlowInfo {
+    /* package */ static final PersistentDataFlowInfo EMPTY_INFO = new PersistentDataFlowInfo(
+            PersistentHashMap.<DataFlowValue, Nullability>empty(), PersistentHashMap.<DataFlowValue, TypeEntry>empty(),
+            PersistentHashMap.<DataFlowValue, Boolean>empty(), false);
+
+    @NotNull
+    private final PersistentHashMap<DataFlowValue, Nullability> nullabilityInfo;
+
+    @NotNull
+    private final PersistentHashMap<DataFlowValue, TypeEntry> typeInfo;
+
+    // Values which were known to be not null after some operation which produced this info
+    @NotNull
+    private final PersistentHashMap<DataFlowValue, Boolean> notNullValues;
+
+    // True if the last operation which produced this info added type information
+    private final boolean hasTypeInfoConstraints;
+
+    private PersistentDataFlowInfo(
+            @NotNull PersistentHashMap<DataFlowValue, Nullability> nullabilityInfo,
+            @NotNull PersistentHashMap<DataFlowValue, TypeEntry> typeInfo,
+            @NotNull PersistentHashMap<DataFlowValue, Boolean> notNullValues,
+            boolean hasTypeInfoConstraints
+    ) {
+        this.nullabilityInfo = nullabilityInfo;
+        this.typeInfo = typeInfo;
+        this.notNullValues = notNullValues;
+        this.hasTypeInfoConstraints = hasTypeInfoConstraints;
+    }
+
+    @Override
+    @NotNull
+    public Nullability getNullability(@NotNull DataFlowValue key) {
+        return getNullability(nullabilityInfo, key);
+    }
+
+    @NotNull
+    private static Nullability getNullability(@NotNull PersistentHashMap<DataFlowValue, Nullability> nullabilityInfo, @NotNull DataFlowValue key) {
+        if (!key.isStableIdentifier()) return key.getImmanentNullability();
+        Nullability nullability = nullabilityInfo.get(key);
+        return nullability != null ? nullability : key.getImmanentNullability();
+    }
+
+    @Override
+    @NotNull
+    public Set<JetType> getPossibleTypes(@NotNull DataFlowValue key) {
+        TypeEntry entry = typeInfo.get(key);
+        boolean wasNotNull = !getNullability(key).canBeNull() || notNullValues.containsKey(key);
+        if (entry == null && !wasNotNull) return Collections.emptySet();
+
+        Set<JetType> enrichedTypes = new LinkedHashSet<JetType>();
+        JetType originalType = key.getType();
+        if (wasNotNull && originalType.isNullable()) {
+            enrichedTypes.add(TypeUtils.makeNotNullable(originalType));
+        }
+        for (TypeEntry e = entry; e != null; e = e.next) {
+            enrichedTypes.add(e.notNull ? TypeUtils.makeNotNullable(e.type) : e.type);
+        }
+        return enrichedTypes;
+    }
+
+    @Override
+    @NotNull
+    public DataFlowInfo equate(@NotNull DataFlowValue a, @NotNull DataFlowValue b) {
+        Nullability nullabilityOfA = getNullability(a);
+        Nullability nullabilityOfB = getNullability(b);
+
+        PersistentHashMap<DataFlowValue, Nullability> newNullabilityInfo = nullabilityInfo;
+        newNullabilityInfo = putNullability(newNullabilityInfo, a, nullabilityOfA.refine(nullabilityOfB));
+        newNullabilityInfo = putNullability(newNullabilityInfo, b, nullabilityOfB.refine(nullabilityOfA));
+        if (newNullabilityInfo == nullabilityInfo) return this;
+
+        PersistentHashMap<DataFlowValue, Boolean> newNotNullValues = rememberNotNull(notNullValues, newNullabilityInfo, a);
+        newNotNullValues = rememberNotNull(newNotNullValues, newNullabilityInfo, b);
+        return new PersistentDataFlowInfo(newNullabilityInfo, typeInfo, newNotNullValues, false);
+    }
+
+    @Override
+    @NotNull
+    public DataFlowInfo disequate(@NotNull DataFlowValue a, @NotNull DataFlowValue b) {
+        Nullability nullabilityOfA = getNullability(a);
+        Nullability nullabilityOfB = getNullability(b);
+
+        PersistentHashMap<DataFlowValue, Nullability> newNullabilityInfo = nullabilityInfo;
+        newNullabilityInfo = putNullability(newNullabilityInfo, a, nullabilityOfA.refine(nullabilityOfB.invert()));
+        newNullabilityInfo = putNullability(newNullabilityInfo, b, nullabilityOfB.refine(nullabilityOfA.invert()));
+        if (newNullabilityInfo == nullabilityInfo) return this;
+
+        PersistentHashMap<DataFlowValue, Boolean> newNotNullValues = rememberNotNull(notNullValues, newNullabilityInfo, a);
+        newNotNullValues = rememberNotNull(newNotNullValues, newNullabilityInfo, b);
+        return new PersistentDataFlowInfo(newNullabilityInfo, typeInfo, newNotNullValues, false);
+    }
+
+    @NotNull
+    private PersistentHashMap<DataFlowValue, Nullability> putNullability(
+            @NotNull PersistentHashMap<DataFlowValue, Nullability> map,
+            @NotNull DataFlowValue value,
+            @NotNull Nullability nullability
+    ) {
+        if (!value.isStableIdentifier() || nullability == getNullability(value)) return map;
+        return map.plus(value, nullability);
+    }
+
+    @NotNull
+    private static PersistentHashMap<DataFlowValue, Boolean> rememberNotNull(
+            @NotNull PersistentHashMap<DataFlowValue, Boolean> notNullValues,
+            @NotNull PersistentHashMap<DataFlowValue, Nullability> nullabilityInfo,
+            @NotNull DataFlowValue value
+    ) {
+        if (getNullability(nullabilityInfo, value).canBeNull()) return notNullValues;
+        return notNullValues.plus(value, true);
+    }
+
+    @Override
+    @NotNull
+    public DataFlowInfo establishSubtyping(@NotNull DataFlowValue value, @NotNull JetType type) {
+        if (value.getType().equals(type)) return this;
+        if (getPossibleTypes(value).contains(type)) return this;
+
+        PersistentHashMap<DataFlowValue, Nullability> newNullabilityInfo =
+                type.isNullable() ? nullabilityInfo : nullabilityInfo.plus(value, NOT_NULL);
+        boolean notNull = !getNullability(newNullabilityInfo, value).canBeNull();
+        PersistentHashMap<DataFlowValue, TypeEntry> newTypeInfo = typeInfo.plus(value, new TypeEntry(type, notNull, typeInfo.get(value)));
+        PersistentHashMap<DataFlowValue, Boolean> newNotNullValues = rememberNotNull(notNullValues, newNullabilityInfo, value);
+        return new PersistentDataFlowInfo(newNullabilityInfo, newTypeInfo, newNotNullValues, true);
+    }
+
+    @NotNull
+    @Override
+    public DataFlowInfo and(@NotNull DataFlowInfo otherInfo) {
+        if (otherInfo == EMPTY) return this;
+        if (this == EMPTY) return otherInfo;
+        if (this == otherInfo) return this;
+
+        assert otherInfo instanceof PersistentDataFlowInfo : "Unknown DataFlowInfo type: " + otherInfo;
+        PersistentDataFlowInfo other = (PersistentDataFlowInfo) otherInfo;
+
+        PersistentHashMap<DataFlowValue, Nullability> newNullabilityInfo = nullabilityInfo;
+        PersistentHashMap<DataFlowValue, Boolean> newNotNullValues = notNullValues;
+        for (Map.Entry<DataFlowValue, Nullability> entry : other.nullabilityInfo.changedEntries(nullabilityInfo)) {
+            DataFlowValue key = entry.getKey();
+            Nullability thisFlags = getNullability(key);
+            Nullability flags = thisFlags.and(entry.getValue());
+            if (flags != thisFlags) {
+                newNullabilityInfo = newNullabilityInfo.plus(key, flags);
+                newNotNullValues = rememberNotNull(newNotNullValues, newNullabilityInfo, key);
+            }
+        }
+
+        if (newNullabilityInfo == nullabilityInfo && containsAllTypes(other)) {
+            return this;
+        }
+
+        PersistentHashMap<DataFlowValue, TypeEntry> newTypeInfo = typeInfo;
+        for (Map.Entry<DataFlowValue, TypeEntry> entry : other.typeInfo.changedEntries(typeInfo)) {
+            DataFlowValue key = entry.getKey();
+            boolean notNull = !getNullability(newNullabilityInfo, key).canBeNull();
+            TypeEntry thisEntry = typeInfo.get(key);
+
+            // Types of the other info which this one doesn't have go first, in the same order
+            List<JetType> newTypes = new ArrayList<JetType>();
+            for (TypeEntry e = entry.getValue(); e != null; e = e.next) {
+                if ((thisEntry == null || !thisEntry.contains(e.type, notNull)) && !newTypes.contains(e.type)) {
+                    newTypes.add(e.type);
+                }
+            }
+            if (newTypes.isEmpty()) continue;
+
+            TypeEntry typeEntry = thisEntry;
+            for (int i = newTypes.size() - 1; i >= 0; i--) {
+                typeEntry = new TypeEntry(newTypes.get(i), notNull, typeEntry);
+            }
+            newTypeInfo = newTypeInfo.plus(key, typeEntry);
+        }
+
+        return new PersistentDataFlowInfo(newNullabilityInfo, newTypeInfo, newNotNullValues, !other.typeInfo.isEmpty());
+    }
+
+    private boolean containsAllTypes(@NotNull PersistentDataFlowInfo other) {
+        for (Map.Entry<DataFlowValue, TypeEntry> entry : other.typeInfo.changedEntries(typeInfo)) {
+            TypeEntry thisEntry = typeInfo.get(entry.getKey());
+            if (thisEntry == null) return false;
+            for (TypeEntry e = entry.getValue(); e != null; e = e.next) {
+                if (!thisEntry.contains(e.type, false)) return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    @Override
+    public DataFlowInfo or(@NotNull DataFlowInfo otherInfo) {
+        if (otherInfo == EMPTY) return EMPTY;
+        if (this == EMPTY) return EMPTY;
+        if (this == otherInfo) return this;
+
+        assert otherInfo instanceof PersistentDataFlowInfo : "Unknown DataFlowInfo type: " + otherInfo;
+        PersistentDataFlowInfo other = (PersistentDataFlowInfo) otherInfo;
+
+        // Nullability of values which are not in the other map is not known after the other operation, so its map is the base
+        PersistentHashMap<DataFlowValue, Nullability> newNullabilityInfo = other.nullabilityInfo;
+        for (Map.Entry<DataFlowValue, Nullability> entry : other.nullabilityInfo.changedEntries(nullabilityInfo)) {
+            DataFlowValue key = entry.getKey();
+            newNullabilityInfo = newNullabilityInfo.plus(key, getNullability(key).or(entry.getValue()));
+        }
+
+        // A value was not null after some operation on both paths
+        PersistentHashMap<DataFlowValue, Boolean> newNotNullValues = notNullValues;
+        for (Map.Entry<DataFlowValue, Boolean> entry : notNullValues.changedEntries(other.notNullValues)) {
+            newNotNullValues = newNotNullValues.minus(entry.getKey());
+        }
+
+        PersistentHashMap<DataFlowValue, TypeEntry> newTypeInfo = typeInfo;
+        for (Map.Entry<DataFlowValue, TypeEntry> entry : typeInfo.changedEntries(other.typeInfo)) {
+            DataFlowValue key = entry.getKey();
+            TypeEntry otherEntry = other.typeInfo.get(key);
+            if (otherEntry == null) {
+                newTypeInfo = newTypeInfo.minus(key);
+                continue;
+            }
+
+            TypeEntry typeEntry = TypeEntry.commonTypes(entry.getValue(), otherEntry);
+            newTypeInfo = typeEntry == null ? newTypeInfo.minus(key) : newTypeInfo.plus(key, typeEntry);
+        }
+
+        if (newNullabilityInfo.isEmpty() && newTypeInfo.isEmpty() && newNotNullValues.isEmpty()) {
+            return EMPTY;
+        }
+
+        return new PersistentDataFlowInfo(newNullabilityInfo, newTypeInfo, newNotNullValues, !newTypeInfo.isEmpty());
+    }
+
+    @Override
+    public boolean hasTypeInfoConstraints() {
+        return hasTypeInfoConstraints;
+    }
+
+    @Override
+    public String toString() {
+        if (typeInfo.isEmpty() && nullabilityInfo.isEmpty()) {
+            return "EMPTY";
+        }
+        return "Non-trivial DataFlowInfo";
+    }
+
+    private static class TypeEntry {
+        private final JetType type;
+        // The value was known to be not null when this type was established
+        private final boolean notNull;
+        @Nullable
+        private final TypeEntry next;
+
+        private TypeEntry(@NotNull JetType type, boolean notNull, @Nullable TypeEntry next) {
+            this.type = type;
+            this.notNull = notNull;
+            this.next = next;
+        }
+
+        // Common types in the order of the first entry, established for a not null value if they were so in both entries
+        @Nullable
+        private static TypeEntry commonTypes(@Nullable TypeEntry entry, @NotNull TypeEntry otherEntry) {
+            if (entry == null) return null;
+
+            TypeEntry rest = commonTypes(entry.next, otherEntry);
+            TypeEntry otherType = otherEntry.find(entry.type);
+            if (otherType == null) return rest;
+
+            boolean notNull = entry.notNull && otherType.notNull;
+            if (rest == entry.next && notNull == entry.notNull) return entry;
+            return new TypeEntry(entry.type, notNull, rest);
+        }
+
+        @Nullable
+        private TypeEntry find(@NotNull JetType type) {
+            for (TypeEntry e = this; e != null; e = e.next) {
+                if (e.type.equals(type)) return e;
+            }
+            return null;
+        }
+
+        // A type established for a not null value is made not-nullable, so it doesn't replace the same type established otherwise
+        private boolean contains(@NotNull JetType type, boolean notNull) {
+            for (TypeEntry e = this; e != null; e = e.next) {
+                if (e.type.equals(type) && (e.notNull || !notNull)) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -188,7 +188,7 @@ public class LazyClassDescriptor extends ClassDescriptorBase implements LazyDesc
 
         PsiElement scopeAnchor = declarationProvider.getOwnerInfo().getScopeAnchor();
 
-        return new ChainedScope(this, "ScopeForClassHeaderResolution: " + getName(),
+        return new ChainedScope(this, "ScopeForClassHeaderResolution: " + getName(), true,
                 scope,
                 getScopeProvider().getResolutionScopeForDeclaration(scopeAnchor));
     }
@@ -210,6 +210,7 @@ public class LazyClassDescriptor extends ClassDescriptorBase implements LazyDesc
         return new ChainedScope(
                 this,
                 "ScopeForMemberDeclarationResolution: " + getName(),
+                true,
                 thisScope,
                 getScopeForMemberLookup(),
                 getScopeForClassHeaderResolution(),
@@ -235,6 +236,7 @@ public class LazyClassDescriptor extends ClassDescriptorBase implements LazyDesc
         return new ChainedScope(
                 this,
                 "ScopeForPropertyInitializerResolution: " + getName(),
+                true,
                 scope, getScopeForMemberDeclarationResolution());
     }
 
@@ -53,7 +53,7 @@ public class LazyPackageDescriptor extends AbstractNamespaceDescriptorImpl imple
 
         this.lazyScope = new LazyPackageMemberScope(resolveSession, declarationProvider, this);
 
-        this.memberScope = new ChainedScope(this, "Lazy package members scope: " + name, lazyScope, scope);
+        this.memberScope = new ChainedScope(this, "Lazy package members scope: " + name, true, lazyScope, scope);
 
         NavigatablePsiElement declaration = Iterables.getFirst(declarationProvider.getPackageDeclarations(getFqName()), null);
         if (declaration != null) {
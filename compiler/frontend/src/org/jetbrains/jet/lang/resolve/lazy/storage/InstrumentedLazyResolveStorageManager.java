@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.lazy.storage;
+
+import jet.Function1;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.lang.resolve.BindingTrace;
+import org.jetbrains.jet.storage.InstrumentedStorageManager;
+import org.jetbrains.jet.storage.MemoizedFunctionToNotNull;
+import org.jetbrains.jet.storage.MemoizedFunctionToNullable;
+import org.jetbrains.jet.storage.StorageStatistics;
+
+public class InstrumentedLazyResolveStorageManager extends InstrumentedStorageManager implements LazyResolveStorageManager {
+    @NotNull
+    public static LazyResolveStorageManager instrumentIfEnabled(@NotNull LazyResolveStorageManager storageManager) {
+        StorageStatistics statistics = StorageStatistics.getGlobal();
+        return statistics == null ? storageManager : new InstrumentedLazyResolveStorageManager(storageManager, statistics);
+    }
+
+    private final LazyResolveStorageManager delegate;
+
+    public InstrumentedLazyResolveStorageManager(@NotNull LazyResolveStorageManager delegate, @NotNull StorageStatistics statistics) {
+        super(delegate, statistics);
+        this.delegate = delegate;
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createWeaklyRetainedMemoizedFunction(@NotNull Function1<K, V> compute) {
+        StorageStatistics.Counters counters = getCounters(compute);
+        return countingCalls(counters, delegate.createWeaklyRetainedMemoizedFunction(measuring(counters, compute)));
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createWeaklyRetainedMemoizedFunctionWithNullableValues(
+            @NotNull Function1<K, V> compute
+    ) {
+        StorageStatistics.Counters counters = getCounters(compute);
+        return countingCalls(counters, delegate.createWeaklyRetainedMemoizedFunctionWithNullableValues(measuring(counters, compute)));
+    }
+
+    @NotNull
+    @Override
+    public BindingTrace createSafeTrace(@NotNull BindingTrace originalTrace) {
+        return delegate.createSafeTrace(originalTrace);
+    }
+}
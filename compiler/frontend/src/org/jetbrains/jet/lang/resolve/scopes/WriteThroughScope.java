@@ -247,6 +247,11 @@ public class WriteThroughScope extends WritableScopeWithImports {
         return writableWorker.getDeclaredDescriptorsAccessibleBySimpleName();
     }
 
+    @Override
+    public void compact() {
+        writableWorker.compact();
+    }
+
     @Override
     public void importScope(@NotNull JetScope imported) {
         checkMayWrite();
@@ -20,6 +20,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BasicWritableSlice<K, V> implements WritableSlice<K, V> {
 
@@ -39,7 +40,10 @@ public class BasicWritableSlice<K, V> implements WritableSlice<K, V> {
         return null;
     }
     
+    private static final AtomicInteger slicesCreated = new AtomicInteger();
+
     private String debugName;
+    private final int index = slicesCreated.getAndIncrement();
     private final RewritePolicy rewritePolicy;
     private final boolean isCollective;
 
@@ -52,9 +56,22 @@ public class BasicWritableSlice<K, V> implements WritableSlice<K, V> {
         this.isCollective = isCollective;
     }
 
+    /**
+     * Slices are numbered densely, so that sliced maps can keep values of different slices in an array indexed by this number
+     */
+    public final int getIndex() {
+        return index;
+    }
+
+    @NotNull
+    @Override
+    public BasicWritableSlice<K, ?> getStorageSlice() {
+        return this;
+    }
+
     @Override
-    public SlicedMapKey<K, V> makeKey(K key) {
-        return new SlicedMapKey<K, V>(this, key);
+    public K normalizeKey(K key) {
+        return key;
     }
 
     // True to put, false to skip
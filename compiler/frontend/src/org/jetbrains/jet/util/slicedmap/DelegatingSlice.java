@@ -48,9 +48,15 @@ public class DelegatingSlice<K, V> implements WritableSlice<K, V> {
         return delegate.getRewritePolicy();
     }
 
+    @NotNull
     @Override
-    public SlicedMapKey<K, V> makeKey(K key) {
-        return delegate.makeKey(key);
+    public BasicWritableSlice<K, ?> getStorageSlice() {
+        return delegate.getStorageSlice();
+    }
+
+    @Override
+    public K normalizeKey(K key) {
+        return delegate.normalizeKey(key);
     }
 
     @Override
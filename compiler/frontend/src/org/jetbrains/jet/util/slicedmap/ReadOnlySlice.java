@@ -16,8 +16,19 @@
 
 package org.jetbrains.jet.util.slicedmap;
 
+import org.jetbrains.annotations.NotNull;
+
 public interface ReadOnlySlice<K, V> {
-    SlicedMapKey<K, V> makeKey(K key);
+    /**
+     * @return the slice values of this slice are stored under in a sliced map: e.g. raw value versions share storage with their originals
+     */
+    @NotNull
+    BasicWritableSlice<K, ?> getStorageSlice();
+
+    /**
+     * @return the key a value for {@code key} is stored by
+     */
+    K normalizeKey(K key);
 
     V computeValue(SlicedMap map, K key, V value, boolean valueNotFound);
 
@@ -17,36 +17,63 @@
 package org.jetbrains.jet.util.slicedmap;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.utils.CommonSuppliers;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
 
 public class SlicedMapImpl implements MutableSlicedMap {
 
     public static SlicedMapImpl create() {
-        return new SlicedMapImpl(Maps.<SlicedMapKey<?, ?>, Object>newLinkedHashMap());
+        return new SlicedMapImpl(MapSupplier.LINKED_HASH_MAP_SUPPLIER);
     }
 
-    public static SlicedMapImpl create(Map<SlicedMapKey<?, ?>, Object> map) {
-        return new SlicedMapImpl(map);
+    public static SlicedMapImpl create(MapSupplier mapSupplier) {
+        return new SlicedMapImpl(mapSupplier);
     }
 
-    public static SlicedMapImpl create(MapSupplier mapSupplier) {
-        return new SlicedMapImpl(mapSupplier.<SlicedMapKey<?, ?>, Object>get());
+    private static final Map<?, ?>[] NO_STORAGES = new Map<?, ?>[0];
+    private static final BasicWritableSlice<?, ?>[] NO_SLICES = new BasicWritableSlice<?, ?>[0];
+
+    private final MapSupplier mapSupplier;
+    // Values are stored per slice, indexed by BasicWritableSlice.getIndex(); maps are created on first write to a slice
+    private Map<?, ?>[] storages = NO_STORAGES;
+    private BasicWritableSlice<?, ?>[] storageSlices = NO_SLICES;
+    @Nullable
+    private Multimap<WritableSlice<?, ?>, Object> collectiveSliceKeys = null;
+
+    protected SlicedMapImpl(MapSupplier mapSupplier) {
+        this.mapSupplier = mapSupplier;
+    }
+
+    @Nullable
+    private <K> Map<K, Object> getStorage(@NotNull ReadOnlySlice<K, ?> slice) {
+        int index = slice.getStorageSlice().getIndex();
+        //noinspection unchecked
+        return index < storages.length ? (Map<K, Object>) storages[index] : null;
     }
-    
-    private final Map<SlicedMapKey<?, ?>, Object> map;
-    private final Multimap<WritableSlice<?, ?>, Object> collectiveSliceKeys = Multimaps.newListMultimap(new HashMap<WritableSlice<?, ?>, Collection<Object>>(), CommonSuppliers.getArrayListSupplier());
 
-    protected SlicedMapImpl(Map<SlicedMapKey<?, ?>, Object> map) {
-        this.map = map;
+    @NotNull
+    private <K> Map<K, Object> getOrCreateStorage(@NotNull ReadOnlySlice<K, ?> slice) {
+        BasicWritableSlice<K, ?> storageSlice = slice.getStorageSlice();
+        int index = storageSlice.getIndex();
+        if (index >= storages.length) {
+            int newLength = Math.max(index + 1, storages.length * 3 / 2);
+            storages = Arrays.copyOf(storages, newLength);
+            storageSlices = Arrays.copyOf(storageSlices, newLength);
+        }
+
+        //noinspection unchecked
+        Map<K, Object> storage = (Map<K, Object>) storages[index];
+        if (storage == null) {
+            storage = mapSupplier.get();
+            storages[index] = storage;
+            storageSlices[index] = storageSlice;
+        }
+        return storage;
     }
 
     @Override
@@ -55,67 +82,114 @@ public class SlicedMapImpl implements MutableSlicedMap {
             return;
         }
 
-        SlicedMapKey<K, V> slicedMapKey = slice.makeKey(key);
+        Map<K, Object> storage = getOrCreateStorage(slice);
+        K normalizedKey = slice.normalizeKey(key);
         RewritePolicy rewritePolicy = slice.getRewritePolicy();
         if (rewritePolicy.rewriteProcessingNeeded(key)) {
-            if (map.containsKey(slicedMapKey)) {
+            if (storage.containsKey(normalizedKey)) {
                 //noinspection unchecked
-                if (!rewritePolicy.processRewrite(slice, key, (V) map.get(slicedMapKey), value)) {
+                if (!rewritePolicy.processRewrite(slice, key, (V) storage.get(normalizedKey), value)) {
                     return;
                 }
             }
         }
 
         if (slice.isCollective()) {
+            if (collectiveSliceKeys == null) {
+                collectiveSliceKeys = Multimaps.newListMultimap(new HashMap<WritableSlice<?, ?>, Collection<Object>>(),
+                                                                CommonSuppliers.<Object>getArrayListSupplier());
+            }
             collectiveSliceKeys.put(slice, key);
         }
 
-        map.put(slicedMapKey, value);
+        storage.put(normalizedKey, value);
         slice.afterPut(this, key, value);
     }
 
     @Override
     public void clear() {
-        map.clear();
+        storages = NO_STORAGES;
+        storageSlices = NO_SLICES;
+        collectiveSliceKeys = null;
     }
 
     @Override
     public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
-        SlicedMapKey<K, V> slicedMapKey = slice.makeKey(key);
+        Map<K, Object> storage = getStorage(slice);
+        if (storage == null) {
+            return slice.computeValue(this, key, null, true);
+        }
+
+        K normalizedKey = slice.normalizeKey(key);
         //noinspection unchecked
-        V value = (V) map.get(slicedMapKey);
-        return slice.computeValue(this, key, value, value == null && !map.containsKey(slicedMapKey));
+        V value = (V) storage.get(normalizedKey);
+        return slice.computeValue(this, key, value, value == null && !storage.containsKey(normalizedKey));
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
         assert slice.isCollective() : "Keys are not collected for slice " + slice;
+        if (collectiveSliceKeys == null) return Collections.emptyList();
         return (Collection<K>) collectiveSliceKeys.get(slice);
     }
 
     @Override
     public <K, V> V remove(RemovableSlice<K, V> slice, K key) {
+        Map<K, Object> storage = getStorage(slice);
         //noinspection unchecked
-        return (V) map.remove(slice.makeKey(key));
+        return storage == null ? null : (V) storage.remove(slice.normalizeKey(key));
     }
 
+    /**
+     * Entries are grouped by slice; the order of entries within a slice is the order they were put in
+     */
     @NotNull
     @Override
     public Iterator<Map.Entry<SlicedMapKey<?, ?>, ?>> iterator() {
-        //noinspection unchecked
-        return (Iterator) map.entrySet().iterator();
+        final Map<?, ?>[] storages = this.storages;
+        final BasicWritableSlice<?, ?>[] storageSlices = this.storageSlices;
+
+        return new Iterator<Map.Entry<SlicedMapKey<?, ?>, ?>>() {
+            private int index = -1;
+            private Iterator<? extends Map.Entry<?, ?>> current = Collections.<Map.Entry<?, ?>>emptySet().iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    index++;
+                    if (index >= storages.length) return false;
+                    if (storages[index] != null) {
+                        current = storages[index].entrySet().iterator();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Map.Entry<SlicedMapKey<?, ?>, ?> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+
+                Map.Entry<?, ?> entry = current.next();
+                return new AbstractMap.SimpleImmutableEntry<SlicedMapKey<?, ?>, Object>(
+                        new SlicedMapKey(storageSlices[index], entry.getKey()), entry.getValue());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
     @NotNull
     @Override
     public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
-        ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
-        for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map.entrySet()) {
-            if (entry.getKey().getSlice() == slice) {
-                builder.put((K) entry.getKey().getKey(), (V) entry.getValue());
-            }
-        }
-        return builder.build();
+        Map<K, Object> storage = getStorage(slice);
+        if (storage == null) return ImmutableMap.of();
+
+        //noinspection unchecked
+        return ImmutableMap.copyOf((Map<K, V>) storage);
     }
 }
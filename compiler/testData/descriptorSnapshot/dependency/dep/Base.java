@@ -0,0 +1,7 @@
+package dep;
+
+public class Base {
+    public String baseName() {
+        return "";
+    }
+}
@@ -0,0 +1,11 @@
+package dep;
+
+public class Base {
+    public String baseName() {
+        return "";
+    }
+
+    public String shadowName() {
+        return "";
+    }
+}
@@ -0,0 +1,21 @@
+package lib;
+
+import dep.Base;
+
+import java.util.List;
+
+public class Library extends Base {
+    public int count;
+
+    public String name() {
+        return "";
+    }
+
+    public List<String> names(Base base) {
+        return null;
+    }
+
+    public static Library create(String name, int... counts) {
+        return new Library();
+    }
+}
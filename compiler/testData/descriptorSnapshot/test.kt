@@ -0,0 +1,16 @@
+package test
+
+import dep.Base
+import lib.Library
+
+fun library(l: Library): Library = l
+
+fun create() = Library.create("", 1, 2)
+
+fun name(l: Library) = l.name()
+
+fun names(l: Library) = l.names(l)
+
+fun baseName(b: Base) = b.baseName()
+
+fun count(l: Library) = l.count
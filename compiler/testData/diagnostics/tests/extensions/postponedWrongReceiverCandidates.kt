@@ -0,0 +1,22 @@
+package a
+
+trait A
+class B : A
+
+fun Int.ext(): Int = 1
+fun String.ext(): String = ""
+fun <T> List<T>.ext(): T? = null
+fun <T: A> T.ext(): A = this
+
+// candidates with other receiver classes are postponed, the right one is chosen
+
+fun test1(): Int = 1.ext()
+fun test2(): String = "".ext()
+fun test3(l: List<String>): String? = l.ext()
+fun test4(): A = B().ext()
+
+// all the candidates are postponed, they are resolved to be reported
+
+fun test5(c: Char) {
+    c.<!UNRESOLVED_REFERENCE_WRONG_RECEIVER!>ext<!>()
+}
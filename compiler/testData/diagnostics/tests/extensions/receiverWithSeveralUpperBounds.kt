@@ -0,0 +1,28 @@
+package b
+
+trait A
+trait B
+class AB : A, B
+class OnlyA : A
+
+fun <T> T.both(): T where T: A, T: B = this
+
+fun <T: U, U> T.sub(u: U): U = u
+
+// the receiver matches every upper bound, the candidate is not postponed
+
+fun test1(): AB = AB().both()
+fun test2(): A = AB().both()
+fun test3(a: A): A = AB().sub(a)
+
+class Box<E>(val e: E) {
+    fun E.self(): E = this
+
+    fun test4(): E = e.self()
+}
+
+// one of the upper bounds is not a supertype of the receiver
+
+fun test5(a: OnlyA) {
+    a.<!UNRESOLVED_REFERENCE_WRONG_RECEIVER!>both<!>()
+}
@@ -0,0 +1,24 @@
+//FILE:a.kt
+package a
+
+val s: String = ""
+
+//FILE:b.kt
+package b
+
+import c.String
+
+// An explicit import takes precedence over the default ones
+val s: String = String()
+val t: jet.String = ""
+
+//FILE:c.kt
+package c
+
+class String
+
+//FILE:d.kt
+package d
+
+// Default imports which all the files share are not changed by explicit imports of other files
+val s: String = ""
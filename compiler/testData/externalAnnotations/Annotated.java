@@ -0,0 +1,30 @@
+package test;
+
+import java.util.List;
+import java.util.Map;
+
+public class Annotated {
+    public String field;
+
+    public Annotated(String s, int... counts) {
+    }
+
+    public <T extends Comparable<T>> List<T> generic(List<? extends T> list, Map<String, T[]> map, T... rest) {
+        return null;
+    }
+
+    public class Inner {
+        public Inner(String s) {
+        }
+
+        public Inner method(Annotated outer) {
+            return this;
+        }
+    }
+
+    public static class Nested<E> {
+        public E get(Nested<? super E> other) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package test;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+public class Annotations {
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Runtime {
+        String value() default "default";
+        int[] ints() default {1, 2};
+    }
+
+    public @interface Binary {
+        Class<?> type();
+        ElementType element() default ElementType.FIELD;
+        Runtime nested() default @Runtime;
+        ElementType[] elements() default {};
+    }
+
+    @Target(ElementType.PARAMETER)
+    public @interface Parameter {
+        char c() default 'c';
+        long l() default 1L;
+        double d() default 1.5;
+        boolean b() default true;
+    }
+
+    @Runtime("class")
+    @Binary(type = String.class, elements = {ElementType.METHOD, ElementType.TYPE})
+    public static class Annotated {
+        @Runtime(ints = {})
+        public static final String CONSTANT = "constant";
+
+        @Binary(type = int[].class, nested = @Runtime(value = "nested", ints = 3))
+        public Annotated(@Parameter(c = 'x') int i, @Parameter(l = 2, b = false) String s) {
+        }
+
+        @Deprecated
+        @Runtime
+        public void method(@Parameter int i) {
+        }
+    }
+
+    public class Inner {
+        public Inner(@Parameter(d = 2.5) int i) {
+        }
+    }
+
+    public enum Enum {
+        ONE(0);
+
+        Enum(@Parameter int i) {
+        }
+    }
+}
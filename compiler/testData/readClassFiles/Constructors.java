@@ -0,0 +1,59 @@
+package test;
+
+import java.util.List;
+
+public class Constructors {
+    public Constructors(int i, String s) {
+    }
+
+    protected Constructors(List<String> strings) {
+    }
+
+    Constructors() {
+    }
+
+    public class Inner {
+        public Inner(String s) {
+        }
+
+        public <T> Inner(T t, List<T> list) {
+        }
+    }
+
+    public static class Nested {
+        public Nested(int i) {
+        }
+    }
+
+    public enum Enum {
+        FIRST(1),
+        SECOND(2) {
+            @Override
+            public int getValue() {
+                return 3;
+            }
+        };
+
+        private final int value;
+
+        Enum(int value) {
+            this.value = value;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+
+    public enum GenericEnum {
+        A(null);
+
+        <T> GenericEnum(List<T> list) {
+        }
+    }
+
+    public class GenericInner<T> {
+        public GenericInner(T t) {
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public class Generics<K extends Comparable<K>, V> implements Comparable<Generics<K, V>> {
+    public Map<K, List<V>> map;
+    public V[] values;
+    public List raw;
+
+    public <T extends Number & Comparable<T>> T max(Collection<T> elements) {
+        return null;
+    }
+
+    public <E extends V> void put(K key, E value) {
+    }
+
+    public int compareTo(Generics<K, V> other) {
+        return 0;
+    }
+
+    public class Inner<I> {
+        public Generics<K, V>.Inner<I> self() {
+            return this;
+        }
+
+        public Map.Entry<K, I> entry() {
+            return null;
+        }
+    }
+
+    public static class Nested<N extends Nested<N>> {
+        public N self() {
+            return null;
+        }
+    }
+
+    public interface Visitor<R, D> {
+        R visit(Generics<?, ?> element, D data);
+    }
+}
@@ -0,0 +1,29 @@
+package test;
+
+import java.util.List;
+import java.util.Map;
+
+public class NestedClassReferences {
+    public static class Nested {
+        public class Inner {
+        }
+    }
+
+    public class Generic<T> {
+        public class Inner {
+        }
+    }
+
+    public Nested.Inner nestedInner(Nested.Inner inner, Map.Entry<String, Nested> entry) {
+        return inner;
+    }
+
+    public Generic<String>.Inner genericInner(Generic<String>.Inner inner, List<Generic<String>.Inner> list) {
+        return inner;
+    }
+
+    public void arrays(Nested[] nested, Map.Entry<?, ?>... entries) {
+    }
+
+    public Map.Entry<String, String> entry;
+}
@@ -0,0 +1,31 @@
+package test;
+
+import java.util.List;
+
+public class Varargs {
+    public Varargs(String... strings) {
+    }
+
+    public void ints(int... ints) {
+    }
+
+    public void strings(String first, String... rest) {
+    }
+
+    public <T> void generic(T... elements) {
+    }
+
+    public void lists(List<? extends CharSequence>... lists) {
+    }
+
+    public void arrayNotVararg(String[] strings) {
+    }
+
+    public void multiDimensional(int[]... ints) {
+    }
+
+    public class Inner {
+        public Inner(int... ints) {
+        }
+    }
+}
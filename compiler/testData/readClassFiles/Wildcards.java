@@ -0,0 +1,21 @@
+package test;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+public abstract class Wildcards<T> {
+    public List<?> unbounded;
+    public List<? extends Number> extendsBound;
+    public List<? super T> superBound;
+    public Map<? extends T, ? super List<? extends T>> nested;
+    public Comparator<? super Map.Entry<?, ? extends T>>[] array;
+
+    public abstract <E> void addAll(Collection<? super E> target, Collection<? extends E> source);
+
+    public abstract List<? extends Comparable<? super T>> comparables();
+
+    public static void raw(List list, Map<String, List> map) {
+    }
+}
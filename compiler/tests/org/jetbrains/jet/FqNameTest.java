@@ -102,6 +102,21 @@ public class FqNameTest {
         Assert.assertSame(fqName, fqName.toSafe().toUnsafe());
     }
 
+    @Test
+    public void namesAreInterned() {
+        Assert.assertSame(Name.identifier("foo"), Name.guess("foo"));
+        Assert.assertSame(Name.special("<foo>"), Name.guess("<foo>"));
+        Assert.assertSame(new FqName("com.jetbrains").pathSegments().get(1), new FqName("org.jetbrains").shortName());
+    }
+
+    @Test
+    public void internFqName() {
+        FqName fqName = new FqName("com.jetbrains.jet").intern();
+        Assert.assertSame(fqName, new FqName("com.jetbrains.jet").intern());
+        Assert.assertSame(fqName.parent(), new FqName("com.jetbrains.jet").parent());
+        Assert.assertSame(new FqNameUnsafe("a.<b>").intern(), new FqNameUnsafe("a.<b>").intern());
+    }
+
     @Test
     public void isValidJavaFqName() {
         Assert.assertTrue(QualifiedNamesUtil.isValidJavaFqName(""));
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cfg;
+
+import junit.framework.TestCase;
+import org.jetbrains.jet.lang.cfg.BitVectorState;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+
+public class BitVectorStateTest extends TestCase {
+    public void testSetReturnsSameStateIfNothingChanged() {
+        BitVectorState state = BitVectorState.empty(2).set(3, true, false);
+
+        assertSame(state, state.set(3, true, false));
+        assertSame(state, state.set(5, false, false));
+    }
+
+    public void testSetDoesNotChangeOriginalState() {
+        BitVectorState empty = BitVectorState.empty(2);
+        BitVectorState state = empty.set(1, false, true);
+
+        assertNotSame(empty, state);
+        assertFalse(empty.get(1, 1));
+        assertTrue(state.get(1, 1));
+        assertFalse(state.get(0, 1));
+
+        BitVectorState cleared = state.set(1, false, false);
+        assertTrue(state.get(1, 1));
+        assertFalse(cleared.get(1, 1));
+        assertEquals(empty, cleared);
+    }
+
+    public void testGetPlaneReturnsCopy() {
+        BitVectorState state = BitVectorState.empty(1).set(2, true);
+
+        BitSet plane = state.getPlane(0);
+        plane.set(4);
+
+        assertFalse(state.get(0, 4));
+        assertEquals(1, state.getPlane(0).cardinality());
+    }
+
+    public void testMergeOfNoStatesIsEmpty() {
+        BitVectorState merged = BitVectorState.merge(Collections.<BitVectorState>emptyList(), 3);
+
+        assertEquals(BitVectorState.empty(3), merged);
+        assertEquals(3, merged.getPlaneCount());
+    }
+
+    public void testMergeOfSameStatesReturnsThem() {
+        BitVectorState state = BitVectorState.empty(2).set(0, true, true);
+
+        assertSame(state, BitVectorState.merge(Collections.singletonList(state), 2));
+        assertSame(state, BitVectorState.merge(Arrays.asList(state, state, state), 2));
+    }
+
+    public void testMergeIsUnionOfEveryPlane() {
+        BitVectorState first = BitVectorState.empty(2).set(0, true, false).set(1, true, false);
+        BitVectorState second = BitVectorState.empty(2).set(1, true, true).set(2, false, true);
+
+        BitVectorState merged = BitVectorState.merge(Arrays.asList(first, second), 2);
+
+        BitVectorState expected = BitVectorState.empty(2).set(0, true, false).set(1, true, true).set(2, false, true);
+        assertEquals(expected, merged);
+        assertEquals(expected.hashCode(), merged.hashCode());
+        assertEquals(BitVectorState.merge(Arrays.asList(second, first), 2), merged);
+
+        // merged states stay unchanged
+        assertFalse(first.get(1, 1));
+        assertFalse(second.get(0, 0));
+    }
+
+    public void testEquals() {
+        BitVectorState state = BitVectorState.empty(2).set(7, true, false);
+
+        assertEquals(BitVectorState.empty(2).set(7, true, false), state);
+        assertFalse(state.equals(BitVectorState.empty(2).set(7, false, true)));
+        assertFalse(BitVectorState.empty(1).equals(BitVectorState.empty(2)));
+        assertEquals(BitVectorState.empty(2), state.set(7, false, false));
+    }
+}
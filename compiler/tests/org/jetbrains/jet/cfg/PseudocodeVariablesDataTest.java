@@ -0,0 +1,366 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cfg;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetLiteFixture;
+import org.jetbrains.jet.JetTestCaseBuilder;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.cfg.PseudocodeTraverser;
+import org.jetbrains.jet.lang.cfg.PseudocodeTraverser.Edges;
+import org.jetbrains.jet.lang.cfg.PseudocodeTraverser.InstructionDataMergeStrategy;
+import org.jetbrains.jet.lang.cfg.PseudocodeTraverser.TraversalOrder;
+import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData;
+import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData.VariableInitState;
+import org.jetbrains.jet.lang.cfg.PseudocodeVariablesData.VariableUseState;
+import org.jetbrains.jet.lang.cfg.pseudocode.*;
+import org.jetbrains.jet.lang.descriptors.VariableDescriptor;
+import org.jetbrains.jet.lang.psi.JetDeclaration;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.psi.JetProperty;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.ANALYSE_LOCAL_DECLARATIONS;
+import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.LookInsideStrategy.SKIP_LOCAL_DECLARATIONS;
+import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.TraversalOrder.BACKWARD;
+import static org.jetbrains.jet.lang.cfg.PseudocodeTraverser.TraversalOrder.FORWARD;
+
+/**
+ * Checks the bit vector analyses of {@link PseudocodeVariablesData} against a straightforward map-based implementation
+ * (the one used before the bit vectors were introduced) on the control flow test data.
+ */
+public class PseudocodeVariablesDataTest extends JetLiteFixture {
+    private final String myName;
+
+    public PseudocodeVariablesDataTest(String dataPath, String name) {
+        super(dataPath);
+        myName = name;
+    }
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    @Override
+    public String getName() {
+        return "test" + myName;
+    }
+
+    @Override
+    protected void runTest() throws Throwable {
+        JetFile file = loadPsiFile(myName + ".kt");
+        BindingContext bindingContext = JetTestUtils.analyzeFile(file).getBindingContext();
+        for (JetDeclaration declaration : file.getDeclarations()) {
+            Pseudocode pseudocode = PseudocodeUtil.generatePseudocode(declaration, bindingContext);
+            PseudocodeVariablesData data = new PseudocodeVariablesData(pseudocode, bindingContext);
+            ReferenceVariablesData reference = new ReferenceVariablesData(pseudocode, bindingContext, data);
+
+            assertSameData("Initializers in " + declaration.getName(),
+                           reference.getVariableInitializers(pseudocode), renderInitStates(data.getVariableInitializers()));
+            assertSameData("Use status in " + declaration.getName(),
+                           reference.getVariableUseStatusData(), renderStates(data.getVariableUseStatusData()));
+
+            // Flow checks visit the cached graphs instead of the pseudocode
+            for (TraversalOrder order : TraversalOrder.values()) {
+                assertEquals("Traversal " + order + " of " + declaration.getName(),
+                             traverse(pseudocode, order), data.getInstructionGraph(order, ANALYSE_LOCAL_DECLARATIONS).getInstructions());
+            }
+            assertEquals("Instructions of " + declaration.getName(),
+                         Sets.newHashSet(pseudocode.getInstructions()),
+                         Sets.newHashSet(data.getInstructionGraph(FORWARD, SKIP_LOCAL_DECLARATIONS).getInstructions()));
+        }
+    }
+
+    @NotNull
+    private static List<Instruction> traverse(@NotNull Pseudocode pseudocode, @NotNull TraversalOrder order) {
+        final List<Instruction> result = Lists.newArrayList();
+        PseudocodeTraverser.traverse(pseudocode, order, new PseudocodeTraverser.InstructionAnalyzeStrategy() {
+            @Override
+            public void execute(@NotNull Instruction instruction) {
+                result.add(instruction);
+            }
+        });
+        return result;
+    }
+
+    private static void assertSameData(
+            @NotNull String message,
+            @NotNull Map<Instruction, Edges<Map<VariableDescriptor, String>>> expected,
+            @NotNull Map<Instruction, Edges<Map<VariableDescriptor, String>>> actual
+    ) {
+        assertEquals(message + ": instructions", expected.keySet(), actual.keySet());
+        for (Map.Entry<Instruction, Edges<Map<VariableDescriptor, String>>> entry : expected.entrySet()) {
+            Instruction instruction = entry.getKey();
+            Edges<Map<VariableDescriptor, String>> actualEdges = actual.get(instruction);
+            assertEquals(message + ": enter " + instruction, entry.getValue().in, actualEdges.in);
+            assertEquals(message + ": exit " + instruction, entry.getValue().out, actualEdges.out);
+        }
+    }
+
+    @NotNull
+    private static Map<Instruction, Edges<Map<VariableDescriptor, String>>> renderInitStates(
+            @NotNull Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> data
+    ) {
+        Map<Instruction, Edges<Map<VariableDescriptor, String>>> result = Maps.newHashMap();
+        for (Map.Entry<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> entry : data.entrySet()) {
+            Edges<Map<VariableDescriptor, VariableInitState>> edges = entry.getValue();
+            result.put(entry.getKey(), Edges.create(renderInitState(edges.in), renderInitState(edges.out)));
+        }
+        return result;
+    }
+
+    @NotNull
+    private static Map<VariableDescriptor, String> renderInitState(@NotNull Map<VariableDescriptor, VariableInitState> states) {
+        Map<VariableDescriptor, String> result = Maps.newHashMap();
+        for (Map.Entry<VariableDescriptor, VariableInitState> entry : states.entrySet()) {
+            VariableInitState state = entry.getValue();
+            result.put(entry.getKey(), InitState.create(state.isInitialized, state.isDeclared).toString());
+        }
+        return result;
+    }
+
+    @NotNull
+    private static <S> Map<Instruction, Edges<Map<VariableDescriptor, String>>> renderStates(
+            @NotNull Map<Instruction, Edges<Map<VariableDescriptor, S>>> data
+    ) {
+        Map<Instruction, Edges<Map<VariableDescriptor, String>>> result = Maps.newHashMap();
+        for (Map.Entry<Instruction, Edges<Map<VariableDescriptor, S>>> entry : data.entrySet()) {
+            Edges<Map<VariableDescriptor, S>> edges = entry.getValue();
+            result.put(entry.getKey(), Edges.create(renderState(edges.in), renderState(edges.out)));
+        }
+        return result;
+    }
+
+    @NotNull
+    private static <S> Map<VariableDescriptor, String> renderState(@NotNull Map<VariableDescriptor, S> states) {
+        Map<VariableDescriptor, String> result = Maps.newHashMap();
+        for (Map.Entry<VariableDescriptor, S> entry : states.entrySet()) {
+            result.put(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        return result;
+    }
+
+    private static final class InitState {
+        private static final InitState[] STATES = {
+                new InitState(false, false), new InitState(false, true), new InitState(true, false), new InitState(true, true)
+        };
+
+        private final boolean isInitialized;
+        private final boolean isDeclared;
+
+        private InitState(boolean isInitialized, boolean isDeclared) {
+            this.isInitialized = isInitialized;
+            this.isDeclared = isDeclared;
+        }
+
+        @NotNull
+        private static InitState create(boolean isInitialized, boolean isDeclared) {
+            return STATES[(isInitialized ? 2 : 0) + (isDeclared ? 1 : 0)];
+        }
+
+        @Override
+        public String toString() {
+            return (isInitialized ? "I" : "-") + (isDeclared ? "D" : "-");
+        }
+    }
+
+    private static int getImportance(@NotNull VariableUseState state) {
+        switch (state) {
+            case LAST_READ: return 3;
+            case LAST_WRITTEN: return 2;
+            case ONLY_WRITTEN_NEVER_READ: return 1;
+            default: return 0;
+        }
+    }
+
+    /**
+     * The analyses of {@link PseudocodeVariablesData} over hash maps, run with {@link PseudocodeTraverser#collectData}
+     */
+    private static class ReferenceVariablesData {
+        private final Pseudocode pseudocode;
+        private final BindingContext bindingContext;
+        private final PseudocodeVariablesData variablesData;
+
+        private ReferenceVariablesData(
+                @NotNull Pseudocode pseudocode,
+                @NotNull BindingContext bindingContext,
+                @NotNull PseudocodeVariablesData variablesData
+        ) {
+            this.pseudocode = pseudocode;
+            this.bindingContext = bindingContext;
+            this.variablesData = variablesData;
+        }
+
+        @NotNull
+        private Map<Instruction, Edges<Map<VariableDescriptor, String>>> getVariableInitializers(@NotNull Pseudocode pseudocode) {
+            Set<VariableDescriptor> declaredVariables = variablesData.getDeclaredVariables(pseudocode, false);
+            Map<VariableDescriptor, InitState> initialMapForStartInstruction = Maps.newHashMap();
+            for (VariableDescriptor variable : variablesData.getUsedVariables(pseudocode)) {
+                initialMapForStartInstruction.put(variable, InitState.create(!declaredVariables.contains(variable), false));
+            }
+
+            Map<Instruction, Edges<Map<VariableDescriptor, InitState>>> data = PseudocodeTraverser.collectData(
+                    pseudocode, FORWARD, SKIP_LOCAL_DECLARATIONS,
+                    Collections.<VariableDescriptor, InitState>emptyMap(), initialMapForStartInstruction,
+                    new InstructionDataMergeStrategy<Map<VariableDescriptor, InitState>>() {
+                        @Override
+                        public Edges<Map<VariableDescriptor, InitState>> execute(
+                                @NotNull Instruction instruction, @NotNull Collection<Map<VariableDescriptor, InitState>> incomingEdgesData
+                        ) {
+                            Map<VariableDescriptor, InitState> enterData = mergeInitStates(incomingEdgesData);
+                            return Edges.create(enterData, addInitState(instruction, enterData));
+                        }
+                    });
+
+            Map<Instruction, Edges<Map<VariableDescriptor, String>>> result = renderStates(data);
+            for (LocalDeclarationInstruction localDeclarationInstruction : pseudocode.getLocalDeclarations()) {
+                result.putAll(getVariableInitializers(localDeclarationInstruction.getBody()));
+            }
+            return result;
+        }
+
+        @NotNull
+        private static Map<VariableDescriptor, InitState> mergeInitStates(
+                @NotNull Collection<Map<VariableDescriptor, InitState>> incomingEdgesData
+        ) {
+            Set<VariableDescriptor> variablesInScope = Sets.newHashSet();
+            for (Map<VariableDescriptor, InitState> edgeData : incomingEdgesData) {
+                variablesInScope.addAll(edgeData.keySet());
+            }
+            Map<VariableDescriptor, InitState> result = Maps.newHashMap();
+            for (VariableDescriptor variable : variablesInScope) {
+                boolean isInitialized = true;
+                boolean isDeclared = true;
+                for (Map<VariableDescriptor, InitState> edgeData : incomingEdgesData) {
+                    InitState initState = edgeData.get(variable);
+                    if (initState != null) {
+                        isInitialized &= initState.isInitialized;
+                        isDeclared &= initState.isDeclared;
+                    }
+                }
+                result.put(variable, InitState.create(isInitialized, isDeclared));
+            }
+            return result;
+        }
+
+        @NotNull
+        private Map<VariableDescriptor, InitState> addInitState(
+                @NotNull Instruction instruction, @NotNull Map<VariableDescriptor, InitState> enterData
+        ) {
+            if (!(instruction instanceof WriteValueInstruction) && !(instruction instanceof VariableDeclarationInstruction)) {
+                return enterData;
+            }
+            VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, bindingContext);
+            if (variable == null) {
+                return enterData;
+            }
+            Map<VariableDescriptor, InitState> exitData = Maps.newHashMap(enterData);
+            InitState enterState = enterData.get(variable);
+            if (instruction instanceof WriteValueInstruction) {
+                boolean isDeclaredHere = ((WriteValueInstruction) instruction).getElement() instanceof JetProperty;
+                exitData.put(variable, InitState.create(true, isDeclaredHere || (enterState != null && enterState.isDeclared)));
+            }
+            else if (enterState == null || !enterState.isInitialized || !enterState.isDeclared) {
+                exitData.put(variable, InitState.create(enterState != null && enterState.isInitialized, true));
+            }
+            return exitData;
+        }
+
+        @NotNull
+        private Map<Instruction, Edges<Map<VariableDescriptor, String>>> getVariableUseStatusData() {
+            Map<VariableDescriptor, VariableUseState> sinkInstructionData = Maps.newHashMap();
+            for (VariableDescriptor usedVariable : variablesData.getUsedVariables(pseudocode)) {
+                sinkInstructionData.put(usedVariable, VariableUseState.UNUSED);
+            }
+            Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> data = PseudocodeTraverser.collectData(
+                    pseudocode, BACKWARD, ANALYSE_LOCAL_DECLARATIONS,
+                    Collections.<VariableDescriptor, VariableUseState>emptyMap(), sinkInstructionData,
+                    new InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>>() {
+                        @Override
+                        public Edges<Map<VariableDescriptor, VariableUseState>> execute(
+                                @NotNull Instruction instruction,
+                                @NotNull Collection<Map<VariableDescriptor, VariableUseState>> incomingEdgesData
+                        ) {
+                            Map<VariableDescriptor, VariableUseState> enterData = Maps.newHashMap();
+                            for (Map<VariableDescriptor, VariableUseState> edgeData : incomingEdgesData) {
+                                for (Map.Entry<VariableDescriptor, VariableUseState> entry : edgeData.entrySet()) {
+                                    enterData.put(entry.getKey(), mergeUseStates(entry.getValue(), enterData.get(entry.getKey())));
+                                }
+                            }
+                            return Edges.create(enterData, addUseState(instruction, enterData));
+                        }
+                    });
+            return renderStates(data);
+        }
+
+        @NotNull
+        private static VariableUseState mergeUseStates(@NotNull VariableUseState state, @Nullable VariableUseState other) {
+            if (other == null || getImportance(state) > getImportance(other)) return state;
+            return other;
+        }
+
+        @NotNull
+        private Map<VariableDescriptor, VariableUseState> addUseState(
+                @NotNull Instruction instruction, @NotNull Map<VariableDescriptor, VariableUseState> enterData
+        ) {
+            VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true, bindingContext);
+            if (variable == null || (!(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction))) {
+                return enterData;
+            }
+            Map<VariableDescriptor, VariableUseState> exitData = Maps.newHashMap(enterData);
+            if (instruction instanceof ReadValueInstruction) {
+                exitData.put(variable, VariableUseState.LAST_READ);
+            }
+            else {
+                VariableUseState enterState = enterData.get(variable);
+                boolean neverRead = enterState == null || enterState == VariableUseState.UNUSED
+                                    || enterState == VariableUseState.ONLY_WRITTEN_NEVER_READ;
+                exitData.put(variable, neverRead ? VariableUseState.ONLY_WRITTEN_NEVER_READ : VariableUseState.LAST_WRITTEN);
+            }
+            return exitData;
+        }
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTest(JetTestCaseBuilder.suiteForDirectory(JetTestCaseBuilder.getTestDataPathBase(), "/cfg/", true,
+                                                           new JetTestCaseBuilder.NamedTestFactory() {
+            @NotNull
+            @Override
+            public Test createTest(@NotNull String dataPath, @NotNull String name, @NotNull File file) {
+                return new PseudocodeVariablesDataTest(dataPath, name);
+            }
+        }));
+        return suite;
+    }
+}
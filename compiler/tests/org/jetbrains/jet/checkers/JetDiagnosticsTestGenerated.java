@@ -2661,6 +2661,16 @@ public class JetDiagnosticsTestGenerated extends AbstractDiagnosticsTestWithEage
                 doTest("compiler/testData/diagnostics/tests/extensions/kt819ExtensionProperties.kt");
             }
             
+            @TestMetadata("postponedWrongReceiverCandidates.kt")
+            public void testPostponedWrongReceiverCandidates() throws Exception {
+                doTest("compiler/testData/diagnostics/tests/extensions/postponedWrongReceiverCandidates.kt");
+            }
+            
+            @TestMetadata("receiverWithSeveralUpperBounds.kt")
+            public void testReceiverWithSeveralUpperBounds() throws Exception {
+                doTest("compiler/testData/diagnostics/tests/extensions/receiverWithSeveralUpperBounds.kt");
+            }
+            
             @TestMetadata("throwOutCandidatesByReceiver.kt")
             public void testThrowOutCandidatesByReceiver() throws Exception {
                 doTest("compiler/testData/diagnostics/tests/extensions/throwOutCandidatesByReceiver.kt");
@@ -5258,6 +5268,11 @@ public class JetDiagnosticsTestGenerated extends AbstractDiagnosticsTestWithEage
                 doTest("compiler/testData/diagnostics/tests/scopes/ImportsConflicting.kt");
             }
             
+            @TestMetadata("ImportsOverrideDefaultImports.kt")
+            public void testImportsOverrideDefaultImports() throws Exception {
+                doTest("compiler/testData/diagnostics/tests/scopes/ImportsOverrideDefaultImports.kt");
+            }
+            
             @TestMetadata("ImportsUselessSimpleImport.kt")
             public void testImportsUselessSimpleImport() throws Exception {
                 doTest("compiler/testData/diagnostics/tests/scopes/ImportsUselessSimpleImport.kt");
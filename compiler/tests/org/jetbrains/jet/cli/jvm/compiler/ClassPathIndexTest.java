@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.intellij.core.CoreJarFileSystem;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.UsefulTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ClassPathIndexTest extends UsefulTestCase {
+    private final CoreJarFileSystem jarFileSystem = new CoreJarFileSystem();
+    private final ClassPathIndex index = new ClassPathIndex();
+    private File tmpdir;
+    private int rootCount = 0;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tmpdir = FileUtil.createTempDirectory("classPathIndex", null);
+    }
+
+    public void testTopLevelClasses() throws IOException {
+        addJar("A.class", "a/b/C.class");
+
+        assertClassFiles("A", "0:A.class");
+        assertClassFiles("a.b.C", "0:a/b/C.class");
+        assertClassFiles("a.b.D");
+        assertClassFiles("a.C");
+    }
+
+    public void testNestedClasses() throws IOException {
+        addJar("A.class", "A$B.class", "A$B$C.class", "a/b/C.class", "a/b/C$D.class");
+
+        assertClassFiles("A.B", "0:A$B.class");
+        assertClassFiles("A.B.C", "0:A$B$C.class");
+        assertClassFiles("a.b.C.D", "0:a/b/C$D.class");
+        assertClassFiles("a.b.C.E");
+    }
+
+    public void testPackageTakesPrecedenceOverNestedClassInTheSameRoot() throws IOException {
+        addJar("a/b/C.class", "a/b/C$D.class", "a/b/C/D.class");
+
+        assertClassFiles("a.b.C.D", "0:a/b/C/D.class");
+    }
+
+    public void testPackageSplitAcrossJars() throws IOException {
+        addJar("a/b/C.class", "a/X.class");
+        addJar("a/b/D.class");
+        addJar("c/E.class");
+
+        assertClassFiles("a.b.C", "0:a/b/C.class");
+        assertClassFiles("a.b.D", "1:a/b/D.class");
+        assertClassFiles("a.X", "0:a/X.class");
+        assertPackageDirectories("a/b", "0:a/b", "1:a/b");
+        assertPackageDirectories("a", "0:a", "1:a");
+        assertPackageDirectories("c", "2:c");
+        assertPackageDirectories("d");
+    }
+
+    public void testClassPathOrder() throws IOException {
+        addJar("a/b/C.class");
+        addJar("a/b/C.class", "a/b/C$D.class");
+        addJar("a/b/C/D.class");
+
+        // Every root with the class is found, in the order of roots: the first one shadows the rest
+        assertClassFiles("a.b.C", "0:a/b/C.class", "1:a/b/C.class");
+        assertClassFiles("a.b.C.D", "1:a/b/C$D.class", "2:a/b/C/D.class");
+    }
+
+    private void addJar(@NotNull String... entries) throws IOException {
+        File jarFile = new File(tmpdir, rootCount + ".jar");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jarFile));
+        try {
+            for (String entry : entries) {
+                zip.putNextEntry(new ZipEntry(entry));
+                zip.closeEntry();
+            }
+        }
+        finally {
+            zip.close();
+        }
+
+        VirtualFile root = jarFileSystem.findFileByPath(jarFile.getPath() + "!/");
+        assertNotNull(root);
+        index.addRoot(rootCount++, root);
+    }
+
+    private void assertClassFiles(@NotNull String qualifiedName, @NotNull String... expected) {
+        Map<Integer, VirtualFile> result = Maps.newTreeMap();
+        index.findClassFiles(qualifiedName, result);
+        assertOrderedEquals(render(result), expected);
+    }
+
+    private void assertPackageDirectories(@NotNull String packagePath, @NotNull String... expected) {
+        Map<Integer, VirtualFile> result = Maps.newTreeMap();
+        index.findPackageDirectories(packagePath, result);
+        assertOrderedEquals(render(result), expected);
+    }
+
+    @NotNull
+    private static List<String> render(@NotNull Map<Integer, VirtualFile> files) {
+        List<String> result = Lists.newArrayList();
+        for (Map.Entry<Integer, VirtualFile> entry : files.entrySet()) {
+            String path = entry.getValue().getPath();
+            result.add(entry.getKey() + ":" + path.substring(path.indexOf("!/") + 2));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.cli.jvm.compiler;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.testFramework.UsefulTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.cli.jvm.JVMConfigurationKeys;
+import org.jetbrains.jet.config.CommonConfigurationKeys;
+import org.jetbrains.jet.config.CompilerConfiguration;
+import org.jetbrains.jet.lang.psi.JetFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ParallelParsingTest extends UsefulTestCase {
+    public void testSameTreesAsSequential() {
+        List<String> sequential = parse("compiler/testData/psi", false);
+        List<String> parallel = parse("compiler/testData/psi", true);
+
+        assertTrue(sequential.size() > 1);
+        assertEquals(sequential, parallel);
+    }
+
+    public void testNestedDirectoriesAndOtherFiles() throws IOException {
+        File root = FileUtil.createTempDirectory("parallelParsing", null);
+        FileUtil.writeToFile(new File(root, "a.kt"), "package a\nfun a() = \"\u00e4\"\n");
+        FileUtil.writeToFile(new File(root, "b/c/c.kt"), "package b.c\nfun c() = a.a()\n");
+        FileUtil.writeToFile(new File(root, "b/readme.txt"), "not a Kotlin file");
+        FileUtil.writeToFile(new File(root, "b/d.kt"), "package b\nclass D {");
+
+        List<String> sequential = parse(root.getPath(), false);
+        List<String> parallel = parse(root.getPath(), true);
+
+        assertEquals(3, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    private List<String> parse(@NotNull String sourceRoot, boolean parallel) {
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.add(CommonConfigurationKeys.SOURCE_ROOTS_KEY, sourceRoot);
+        configuration.put(JVMConfigurationKeys.PARALLEL_PARSING, parallel);
+        JetCoreEnvironment environment = JetCoreEnvironment.createForTests(getTestRootDisposable(), configuration);
+
+        List<String> trees = new ArrayList<String>();
+        for (JetFile file : environment.getSourceFiles()) {
+            trees.add(file.getName() + "\n" + file.getText() + "\n" + DebugUtil.psiToString(file, false, false));
+        }
+        return trees;
+    }
+}
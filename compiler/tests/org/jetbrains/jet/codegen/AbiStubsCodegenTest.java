@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.asm4.ClassReader;
+import org.jetbrains.asm4.ClassVisitor;
+import org.jetbrains.asm4.FieldVisitor;
+import org.jetbrains.asm4.MethodVisitor;
+import org.jetbrains.asm4.Opcodes;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.analyzer.AnalyzeExhaust;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
+
+import static org.jetbrains.jet.lang.resolve.java.PackageClassUtils.getPackageClassFqName;
+
+public class AbiStubsCodegenTest extends CodegenTestCase {
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testDeclarationsAreTheSameAsInFullMode() {
+        List<JetFile> files = Arrays.asList(
+                JetTestUtils.createFile("a.kt",
+                                        "package a\n" +
+                                        "trait T { fun t(): Int = 1 }\n" +
+                                        "open class C(val x: Int, var y: String = \"\") : T {\n" +
+                                        "    fun f(s: String): String = s + x\n" +
+                                        "    fun g() = x * 2\n" +
+                                        "    val z = { x }\n" +
+                                        "    class object { val c = C(1); val s: String = \"s\" }\n" +
+                                        "}\n" +
+                                        "enum class E { A B }\n" +
+                                        "fun top(i: Int = 1): Int { return i + C(i).g() }\n" +
+                                        "val p = top()\n" +
+                                        "val k: Int = 42\n" +
+                                        "trait D { fun d(s: String): String; var dp: Int }\n" +
+                                        "class ByD(d: D) : D by d\n",
+                                        myEnvironment.getProject())
+        );
+
+        ClassFileFactory full = generate(files, Predicates.<PsiFile>alwaysTrue(), ClassBuilderFactories.BINARIES);
+        ClassFileFactory stubs = generate(files, Predicates.<PsiFile>alwaysFalse(), ClassBuilderFactories.STUBS);
+
+        Set<String> fullClasses = new HashSet<String>(full.files());
+        Set<String> stubClasses = new HashSet<String>(stubs.files());
+        // Closures are generated from bodies only
+        for (Iterator<String> iterator = fullClasses.iterator(); iterator.hasNext(); ) {
+            if (iterator.next().contains("$z$")) iterator.remove();
+        }
+        assertEquals(fullClasses, stubClasses);
+
+        for (String file : stubClasses) {
+            assertEquals(file, collectMembers(full.asBytes(file)), collectMembers(stubs.asBytes(file)));
+        }
+    }
+
+    public void testBodiesAreNotResolved() throws Exception {
+        List<JetFile> files = Arrays.asList(
+                JetTestUtils.createFile("a.kt",
+                                        "package a\n" +
+                                        "fun top(): Int { return unresolved() }\n",
+                                        myEnvironment.getProject())
+        );
+
+        ClassFileFactory stubs = generate(files, Predicates.<PsiFile>alwaysFalse(), ClassBuilderFactories.STUBS);
+
+        Class<?> aClass = createClassLoader(stubs).loadClass(getPackageClassFqName(new FqName("a")).asString());
+        Method top = aClass.getMethod("top");
+        try {
+            top.invoke(null);
+            fail("Stub body should throw");
+        }
+        catch (InvocationTargetException e) {
+            assertInstanceOf(e.getCause(), UnsupportedOperationException.class);
+        }
+    }
+
+    private ClassFileFactory generate(List<JetFile> files, Predicate<PsiFile> analyzeCompletely, ClassBuilderFactory factory) {
+        AnalyzeExhaust exhaust = AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationAndCheckForErrors(
+                myEnvironment.getProject(), files, Collections.<AnalyzerScriptParameter>emptyList(), analyzeCompletely);
+
+        GenerationState state = new GenerationState(myEnvironment.getProject(), factory, exhaust.getBindingContext(), files);
+        KotlinCodegenFacade.compileCorrectFiles(state, CompilationErrorHandler.THROW_EXCEPTION);
+        return state.getFactory();
+    }
+
+    private static Set<String> collectMembers(byte[] bytes) {
+        final Set<String> members = new TreeSet<String>();
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM4) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+                // Whether a field is needed for a "by" delegate depends on the resolved delegate expression
+                if ((access & Opcodes.ACC_SYNTHETIC) == 0) {
+                    members.add(access + " " + name + " " + desc + " = " + value);
+                }
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                members.add(access + " " + name + desc);
+                return null;
+            }
+        }, ClassReader.SKIP_CODE);
+        return members;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.codegen;
+
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.analyzer.AnalyzeExhaust;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.AnalyzerScriptParameter;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+
+import java.io.File;
+import java.util.*;
+
+public class LowMemoryCodegenTest extends CodegenTestCase {
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testReleasedClassesAreTheSame() {
+        List<JetFile> files = Arrays.asList(
+                JetTestUtils.createFile("a.kt",
+                                        "package a\n" +
+                                        "class Outer { inner class Inner { fun f() = { 1 } } }\n" +
+                                        "fun apply(f: () -> Int) = f()\n",
+                                        myEnvironment.getProject()),
+                JetTestUtils.createFile("b.kt",
+                                        "package b\n" +
+                                        "fun g() = a.apply { a.Outer().Inner().f()() + object { val x = 1 }.x }\n",
+                                        myEnvironment.getProject())
+        );
+        AnalyzeExhaust exhaust = AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationAndCheckForErrors(
+                myEnvironment.getProject(), files, Collections.<AnalyzerScriptParameter>emptyList(), Predicates.<PsiFile>alwaysTrue());
+
+        GenerationState regularState = new GenerationState(myEnvironment.getProject(), ClassBuilderFactories.TEST,
+                                                           exhaust.getBindingContext(), files);
+        KotlinCodegenFacade.compileCorrectFiles(regularState, CompilationErrorHandler.THROW_EXCEPTION);
+        ClassFileFactory regularFactory = regularState.getFactory();
+
+        final Map<String, byte[]> released = new LinkedHashMap<String, byte[]>();
+        GenerationState lowMemoryState = new GenerationState(myEnvironment.getProject(), ClassBuilderFactories.TEST,
+                                                             exhaust.getBindingContext(), files);
+        KotlinCodegenFacade.compileCorrectFiles(lowMemoryState, CompilationErrorHandler.THROW_EXCEPTION, new ClassFileConsumer() {
+            @Override
+            public void consume(@NotNull String relativeClassFilePath, @NotNull List<File> sourceFiles, @NotNull byte[] bytes) {
+                assertNull("Released twice: " + relativeClassFilePath, released.put(relativeClassFilePath, bytes));
+            }
+        });
+
+        assertEquals(new HashSet<String>(regularFactory.files()), released.keySet());
+        assertEquals(new HashSet<String>(regularFactory.files()), new HashSet<String>(lowMemoryState.getFactory().files()));
+        for (String file : regularFactory.files()) {
+            assertTrue(file, Arrays.equals(regularFactory.asBytes(file), released.get(file)));
+        }
+    }
+}
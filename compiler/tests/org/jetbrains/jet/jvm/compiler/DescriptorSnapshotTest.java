@@ -0,0 +1,313 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.jvm.compiler;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.ZipUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.TestJdkKind;
+import org.jetbrains.jet.cli.common.CLIConfigurationKeys;
+import org.jetbrains.jet.cli.common.messages.MessageCollectorPlainTextToStream;
+import org.jetbrains.jet.cli.jvm.JVMConfigurationKeys;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.cli.jvm.compiler.KotlinToJVMBytecodeCompiler;
+import org.jetbrains.jet.codegen.ClassFileFactory;
+import org.jetbrains.jet.codegen.state.GenerationState;
+import org.jetbrains.jet.config.CommonConfigurationKeys;
+import org.jetbrains.jet.config.CompilerConfiguration;
+import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.resolve.BindingContext;
+import org.jetbrains.jet.lang.resolve.java.descriptor.JavaCallableMemberDescriptor;
+import org.jetbrains.jet.lang.resolve.java.descriptor.JavaClassDescriptorFromSnapshot;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.renderer.DescriptorRenderer;
+import org.jetbrains.jet.test.TestCaseWithTmpdir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.zip.ZipOutputStream;
+
+import static org.jetbrains.jet.jvm.compiler.LoadDescriptorUtil.TEST_PACKAGE_FQNAME;
+
+/*
+    Compiles Kotlin code against Java libraries several times with -Xdescriptor-cache, checking that descriptors restored
+    from the snapshot are the same as the ones resolved from Java and that snapshots are discarded when their inputs change.
+*/
+public class DescriptorSnapshotTest extends TestCaseWithTmpdir {
+    private static final String TEST_DATA_PATH = "compiler/testData/descriptorSnapshot/";
+    private static final Pattern JAVA_FILE_PATTERN = Pattern.compile(".+\\.java");
+
+    private File snapshotDir;
+    private File dependencyJar;
+    private File libraryJar;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        snapshotDir = new File(tmpdir, "snapshot");
+        dependencyJar = compileJavaToJar("dependency");
+        libraryJar = compileJavaToJar("library", dependencyJar);
+    }
+
+    public void testRepeatedCompilation() throws Exception {
+        CompilationResult first = compile(null);
+        assertFalse("The first compilation should resolve classes from Java", first.fromSnapshot);
+        assertSnapshotsSaved();
+
+        CompilationResult second = compile(null);
+        assertTrue("The second compilation should restore classes from the snapshot", second.fromSnapshot);
+        assertSameResults(first, second);
+
+        CompilationResult third = compile(null);
+        assertTrue(third.fromSnapshot);
+        assertSameResults(first, third);
+    }
+
+    public void testLibraryChanged() throws Exception {
+        CompilationResult first = compile(null);
+        assertFalse(first.descriptors.contains("description"));
+
+        FileUtil.delete(libraryJar);
+        assertEquals(libraryJar, compileJavaToJar("library", "libraryChanged", dependencyJar));
+
+        CompilationResult second = compile(null);
+        assertFalse("Snapshot of a changed jar should be discarded", second.fromSnapshot);
+        assertTrue(second.descriptors, second.descriptors.contains("description"));
+
+        CompilationResult third = compile(null);
+        assertTrue(third.fromSnapshot);
+        assertSameResults(second, third);
+    }
+
+    public void testDependencyChanged() throws Exception {
+        CompilationResult first = compile(null);
+        assertTrue(compile(null).fromSnapshot);
+
+        touch(dependencyJar);
+
+        CompilationResult second = compile(null);
+        assertFalse("Snapshot should be discarded when a jar it depends on changes", second.fromSnapshot);
+        assertSameResults(first, second);
+
+        assertTrue(compile(null).fromSnapshot);
+    }
+
+    public void testAnnotationsChanged() throws Exception {
+        File annotationsDir = new File(tmpdir, "annotations");
+        JetTestUtils.mkdirs(annotationsDir);
+
+        CompilationResult first = compile(annotationsDir);
+        assertTrue(compile(annotationsDir).fromSnapshot);
+
+        FileUtil.copyDir(new File(TEST_DATA_PATH, "annotations"), annotationsDir);
+
+        CompilationResult second = compile(annotationsDir);
+        assertFalse("Snapshot should be discarded when external annotations change", second.fromSnapshot);
+        assertFalse("External annotations should be applied", first.descriptors.equals(second.descriptors));
+
+        CompilationResult third = compile(annotationsDir);
+        assertTrue(third.fromSnapshot);
+        assertSameResults(second, third);
+    }
+
+    public void testDependencyShadowed() throws Exception {
+        File shadowJar = compileJavaToJar("dependencyShadow");
+
+        CompilationResult first = compile(null);
+        assertTrue(compile(null).fromSnapshot);
+
+        CompilationResult second = compile(null, shadowJar, dependencyJar, libraryJar);
+        assertFalse("Snapshot should be discarded when a class it depends on is shadowed", second.fromSnapshot);
+        assertTrue(second.descriptors, second.descriptors.contains("shadowName"));
+
+        CompilationResult third = compile(null, shadowJar, dependencyJar, libraryJar);
+        assertTrue(third.fromSnapshot);
+        assertSameResults(second, third);
+
+        CompilationResult fourth = compile(null);
+        assertFalse("Snapshot should be discarded when the class path order changes back", fourth.fromSnapshot);
+        assertSameResults(first, fourth);
+    }
+
+    public void testTruncatedSnapshot() throws Exception {
+        doTestCorruptSnapshot(true);
+    }
+
+    public void testGarbageSnapshot() throws Exception {
+        doTestCorruptSnapshot(false);
+    }
+
+    private void doTestCorruptSnapshot(boolean truncate) throws Exception {
+        CompilationResult first = compile(null);
+
+        for (File file : assertSnapshotsSaved()) {
+            byte[] bytes = FileUtil.loadFileBytes(file);
+            if (truncate) {
+                bytes = Arrays.copyOf(bytes, bytes.length / 2);
+            }
+            else {
+                new Random(42).nextBytes(bytes);
+            }
+            FileUtil.writeToFile(file, bytes);
+        }
+
+        CompilationResult second = compile(null);
+        assertFalse("Corrupt snapshot should be ignored", second.fromSnapshot);
+        assertSameResults(first, second);
+
+        CompilationResult third = compile(null);
+        assertTrue("Corrupt snapshot should be rewritten", third.fromSnapshot);
+        assertSameResults(first, third);
+    }
+
+    @NotNull
+    private File[] assertSnapshotsSaved() {
+        File[] files = snapshotDir.listFiles();
+        assertNotNull("Snapshot directory wasn't created", files);
+        assertTrue("No snapshots were saved", files.length > 0);
+        return files;
+    }
+
+    private static void assertSameResults(@NotNull CompilationResult expected, @NotNull CompilationResult actual) {
+        assertEquals(expected.descriptors, actual.descriptors);
+        assertEquals(expected.classFiles.keySet(), actual.classFiles.keySet());
+        for (Map.Entry<String, byte[]> entry : expected.classFiles.entrySet()) {
+            assertTrue("Bytecode differs: " + entry.getKey(), Arrays.equals(entry.getValue(), actual.classFiles.get(entry.getKey())));
+        }
+    }
+
+    private static void touch(@NotNull File file) {
+        assertTrue(file.setLastModified(file.lastModified() + 10000));
+    }
+
+    @NotNull
+    private File compileJavaToJar(@NotNull String name, @NotNull File... classPath) throws IOException {
+        return compileJavaToJar(name, name, classPath);
+    }
+
+    @NotNull
+    private File compileJavaToJar(@NotNull String jarName, @NotNull String sourceDir, @NotNull File... classPath) throws IOException {
+        File classesDir = new File(tmpdir, sourceDir + "-classes");
+        JetTestUtils.mkdirs(classesDir);
+
+        List<String> options = new ArrayList<String>(Arrays.asList("-d", classesDir.getPath()));
+        if (classPath.length > 0) {
+            options.add("-classpath");
+            options.add(classPath[0].getPath());
+        }
+        JetTestUtils.compileJavaFiles(FileUtil.findFilesByMask(JAVA_FILE_PATTERN, new File(TEST_DATA_PATH, sourceDir)), options);
+
+        File jarFile = new File(tmpdir, jarName + ".jar");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jarFile));
+        try {
+            ZipUtil.addDirToZipRecursively(zip, jarFile, classesDir, "", null, null);
+        }
+        finally {
+            zip.close();
+        }
+        return jarFile;
+    }
+
+    @NotNull
+    private CompilationResult compile(@Nullable File annotationsDir) {
+        return compile(annotationsDir, dependencyJar, libraryJar);
+    }
+
+    @NotNull
+    private CompilationResult compile(@Nullable File annotationsDir, @NotNull File... classPath) {
+        CompilerConfiguration configuration = JetTestUtils.compilerConfigurationForTests(
+                ConfigurationKind.ALL, TestJdkKind.MOCK_JDK, classPath);
+        if (annotationsDir != null) {
+            configuration.add(JVMConfigurationKeys.ANNOTATIONS_PATH_KEY, annotationsDir);
+        }
+        configuration.add(CommonConfigurationKeys.SOURCE_ROOTS_KEY, TEST_DATA_PATH + "test.kt");
+        configuration.put(JVMConfigurationKeys.DESCRIPTOR_SNAPSHOT_DIRECTORY, snapshotDir);
+        configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY,
+                          new MessageCollectorPlainTextToStream(System.err, MessageCollectorPlainTextToStream.NON_VERBOSE));
+
+        Disposable disposable = Disposer.newDisposable();
+        try {
+            JetCoreEnvironment environment = JetCoreEnvironment.createForTests(disposable, configuration);
+            GenerationState state = KotlinToJVMBytecodeCompiler.analyzeAndGenerate(environment);
+            assertNotNull("Compilation failed", state);
+            return new CompilationResult(state);
+        }
+        finally {
+            Disposer.dispose(disposable);
+        }
+    }
+
+    private static class CompilationResult {
+        private final String descriptors;
+        private final Map<String, byte[]> classFiles = new TreeMap<String, byte[]>();
+        private final boolean fromSnapshot;
+
+        private CompilationResult(@NotNull GenerationState state) {
+            ClassFileFactory factory = state.getFactory();
+            for (String file : factory.files()) {
+                classFiles.put(file, factory.asBytes(file));
+            }
+
+            ClassDescriptor library = findLibraryClass(state.getBindingContext());
+            fromSnapshot = library instanceof JavaClassDescriptorFromSnapshot;
+            descriptors = renderClass(library);
+        }
+
+        @NotNull
+        private static ClassDescriptor findLibraryClass(@NotNull BindingContext bindingContext) {
+            NamespaceDescriptor namespace = bindingContext.get(BindingContext.FQNAME_TO_NAMESPACE_DESCRIPTOR, TEST_PACKAGE_FQNAME);
+            assertNotNull("Failed to find namespace: " + TEST_PACKAGE_FQNAME, namespace);
+
+            Collection<FunctionDescriptor> functions = namespace.getMemberScope().getFunctions(Name.identifier("library"));
+            assertEquals(1, functions.size());
+            ClassifierDescriptor library = functions.iterator().next().getReturnType().getConstructor().getDeclarationDescriptor();
+            assertTrue(String.valueOf(library), library instanceof ClassDescriptor);
+            return (ClassDescriptor) library;
+        }
+
+        @NotNull
+        private static String renderClass(@NotNull ClassDescriptor classDescriptor) {
+            List<String> members = new ArrayList<String>();
+            for (ConstructorDescriptor constructor : classDescriptor.getConstructors()) {
+                members.add(DescriptorRenderer.TEXT.render(constructor));
+            }
+            for (DeclarationDescriptor member : classDescriptor.getDefaultType().getMemberScope().getAllDescriptors()) {
+                if (member instanceof CallableMemberDescriptor &&
+                    ((CallableMemberDescriptor) member).getKind() == CallableMemberDescriptor.Kind.DECLARATION) {
+                    assertTrue("Member declared in a Java class should be a Java member: " + member,
+                               member instanceof JavaCallableMemberDescriptor);
+                }
+                members.add(DescriptorRenderer.TEXT.render(member));
+            }
+            Collections.sort(members);
+
+            StringBuilder sb = new StringBuilder(DescriptorRenderer.TEXT.render(classDescriptor)).append('\n');
+            for (String member : members) {
+                sb.append("    ").append(member).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.jvm.compiler;
+
+import com.intellij.codeInsight.ExternalAnnotationsManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiFormatUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.TestJdkKind;
+import org.jetbrains.jet.cli.jvm.JVMConfigurationKeys;
+import org.jetbrains.jet.cli.jvm.compiler.CoreExternalAnnotationsManager;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.config.CompilerConfiguration;
+import org.jetbrains.jet.lang.resolve.java.resolver.PsiBasedExternalAnnotationResolver;
+import org.jetbrains.jet.lang.resolve.java.structure.*;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.*;
+import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaClassImpl;
+import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaElementImpl;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.test.TestCaseWithTmpdir;
+
+import java.io.File;
+import java.util.*;
+
+/*
+    Checks that external annotations are found both for PSI elements and for elements read from class files (-Xread-class-files),
+    by external names of the elements.
+*/
+public class ExternalAnnotationsTest extends TestCaseWithTmpdir {
+    private static final String TEST_DATA_PATH = "compiler/testData/externalAnnotations/";
+    private static final FqName CLASS_FQ_NAME = new FqName("test.Annotated");
+    private static final String NOT_NULL = "org.jetbrains.annotations.NotNull";
+
+    private Project project;
+    private PsiClass psiClass;
+    private JavaClass binaryClass;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        JetTestUtils.compileJavaFiles(Collections.singletonList(new File(TEST_DATA_PATH + "Annotated.java")),
+                                      Arrays.asList("-d", tmpdir.getPath()));
+
+        CompilerConfiguration configuration = JetTestUtils.compilerConfigurationForTests(
+                ConfigurationKind.JDK_ONLY, TestJdkKind.MOCK_JDK, tmpdir);
+        configuration.add(JVMConfigurationKeys.ANNOTATIONS_PATH_KEY, new File(TEST_DATA_PATH + "annotations"));
+        configuration.put(JVMConfigurationKeys.READ_CLASS_FILES, true);
+        project = JetCoreEnvironment.createForTests(getTestRootDisposable(), configuration).getProject();
+
+        psiClass = JavaPsiFacade.getInstance(project).findClass(CLASS_FQ_NAME.asString(), GlobalSearchScope.allScope(project));
+        assertNotNull("Class is not found by PSI: " + CLASS_FQ_NAME, psiClass);
+        binaryClass = new BinaryJavaClassFinder(ServiceManager.getService(project, ClassFileFinder.class)).findClass(CLASS_FQ_NAME);
+        assertNotNull("Class file is not found: " + CLASS_FQ_NAME, binaryClass);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        binaryClass = null;
+        psiClass = null;
+        project = null;
+        super.tearDown();
+    }
+
+    public void testCoreExternalAnnotationsManager() {
+        ExternalAnnotationsManager manager = ExternalAnnotationsManager.getInstance(project);
+        assertInstanceOf(manager, CoreExternalAnnotationsManager.class);
+
+        PsiField field = psiClass.findFieldByName("field", false);
+        assertNotNull(field);
+        PsiAnnotation annotation = manager.findExternalAnnotation(field, NOT_NULL);
+        assertNotNull(annotation);
+        assertEquals(NOT_NULL, annotation.getQualifiedName());
+        assertNull(manager.findExternalAnnotation(field, "org.jetbrains.annotations.Nullable"));
+
+        PsiMethod constructor = psiClass.getConstructors()[0];
+        assertNull(manager.findExternalAnnotations(constructor));
+        for (PsiParameter parameter : constructor.getParameterList().getParameters()) {
+            PsiAnnotation[] annotations = manager.findExternalAnnotations(parameter);
+            assertNotNull(annotations);
+            assertEquals(1, annotations.length);
+            assertEquals(NOT_NULL, annotations[0].getQualifiedName());
+        }
+    }
+
+    public void testPsiElements() {
+        JetTestUtils.assertEqualsToFile(new File(TEST_DATA_PATH + "Annotated.txt"), renderExternalAnnotations(new JavaClassImpl(psiClass)));
+    }
+
+    public void testBinaryElements() {
+        JetTestUtils.assertEqualsToFile(new File(TEST_DATA_PATH + "Annotated.txt"), renderExternalAnnotations(binaryClass));
+    }
+
+    public void testFindSingleAnnotation() {
+        PsiBasedExternalAnnotationResolver resolver = createResolver();
+        for (JavaClass javaClass : Arrays.asList(new JavaClassImpl(psiClass), binaryClass)) {
+            JavaField field = findField(javaClass, "field");
+            JavaAnnotation annotation = resolver.findExternalAnnotation(field, new FqName(NOT_NULL));
+            assertNotNull("No annotation for " + field, annotation);
+            assertEquals(new FqName(NOT_NULL), annotation.getFqName());
+            assertNull(resolver.findExternalAnnotation(field, new FqName("org.jetbrains.annotations.Nullable")));
+        }
+    }
+
+    @NotNull
+    private PsiBasedExternalAnnotationResolver createResolver() {
+        PsiBasedExternalAnnotationResolver resolver = new PsiBasedExternalAnnotationResolver();
+        resolver.setProject(project);
+        return resolver;
+    }
+
+    @NotNull
+    private static JavaField findField(@NotNull JavaClass javaClass, @NotNull String name) {
+        for (JavaField field : javaClass.getFields()) {
+            if (field.getName().asString().equals(name)) return field;
+        }
+        throw new AssertionError("No field " + name + " in " + javaClass);
+    }
+
+    @NotNull
+    private String renderExternalAnnotations(@NotNull JavaClass javaClass) {
+        List<JavaAnnotationOwner> owners = new ArrayList<JavaAnnotationOwner>();
+        collectAnnotationOwners(javaClass, owners);
+
+        PsiBasedExternalAnnotationResolver resolver = createResolver();
+        List<String> lines = new ArrayList<String>();
+        for (JavaAnnotationOwner owner : owners) {
+            Collection<JavaAnnotation> annotations = resolver.findExternalAnnotations(owner);
+            if (annotations.isEmpty()) continue;
+
+            StringBuilder sb = new StringBuilder(getExternalName(owner)).append(": ");
+            boolean first = true;
+            for (JavaAnnotation annotation : annotations) {
+                if (!first) sb.append(", ");
+                first = false;
+                sb.append(annotation.getFqName());
+            }
+            lines.add(sb.toString());
+        }
+        Collections.sort(lines);
+
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void collectAnnotationOwners(@NotNull JavaClass javaClass, @NotNull List<JavaAnnotationOwner> result) {
+        result.add(javaClass);
+        result.addAll(javaClass.getFields());
+        List<JavaMethod> methods = new ArrayList<JavaMethod>(javaClass.getConstructors());
+        methods.addAll(javaClass.getMethods());
+        for (JavaMethod method : methods) {
+            result.add(method);
+            result.addAll(method.getValueParameters());
+        }
+        for (JavaClass innerClass : javaClass.getInnerClasses()) {
+            collectAnnotationOwners(innerClass, result);
+        }
+    }
+
+    @NotNull
+    private static String getExternalName(@NotNull JavaAnnotationOwner owner) {
+        if (owner instanceof JavaElementImpl) {
+            String externalName = PsiFormatUtil.getExternalName((PsiModifierListOwner) ((JavaElementImpl) owner).getPsi());
+            assertNotNull("No external name: " + owner, externalName);
+            return externalName;
+        }
+        else if (owner instanceof BinaryJavaClass) {
+            return ((BinaryJavaClass) owner).getExternalName();
+        }
+        else if (owner instanceof BinaryJavaMember) {
+            return ((BinaryJavaMember) owner).getExternalName();
+        }
+        else if (owner instanceof BinaryJavaValueParameter) {
+            return ((BinaryJavaValueParameter) owner).getExternalName();
+        }
+        throw new AssertionError("Unexpected element: " + owner);
+    }
+}
@@ -31,6 +31,7 @@ import org.jetbrains.jet.TestJdkKind;
 import org.jetbrains.jet.cli.jvm.compiler.CoreExternalAnnotationsManager;
 import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
 import org.jetbrains.jet.lang.resolve.java.kotlinSignature.SignaturesUtil;
+import org.jetbrains.jet.lang.resolve.java.resolver.ExternalAnnotationsIndex;
 import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 
@@ -61,7 +62,13 @@ public class IdeaJdkAnnotationsReflectedTest extends KotlinTestWithEnvironment {
     }
 
     private CoreExternalAnnotationsManager createFakeAnnotationsManager(VirtualFile annotationsRoot) {
-        CoreExternalAnnotationsManager annotationsManager = new CoreExternalAnnotationsManager(PsiManager.getInstance(getProject()));
+        CoreExternalAnnotationsManager annotationsManager = new CoreExternalAnnotationsManager(
+                PsiManager.getInstance(getProject()), new ExternalAnnotationsIndex.WarningReporter() {
+                    @Override
+                    public void reportWarning(@NotNull String message) {
+                        fail(message);
+                    }
+                });
         annotationsManager.addExternalAnnotationsRoot(annotationsRoot);
         return annotationsManager;
     }
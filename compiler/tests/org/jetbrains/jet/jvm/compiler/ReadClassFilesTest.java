@@ -0,0 +1,424 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.jvm.compiler;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiModifierListOwner;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiFormatUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.TestJdkKind;
+import org.jetbrains.jet.cli.jvm.JVMConfigurationKeys;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.config.CompilerConfiguration;
+import org.jetbrains.jet.di.InjectorForJavaDescriptorResolver;
+import org.jetbrains.jet.lang.descriptors.NamespaceDescriptor;
+import org.jetbrains.jet.lang.resolve.BindingTraceContext;
+import org.jetbrains.jet.lang.resolve.java.structure.*;
+import org.jetbrains.jet.lang.resolve.java.structure.binary.*;
+import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaClassImpl;
+import org.jetbrains.jet.lang.resolve.java.structure.impl.JavaElementImpl;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.test.TestCaseWithTmpdir;
+
+import java.io.File;
+import java.util.*;
+
+import static org.jetbrains.jet.jvm.compiler.LoadDescriptorUtil.TEST_PACKAGE_FQNAME;
+import static org.jetbrains.jet.lang.resolve.java.DescriptorSearchRule.IGNORE_KOTLIN_SOURCES;
+import static org.jetbrains.jet.test.util.NamespaceComparator.DONT_INCLUDE_METHODS_OF_OBJECT;
+import static org.jetbrains.jet.test.util.NamespaceComparator.validateAndCompareNamespaces;
+
+/*
+    Compares Java classes read from class files (-Xread-class-files) with the ones built on PSI of the same class files,
+    and the descriptors resolved from them.
+*/
+public class ReadClassFilesTest extends TestCaseWithTmpdir {
+    private static final String TEST_DATA_PATH = "compiler/testData/readClassFiles/";
+
+    public void testGenerics() throws Exception {
+        doTest("Generics");
+    }
+
+    public void testConstructors() throws Exception {
+        doTest("Constructors");
+    }
+
+    public void testVarargs() throws Exception {
+        doTest("Varargs");
+    }
+
+    public void testAnnotations() throws Exception {
+        doTest("Annotations");
+    }
+
+    public void testWildcards() throws Exception {
+        doTest("Wildcards");
+    }
+
+    public void testNestedClassReferences() throws Exception {
+        doTest("NestedClassReferences");
+    }
+
+    // External names of binary elements are compared with PSI on JDK classes which have external annotations in Kotlin
+    public void testJdkAnnotationsExternalNames() {
+        List<FqName> classes = JdkAnnotationsValidityTest.getAffectedClasses("file://jdk-annotations");
+
+        CompilerConfiguration configuration = JetTestUtils.compilerConfigurationForTests(ConfigurationKind.JDK_ONLY, TestJdkKind.FULL_JDK);
+        configuration.put(JVMConfigurationKeys.READ_CLASS_FILES, true);
+        Project project = JetCoreEnvironment.createForTests(getTestRootDisposable(), configuration).getProject();
+        BinaryJavaClassFinder binaryClassFinder = new BinaryJavaClassFinder(ServiceManager.getService(project, ClassFileFinder.class));
+
+        for (FqName fqName : classes) {
+            PsiClass psiClass = JavaPsiFacade.getInstance(project).findClass(fqName.asString(), GlobalSearchScope.allScope(project));
+            if (psiClass == null) continue; // The class is missing in this JDK
+
+            JavaClass binaryClass = binaryClassFinder.findClass(fqName);
+            assertNotNull("Class file is not found: " + fqName, binaryClass);
+            assertEquals("External names differ: " + fqName,
+                         renderExternalNames(new JavaClassImpl(psiClass)), renderExternalNames(binaryClass));
+        }
+    }
+
+    private void doTest(@NotNull String className) throws Exception {
+        File javaFile = new File(TEST_DATA_PATH + className + ".java");
+        JetTestUtils.compileJavaFiles(Collections.singletonList(javaFile), Arrays.asList("-d", tmpdir.getPath()));
+
+        JetCoreEnvironment binaryEnvironment = createEnvironment(true);
+        Project project = binaryEnvironment.getProject();
+        FqName fqName = TEST_PACKAGE_FQNAME.child(Name.identifier(className));
+
+        PsiClass psiClass = JavaPsiFacade.getInstance(project).findClass(fqName.asString(), GlobalSearchScope.allScope(project));
+        assertNotNull("Class is not found by PSI: " + fqName, psiClass);
+        JavaClass binaryClass = new BinaryJavaClassFinder(ServiceManager.getService(project, ClassFileFinder.class)).findClass(fqName);
+        assertNotNull("Class file is not found: " + fqName, binaryClass);
+
+        assertEquals(render(new JavaClassImpl(psiClass)), render(binaryClass));
+        assertEquals(renderExternalNames(new JavaClassImpl(psiClass)), renderExternalNames(binaryClass));
+
+        NamespaceDescriptor psiNamespace = loadTestNamespace(createEnvironment(false));
+        NamespaceDescriptor binaryNamespace = loadTestNamespace(binaryEnvironment);
+        validateAndCompareNamespaces(psiNamespace, binaryNamespace, DONT_INCLUDE_METHODS_OF_OBJECT, null);
+    }
+
+    @NotNull
+    private JetCoreEnvironment createEnvironment(boolean readClassFiles) {
+        CompilerConfiguration configuration = JetTestUtils.compilerConfigurationForTests(
+                ConfigurationKind.JDK_ONLY, TestJdkKind.MOCK_JDK, tmpdir);
+        configuration.put(JVMConfigurationKeys.READ_CLASS_FILES, readClassFiles);
+        return JetCoreEnvironment.createForTests(getTestRootDisposable(), configuration);
+    }
+
+    @NotNull
+    private static NamespaceDescriptor loadTestNamespace(@NotNull JetCoreEnvironment environment) {
+        InjectorForJavaDescriptorResolver injector =
+                new InjectorForJavaDescriptorResolver(environment.getProject(), new BindingTraceContext());
+        NamespaceDescriptor namespace = injector.getJavaDescriptorResolver().resolveNamespace(TEST_PACKAGE_FQNAME, IGNORE_KOTLIN_SOURCES);
+        assertNotNull("Test namespace is not found", namespace);
+        return namespace;
+    }
+
+    // Members are sorted, since their order is not specified; parameter names are not compared, since class files don't have them
+
+    @NotNull
+    private static String render(@NotNull JavaClass javaClass) {
+        StringBuilder sb = new StringBuilder();
+        renderClass(javaClass, "", sb);
+        return sb.toString();
+    }
+
+    private static void renderClass(@NotNull JavaClass javaClass, @NotNull String indent, @NotNull StringBuilder sb) {
+        sb.append(indent);
+        renderAnnotations(javaClass.getAnnotations(), sb);
+        renderModifiers(javaClass, sb);
+        if (javaClass.isAnnotationType()) {
+            sb.append("@interface ");
+        }
+        else if (javaClass.isInterface()) {
+            sb.append("interface ");
+        }
+        else {
+            sb.append(javaClass.isEnum() ? "enum " : "class ");
+        }
+        sb.append(javaClass.getFqName());
+        renderTypeParameters(javaClass.getTypeParameters(), sb);
+        sb.append(" : ");
+        renderTypes(javaClass.getSupertypes(), sb);
+        sb.append(" {\n");
+
+        String memberIndent = indent + "    ";
+        List<String> members = new ArrayList<String>();
+        for (JavaField field : javaClass.getFields()) {
+            StringBuilder member = new StringBuilder(memberIndent);
+            renderAnnotations(field.getAnnotations(), member);
+            renderModifiers(field, member);
+            member.append(field.isEnumEntry() ? "entry " : "field ").append(field.getName()).append(": ");
+            renderType(field.getType(), member);
+            members.add(member.toString());
+        }
+        for (JavaMethod constructor : javaClass.getConstructors()) {
+            members.add(renderMethod(constructor, memberIndent));
+        }
+        for (JavaMethod method : javaClass.getMethods()) {
+            members.add(renderMethod(method, memberIndent));
+        }
+        Collections.sort(members);
+        for (String member : members) {
+            sb.append(member).append('\n');
+        }
+
+        List<JavaClass> innerClasses = new ArrayList<JavaClass>(javaClass.getInnerClasses());
+        Collections.sort(innerClasses, new Comparator<JavaClass>() {
+            @Override
+            public int compare(@NotNull JavaClass o1, @NotNull JavaClass o2) {
+                return o1.getName().asString().compareTo(o2.getName().asString());
+            }
+        });
+        for (JavaClass innerClass : innerClasses) {
+            renderClass(innerClass, memberIndent, sb);
+        }
+        sb.append(indent).append("}\n");
+    }
+
+    @NotNull
+    private static String renderMethod(@NotNull JavaMethod method, @NotNull String indent) {
+        StringBuilder sb = new StringBuilder(indent);
+        renderAnnotations(method.getAnnotations(), sb);
+        renderModifiers(method, sb);
+        sb.append(method.isConstructor() ? "constructor " : "method ");
+        renderTypeParameters(method.getTypeParameters(), sb);
+        sb.append(method.getName()).append('(');
+        for (Iterator<JavaValueParameter> iterator = method.getValueParameters().iterator(); iterator.hasNext(); ) {
+            JavaValueParameter parameter = iterator.next();
+            renderAnnotations(parameter.getAnnotations(), sb);
+            if (parameter.isVararg()) {
+                sb.append("vararg ");
+            }
+            renderType(parameter.getType(), sb);
+            if (iterator.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        sb.append(')');
+        if (method.isVararg()) {
+            sb.append(" vararg");
+        }
+        if (method.hasAnnotationParameterDefaultValue()) {
+            sb.append(" default");
+        }
+        JavaType returnType = method.getReturnType();
+        if (returnType != null) {
+            sb.append(": ");
+            renderType(returnType, sb);
+        }
+        return sb.toString();
+    }
+
+    // External names of the class, its members and parameters, by which external annotations are found
+
+    @NotNull
+    private static String renderExternalNames(@NotNull JavaClass javaClass) {
+        List<String> names = new ArrayList<String>();
+        collectExternalNames(javaClass, names);
+        Collections.sort(names);
+        return StringUtil.join(names, "\n");
+    }
+
+    private static void collectExternalNames(@NotNull JavaClass javaClass, @NotNull List<String> result) {
+        result.add(getExternalName(javaClass));
+        for (JavaField field : javaClass.getFields()) {
+            result.add(getExternalName(field));
+        }
+        List<JavaMethod> methods = new ArrayList<JavaMethod>(javaClass.getConstructors());
+        methods.addAll(javaClass.getMethods());
+        for (JavaMethod method : methods) {
+            result.add(getExternalName(method));
+            for (JavaValueParameter parameter : method.getValueParameters()) {
+                result.add(getExternalName(parameter));
+            }
+        }
+        for (JavaClass innerClass : javaClass.getInnerClasses()) {
+            collectExternalNames(innerClass, result);
+        }
+    }
+
+    @NotNull
+    private static String getExternalName(@NotNull JavaElement element) {
+        if (element instanceof JavaElementImpl) {
+            String externalName = PsiFormatUtil.getExternalName((PsiModifierListOwner) ((JavaElementImpl) element).getPsi());
+            assertNotNull("No external name: " + element, externalName);
+            return externalName;
+        }
+        else if (element instanceof BinaryJavaClass) {
+            return ((BinaryJavaClass) element).getExternalName();
+        }
+        else if (element instanceof BinaryJavaMember) {
+            return ((BinaryJavaMember) element).getExternalName();
+        }
+        else if (element instanceof BinaryJavaValueParameter) {
+            return ((BinaryJavaValueParameter) element).getExternalName();
+        }
+        throw new AssertionError("Unexpected element: " + element);
+    }
+
+    private static void renderModifiers(@NotNull JavaModifierListOwner owner, @NotNull StringBuilder sb) {
+        sb.append(owner.getVisibility()).append(' ');
+        if (owner.isAbstract()) sb.append("abstract ");
+        if (owner.isStatic()) sb.append("static ");
+        if (owner.isFinal()) sb.append("final ");
+    }
+
+    private static void renderTypeParameters(@NotNull List<JavaTypeParameter> typeParameters, @NotNull StringBuilder sb) {
+        if (typeParameters.isEmpty()) return;
+        sb.append('<');
+        for (Iterator<JavaTypeParameter> iterator = typeParameters.iterator(); iterator.hasNext(); ) {
+            JavaTypeParameter typeParameter = iterator.next();
+            sb.append(typeParameter.getName()).append(" : ");
+            renderTypes(typeParameter.getUpperBounds(), sb);
+            if (iterator.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        sb.append("> ");
+    }
+
+    private static void renderTypes(@NotNull Collection<? extends JavaType> types, @NotNull StringBuilder sb) {
+        sb.append('[');
+        for (Iterator<? extends JavaType> iterator = types.iterator(); iterator.hasNext(); ) {
+            renderType(iterator.next(), sb);
+            if (iterator.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        sb.append(']');
+    }
+
+    private static void renderType(@NotNull JavaType type, @NotNull StringBuilder sb) {
+        if (type instanceof JavaPrimitiveType) {
+            sb.append(((JavaPrimitiveType) type).getCanonicalText());
+        }
+        else if (type instanceof JavaArrayType) {
+            renderType(((JavaArrayType) type).getComponentType(), sb);
+            sb.append("[]");
+        }
+        else if (type instanceof JavaWildcardType) {
+            JavaWildcardType wildcardType = (JavaWildcardType) type;
+            JavaType bound = wildcardType.getBound();
+            sb.append('?');
+            if (bound != null) {
+                sb.append(wildcardType.isExtends() ? " extends " : " super ");
+                renderType(bound, sb);
+            }
+        }
+        else if (type instanceof JavaClassifierType) {
+            JavaClassifierType classifierType = (JavaClassifierType) type;
+            JavaClassifier classifier = classifierType.getClassifier();
+            if (classifier instanceof JavaClass) {
+                sb.append(((JavaClass) classifier).getFqName());
+            }
+            else if (classifier instanceof JavaTypeParameter) {
+                sb.append(classifier.getName());
+            }
+            else {
+                sb.append("unresolved ").append(classifierType.getPresentableText());
+            }
+            if (classifierType.isRaw()) {
+                sb.append(" raw");
+            }
+            List<JavaType> typeArguments = classifierType.getTypeArguments();
+            if (!typeArguments.isEmpty()) {
+                sb.append('<');
+                renderTypes(typeArguments, sb);
+                sb.append('>');
+            }
+        }
+        else {
+            fail("Unexpected type: " + type);
+        }
+    }
+
+    private static void renderAnnotations(@NotNull Collection<JavaAnnotation> annotations, @NotNull StringBuilder sb) {
+        List<String> rendered = new ArrayList<String>(annotations.size());
+        for (JavaAnnotation annotation : annotations) {
+            StringBuilder annotationText = new StringBuilder();
+            renderAnnotation(annotation, annotationText);
+            rendered.add(annotationText.toString());
+        }
+        Collections.sort(rendered);
+        for (String annotation : rendered) {
+            sb.append(annotation).append(' ');
+        }
+    }
+
+    private static void renderAnnotation(@NotNull JavaAnnotation annotation, @NotNull StringBuilder sb) {
+        sb.append('@').append(annotation.getFqName());
+        List<String> arguments = new ArrayList<String>();
+        for (JavaAnnotationArgument argument : annotation.getArguments()) {
+            StringBuilder argumentText = new StringBuilder();
+            argumentText.append(argument.getName()).append(" = ");
+            renderAnnotationArgument(argument, argumentText);
+            arguments.add(argumentText.toString());
+        }
+        Collections.sort(arguments);
+        sb.append(arguments);
+    }
+
+    private static void renderAnnotationArgument(@NotNull JavaAnnotationArgument argument, @NotNull StringBuilder sb) {
+        if (argument instanceof JavaLiteralAnnotationArgument) {
+            Object value = ((JavaLiteralAnnotationArgument) argument).getValue();
+            sb.append(value == null ? "null" : value.getClass().getSimpleName() + " " + value);
+        }
+        else if (argument instanceof JavaReferenceAnnotationArgument) {
+            JavaElement element = ((JavaReferenceAnnotationArgument) argument).resolve();
+            if (element instanceof JavaField) {
+                JavaField field = (JavaField) element;
+                sb.append(field.getContainingClass().getFqName()).append('.').append(field.getName());
+            }
+            else {
+                sb.append("unresolved reference");
+            }
+        }
+        else if (argument instanceof JavaArrayAnnotationArgument) {
+            sb.append('{');
+            for (Iterator<JavaAnnotationArgument> iterator = ((JavaArrayAnnotationArgument) argument).getElements().iterator();
+                 iterator.hasNext(); ) {
+                renderAnnotationArgument(iterator.next(), sb);
+                if (iterator.hasNext()) {
+                    sb.append(", ");
+                }
+            }
+            sb.append('}');
+        }
+        else if (argument instanceof JavaAnnotationAsAnnotationArgument) {
+            renderAnnotation(((JavaAnnotationAsAnnotationArgument) argument).getAnnotation(), sb);
+        }
+        else if (argument instanceof JavaClassObjectAnnotationArgument) {
+            renderType(((JavaClassObjectAnnotationArgument) argument).getReferencedType(), sb);
+            sb.append(".class");
+        }
+        else {
+            fail("Unexpected annotation argument: " + argument);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve;
+
+import junit.framework.TestCase;
+import org.jetbrains.jet.util.slicedmap.Slices;
+import org.jetbrains.jet.util.slicedmap.WritableSlice;
+
+public class BindingTraceStatisticsTest extends TestCase {
+    private static final WritableSlice<String, String> NAMES = Slices.<String, String>sliceBuilder().setDebugName("NAMES").build();
+    private static final WritableSlice<String, long[]> ARRAYS = Slices.<String, long[]>sliceBuilder().setDebugName("ARRAYS").build();
+
+    public void testEntriesAreCountedPerSlice() {
+        BindingTraceContext trace = new BindingTraceContext();
+        trace.record(NAMES, "a", "x");
+        trace.record(NAMES, "b", "y");
+        trace.record(ARRAYS, "a", new long[100]);
+
+        BindingTraceStatistics.Report report = new BindingTraceStatistics().report(trace);
+
+        assertEquals(2, report.getSlices().size());
+        BindingTraceStatistics.SliceFootprint largest = report.getSlices().get(0);
+        assertEquals("ARRAYS", largest.getSliceName());
+        assertEquals(1, largest.getEntries());
+        assertTrue(largest.getEstimatedBytes() > 800);
+        assertEquals(2, report.getSlices().get(1).getEntries());
+    }
+
+    public void testSharedValuesAreCountedOnce() {
+        long[] shared = new long[100];
+
+        BindingTraceContext once = new BindingTraceContext();
+        once.record(ARRAYS, "a", shared);
+
+        BindingTraceContext twice = new BindingTraceContext();
+        twice.record(ARRAYS, "a", shared);
+        twice.record(ARRAYS, "b", shared);
+
+        long onceBytes = new BindingTraceStatistics().report(once).getTotalEstimatedBytes();
+        long twiceBytes = new BindingTraceStatistics().report(twice).getTotalEstimatedBytes();
+        assertTrue(twiceBytes - onceBytes < 100);
+    }
+
+    public void testGlobalStatisticsStartFromScratch() {
+        try {
+            BindingTraceStatistics.enableGlobally();
+            TemporaryBindingTrace.create(new BindingTraceContext(), "first").commit();
+            assertEquals(1, BindingTraceStatistics.getGlobal().getTraceCounters().size());
+
+            BindingTraceStatistics.enableGlobally();
+            assertTrue(BindingTraceStatistics.getGlobal().getTraceCounters().isEmpty());
+        }
+        finally {
+            BindingTraceStatistics.disableGlobally();
+        }
+        assertNull(BindingTraceStatistics.getGlobal());
+    }
+
+    public void testOtherTracesContributeCountersOnly() {
+        DelegatingBindingTrace trace = new DelegatingBindingTrace(BindingContext.EMPTY, "test");
+        trace.record(NAMES, "a", "x");
+
+        BindingTraceStatistics.Report report = new BindingTraceStatistics().report(trace);
+        assertTrue(report.getSlices().isEmpty());
+        assertEquals(0, report.getTotalEstimatedBytes());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve;
+
+import com.google.common.collect.Lists;
+import junit.framework.TestCase;
+import org.jetbrains.jet.util.slicedmap.Slices;
+import org.jetbrains.jet.util.slicedmap.WritableSlice;
+
+import java.util.Collections;
+
+public class DelegatingBindingTraceTest extends TestCase {
+    private static final WritableSlice<String, String> NAMES = Slices.<String, String>sliceBuilder().setDebugName("NAMES").build();
+    private static final WritableSlice<String, Boolean> FLAGS = Slices.createSimpleSetSlice();
+
+    private static final Object UNRENDERABLE_SUBJECT = new Object() {
+        @Override
+        public String toString() {
+            throw new AssertionError("The resolution subject should only be rendered in toString() of the trace");
+        }
+    };
+
+    public void testReadsAndCommitsOfEmptyTraceAllocateNothing() {
+        BindingTraceContext parent = new BindingTraceContext();
+        parent.record(NAMES, "a", "x");
+        parent.record(FLAGS, "a");
+
+        TemporaryBindingTrace trace = TemporaryBindingTrace.create(parent, "empty", UNRENDERABLE_SUBJECT);
+        assertEquals("x", trace.get(NAMES, "a"));
+        assertNull(trace.get(NAMES, "b"));
+        assertEquals(Boolean.TRUE, trace.get(FLAGS, "a"));
+        assertEquals(Boolean.FALSE, trace.get(FLAGS, "b"));
+        assertEquals(Collections.singletonList("a"), Lists.newArrayList(trace.getKeys(NAMES)));
+        assertFalse(trace.hasStorage());
+
+        trace.commit();
+        assertFalse(trace.hasStorage());
+        assertEquals("x", parent.get(NAMES, "a"));
+        assertEquals(1, parent.getKeys(NAMES).size());
+    }
+
+    public void testStorageIsAllocatedOnWriteAndDroppedOnCommit() {
+        BindingTraceContext parent = new BindingTraceContext();
+
+        TemporaryBindingTrace trace = TemporaryBindingTrace.create(parent, "written", UNRENDERABLE_SUBJECT);
+        trace.record(NAMES, "a", "x");
+        assertTrue(trace.hasStorage());
+        assertEquals("x", trace.get(NAMES, "a"));
+        assertNull(parent.get(NAMES, "a"));
+
+        trace.commit();
+        assertFalse(trace.hasStorage());
+        assertEquals("x", parent.get(NAMES, "a"));
+        assertEquals("x", trace.get(NAMES, "a"));
+    }
+
+    public void testClearDropsStorage() {
+        BindingTraceContext parent = new BindingTraceContext();
+
+        TemporaryBindingTrace trace = TemporaryBindingTrace.create(parent, "discarded");
+        trace.record(FLAGS, "a");
+        assertEquals(Boolean.TRUE, trace.get(FLAGS, "a"));
+
+        trace.clear();
+        assertFalse(trace.hasStorage());
+        assertEquals(Boolean.FALSE, trace.get(FLAGS, "a"));
+        assertEquals(Boolean.FALSE, parent.get(FLAGS, "a"));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve;
+
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.diagnostics.Diagnostic;
+import org.jetbrains.jet.lang.psi.JetFile;
+import org.jetbrains.jet.lang.resolve.java.AnalyzerFacadeForJVM;
+import org.jetbrains.jet.lang.resolve.lazy.KotlinTestWithEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.jetbrains.jet.lang.diagnostics.DiagnosticUtils.sortedDiagnostics;
+
+public class ParallelBodyResolveTest extends KotlinTestWithEnvironment {
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    public void testSameResultsAsSequential() {
+        List<JetFile> files = Arrays.asList(
+                JetTestUtils.createFile("a.kt",
+                                        "package a\n" +
+                                        "fun list(): java.util.ArrayList<String> { val l = java.util.ArrayList<String>(); l.add(\"\"); return l }\n" +
+                                        "fun size() = list().size()\n" +
+                                        "fun wrong(): Int { return \"\" }\n" +
+                                        "fun inferred() = undefined + list()\n" +
+                                        "fun usesInferred() { inferred().foo(); bar() }\n" +
+                                        "class C { fun f(x: Int) = { x + size() }; fun g() { f(\"\") } }\n",
+                                        getProject()),
+                JetTestUtils.createFile("b.kt",
+                                        "package b\n" +
+                                        "fun h() = a.C().f(1)()\n" +
+                                        "fun unresolved() { foo() }\n" +
+                                        "fun map() = java.util.HashMap<String, Int>().get(\"\")\n",
+                                        getProject())
+        );
+
+        BindingContext sequential = analyze(files, 1);
+        BindingContext parallel = analyze(files, 4);
+
+        assertEquals(render(sortedDiagnostics(sequential.getDiagnostics().all())),
+                     render(sortedDiagnostics(parallel.getDiagnostics().all())));
+        assertEquals(sequential.getKeys(BindingContext.EXPRESSION_TYPE).size(), parallel.getKeys(BindingContext.EXPRESSION_TYPE).size());
+    }
+
+    // Inferred return types are computed before any body when resolving in parallel, and so are their diagnostics
+    public void testDiagnosticsOfInferredTypesPrecedeBodies() {
+        List<JetFile> files = Collections.singletonList(
+                JetTestUtils.createFile("a.kt",
+                                        "package a\n" +
+                                        "fun first() { undefinedInBody() }\n" +
+                                        "fun inferred() = undefinedInType\n",
+                                        getProject())
+        );
+
+        assertEquals(Arrays.asList("undefinedInBody", "undefinedInType"), renderElements(analyze(files, 1)));
+        assertEquals(Arrays.asList("undefinedInType", "undefinedInBody"), renderElements(analyze(files, 4)));
+    }
+
+    private BindingContext analyze(List<JetFile> files, int threads) {
+        return AnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+                getProject(), files, new BindingTraceContext(), Collections.<AnalyzerScriptParameter>emptyList(),
+                Predicates.<PsiFile>alwaysTrue(), false, threads).getBindingContext();
+    }
+
+    private static List<String> render(List<Diagnostic> diagnostics) {
+        List<String> result = new ArrayList<String>();
+        for (Diagnostic diagnostic : diagnostics) {
+            result.add(diagnostic.getFactory().getName() + " " + diagnostic.getTextRanges());
+        }
+        return result;
+    }
+
+    private static List<String> renderElements(BindingContext context) {
+        List<String> result = new ArrayList<String>();
+        for (Diagnostic diagnostic : context.getDiagnostics().all()) {
+            result.add(diagnostic.getPsiElement().getText());
+        }
+        return result;
+    }
+}
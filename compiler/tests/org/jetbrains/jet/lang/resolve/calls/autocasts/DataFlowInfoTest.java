@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.calls.autocasts;
+
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetLiteFixture;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.TypeUtils;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DataFlowInfoTest extends JetLiteFixture {
+    private KotlinBuiltIns builtIns;
+    private JetType intType;
+    private JetType stringType;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        builtIns = KotlinBuiltIns.getInstance();
+        intType = builtIns.getIntType();
+        stringType = builtIns.getStringType();
+    }
+
+    public void testEstablishSubtypingOrder() {
+        DataFlowValue x = stableValue("x", builtIns.getAnyType());
+        DataFlowInfo info = DataFlowInfo.EMPTY.establishSubtyping(x, intType).establishSubtyping(x, stringType);
+
+        assertPossibleTypes(info, x, stringType, intType);
+        assertTrue(info.hasTypeInfoConstraints());
+        assertSame(info, info.establishSubtyping(x, intType));
+    }
+
+    public void testAndPutsOtherTypesFirst() {
+        DataFlowValue x = stableValue("x", builtIns.getAnyType());
+        DataFlowInfo first = DataFlowInfo.EMPTY.establishSubtyping(x, intType);
+        DataFlowInfo second = DataFlowInfo.EMPTY.establishSubtyping(x, stringType);
+
+        DataFlowInfo both = first.and(second);
+        assertPossibleTypes(both, x, stringType, intType);
+        assertSame(both, both.and(first));
+    }
+
+    public void testAndDoesNotRepeatTypes() {
+        DataFlowValue x = stableValue("x", builtIns.getAnyType());
+        DataFlowInfo first = DataFlowInfo.EMPTY.establishSubtyping(x, intType);
+        DataFlowInfo second = DataFlowInfo.EMPTY.establishSubtyping(x, stringType).establishSubtyping(x, intType);
+
+        // Types this info already has keep their place
+        assertPossibleTypes(first.and(second), x, stringType, intType);
+    }
+
+    public void testOrOfInfosDerivedFromTheSameOne() {
+        DataFlowValue x = stableValue("x", builtIns.getAnyType());
+        DataFlowValue y = stableValue("y", TypeUtils.makeNullable(stringType));
+        DataFlowValue z = stableValue("z", builtIns.getAnyType());
+        DataFlowInfo base = DataFlowInfo.EMPTY.establishSubtyping(x, intType).disequate(y, DataFlowValue.NULL);
+
+        DataFlowInfo both = base.establishSubtyping(x, stringType).or(base.establishSubtyping(z, stringType));
+        assertPossibleTypes(both, x, intType);
+        assertEquals(Nullability.NOT_NULL, both.getNullability(y));
+        assertPossibleTypes(both, y, stringType);
+        assertPossibleTypes(both, z);
+    }
+
+    public void testOrKeepsCommonTypes() {
+        DataFlowValue x = stableValue("x", builtIns.getAnyType());
+        DataFlowInfo intAndString = DataFlowInfo.EMPTY.establishSubtyping(x, intType).establishSubtyping(x, stringType);
+        DataFlowInfo stringAndInt = DataFlowInfo.EMPTY.establishSubtyping(x, stringType).establishSubtyping(x, intType);
+        DataFlowInfo onlyInt = DataFlowInfo.EMPTY.establishSubtyping(x, intType);
+
+        assertPossibleTypes(intAndString.or(stringAndInt), x, stringType, intType);
+        assertPossibleTypes(intAndString.or(onlyInt), x, intType);
+        assertSame(DataFlowInfo.EMPTY, intAndString.or(DataFlowInfo.EMPTY));
+    }
+
+    public void testNotNullValue() {
+        JetType nullableString = TypeUtils.makeNullable(stringType);
+        DataFlowValue x = stableValue("x", nullableString);
+
+        assertPossibleTypes(DataFlowInfo.EMPTY, x);
+
+        DataFlowInfo notNull = DataFlowInfo.EMPTY.disequate(x, DataFlowValue.NULL);
+        assertEquals(Nullability.NOT_NULL, notNull.getNullability(x));
+        assertPossibleTypes(notNull, x, stringType);
+        assertFalse(notNull.hasTypeInfoConstraints());
+
+        DataFlowInfo isNull = DataFlowInfo.EMPTY.equate(x, DataFlowValue.NULL);
+        assertEquals(Nullability.NULL, isNull.getNullability(x));
+        assertPossibleTypes(isNull, x);
+        assertPossibleTypes(notNull.or(isNull), x);
+    }
+
+    public void testTypesEstablishedForNotNullValueAreNotNullable() {
+        DataFlowValue x = stableValue("x", TypeUtils.makeNullable(builtIns.getAnyType()));
+        JetType nullableString = TypeUtils.makeNullable(stringType);
+
+        DataFlowInfo info = DataFlowInfo.EMPTY.establishSubtyping(x, nullableString).disequate(x, DataFlowValue.NULL);
+        assertPossibleTypes(info, x, builtIns.getAnyType(), nullableString);
+
+        info = DataFlowInfo.EMPTY.disequate(x, DataFlowValue.NULL).establishSubtyping(x, nullableString);
+        assertPossibleTypes(info, x, builtIns.getAnyType(), stringType);
+    }
+
+    public void testNotNullAfterAnyPreviousOperation() {
+        JetType nullableString = TypeUtils.makeNullable(stringType);
+        DataFlowValue x = stableValue("x", nullableString);
+
+        DataFlowInfo impossible = DataFlowInfo.EMPTY.equate(x, DataFlowValue.NULL).and(DataFlowInfo.EMPTY.disequate(x, DataFlowValue.NULL));
+        assertEquals(Nullability.IMPOSSIBLE, impossible.getNullability(x));
+
+        DataFlowInfo isNullAgain = impossible.equate(x, DataFlowValue.NULL);
+        assertEquals(Nullability.NULL, isNullAgain.getNullability(x));
+        assertPossibleTypes(isNullAgain, x, stringType);
+    }
+
+    private static DataFlowValue stableValue(String id, JetType type) {
+        return new DataFlowValue(id, type, true, type.isNullable() ? Nullability.UNKNOWN : Nullability.NOT_NULL);
+    }
+
+    private static void assertPossibleTypes(DataFlowInfo info, DataFlowValue value, JetType... expected) {
+        List<JetType> actual = new ArrayList<JetType>(info.getPossibleTypes(value));
+        assertEquals(Arrays.asList(expected), actual);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiAnnotationMemberValue;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetTestUtils;
+import org.jetbrains.jet.TestJdkKind;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.resolve.java.resolver.ExternalAnnotationsIndex;
+import org.jetbrains.jet.test.TestCaseWithTmpdir;
+import org.jetbrains.jet.utils.PathUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExternalAnnotationsIndexTest extends TestCaseWithTmpdir {
+    private final List<String> warnings = new ArrayList<String>();
+    private ExternalAnnotationsIndex index;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        JetCoreEnvironment environment = JetCoreEnvironment.createForTests(
+                getTestRootDisposable(), JetTestUtils.compilerConfigurationForTests(ConfigurationKind.JDK_ONLY, TestJdkKind.MOCK_JDK));
+        index = new ExternalAnnotationsIndex(environment.getProject(), new ExternalAnnotationsIndex.WarningReporter() {
+            @Override
+            public void reportWarning(@NotNull String message) {
+                warnings.add(message);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        index = null;
+        super.tearDown();
+    }
+
+    public void testAnnotationsWithArguments() throws Exception {
+        addRoot("root", "a", item("a.A java.lang.String foo(int, java.util.List&lt;java.lang.String&gt;) 1",
+                                  "<annotation name='org.jetbrains.annotations.NotNull'/>",
+                                  "<annotation name='jet.runtime.typeinfo.KotlinSignature'>" +
+                                  "<val name='value' val='&quot;fun foo(i: Int, list: List&lt;String&gt;)&quot;'/>" +
+                                  "</annotation>"));
+
+        PsiAnnotation[] annotations = index.findExternalAnnotations("a.A java.lang.String foo(int, java.util.List<java.lang.String>) 1");
+        assertNotNull(annotations);
+        assertEquals(2, annotations.length);
+        assertEquals("org.jetbrains.annotations.NotNull", annotations[0].getQualifiedName());
+        assertEquals("jet.runtime.typeinfo.KotlinSignature", annotations[1].getQualifiedName());
+
+        PsiAnnotationMemberValue value = annotations[1].findDeclaredAttributeValue("value");
+        assertNotNull(value);
+        assertEquals("\"fun foo(i: Int, list: List<String>)\"", value.getText());
+
+        assertEmpty(warnings);
+    }
+
+    public void testUnnamedArgument() throws Exception {
+        addRoot("root", "a", item("a.A", "<annotation name='a.Ann'><val val='1'/></annotation>"));
+
+        PsiAnnotation[] annotations = index.findExternalAnnotations("a.A");
+        assertNotNull(annotations);
+        assertEquals("@a.Ann(value=1)", annotations[0].getText());
+    }
+
+    public void testElementsWithoutAnnotations() throws Exception {
+        addRoot("root", "a", item("a.A"), item("a.A int field", "<annotation name='a.Ann'/>"));
+
+        assertNull(index.findExternalAnnotations("a.A"));
+        assertNull(index.findExternalAnnotations("a.A int other"));
+        assertNull(index.findExternalAnnotations("b.B int field"));
+        assertAnnotations("a.A int field", "a.Ann");
+    }
+
+    public void testNestedClasses() throws Exception {
+        addRoot("root", "a.b", item("a.b.Outer.Nested void foo()", "<annotation name='a.Ann'/>"),
+                item("a.b.Outer.Nested.Inner Inner(a.b.Outer.Nested)", "<annotation name='a.Ann'/>"));
+
+        assertAnnotations("a.b.Outer.Nested void foo()", "a.Ann");
+        assertAnnotations("a.b.Outer.Nested.Inner Inner(a.b.Outer.Nested)", "a.Ann");
+        assertNull(index.findExternalAnnotations("a.b.Outer void foo()"));
+    }
+
+    public void testDefaultPackage() throws Exception {
+        addRoot("root", "", item("A void foo()", "<annotation name='Ann'/>"), item("A.Nested", "<annotation name='Ann'/>"));
+
+        assertAnnotations("A void foo()", "Ann");
+        assertAnnotations("A.Nested", "Ann");
+    }
+
+    public void testSeveralRoots() throws Exception {
+        addRoot("first", "a", item("a.A void foo()", "<annotation name='a.First'/>"));
+        addRoot("second", "a", item("a.A void foo()", "<annotation name='a.Second'/>"),
+                item("a.A void bar()", "<annotation name='a.Second'/>"));
+
+        assertAnnotations("a.A void foo()", "a.First", "a.Second");
+        assertAnnotations("a.A void bar()", "a.Second");
+    }
+
+    public void testRootAddedAfterLookup() throws Exception {
+        addRoot("first", "a", item("a.A void foo()", "<annotation name='a.First'/>"));
+        assertAnnotations("a.A void foo()", "a.First");
+
+        addRoot("second", "a", item("a.A void foo()", "<annotation name='a.Second'/>"));
+        assertAnnotations("a.A void foo()", "a.First", "a.Second");
+    }
+
+    public void testAnnotationsAreCreatedOnce() throws Exception {
+        addRoot("root", "a", item("a.A void foo()", "<annotation name='a.Ann'/>"));
+
+        PsiAnnotation[] annotations = index.findExternalAnnotations("a.A void foo()");
+        assertNotNull(annotations);
+        assertSame(annotations, index.findExternalAnnotations("a.A void foo()"));
+    }
+
+    public void testMalformedFileIsSkipped() throws Exception {
+        File malformed = writeAnnotationsXml("malformed", "a", "<root>" + item("a.A void foo()", "<annotation name='a.Ann'/>") + "<item>");
+        addRoot(malformed);
+        addRoot("valid", "a", item("a.A void bar()", "<annotation name='a.Ann'/>"));
+
+        assertNull(index.findExternalAnnotations("a.A void foo()"));
+        assertAnnotations("a.A void bar()", "a.Ann");
+
+        assertEquals(1, warnings.size());
+        assertTrue(warnings.get(0), warnings.get(0).contains(FileUtil.toSystemIndependentName(malformed.getAbsolutePath())));
+    }
+
+    private void assertAnnotations(@NotNull String externalName, @NotNull String... expectedNames) {
+        PsiAnnotation[] annotations = index.findExternalAnnotations(externalName);
+        assertNotNull("No annotations for " + externalName, annotations);
+        List<String> names = new ArrayList<String>();
+        for (PsiAnnotation annotation : annotations) {
+            names.add(annotation.getQualifiedName());
+        }
+        assertOrderedEquals(names, expectedNames);
+    }
+
+    @NotNull
+    private static String item(@NotNull String name, @NotNull String... annotations) {
+        StringBuilder sb = new StringBuilder("<item name='").append(name).append("'>");
+        for (String annotation : annotations) {
+            sb.append(annotation);
+        }
+        return sb.append("</item>").toString();
+    }
+
+    private void addRoot(@NotNull String rootName, @NotNull String packageFqName, @NotNull String... items) throws IOException {
+        StringBuilder sb = new StringBuilder("<root>");
+        for (String item : items) {
+            sb.append(item);
+        }
+        addRoot(writeAnnotationsXml(rootName, packageFqName, sb.append("</root>").toString()));
+    }
+
+    private void addRoot(@NotNull File annotationsXml) {
+        File root = annotationsXml.getParentFile();
+        while (!root.getParentFile().equals(tmpdir)) {
+            root = root.getParentFile();
+        }
+        index.addRoot(PathUtil.jarFileOrDirectoryToVirtualFile(root));
+    }
+
+    @NotNull
+    private File writeAnnotationsXml(@NotNull String rootName, @NotNull String packageFqName, @NotNull String text) throws IOException {
+        File directory = new File(tmpdir, rootName);
+        if (!packageFqName.isEmpty()) {
+            directory = new File(directory, packageFqName.replace('.', '/'));
+        }
+        File file = new File(directory, "annotations.xml");
+        FileUtil.writeToFile(file, text);
+        return file;
+    }
+}
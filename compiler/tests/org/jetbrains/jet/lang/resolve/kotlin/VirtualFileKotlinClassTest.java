@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.kotlin;
+
+import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.testFramework.UsefulTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.asm4.AnnotationVisitor;
+import org.jetbrains.asm4.ClassWriter;
+import org.jetbrains.asm4.FieldVisitor;
+import org.jetbrains.asm4.MethodVisitor;
+import org.jetbrains.jet.lang.resolve.java.JvmClassName;
+import org.jetbrains.jet.lang.resolve.kotlin.header.KotlinClassHeader;
+import org.jetbrains.jet.lang.resolve.name.Name;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jetbrains.asm4.Opcodes.*;
+
+public class VirtualFileKotlinClassTest extends UsefulTestCase {
+    private int readCount = 0;
+
+    public void testClassFileIsReadOnce() {
+        VirtualFileKotlinClass kotlinClass = new VirtualFileKotlinClass(createClassFile());
+
+        // As a finder checks the header, and then the class is deserialized with its annotations
+        assertNull(KotlinClassHeader.read(kotlinClass));
+        assertNull(KotlinClassHeader.read(kotlinClass));
+        assertEquals("test/A", kotlinClass.getClassName().getInternalName());
+        assertOrderedEquals(loadClassAnnotations(kotlinClass), "test/Ann");
+        assertOrderedEquals(loadMemberAnnotations(kotlinClass), "field f: test/Ann", "method m: test/Ann");
+
+        assertEquals(1, readCount);
+    }
+
+    public void testMemberAnnotationsAreNotKept() {
+        VirtualFileKotlinClass kotlinClass = new VirtualFileKotlinClass(createClassFile());
+
+        assertOrderedEquals(loadMemberAnnotations(kotlinClass), "field f: test/Ann", "method m: test/Ann");
+        assertOrderedEquals(loadClassAnnotations(kotlinClass), "test/Ann");
+        assertEquals(1, readCount);
+
+        // The only user of member annotations caches them, requesting them again is correct but reads the file again
+        assertOrderedEquals(loadMemberAnnotations(kotlinClass), "field f: test/Ann", "method m: test/Ann");
+        assertEquals(2, readCount);
+    }
+
+    @NotNull
+    private LightVirtualFile createClassFile() {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(V1_6, ACC_PUBLIC, "test/A", null, "java/lang/Object", null);
+        writer.visitAnnotation("Ltest/Ann;", true).visitEnd();
+
+        FieldVisitor field = writer.visitField(ACC_PUBLIC, "f", "I", null, null);
+        field.visitAnnotation("Ltest/Ann;", true).visitEnd();
+        field.visitEnd();
+
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "m", "()V", null, null);
+        AnnotationVisitor annotation = method.visitAnnotation("Ltest/Ann;", true);
+        annotation.visit("value", "v");
+        annotation.visitEnd();
+        method.visitEnd();
+
+        writer.visitEnd();
+        final byte[] bytes = writer.toByteArray();
+
+        return new LightVirtualFile("A.class") {
+            @NotNull
+            @Override
+            public byte[] contentsToByteArray() {
+                readCount++;
+                return bytes;
+            }
+        };
+    }
+
+    @NotNull
+    private static List<String> loadClassAnnotations(@NotNull KotlinJvmBinaryClass kotlinClass) {
+        List<String> result = new ArrayList<String>();
+        kotlinClass.loadClassAnnotations(new AnnotationCollector("", result));
+        return result;
+    }
+
+    @NotNull
+    private static List<String> loadMemberAnnotations(@NotNull KotlinJvmBinaryClass kotlinClass) {
+        final List<String> result = new ArrayList<String>();
+        kotlinClass.loadMemberAnnotations(new KotlinJvmBinaryClass.MemberVisitor() {
+            @Override
+            public KotlinJvmBinaryClass.AnnotationVisitor visitMethod(@NotNull Name name, @NotNull String desc) {
+                return new AnnotationCollector("method " + name + ": ", result);
+            }
+
+            @Override
+            public KotlinJvmBinaryClass.AnnotationVisitor visitField(@NotNull Name name, @NotNull String desc) {
+                return new AnnotationCollector("field " + name + ": ", result);
+            }
+        });
+        return result;
+    }
+
+    private static class AnnotationCollector implements KotlinJvmBinaryClass.AnnotationVisitor {
+        private final String prefix;
+        private final List<String> result;
+
+        private AnnotationCollector(@NotNull String prefix, @NotNull List<String> result) {
+            this.prefix = prefix;
+            this.result = result;
+        }
+
+        @Override
+        public KotlinJvmBinaryClass.AnnotationArgumentVisitor visitAnnotation(@NotNull JvmClassName className) {
+            result.add(prefix + className.getInternalName());
+            return null;
+        }
+
+        @Override
+        public void visitEnd() {
+        }
+    }
+}
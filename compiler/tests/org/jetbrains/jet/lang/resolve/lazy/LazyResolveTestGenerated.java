@@ -91,6 +91,11 @@ public class LazyResolveTestGenerated extends AbstractLazyResolveTest {
         doTest("compiler/testData/resolve/imports/ImportNonBlockingAnalysis.resolve");
     }
     
+    @TestMetadata("ImportRecursionThroughFileScope.resolve")
+    public void testImportRecursionThroughFileScope() throws Exception {
+        doTest("compiler/testData/resolve/imports/ImportRecursionThroughFileScope.resolve");
+    }
+    
     @TestMetadata("ImportResolveOrderStable.resolve")
     public void testImportResolveOrderStable() throws Exception {
         doTest("compiler/testData/resolve/imports/ImportResolveOrderStable.resolve");
@@ -0,0 +1,129 @@
+package org.jetbrains.jet.storage;
+
+import jet.Function0;
+import jet.Function1;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
+
+public class ConcurrentStorageManagerTest extends StorageManagerTest {
+    @Override
+    protected StorageManager createStorageManager() {
+        return new LockBasedStorageManager(16);
+    }
+
+    public void testCrossDependentComputationsDoNotDeadlock() throws Exception {
+        final CyclicBarrier bothStarted = new CyclicBarrier(2);
+        final MemoizedFunctionToNotNull<Integer, String> g = m.createMemoizedFunction(new Function1<Integer, String>() {
+            @Override
+            public String invoke(Integer key) {
+                return "g" + key;
+            }
+        });
+        final MemoizedFunctionToNotNull<Integer, String> f = m.createMemoizedFunction(new Function1<Integer, String>() {
+            @Override
+            public String invoke(Integer key) {
+                try {
+                    bothStarted.await(10, TimeUnit.SECONDS);
+                }
+                catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+                // Keys 0 and 1 are guarded by different locks: each thread waits for the lock held by the other one
+                return "f" + key + ":" + g.invoke(1 - key);
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> f0 = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return f.invoke(0);
+                }
+            });
+            Future<String> f1 = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return f.invoke(1);
+                }
+            });
+
+            assertEquals("f0:g1", f0.get(10, TimeUnit.SECONDS));
+            assertEquals("f1:g0", f1.get(10, TimeUnit.SECONDS));
+            assertSame(g.invoke(0), g.invoke(0));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testRecursionIsDetectedWhenComputingWithoutLock() throws Exception {
+        // A single stripe: the lazy value below is guarded by the lock held by the first thread
+        final StorageManager singleStripe = new LockBasedStorageManager(1);
+        final Lock lock = LockBasedStorageManager.createDeadlockAwareLock();
+        final CountDownLatch lockTaken = new CountDownLatch(1);
+        final CountDownLatch stripeTaken = new CountDownLatch(1);
+
+        @SuppressWarnings("unchecked")
+        final NotNullLazyValue<String>[] recursive = new NotNullLazyValue[1];
+        recursive[0] = singleStripe.createRecursionTolerantLazyValue(new Function0<String>() {
+            @Override
+            public String invoke() {
+                return "value:" + recursive[0].invoke();
+            }
+        }, "recursion");
+        final MemoizedFunctionToNotNull<Integer, String> holder = singleStripe.createMemoizedFunction(new Function1<Integer, String>() {
+            @Override
+            public String invoke(Integer key) {
+                stripeTaken.countDown();
+                await(lockTaken);
+                // Waits for the other thread, which waits for the stripe held by this one
+                lock.lock();
+                lock.unlock();
+                return "holder";
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> holderResult = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return holder.invoke(0);
+                }
+            });
+            Future<String> recursiveResult = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    lock.lock();
+                    try {
+                        lockTaken.countDown();
+                        await(stripeTaken);
+                        return recursive[0].invoke();
+                    }
+                    finally {
+                        lock.unlock();
+                    }
+                }
+            });
+
+            assertEquals("value:recursion", recursiveResult.get(10, TimeUnit.SECONDS));
+            assertEquals("holder", holderResult.get(10, TimeUnit.SECONDS));
+            assertEquals("value:recursion", recursive[0].invoke());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(@NotNull CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.jetbrains.jet.storage;
+
+import jet.Function0;
+import jet.Function1;
+
+public class InstrumentedStorageManagerTest extends StorageManagerTest {
+    private StorageStatistics statistics;
+
+    @Override
+    protected StorageManager createStorageManager() {
+        statistics = new StorageStatistics();
+        return new InstrumentedStorageManager(new LockBasedStorageManager(), statistics);
+    }
+
+    public void testHitsAndMisses() throws Exception {
+        Function1<String, String> compute = new Function1<String, String>() {
+            @Override
+            public String invoke(String s) {
+                return s + s;
+            }
+        };
+        MemoizedFunctionToNotNull<String, String> f = m.createMemoizedFunction(compute);
+        f.invoke("a");
+        f.invoke("a");
+        f.invoke("b");
+
+        StorageStatistics.Counters counters = statistics.getCounters(compute.getClass());
+        assertEquals(3, counters.getCalls());
+        assertEquals(2, counters.getMisses());
+        assertEquals(1, counters.getHits());
+    }
+
+    public void testExceptionsAndRecursion() throws Exception {
+        class C {
+            NotNullLazyValue<String> rec = m.createRecursionTolerantLazyValue(new Function0<String>() {
+                @Override
+                public String invoke() {
+                    return rec.invoke();
+                }
+            }, "tolerant");
+        }
+        Function0<String> throwing = new Function0<String>() {
+            @Override
+            public String invoke() {
+                throw new IllegalStateException();
+            }
+        };
+        NotNullLazyValue<String> failing = m.createLazyValue(throwing);
+        for (int i = 0; i < 2; i++) {
+            try {
+                failing.invoke();
+                fail();
+            }
+            catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        assertEquals("tolerant", new C().rec.invoke());
+
+        StorageStatistics.Counters counters = statistics.getCounters(throwing.getClass());
+        assertEquals(2, counters.getCalls());
+        assertEquals(1, counters.getExceptions());
+        assertEquals(2, statistics.getAllCounters().size());
+        for (StorageStatistics.Counters c : statistics.getAllCounters()) {
+            if (c != counters) {
+                assertTrue(c.getLabel(), c.getLabel().startsWith("InstrumentedStorageManagerTest$1C"));
+                assertEquals(1, c.getRecursionDetections());
+            }
+        }
+    }
+
+    public void testDefaultLabelIsCallSite() throws Exception {
+        m.createLazyValue(new Function0<String>() {
+            @Override
+            public String invoke() {
+                return "";
+            }
+        }).invoke();
+
+        assertEquals(1, statistics.getAllCounters().size());
+        String label = statistics.getAllCounters().get(0).getLabel();
+        assertTrue(label, label.startsWith("InstrumentedStorageManagerTest.testDefaultLabelIsCallSite "));
+    }
+}
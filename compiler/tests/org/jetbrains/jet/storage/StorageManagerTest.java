@@ -13,12 +13,16 @@ import java.util.List;
 
 public class StorageManagerTest extends TestCase {
 
-    private StorageManager m;
+    protected StorageManager m;
 
     @Override
     public void setUp() throws Exception {
         super.setUp();
-        m = new LockBasedStorageManager();
+        m = createStorageManager();
+    }
+
+    protected StorageManager createStorageManager() {
+        return new LockBasedStorageManager();
     }
 
     public static <T> void doTestComputesOnce(Function0<T> v, T expected, Counter counter) throws Exception {
@@ -106,6 +110,36 @@ public class StorageManagerTest extends TestCase {
         doTestComputesOnce(apply(f, "ok"), "ok1", counter);
     }
 
+    public void testBoundedFunctionComputesOnce() throws Exception {
+        CounterFunction counter = new CounterFunction();
+        MemoizedFunctionToNotNull<String, String> f = m.createMemoizedFunctionWithBoundedCache(counter, 2);
+        doTestComputesOnce(apply(f, "ok"), "ok1", counter);
+    }
+
+    public void testBoundedFunctionRecomputesEvicted() throws Exception {
+        CounterFunction counter = new CounterFunction();
+        MemoizedFunctionToNotNull<String, String> f = m.createMemoizedFunctionWithBoundedCache(counter, 2);
+        assertEquals("a1", f.invoke("a"));
+        assertEquals("b2", f.invoke("b"));
+        assertEquals("a1", f.invoke("a"));
+        assertEquals("c3", f.invoke("c"));
+        // "b" is the least recently used one
+        assertEquals("a1", f.invoke("a"));
+        assertEquals("b4", f.invoke("b"));
+    }
+
+    public void testSoftlyRetainedFunctionComputesOnce() throws Exception {
+        CounterFunction counter = new CounterFunction();
+        MemoizedFunctionToNotNull<String, String> f = m.createSoftlyRetainedMemoizedFunction(counter);
+        doTestComputesOnce(apply(f, "ok"), "ok1", counter);
+    }
+
+    public void testSoftlyRetainedFunctionPreservesExceptions() throws Exception {
+        ExceptionCounterFunction counter = new ExceptionCounterFunction();
+        MemoizedFunctionToNotNull<String, String> f = m.createSoftlyRetainedMemoizedFunction(counter);
+        doTestExceptionPreserved(apply(f, ""), UnsupportedOperationException.class, counter);
+    }
+
     public void testNullableFunctionComputesOnce() throws Exception {
         CounterFunction counter = new CounterFunction();
         MemoizedFunctionToNullable<String, String> f = m.createMemoizedFunctionWithNullableValues(counter);
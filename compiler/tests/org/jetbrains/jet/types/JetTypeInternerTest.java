@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.types;
+
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetLiteFixture;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
+import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptorImpl;
+import org.jetbrains.jet.lang.types.*;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+
+import java.util.Collections;
+
+public class JetTypeInternerTest extends JetLiteFixture {
+    private KotlinBuiltIns builtIns;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        builtIns = KotlinBuiltIns.getInstance();
+    }
+
+    public void testIdenticalTypesAreShared() {
+        JetType nullableInt = TypeUtils.makeNullable(builtIns.getIntType());
+        assertSame(nullableInt, TypeUtils.makeNullable(builtIns.getIntType()));
+
+        JetType arrayOfNullableInt = builtIns.getArrayType(nullableInt);
+        assertSame(TypeUtils.makeNullable(arrayOfNullableInt), TypeUtils.makeNullable(builtIns.getArrayType(nullableInt)));
+    }
+
+    public void testDifferentTypesAreNotShared() {
+        JetType nullableInt = TypeUtils.makeNullable(builtIns.getIntType());
+        JetType nullableString = TypeUtils.makeNullable(builtIns.getStringType());
+        assertNotSame(nullableInt, nullableString);
+        assertFalse(nullableInt.equals(nullableString));
+    }
+
+    public void testAnnotatedTypesAreNotInterned() {
+        AnnotationDescriptorImpl annotation = new AnnotationDescriptorImpl();
+        annotation.setAnnotationType(builtIns.getAnyType());
+        JetTypeImpl annotated = new JetTypeImpl(Collections.<AnnotationDescriptor>singletonList(annotation),
+                                                builtIns.getIntType().getConstructor(), true,
+                                                Collections.<TypeProjection>emptyList(), builtIns.getIntType().getMemberScope());
+
+        assertSame(annotated, JetTypeInterner.intern(annotated));
+        assertNotSame(annotated, TypeUtils.makeNullable(builtIns.getIntType()));
+    }
+}
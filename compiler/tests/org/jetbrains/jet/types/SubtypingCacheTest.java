@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.types;
+
+import org.jetbrains.jet.ConfigurationKind;
+import org.jetbrains.jet.JetLiteFixture;
+import org.jetbrains.jet.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.jet.lang.types.ErrorUtils;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.TypeUtils;
+import org.jetbrains.jet.lang.types.checker.JetTypeChecker;
+import org.jetbrains.jet.lang.types.checker.SubtypingCache;
+import org.jetbrains.jet.lang.types.lang.KotlinBuiltIns;
+
+public class SubtypingCacheTest extends JetLiteFixture {
+    private KotlinBuiltIns builtIns;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        builtIns = KotlinBuiltIns.getInstance();
+    }
+
+    public void testStructurallyEqualTypesHit() {
+        SubtypingCache cache = new SubtypingCache(16);
+        JetType arrayOfInt = builtIns.getArrayType(builtIns.getIntType());
+
+        assertNull(cache.get(arrayOfInt, builtIns.getAnyType()));
+        cache.put(arrayOfInt, builtIns.getAnyType(), true);
+
+        assertEquals(Boolean.TRUE, cache.get(builtIns.getArrayType(builtIns.getIntType()), builtIns.getAnyType()));
+        assertNull(cache.get(TypeUtils.makeNullable(arrayOfInt), builtIns.getAnyType()));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testErrorTypesBypassCache() {
+        SubtypingCache cache = new SubtypingCache(16);
+        JetType arrayOfError = builtIns.getArrayType(ErrorUtils.createErrorType("error"));
+
+        cache.put(arrayOfError, builtIns.getAnyType(), true);
+
+        assertNull(cache.get(arrayOfError, builtIns.getAnyType()));
+        assertNull(cache.get(builtIns.getAnyType(), TypeUtils.DONT_CARE));
+        assertEquals(2, cache.getBypasses());
+        assertEquals(0, cache.getHits() + cache.getMisses());
+    }
+
+    public void testRequestedCacheLifecycle() {
+        JetTypeChecker checker = JetTypeChecker.INSTANCE;
+        try {
+            checker.requestSubtypingCache(16);
+            assertNull(checker.getSubtypingCache());
+
+            checker.startRequestedSubtypingCache();
+            SubtypingCache cache = checker.getSubtypingCache();
+            assertNotNull(cache);
+            assertTrue(checker.isSubtypeOf(builtIns.getIntType(), builtIns.getAnyType()));
+            assertEquals(1, cache.getMisses());
+
+            checker.disableSubtypingCache();
+            assertNull(checker.getSubtypingCache());
+
+            checker.startRequestedSubtypingCache();
+            assertNull(checker.getSubtypingCache());
+        }
+        finally {
+            checker.disableSubtypingCache();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.util.slicemap;
+
+import junit.framework.TestCase;
+import org.jetbrains.jet.util.slicedmap.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class SlicedMapImplTest extends TestCase {
+    public void testSlicesAreSeparated() {
+        WritableSlice<String, Integer> FIRST = Slices.<String, Integer>sliceBuilder().setDebugName("FIRST").build();
+        WritableSlice<String, Integer> SECOND = Slices.<String, Integer>sliceBuilder().setDebugName("SECOND").build();
+        MutableSlicedMap map = SlicedMapImpl.create();
+
+        map.put(FIRST, "a", 1);
+        map.put(SECOND, "a", 2);
+
+        assertEquals(1, (int) map.get(FIRST, "a"));
+        assertEquals(2, (int) map.get(SECOND, "a"));
+        assertNull(map.get(FIRST, "b"));
+        assertEquals(1, map.getSliceContents(SECOND).size());
+    }
+
+    public void testRawValueVersionReadsTheSameStorage() {
+        WritableSlice<String, Integer> SLICE = Slices.<String, Integer>sliceBuilder().setDefaultValue(0).setDebugName("SLICE").build();
+        MutableSlicedMap map = SlicedMapImpl.create();
+
+        assertEquals(0, (int) map.get(SLICE, "a"));
+        assertNull(map.get(SLICE.makeRawValueVersion(), "a"));
+
+        map.put(SLICE, "a", 1);
+        assertEquals(1, (int) map.get(SLICE.makeRawValueVersion(), "a"));
+    }
+
+    public void testNormalizedKeys() {
+        WritableSlice<String, Integer> SLICE = Slices.<String, Integer>sliceBuilder().setKeyNormalizer(new Slices.KeyNormalizer<String>() {
+            @Override
+            public String normalize(String key) {
+                return key.toLowerCase();
+            }
+        }).setDebugName("SLICE").build();
+        MutableSlicedMap map = SlicedMapImpl.create();
+
+        map.put(SLICE, "KEY", 1);
+        assertEquals(1, (int) map.get(SLICE, "key"));
+        assertEquals(1, (int) map.remove((RemovableSlice<String, Integer>) SLICE, "Key"));
+        assertNull(map.get(SLICE, "KEY"));
+    }
+
+    public void testIterationKeepsOrderWithinSlice() {
+        WritableSlice<String, Integer> SLICE = Slices.<String, Integer>sliceBuilder().setDebugName("SLICE").build();
+        MutableSlicedMap map = SlicedMapImpl.create();
+
+        map.put(SLICE, "c", 1);
+        map.put(SLICE, "a", 2);
+        map.put(SLICE, "b", 3);
+
+        List<Object> keys = new ArrayList<Object>();
+        for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map) {
+            assertSame(SLICE, entry.getKey().getSlice());
+            keys.add(entry.getKey().getKey());
+        }
+        assertEquals(Arrays.<Object>asList("c", "a", "b"), keys);
+    }
+}
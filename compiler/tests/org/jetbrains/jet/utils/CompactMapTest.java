@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.utils;
+
+import junit.framework.TestCase;
+
+import java.util.*;
+
+public class CompactMapTest extends TestCase {
+    public void testSmallMap() {
+        CompactMap<String, Integer> map = new CompactMap<String, Integer>();
+        assertTrue(map.isEmpty());
+        assertNull(map.get("a"));
+
+        assertNull(map.put("a", 1));
+        assertNull(map.put("b", 2));
+        assertEquals(Integer.valueOf(1), map.put("a", 3));
+
+        assertEquals(2, map.size());
+        assertEquals(Integer.valueOf(3), map.get("a"));
+        assertEquals(Integer.valueOf(2), map.get("b"));
+        assertFalse(map.containsKey("c"));
+        assertEquals(Arrays.asList(3, 2), map.values());
+    }
+
+    public void testLargeMapKeepsInsertionOrder() {
+        CompactMap<Integer, Integer> map = new CompactMap<Integer, Integer>();
+        Map<Integer, Integer> expected = new LinkedHashMap<Integer, Integer>();
+        Random random = new Random(239);
+        for (int i = 0; i < 1000; i++) {
+            // Multiples of 64 collide in the table
+            int key = random.nextInt(100) * 64;
+            assertEquals(expected.put(key, i), map.put(key, i));
+            if (i % 100 == 0) {
+                map.compact();
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        assertNull(map.get(1));
+        assertEquals(new ArrayList<Integer>(expected.values()), map.values());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.utils;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class PersistentHashMapTest extends TestCase {
+    private static class Key {
+        private final int value;
+
+        private Key(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            // Every seventh key collides with the others
+            return value % 7 == 0 ? 42 : value * 0x9E3779B9;
+        }
+    }
+
+    public void testOldVersionsAreNotChanged() {
+        PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+        PersistentHashMap<String, Integer> first = empty.plus("a", 1);
+        PersistentHashMap<String, Integer> second = first.plus("a", 2).plus("b", 3);
+
+        assertTrue(empty.isEmpty());
+        assertNull(empty.get("a"));
+        assertEquals(1, first.size());
+        assertEquals(1, (int) first.get("a"));
+        assertEquals(2, second.size());
+        assertEquals(2, (int) second.get("a"));
+        assertSame(second, second.plus("b", second.get("b")));
+    }
+
+    public void testAgreesWithHashMap() {
+        Random random = new Random(239);
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+        Map<Key, Integer> expected = new HashMap<Key, Integer>();
+
+        for (int i = 0; i < 5000; i++) {
+            Key key = new Key(random.nextInt(3000));
+            int value = random.nextInt(10);
+            map = map.plus(key, value);
+            expected.put(key, value);
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Key, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+
+        int count = 0;
+        for (Map.Entry<Key, Integer> entry : map) {
+            assertEquals(expected.get(entry.getKey()), entry.getValue());
+            count++;
+        }
+        assertEquals(expected.size(), count);
+    }
+
+    public void testMinusAgreesWithHashMap() {
+        Random random = new Random(239);
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+        Map<Key, Integer> expected = new HashMap<Key, Integer>();
+
+        for (int i = 0; i < 10000; i++) {
+            Key key = new Key(random.nextInt(500));
+            if (random.nextBoolean()) {
+                map = map.plus(key, i);
+                expected.put(key, i);
+            }
+            else {
+                PersistentHashMap<Key, Integer> newMap = map.minus(key);
+                assertEquals(expected.remove(key) != null, newMap != map);
+                map = newMap;
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        Map<Key, Integer> actual = new HashMap<Key, Integer>();
+        for (Map.Entry<Key, Integer> entry : map) {
+            actual.put(entry.getKey(), entry.getValue());
+        }
+        assertEquals(expected, actual);
+
+        for (Key key : expected.keySet()) {
+            map = map.minus(key);
+        }
+        assertTrue(map.isEmpty());
+        assertSame(PersistentHashMap.empty(), map);
+    }
+
+    public void testChangedEntries() {
+        Random random = new Random(239);
+        PersistentHashMap<Key, Integer> base = PersistentHashMap.empty();
+        for (int i = 0; i < 3000; i++) {
+            base = base.plus(new Key(i), i);
+        }
+
+        PersistentHashMap<Key, Integer> map = base;
+        Map<Key, Integer> expected = new HashMap<Key, Integer>();
+        for (int i = 0; i < 100; i++) {
+            Key key = new Key(random.nextInt(4000));
+            Integer value = -i - 1;
+            map = map.plus(key, value);
+            expected.put(key, value);
+        }
+        map = map.minus(new Key(1)).minus(new Key(7));
+        expected.remove(new Key(1));
+        expected.remove(new Key(7));
+
+        assertEquals(expected, toMap(map.changedEntries(base)));
+        assertTrue(base.changedEntries(base).isEmpty());
+        assertEquals(map.size(), map.changedEntries(PersistentHashMap.<Key, Integer>empty()).size());
+    }
+
+    private static Map<Key, Integer> toMap(Iterable<Map.Entry<Key, Integer>> entries) {
+        Map<Key, Integer> result = new HashMap<Key, Integer>();
+        for (Map.Entry<Key, Integer> entry : entries) {
+            assertNull(result.put(entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+}
@@ -21,6 +21,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
 import org.jetbrains.jet.lang.descriptors.NamespaceDescriptor;
 import org.jetbrains.jet.lang.resolve.java.resolver.JavaClassResolver;
+import org.jetbrains.jet.lang.resolve.java.resolver.JavaMemberResolver;
 import org.jetbrains.jet.lang.resolve.java.resolver.JavaNamespaceResolver;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
@@ -36,17 +37,32 @@ public class JavaDescriptorResolver implements DependencyClassByQualifiedNameRes
 
     private JavaClassResolver classResolver;
     private JavaNamespaceResolver namespaceResolver;
+    private JavaMemberResolver memberResolver;
 
     @Inject
     public void setClassResolver(JavaClassResolver classResolver) {
         this.classResolver = classResolver;
     }
 
+    @Inject
+    public void setMemberResolver(JavaMemberResolver memberResolver) {
+        this.memberResolver = memberResolver;
+    }
+
     @Inject
     public void setNamespaceResolver(JavaNamespaceResolver namespaceResolver) {
         this.namespaceResolver = namespaceResolver;
     }
 
+    /**
+     * @see JavaMemberResolver#enableConcurrentAccess()
+     * @see JavaClassResolver#enableConcurrentAccess()
+     */
+    public void enableConcurrentAccess() {
+        memberResolver.enableConcurrentAccess();
+        classResolver.enableConcurrentAccess();
+    }
+
     @Nullable
     public ClassDescriptor resolveClass(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
         return classResolver.resolveClass(qualifiedName, searchRule);
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.descriptor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jet.descriptors.serialization.ClassData;
+import org.jetbrains.jet.descriptors.serialization.DescriptorFinder;
+import org.jetbrains.jet.descriptors.serialization.descriptors.AnnotationDeserializer;
+import org.jetbrains.jet.descriptors.serialization.descriptors.DeserializedCallableFactory;
+import org.jetbrains.jet.descriptors.serialization.descriptors.DeserializedClassDescriptor;
+import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
+import org.jetbrains.jet.lang.descriptors.impl.PropertyDescriptorImpl;
+import org.jetbrains.jet.lang.descriptors.impl.SimpleFunctionDescriptorImpl;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.storage.StorageManager;
+
+import java.util.List;
+
+/**
+ * A Java class loaded from a descriptor snapshot instead of being resolved from its declaration.
+ * Classes with annotations are never saved to a snapshot, so annotations are not supported.
+ * Its methods and fields are {@link JavaCallableMemberDescriptor}s, as if they were resolved from Java
+ */
+public class JavaClassDescriptorFromSnapshot extends DeserializedClassDescriptor {
+    // Only declared members are saved to a snapshot, fields are final
+    private static final DeserializedCallableFactory JAVA_MEMBER_FACTORY = new DeserializedCallableFactory() {
+        @NotNull
+        @Override
+        public SimpleFunctionDescriptorImpl createFunction(
+                @NotNull DeclarationDescriptor containingDeclaration,
+                @NotNull List<AnnotationDescriptor> annotations,
+                @NotNull Name name,
+                @NotNull CallableMemberDescriptor.Kind kind
+        ) {
+            assert kind == CallableMemberDescriptor.Kind.DECLARATION : "Unexpected member kind in snapshot: " + kind + " " + name;
+            return new JavaMethodDescriptor(containingDeclaration, annotations, name);
+        }
+
+        @NotNull
+        @Override
+        public PropertyDescriptorImpl createProperty(
+                @NotNull DeclarationDescriptor containingDeclaration,
+                @NotNull List<AnnotationDescriptor> annotations,
+                @NotNull Modality modality,
+                @NotNull Visibility visibility,
+                boolean isVar,
+                @NotNull Name name,
+                @NotNull CallableMemberDescriptor.Kind kind
+        ) {
+            assert kind == CallableMemberDescriptor.Kind.DECLARATION && modality == Modality.FINAL
+                    : "Unexpected field in snapshot: " + modality + " " + kind + " " + name;
+            return new JavaPropertyDescriptor(containingDeclaration, annotations, visibility, isVar, name);
+        }
+    };
+
+    private final ClassOrNamespaceDescriptor containingDeclaration;
+
+    public JavaClassDescriptorFromSnapshot(
+            @NotNull StorageManager storageManager,
+            @NotNull DescriptorFinder descriptorFinder,
+            @NotNull ClassData classData,
+            @NotNull ClassOrNamespaceDescriptor containingDeclaration
+    ) {
+        super(storageManager, AnnotationDeserializer.UNSUPPORTED, descriptorFinder, classData, JAVA_MEMBER_FACTORY);
+        this.containingDeclaration = containingDeclaration;
+    }
+
+    @NotNull
+    @Override
+    public DeclarationDescriptor getContainingDeclaration() {
+        return containingDeclaration;
+    }
+}
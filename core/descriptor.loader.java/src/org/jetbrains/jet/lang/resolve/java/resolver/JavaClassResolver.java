@@ -18,6 +18,7 @@ package org.jetbrains.jet.lang.resolve.java.resolver;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.descriptors.serialization.ClassData;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.resolve.DescriptorFactory;
 import org.jetbrains.jet.lang.resolve.DescriptorUtils;
@@ -69,6 +70,7 @@ public final class JavaClassResolver {
     private JavaFunctionResolver functionResolver;
     private DeserializedDescriptorResolver deserializedDescriptorResolver;
     private KotlinClassFinder kotlinClassFinder;
+    private JavaDescriptorSnapshot descriptorSnapshot;
 
     public JavaClassResolver() {
     }
@@ -78,6 +80,13 @@ public final class JavaClassResolver {
         this.cache = cache;
     }
 
+    /**
+     * @see DeserializedDescriptorResolver#enableConcurrentAccess()
+     */
+    public void enableConcurrentAccess() {
+        deserializedDescriptorResolver.enableConcurrentAccess();
+    }
+
     @Inject
     public void setDeserializedDescriptorResolver(DeserializedDescriptorResolver deserializedDescriptorResolver) {
         this.deserializedDescriptorResolver = deserializedDescriptorResolver;
@@ -123,12 +132,23 @@ public final class JavaClassResolver {
         this.kotlinClassFinder = kotlinClassFinder;
     }
 
+    @Inject
+    public void setDescriptorSnapshot(JavaDescriptorSnapshot descriptorSnapshot) {
+        this.descriptorSnapshot = descriptorSnapshot;
+    }
+
     @Nullable
     public ClassDescriptor resolveClass(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
-        PostponedTasks postponedTasks = new PostponedTasks();
-        ClassDescriptor classDescriptor = resolveClass(qualifiedName, searchRule, postponedTasks);
-        postponedTasks.performTasks();
-        return classDescriptor;
+        memberResolver.lock();
+        try {
+            PostponedTasks postponedTasks = new PostponedTasks();
+            ClassDescriptor classDescriptor = resolveClass(qualifiedName, searchRule, postponedTasks);
+            postponedTasks.performTasks();
+            return classDescriptor;
+        }
+        finally {
+            memberResolver.unlock();
+        }
     }
 
     @Nullable
@@ -136,6 +156,21 @@ public final class JavaClassResolver {
             @NotNull FqName qualifiedName,
             @NotNull DescriptorSearchRule searchRule,
             @NotNull PostponedTasks tasks
+    ) {
+        memberResolver.lock();
+        try {
+            return findOrResolveClass(qualifiedName, searchRule, tasks);
+        }
+        finally {
+            memberResolver.unlock();
+        }
+    }
+
+    @Nullable
+    private ClassDescriptor findOrResolveClass(
+            @NotNull FqName qualifiedName,
+            @NotNull DescriptorSearchRule searchRule,
+            @NotNull PostponedTasks tasks
     ) {
         if (isTraitImplementation(qualifiedName)) {
             return null;
@@ -221,9 +256,28 @@ public final class JavaClassResolver {
         assert javaClass.getOriginKind() != JavaClass.OriginKind.KOTLIN_LIGHT_CLASS :
                 "Trying to resolve a light class as a regular PsiClass: " + javaClass.getFqName();
 
+        ClassData snapshotData = descriptorSnapshot.findClass(javaClass);
+        if (snapshotData != null) {
+            return createClassDescriptorFromSnapshot(qualifiedName, javaClass, containingDeclaration, snapshotData);
+        }
+
         return doCreateClassDescriptor(qualifiedName, javaClass, tasks, containingDeclaration);
     }
 
+    @NotNull
+    private ClassDescriptor createClassDescriptorFromSnapshot(
+            @NotNull FqName fqName,
+            @NotNull JavaClass javaClass,
+            @NotNull ClassOrNamespaceDescriptor containingDeclaration,
+            @NotNull ClassData classData
+    ) {
+        ClassDescriptor classDescriptor = deserializedDescriptorResolver.resolveClassFromSnapshot(containingDeclaration, classData);
+        cache(javaClassToKotlinFqName(fqName), classDescriptor);
+        cache.recordClass(javaClass, classDescriptor);
+        JavaDescriptorSnapshotUtils.recordMembers(javaClass, classDescriptor, classData, cache);
+        return classDescriptor;
+    }
+
     private void cacheNegativeValue(@NotNull FqNameUnsafe fqNameUnsafe) {
         if (unresolvedCache.contains(fqNameUnsafe) || classDescriptorCache.containsKey(fqNameUnsafe)) {
             throw new IllegalStateException("rewrite at " + fqNameUnsafe);
@@ -285,6 +339,8 @@ public final class JavaClassResolver {
             classDescriptor.setFunctionTypeForSamInterface(SingleAbstractMethodUtils.getFunctionTypeForAbstractMethod(abstractMethod));
         }
 
+        descriptorSnapshot.recordClass(javaClass, classDescriptor);
+
         return classDescriptor;
     }
 
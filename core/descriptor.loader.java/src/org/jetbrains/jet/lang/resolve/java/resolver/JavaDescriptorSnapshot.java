@@ -0,0 +1,48 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.resolver;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.descriptors.serialization.ClassData;
+import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
+import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
+
+/**
+ * Serialized descriptors of library classes kept between compilations, see {@link JavaDescriptorSnapshotUtils}
+ */
+public interface JavaDescriptorSnapshot {
+    JavaDescriptorSnapshot NONE = new JavaDescriptorSnapshot() {
+        @Nullable
+        @Override
+        public ClassData findClass(@NotNull JavaClass javaClass) {
+            return null;
+        }
+
+        @Override
+        public void recordClass(@NotNull JavaClass javaClass, @NotNull ClassDescriptor descriptor) {
+        }
+    };
+
+    @Nullable
+    ClassData findClass(@NotNull JavaClass javaClass);
+
+    /**
+     * Called for every class resolved from its Java declaration, which may be saved to the snapshot later
+     */
+    void recordClass(@NotNull JavaClass javaClass, @NotNull ClassDescriptor descriptor);
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.resolve.java.resolver;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.descriptors.serialization.*;
+import org.jetbrains.jet.lang.descriptors.*;
+import org.jetbrains.jet.lang.resolve.java.descriptor.ClassDescriptorFromJvmBytecode;
+import org.jetbrains.jet.lang.resolve.java.structure.*;
+import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.lang.resolve.name.Name;
+import org.jetbrains.jet.lang.types.ErrorUtils;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.TypeProjection;
+import org.jetbrains.jet.lang.types.TypeUtils;
+
+import java.util.*;
+
+import static org.jetbrains.jet.descriptors.serialization.NameSerializationUtil.createNameResolver;
+import static org.jetbrains.jet.lang.resolve.java.resolver.DescriptorResolverUtils.erasure;
+
+/**
+ * Only classes which the serialization format represents exactly are saved to a descriptor snapshot: top-level classes and interfaces
+ * without nested classes, annotations, SAM adapters and members with Java-specific (package or protected) visibilities,
+ * with at most one constructor. Methods are saved with their erased Java signatures, so that the loaded descriptors are recorded
+ * for the same Java members as the resolved ones would be
+ */
+public final class JavaDescriptorSnapshotUtils {
+    private static final Set<Visibility> SERIALIZABLE_VISIBILITIES = new HashSet<Visibility>(Arrays.asList(
+            Visibilities.PUBLIC, Visibilities.PROTECTED, Visibilities.PRIVATE, Visibilities.INTERNAL));
+
+    private static final String ARRAY_SUFFIX = "[]";
+
+    private JavaDescriptorSnapshotUtils() {
+    }
+
+    @Nullable
+    public static ClassData serializeClass(
+            @NotNull JavaClass javaClass,
+            @NotNull ClassDescriptor descriptor,
+            @NotNull JavaResolverCache cache
+    ) {
+        if (!isSerializableClass(javaClass, descriptor)) return null;
+
+        final Map<FunctionDescriptor, JavaMethod> methods = new HashMap<FunctionDescriptor, JavaMethod>();
+        for (JavaMethod method : javaClass.getMethods()) {
+            SimpleFunctionDescriptor function = cache.getMethod(method);
+            if (function != null && !method.isStatic()) {
+                methods.put(function, method);
+            }
+        }
+
+        Set<Name> fieldNames = new HashSet<Name>();
+        for (JavaField field : javaClass.getFields()) {
+            if (!field.isStatic()) {
+                fieldNames.add(field.getName());
+            }
+        }
+
+        for (DeclarationDescriptor member : descriptor.getDefaultType().getMemberScope().getAllDescriptors()) {
+            if (!(member instanceof CallableMemberDescriptor)) return null;
+            CallableMemberDescriptor callable = (CallableMemberDescriptor) member;
+
+            if (isSynthesized(callable)) return null;
+            if (callable.getKind() == CallableMemberDescriptor.Kind.FAKE_OVERRIDE) continue;
+            if (callable.getKind() != CallableMemberDescriptor.Kind.DECLARATION || !isSerializableMember(callable)) return null;
+
+            if (callable instanceof PropertyDescriptor) {
+                PropertyDescriptor property = (PropertyDescriptor) callable;
+                if (property.getGetter() != null || property.getSetter() != null || !fieldNames.contains(property.getName())) return null;
+            }
+            else {
+                JavaMethod method = methods.get(callable.getOriginal());
+                if (method == null || signatureKey(method) == null || erasedTypeText(method.getReturnType()) == null) return null;
+            }
+        }
+
+        Collection<ConstructorDescriptor> constructors = descriptor.getConstructors();
+        if (constructors.size() > 1) return null;
+        for (ConstructorDescriptor constructor : constructors) {
+            if (!constructor.isPrimary() || !isSerializableMember(constructor)) return null;
+        }
+
+        DescriptorSerializer serializer = new DescriptorSerializer(new SerializerExtension() {
+            @Override
+            public void serializeCallable(
+                    @NotNull CallableMemberDescriptor callable,
+                    @NotNull ProtoBuf.Callable.Builder proto,
+                    @NotNull NameTable nameTable
+            ) {
+                JavaMethod method = methods.get(callable.getOriginal());
+                if (method != null) {
+                    proto.setExtension(JavaProtoBuf.methodSignature, methodSignature(method, nameTable));
+                }
+            }
+        });
+        ProtoBuf.Class classProto = serializer.classProto(descriptor).build();
+        return new ClassData(createNameResolver(serializer.getNameTable()), classProto);
+    }
+
+    private static boolean isSerializableClass(@NotNull JavaClass javaClass, @NotNull ClassDescriptor descriptor) {
+        if (!(descriptor instanceof ClassDescriptorFromJvmBytecode)) return false;
+        if (((ClassDescriptorFromJvmBytecode) descriptor).getFunctionTypeForSamInterface() != null) return false;
+        if (descriptor.getKind() != ClassKind.CLASS && descriptor.getKind() != ClassKind.TRAIT) return false;
+        if (!(descriptor.getContainingDeclaration() instanceof NamespaceDescriptor) || descriptor.isInner()) return false;
+        if (javaClass.getOuterClass() != null || !javaClass.getInnerClasses().isEmpty()) return false;
+        if (!SERIALIZABLE_VISIBILITIES.contains(descriptor.getVisibility()) || !descriptor.getAnnotations().isEmpty()) return false;
+
+        for (JetType supertype : descriptor.getTypeConstructor().getSupertypes()) {
+            if (ErrorUtils.containsErrorType(supertype)) return false;
+        }
+        return !containsErrorType(descriptor.getTypeConstructor().getParameters());
+    }
+
+    private static boolean isSerializableMember(@NotNull CallableMemberDescriptor member) {
+        if (!SERIALIZABLE_VISIBILITIES.contains(member.getVisibility()) || !member.getAnnotations().isEmpty()) return false;
+
+        for (ValueParameterDescriptor parameter : member.getValueParameters()) {
+            if (!parameter.getAnnotations().isEmpty() || ErrorUtils.containsErrorType(parameter.getType())) return false;
+            JetType varargElementType = parameter.getVarargElementType();
+            if (varargElementType != null && ErrorUtils.containsErrorType(varargElementType)) return false;
+        }
+
+        ReceiverParameterDescriptor receiverParameter = member.getReceiverParameter();
+        if (receiverParameter != null && ErrorUtils.containsErrorType(receiverParameter.getType())) return false;
+
+        JetType returnType = member.getReturnType();
+        return returnType != null && !ErrorUtils.containsErrorType(returnType) && !containsErrorType(member.getTypeParameters());
+    }
+
+    private static boolean containsErrorType(@NotNull List<TypeParameterDescriptor> typeParameters) {
+        for (TypeParameterDescriptor typeParameter : typeParameters) {
+            for (JetType upperBound : typeParameter.getUpperBounds()) {
+                if (ErrorUtils.containsErrorType(upperBound)) return true;
+            }
+        }
+        return false;
+    }
+
+    // SAM adapters and their overrides, which are created by the Java resolver and have no representation in the snapshot
+    private static boolean isSynthesized(@NotNull CallableMemberDescriptor member) {
+        if (member.getKind() == CallableMemberDescriptor.Kind.SYNTHESIZED) return true;
+        for (CallableMemberDescriptor overridden : member.getOverriddenDescriptors()) {
+            if (isSynthesized(overridden)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records the members of a class loaded from a snapshot as if they were resolved from the Java members, which is needed
+     * for example to propagate signatures of overridden methods to Java subclasses
+     */
+    public static void recordMembers(
+            @NotNull JavaClass javaClass,
+            @NotNull ClassDescriptor descriptor,
+            @NotNull ClassData classData,
+            @NotNull JavaResolverCache cache
+    ) {
+        ConstructorDescriptor primaryConstructor = descriptor.getUnsubstitutedPrimaryConstructor();
+        if (primaryConstructor != null) {
+            Collection<JavaMethod> constructors = javaClass.getConstructors();
+            cache.recordConstructor(constructors.isEmpty() ? javaClass : constructors.iterator().next(), primaryConstructor);
+        }
+
+        Map<String, JavaMethod> methods = new HashMap<String, JavaMethod>();
+        for (JavaMethod method : javaClass.getMethods()) {
+            String key = method.isStatic() ? null : signatureKey(method);
+            if (key != null) {
+                methods.put(key, method);
+            }
+        }
+
+        Map<Name, JavaField> fields = new HashMap<Name, JavaField>();
+        for (JavaField field : javaClass.getFields()) {
+            if (!field.isStatic()) {
+                fields.put(field.getName(), field);
+            }
+        }
+
+        NameResolver nameResolver = classData.getNameResolver();
+        Map<Name, List<ProtoBuf.Callable>> functionProtos = new LinkedHashMap<Name, List<ProtoBuf.Callable>>();
+        for (ProtoBuf.Callable memberProto : classData.getClassProto().getMemberList()) {
+            Name name = nameResolver.getName(memberProto.getName());
+            if (Flags.CALLABLE_KIND.get(memberProto.getFlags()) == ProtoBuf.Callable.CallableKind.FUN) {
+                List<ProtoBuf.Callable> protos = functionProtos.get(name);
+                if (protos == null) {
+                    protos = new ArrayList<ProtoBuf.Callable>(1);
+                    functionProtos.put(name, protos);
+                }
+                protos.add(memberProto);
+            }
+            else {
+                JavaField field = fields.get(name);
+                if (field != null) {
+                    for (VariableDescriptor property : descriptor.getDefaultType().getMemberScope().getProperties(name)) {
+                        if (property instanceof PropertyDescriptor && isDeclaredIn((PropertyDescriptor) property, descriptor)) {
+                            cache.recordField(field, (PropertyDescriptor) property.getOriginal());
+                        }
+                    }
+                }
+            }
+        }
+
+        // Declared functions of the deserialized class go before fake overrides and in the order of their protos
+        for (Map.Entry<Name, List<ProtoBuf.Callable>> entry : functionProtos.entrySet()) {
+            Iterator<ProtoBuf.Callable> protos = entry.getValue().iterator();
+            for (FunctionDescriptor function : descriptor.getDefaultType().getMemberScope().getFunctions(entry.getKey())) {
+                if (!isDeclaredIn(function, descriptor) || !protos.hasNext()) continue;
+
+                JavaMethod method = methods.get(signatureKey(protos.next().getExtension(JavaProtoBuf.methodSignature), nameResolver));
+                if (method != null && function.getOriginal() instanceof SimpleFunctionDescriptor) {
+                    cache.recordMethod(method, (SimpleFunctionDescriptor) function.getOriginal());
+                }
+            }
+        }
+    }
+
+    private static boolean isDeclaredIn(@NotNull CallableMemberDescriptor member, @NotNull ClassDescriptor descriptor) {
+        return member.getKind() == CallableMemberDescriptor.Kind.DECLARATION && member.getContainingDeclaration() == descriptor;
+    }
+
+    /**
+     * @return classes which the saved descriptor depends on: its supertypes and classes in the signatures of its members
+     */
+    @NotNull
+    public static Set<ClassDescriptor> collectReferencedClasses(@NotNull ClassDescriptor descriptor) {
+        Set<ClassDescriptor> result = new LinkedHashSet<ClassDescriptor>();
+        for (JetType supertype : TypeUtils.getAllSupertypes(descriptor.getDefaultType())) {
+            collectClasses(supertype, result);
+        }
+        List<CallableMemberDescriptor> members = new ArrayList<CallableMemberDescriptor>(descriptor.getConstructors());
+        for (DeclarationDescriptor member : descriptor.getDefaultType().getMemberScope().getAllDescriptors()) {
+            if (member instanceof CallableMemberDescriptor && isDeclaredIn((CallableMemberDescriptor) member, descriptor)) {
+                members.add((CallableMemberDescriptor) member);
+            }
+        }
+        for (CallableMemberDescriptor member : members) {
+            JetType returnType = member.getReturnType();
+            if (returnType != null) {
+                collectClasses(returnType, result);
+            }
+            for (ValueParameterDescriptor parameter : member.getValueParameters()) {
+                collectClasses(parameter.getType(), result);
+            }
+            for (TypeParameterDescriptor typeParameter : member.getTypeParameters()) {
+                for (JetType upperBound : typeParameter.getUpperBounds()) {
+                    collectClasses(upperBound, result);
+                }
+            }
+        }
+        result.remove(descriptor);
+        return result;
+    }
+
+    private static void collectClasses(@NotNull JetType type, @NotNull Set<ClassDescriptor> result) {
+        ClassifierDescriptor classifier = type.getConstructor().getDeclarationDescriptor();
+        if (classifier instanceof ClassDescriptor) {
+            result.add((ClassDescriptor) classifier);
+        }
+        for (TypeProjection argument : type.getArguments()) {
+            collectClasses(argument.getType(), result);
+        }
+    }
+
+    @NotNull
+    private static JavaProtoBuf.JavaMethodSignature methodSignature(@NotNull JavaMethod method, @NotNull NameTable nameTable) {
+        JavaProtoBuf.JavaMethodSignature.Builder signature = JavaProtoBuf.JavaMethodSignature.newBuilder();
+        signature.setName(nameTable.getSimpleNameIndex(method.getName()));
+        signature.setReturnType(javaType(erasedTypeText(method.getReturnType()), nameTable));
+        for (JavaValueParameter parameter : method.getValueParameters()) {
+            signature.addParameterType(javaType(erasedTypeText(parameter.getType()), nameTable));
+        }
+        return signature.build();
+    }
+
+    @NotNull
+    private static JavaProtoBuf.JavaType javaType(@Nullable String typeText, @NotNull NameTable nameTable) {
+        assert typeText != null : "Signatures of saved methods should consist of resolved types";
+
+        JavaProtoBuf.JavaType.Builder builder = JavaProtoBuf.JavaType.newBuilder();
+        int arrayDimension = 0;
+        String elementText = typeText;
+        while (elementText.endsWith(ARRAY_SUFFIX)) {
+            arrayDimension++;
+            elementText = elementText.substring(0, elementText.length() - ARRAY_SUFFIX.length());
+        }
+        if (arrayDimension != 0) {
+            builder.setArrayDimension(arrayDimension);
+        }
+
+        JavaProtoBuf.JavaType.PrimitiveType primitiveType = primitiveType(elementText);
+        if (primitiveType != null) {
+            builder.setPrimitiveType(primitiveType);
+        }
+        else {
+            builder.setClassFqName(nameTable.getFqNameIndex(new FqName(elementText)));
+        }
+        return builder.build();
+    }
+
+    @Nullable
+    private static JavaProtoBuf.JavaType.PrimitiveType primitiveType(@NotNull String text) {
+        for (JavaProtoBuf.JavaType.PrimitiveType primitiveType : JavaProtoBuf.JavaType.PrimitiveType.values()) {
+            if (primitiveType.name().toLowerCase().equals(text)) return primitiveType;
+        }
+        return null;
+    }
+
+    /**
+     * @return the name of the method with the erased types of its parameters, or null if some of them can't be resolved
+     */
+    @Nullable
+    private static String signatureKey(@NotNull JavaMethod method) {
+        StringBuilder sb = new StringBuilder(method.getName().asString()).append('(');
+        for (JavaValueParameter parameter : method.getValueParameters()) {
+            String typeText = erasedTypeText(parameter.getType());
+            if (typeText == null) return null;
+            sb.append(typeText).append(';');
+        }
+        return sb.append(')').toString();
+    }
+
+    @NotNull
+    private static String signatureKey(@NotNull JavaProtoBuf.JavaMethodSignature signature, @NotNull NameResolver nameResolver) {
+        StringBuilder sb = new StringBuilder(nameResolver.getName(signature.getName()).asString()).append('(');
+        for (JavaProtoBuf.JavaType type : signature.getParameterTypeList()) {
+            sb.append(typeText(type, nameResolver)).append(';');
+        }
+        return sb.append(')').toString();
+    }
+
+    @NotNull
+    private static String typeText(@NotNull JavaProtoBuf.JavaType type, @NotNull NameResolver nameResolver) {
+        StringBuilder sb = new StringBuilder();
+        if (type.hasClassFqName()) {
+            sb.append(nameResolver.getFqName(type.getClassFqName()).asString());
+        }
+        else {
+            sb.append(type.getPrimitiveType().name().toLowerCase());
+        }
+        for (int i = 0; i < type.getArrayDimension(); i++) {
+            sb.append(ARRAY_SUFFIX);
+        }
+        return sb.toString();
+    }
+
+    @Nullable
+    private static String erasedTypeText(@Nullable JavaType type) {
+        if (type instanceof JavaPrimitiveType) {
+            return ((JavaPrimitiveType) type).getCanonicalText();
+        }
+        if (type instanceof JavaArrayType) {
+            String componentText = erasedTypeText(((JavaArrayType) type).getComponentType());
+            return componentText == null ? null : componentText + ARRAY_SUFFIX;
+        }
+        JavaType erased = type == null ? null : erasure(type);
+        if (erased instanceof JavaArrayType) {
+            return erasedTypeText(erased);
+        }
+        if (!(erased instanceof JavaClassifierType)) return null;
+        JavaClassifier classifier = ((JavaClassifierType) erased).getClassifier();
+        FqName fqName = classifier instanceof JavaClass ? ((JavaClass) classifier).getFqName() : null;
+        return fqName == null ? null : fqName.asString();
+    }
+}
@@ -23,10 +23,12 @@ import org.jetbrains.jet.lang.resolve.java.DescriptorSearchRule;
 import org.jetbrains.jet.lang.resolve.java.scope.NamedMembers;
 import org.jetbrains.jet.lang.resolve.java.structure.JavaClass;
 import org.jetbrains.jet.lang.resolve.name.FqName;
+import org.jetbrains.jet.storage.LockBasedStorageManager;
 
 import javax.inject.Inject;
 import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 public class JavaMemberResolver {
     private JavaClassResolver classResolver;
@@ -35,6 +37,10 @@ public class JavaMemberResolver {
     private JavaPropertyResolver propertyResolver;
     private JavaConstructorResolver constructorResolver;
 
+    // Guards caches of Java resolver components and scopes, null unless concurrent access is enabled
+    @Nullable
+    private volatile Lock lock = null;
+
     @Inject
     public void setClassResolver(JavaClassResolver classResolver) {
         this.classResolver = classResolver;
@@ -60,6 +66,26 @@ public class JavaMemberResolver {
         this.constructorResolver = constructorResolver;
     }
 
+    /**
+     * Allows several threads to use descriptors of this resolver at once: classes, packages and members are then resolved under
+     * a single lock. Should be called before the resolution starts
+     */
+    public void enableConcurrentAccess() {
+        lock = LockBasedStorageManager.createDeadlockAwareLock();
+    }
+
+    public void lock() {
+        if (lock != null) {
+            lock.lock();
+        }
+    }
+
+    public void unlock() {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
     @Nullable
     public ClassDescriptor resolveClass(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
         return classResolver.resolveClass(qualifiedName, searchRule);
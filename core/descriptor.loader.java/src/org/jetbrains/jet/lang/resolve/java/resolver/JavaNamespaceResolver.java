@@ -91,6 +91,17 @@ public final class JavaNamespaceResolver {
 
     @Nullable
     public NamespaceDescriptor resolveNamespace(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
+        memberResolver.lock();
+        try {
+            return findOrResolveNamespace(qualifiedName, searchRule);
+        }
+        finally {
+            memberResolver.unlock();
+        }
+    }
+
+    @Nullable
+    private NamespaceDescriptor findOrResolveNamespace(@NotNull FqName qualifiedName, @NotNull DescriptorSearchRule searchRule) {
         if (searchRule == INCLUDE_KOTLIN_SOURCES) {
             NamespaceDescriptor kotlinNamespaceDescriptor = cache.getPackageResolvedFromSource(qualifiedName);
             if (kotlinNamespaceDescriptor != null) {
@@ -207,6 +218,17 @@ public final class JavaNamespaceResolver {
 
     @Nullable
     public JetScope getJavaPackageScopeForExistingNamespaceDescriptor(@NotNull NamespaceDescriptor namespaceDescriptor) {
+        memberResolver.lock();
+        try {
+            return findOrCreateJavaPackageScope(namespaceDescriptor);
+        }
+        finally {
+            memberResolver.unlock();
+        }
+    }
+
+    @Nullable
+    private JetScope findOrCreateJavaPackageScope(@NotNull NamespaceDescriptor namespaceDescriptor) {
         FqName fqName = DescriptorUtils.getFQName(namespaceDescriptor).toSafe();
         if (unresolvedCache.contains(fqName)) {
             throw new IllegalStateException(
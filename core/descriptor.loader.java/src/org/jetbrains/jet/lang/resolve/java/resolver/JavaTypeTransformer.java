@@ -213,12 +213,17 @@ public class JavaTypeTransformer {
             }
         }
 
-        return new JetTypeImpl(
-                Collections.<AnnotationDescriptor>emptyList(),
+        List<AnnotationDescriptor> annotations = Collections.emptyList();
+        JetType interned = JetTypeInterner.findInterned(annotations, classData.getTypeConstructor(), nullable, arguments);
+        if (interned != null) {
+            return interned;
+        }
+        return JetTypeInterner.intern(new JetTypeImpl(
+                annotations,
                 classData.getTypeConstructor(),
                 nullable,
                 arguments,
-                classData.getMemberScope(arguments));
+                classData.getMemberScope(arguments)));
     }
 
     @NotNull
@@ -64,16 +64,22 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
     @Override
     public Collection<VariableDescriptor> getProperties(@NotNull Name name) {
-        Set<VariableDescriptor> cached = propertyDescriptors.get(name);
-        if (cached != null) return cached;
+        memberResolver.lock();
+        try {
+            Set<VariableDescriptor> cached = propertyDescriptors.get(name);
+            if (cached != null) return cached;
 
-        if (allDescriptorsComputed()) {
-            return Collections.emptySet();
-        }
+            if (allDescriptorsComputed()) {
+                return Collections.emptySet();
+            }
 
-        Set<VariableDescriptor> computedDescriptors = computePropertyDescriptors(name);
-        propertyDescriptors.put(name, computedDescriptors);
-        return computedDescriptors;
+            Set<VariableDescriptor> computedDescriptors = computePropertyDescriptors(name);
+            propertyDescriptors.put(name, computedDescriptors);
+            return computedDescriptors;
+        }
+        finally {
+            memberResolver.unlock();
+        }
     }
 
     @NotNull
@@ -88,16 +94,22 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
     @Override
     public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
-        Set<FunctionDescriptor> cached = functionDescriptors.get(name);
-        if (cached != null) return cached;
+        memberResolver.lock();
+        try {
+            Set<FunctionDescriptor> cached = functionDescriptors.get(name);
+            if (cached != null) return cached;
 
-        if (allDescriptorsComputed()) {
-            return Collections.emptySet();
-        }
+            if (allDescriptorsComputed()) {
+                return Collections.emptySet();
+            }
 
-        Set<FunctionDescriptor> computedDescriptors = computeFunctionDescriptor(name);
-        functionDescriptors.put(name, computedDescriptors);
-        return computedDescriptors;
+            Set<FunctionDescriptor> computedDescriptors = computeFunctionDescriptor(name);
+            functionDescriptors.put(name, computedDescriptors);
+            return computedDescriptors;
+        }
+        finally {
+            memberResolver.unlock();
+        }
     }
 
     @NotNull
@@ -106,13 +118,19 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
     @Override
     public Collection<DeclarationDescriptor> getAllDescriptors() {
-        if (allDescriptorsComputed()) {
-            return allDescriptors;
-        }
+        memberResolver.lock();
+        try {
+            if (allDescriptorsComputed()) {
+                return allDescriptors;
+            }
 
-        allDescriptors = computeAllDescriptors();
+            allDescriptors = computeAllDescriptors();
 
-        return allDescriptors;
+            return allDescriptors;
+        }
+        finally {
+            memberResolver.unlock();
+        }
     }
 
     private boolean allDescriptorsComputed() {
@@ -130,10 +148,16 @@ public abstract class JavaBaseScope extends JetScopeImpl {
     @NotNull
     @Override
     public Set<ClassDescriptor> getObjectDescriptors() {
-        if (objectDescriptors == null) {
-            objectDescriptors = new HashSet<ClassDescriptor>(filterObjects(getInnerClasses(), true));
+        memberResolver.lock();
+        try {
+            if (objectDescriptors == null) {
+                objectDescriptors = new HashSet<ClassDescriptor>(filterObjects(getInnerClasses(), true));
+            }
+            return objectDescriptors;
+        }
+        finally {
+            memberResolver.unlock();
         }
-        return objectDescriptors;
     }
 
     @NotNull
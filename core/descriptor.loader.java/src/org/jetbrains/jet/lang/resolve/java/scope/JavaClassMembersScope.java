@@ -17,6 +17,7 @@
 package org.jetbrains.jet.lang.resolve.java.scope;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.resolve.java.resolver.JavaMemberResolver;
 import org.jetbrains.jet.lang.resolve.name.LabelName;
@@ -52,6 +53,17 @@ public abstract class JavaClassMembersScope extends JavaBaseScope {
         return memberResolver.resolveFunctionGroupForClass(members, descriptor);
     }
 
+    @Nullable
+    private ClassDescriptor getInnerClass(@NotNull Name name) {
+        memberResolver.lock();
+        try {
+            return getInnerClassesMap().get(name);
+        }
+        finally {
+            memberResolver.unlock();
+        }
+    }
+
     @NotNull
     private Map<Name, ClassDescriptor> getInnerClassesMap() {
         if (innerClassesMap == null) {
@@ -66,7 +78,7 @@ public abstract class JavaClassMembersScope extends JavaBaseScope {
 
     @Override
     public ClassDescriptor getObjectDescriptor(@NotNull Name name) {
-        ClassDescriptor innerClass = getInnerClassesMap().get(name);
+        ClassDescriptor innerClass = getInnerClass(name);
         if (innerClass != null && innerClass.getKind().isObject()) {
             return innerClass;
         }
@@ -75,7 +87,7 @@ public abstract class JavaClassMembersScope extends JavaBaseScope {
 
     @Override
     public ClassifierDescriptor getClassifier(@NotNull Name name) {
-        ClassDescriptor innerClass = getInnerClassesMap().get(name);
+        ClassDescriptor innerClass = getInnerClass(name);
         if (innerClass == null || innerClass.getKind().isObject()) {
             return null;
         }
@@ -43,6 +43,8 @@ import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.types.ErrorUtils;
 import org.jetbrains.jet.storage.LockBasedStorageManager;
 import org.jetbrains.jet.storage.MemoizedFunctionToNotNull;
+import org.jetbrains.jet.storage.StorageManager;
+import org.jetbrains.jet.storage.StorageStatistics;
 
 import javax.inject.Inject;
 import java.io.IOException;
@@ -57,25 +59,39 @@ public class AnnotationDescriptorDeserializer implements AnnotationDeserializer
     private KotlinClassFinder kotlinClassFinder;
     private ErrorReporter errorReporter;
 
-    // TODO: a single instance of StorageManager for all computations in resolve-java
-    private final LockBasedStorageManager storageManager = new LockBasedStorageManager();
-
-    private final MemoizedFunctionToNotNull<KotlinJvmBinaryClass, Map<MemberSignature, List<AnnotationDescriptor>>> memberAnnotations =
-            storageManager.createMemoizedFunction(
-                    new Function1<KotlinJvmBinaryClass, Map<MemberSignature, List<AnnotationDescriptor>>>() {
-                        @NotNull
-                        @Override
-                        public Map<MemberSignature, List<AnnotationDescriptor>> invoke(@NotNull KotlinJvmBinaryClass kotlinClass) {
-                            try {
-                                return loadMemberAnnotationsFromClass(kotlinClass);
-                            }
-                            catch (IOException e) {
-                                errorReporter.reportAnnotationLoadingError(
-                                        "Error loading member annotations from Kotlin class: " + kotlinClass, e);
-                                return Collections.emptyMap();
-                            }
+    // Strongly retained: values contain annotation descriptors, which must not be recreated (see StorageManager).
+    // Volatile because enableConcurrentAccess() replaces it after this deserializer is injected into other components
+    private volatile MemoizedFunctionToNotNull<KotlinJvmBinaryClass, Map<MemberSignature, List<AnnotationDescriptor>>> memberAnnotations =
+            createMemberAnnotations(new LockBasedStorageManager());
+
+    @NotNull
+    private MemoizedFunctionToNotNull<KotlinJvmBinaryClass, Map<MemberSignature, List<AnnotationDescriptor>>> createMemberAnnotations(
+            @NotNull StorageManager storageManager
+    ) {
+        // TODO: a single instance of StorageManager for all computations in resolve-java
+        return StorageStatistics.instrumentIfEnabled(storageManager).createMemoizedFunction(
+                new Function1<KotlinJvmBinaryClass, Map<MemberSignature, List<AnnotationDescriptor>>>() {
+                    @NotNull
+                    @Override
+                    public Map<MemberSignature, List<AnnotationDescriptor>> invoke(@NotNull KotlinJvmBinaryClass kotlinClass) {
+                        try {
+                            return loadMemberAnnotationsFromClass(kotlinClass);
                         }
-                    });
+                        catch (IOException e) {
+                            errorReporter.reportAnnotationLoadingError(
+                                    "Error loading member annotations from Kotlin class: " + kotlinClass, e);
+                            return Collections.emptyMap();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * @see DeserializedDescriptorResolver#enableConcurrentAccess()
+     */
+    public void enableConcurrentAccess() {
+        memberAnnotations = createMemberAnnotations(LockBasedStorageManager.createConcurrent());
+    }
 
     @Inject
     public void setJavaClassResolver(JavaClassResolver javaClassResolver) {
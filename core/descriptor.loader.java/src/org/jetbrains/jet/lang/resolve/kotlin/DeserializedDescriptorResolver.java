@@ -18,13 +18,16 @@ package org.jetbrains.jet.lang.resolve.kotlin;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.descriptors.serialization.ClassData;
 import org.jetbrains.jet.descriptors.serialization.ClassId;
 import org.jetbrains.jet.descriptors.serialization.DescriptorFinder;
 import org.jetbrains.jet.descriptors.serialization.JavaProtoBufUtil;
 import org.jetbrains.jet.descriptors.serialization.descriptors.DeserializedClassDescriptor;
 import org.jetbrains.jet.descriptors.serialization.descriptors.DeserializedPackageMemberScope;
 import org.jetbrains.jet.lang.descriptors.ClassDescriptor;
+import org.jetbrains.jet.lang.descriptors.ClassOrNamespaceDescriptor;
 import org.jetbrains.jet.lang.descriptors.NamespaceDescriptor;
+import org.jetbrains.jet.lang.resolve.java.descriptor.JavaClassDescriptorFromSnapshot;
 import org.jetbrains.jet.lang.resolve.java.resolver.ErrorReporter;
 import org.jetbrains.jet.lang.resolve.java.resolver.JavaClassResolver;
 import org.jetbrains.jet.lang.resolve.java.resolver.JavaNamespaceResolver;
@@ -34,6 +37,8 @@ import org.jetbrains.jet.lang.resolve.name.FqName;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.resolve.scopes.JetScope;
 import org.jetbrains.jet.storage.LockBasedStorageManager;
+import org.jetbrains.jet.storage.StorageManager;
+import org.jetbrains.jet.storage.StorageStatistics;
 
 import javax.inject.Inject;
 import java.util.Collection;
@@ -45,7 +50,8 @@ import static org.jetbrains.jet.lang.resolve.kotlin.DeserializedResolverUtils.ko
 public final class DeserializedDescriptorResolver {
     private AnnotationDescriptorDeserializer annotationDeserializer;
 
-    private final LockBasedStorageManager storageManager = new LockBasedStorageManager();
+    // Volatile because enableConcurrentAccess() replaces it after this resolver is injected into other components
+    private volatile StorageManager storageManager = StorageStatistics.instrumentIfEnabled(new LockBasedStorageManager());
 
     private JavaNamespaceResolver javaNamespaceResolver;
 
@@ -74,6 +80,21 @@ public final class DeserializedDescriptorResolver {
         }
     };
 
+    /**
+     * Lets several threads deserialize descriptors at once, see {@link LockBasedStorageManager#createConcurrent()}.
+     * Should be called before the resolution starts.
+     *
+     * When two threads need each other's values, one of them may deserialize a value which the other one is deserializing
+     * too. Only one result is kept and the other one is dropped with the descriptors it has created, but an error loading
+     * annotations may then be reported twice. Other side effects of deserialization go through Java resolver caches
+     * (see {@link org.jetbrains.jet.lang.resolve.java.resolver.JavaMemberResolver#enableConcurrentAccess()}), which resolve
+     * every class once
+     */
+    public void enableConcurrentAccess() {
+        storageManager = StorageStatistics.instrumentIfEnabled(LockBasedStorageManager.createConcurrent());
+        annotationDeserializer.enableConcurrentAccess();
+    }
+
     @Inject
     public void setAnnotationDeserializer(AnnotationDescriptorDeserializer annotationDeserializer) {
         this.annotationDeserializer = annotationDeserializer;
@@ -101,6 +122,11 @@ public final class DeserializedDescriptorResolver {
                                                                      JavaProtoBufUtil.readClassDataFrom(data));
     }
 
+    @NotNull
+    public ClassDescriptor resolveClassFromSnapshot(@NotNull ClassOrNamespaceDescriptor containingDeclaration, @NotNull ClassData classData) {
+        return new JavaClassDescriptorFromSnapshot(storageManager, javaDescriptorFinder, classData, containingDeclaration);
+    }
+
     @Nullable
     public JetScope createKotlinPackageScope(@NotNull NamespaceDescriptor descriptor, @NotNull KotlinJvmBinaryClass kotlinClass) {
         String[] data = readData(kotlinClass);
@@ -173,6 +173,14 @@ public class MutableClassDescriptor extends MutableClassDescriptorLite {
         getWritableScopeForInitializers().changeLockLevel(WritableScope.LockLevel.READING);
     }
 
+    @Override
+    public void compactScopes() {
+        super.compactScopes();
+        scopeForSupertypeResolution.compact();
+        scopeForMemberResolution.compact();
+        getWritableScopeForInitializers().compact();
+    }
+
     private NamespaceLikeBuilder builder = null;
 
     @Override
@@ -191,6 +191,13 @@ public abstract class MutableClassDescriptorLite extends ClassDescriptorBase {
         }
     }
 
+    public void compactScopes() {
+        getScopeForMemberLookupAsWritableScope().compact();
+        if (classObjectDescriptor != null) {
+            classObjectDescriptor.compactScopes();
+        }
+    }
+
     @NotNull
     @Override
     public ReceiverParameterDescriptor getThisAsReceiverParameter() {
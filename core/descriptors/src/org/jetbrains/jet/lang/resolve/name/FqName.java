@@ -16,6 +16,8 @@
 
 package org.jetbrains.jet.lang.resolve.name;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
@@ -23,6 +25,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.List;
 
 public final class FqName extends FqNameBase {
+    private static final Interner<FqName> INTERNER = Interners.newWeakInterner();
 
     @NotNull
     public static FqName fromSegments(@NotNull List<String> names) {
@@ -69,6 +72,14 @@ public final class FqName extends FqNameBase {
         return qualifiedName.indexOf('<') < 0;
     }
 
+    /**
+     * @return the canonical instance equal to this name, see {@link FqNameUnsafe#intern()}
+     */
+    @NotNull
+    public FqName intern() {
+        return INTERNER.intern(this);
+    }
+
     @Override
     @NotNull
     public String asString() {
@@ -94,7 +105,7 @@ public final class FqName extends FqNameBase {
             throw new IllegalStateException("root");
         }
 
-        parent = new FqName(fqName.parent());
+        parent = new FqName(fqName.parent()).intern();
 
         return parent;
     }
@@ -122,7 +133,7 @@ public final class FqName extends FqNameBase {
             @Override
             public void segment(@NotNull Name shortName, @NotNull FqNameUnsafe fqName) {
                 // TODO: do not validate
-                path.add(new FqName(fqName));
+                path.add(new FqName(fqName).intern());
             }
         });
         return path;
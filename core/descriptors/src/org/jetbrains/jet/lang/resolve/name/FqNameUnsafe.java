@@ -16,6 +16,8 @@
 
 package org.jetbrains.jet.lang.resolve.name;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
@@ -27,6 +29,7 @@ import java.util.List;
  * Like {@link FqName} but allows '<' and '>' characters in name.
  */
 public final class FqNameUnsafe extends FqNameBase {
+    private static final Interner<FqNameUnsafe> INTERNER = Interners.newWeakInterner();
 
     public static final Name ROOT_NAME = Name.special("<root>");
 
@@ -75,7 +78,7 @@ public final class FqNameUnsafe extends FqNameBase {
         int lastDot = fqName.lastIndexOf('.');
         if (lastDot >= 0) {
             shortName = Name.guess(fqName.substring(lastDot + 1));
-            parent = new FqNameUnsafe(fqName.substring(0, lastDot));
+            parent = new FqNameUnsafe(fqName.substring(0, lastDot)).intern();
         }
         else {
             shortName = Name.guess(fqName);
@@ -85,6 +88,14 @@ public final class FqNameUnsafe extends FqNameBase {
 
 
 
+    /**
+     * @return the canonical instance equal to this name: its parent and short name are computed once and shared by all the users
+     */
+    @NotNull
+    public FqNameUnsafe intern() {
+        return INTERNER.intern(this);
+    }
+
     @NotNull
     public String asString() {
         return fqName;
@@ -211,7 +222,7 @@ public final class FqNameUnsafe extends FqNameBase {
         }
 
         Name firstSegment = Name.guess(fqName.substring(0, pos));
-        FqNameUnsafe last = new FqNameUnsafe(firstSegment.asString(), FqName.ROOT.toUnsafe(), firstSegment);
+        FqNameUnsafe last = new FqNameUnsafe(firstSegment.asString(), FqName.ROOT.toUnsafe(), firstSegment).intern();
         callback.segment(firstSegment, last);
 
         while (true) {
@@ -229,7 +240,7 @@ public final class FqNameUnsafe extends FqNameBase {
             }
 
             Name shortName = Name.guess(fqName.substring(pos + 1, next));
-            last = new FqNameUnsafe(fqName.substring(0, next), last, shortName);
+            last = new FqNameUnsafe(fqName.substring(0, next), last, shortName).intern();
             callback.segment(shortName, last);
 
             pos = next;
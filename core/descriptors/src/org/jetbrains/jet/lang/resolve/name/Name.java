@@ -16,9 +16,16 @@
 
 package org.jetbrains.jet.lang.resolve.name;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.jetbrains.annotations.NotNull;
 
+/**
+ * Names are interned: there's at most one instance of every name in memory, so they are compared by identity in most cases.
+ */
 public final class Name implements Comparable<Name> {
+    private static final Interner<Name> INTERNER = Interners.newWeakInterner();
+
     @NotNull
     private final String name;
     private final boolean special;
@@ -55,7 +62,7 @@ public final class Name implements Comparable<Name> {
         if (!isValidIdentifier(name)) {
             throw new IllegalArgumentException("invalid identifier: " + name);
         }
-        return new Name(name, false);
+        return intern(name, false);
     }
 
     public static boolean isValidIdentifier(@NotNull String name) {
@@ -65,7 +72,7 @@ public final class Name implements Comparable<Name> {
     /** Must be validated by caller */
     @NotNull
     public static Name identifierNoValidate(@NotNull String name) {
-        return new Name(name, false);
+        return intern(name, false);
     }
 
     @NotNull
@@ -73,7 +80,12 @@ public final class Name implements Comparable<Name> {
         if (!name.startsWith("<")) {
             throw new IllegalArgumentException("special name must start with '<': " + name);
         }
-        return new Name(name, true);
+        return intern(name, true);
+    }
+
+    @NotNull
+    private static Name intern(@NotNull String name, boolean special) {
+        return INTERNER.intern(new Name(name, special));
     }
 
     // TODO: wrong
@@ -19,39 +19,115 @@ package org.jetbrains.jet.lang.resolve.scopes;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.resolve.name.LabelName;
 import org.jetbrains.jet.lang.resolve.name.Name;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ChainedScope implements JetScope {
+    private static final int ALL_SCOPES = -1;
+
+    private static final int CLASSIFIER = 0;
+    private static final int LOCAL_VARIABLE = 1;
+    private static final int FUNCTION = 2;
+    private static final int PROPERTY = 3;
+    private static final int KINDS = 4;
+
     private final DeclarationDescriptor containingDeclaration;
     private final String debugName;
     private final JetScope[] scopeChain;
     private Collection<DeclarationDescriptor> allDescriptors;
     private List<ReceiverParameterDescriptor> implicitReceiverHierarchy;
 
+    // Only chains of scopes which never change are indexed, see the constructor
+    private final boolean indexed;
+    // For every name looked up, bit masks of the scopes in the chain which know it as a classifier, local variable, function
+    // or property (zero for a miss, ALL_SCOPES if not looked up yet). Created on the first lookup
+    @Nullable
+    private volatile ConcurrentMap<Name, int[]> scopeMasks;
+
     public ChainedScope(DeclarationDescriptor containingDeclaration, JetScope... scopes) {
         this(containingDeclaration, "Untitled chained scope", scopes);
     }
 
     public ChainedScope(DeclarationDescriptor containingDeclaration, String debugName, JetScope... scopes) {
+        this(containingDeclaration, debugName, false, scopes);
+    }
+
+    /**
+     * @param scopesAreStable true if the chained scopes always give the same results (e.g. they are lazy or locked for writing):
+     *                        then the scopes which know a name are remembered and only they are asked for it next time.
+     *                        A chain containing a chained scope which is not stable (e.g. the lazy file scope, which misses
+     *                        names while its imports are being resolved) is not indexed either
+     */
+    public ChainedScope(DeclarationDescriptor containingDeclaration, String debugName, boolean scopesAreStable, JetScope... scopes) {
         this.containingDeclaration = containingDeclaration;
         scopeChain = scopes.clone();
 
         this.debugName = debugName;
+
+        this.indexed = scopesAreStable && scopes.length <= Integer.SIZE && areIndexed(scopes);
+    }
+
+    private static boolean areIndexed(@NotNull JetScope[] scopes) {
+        for (JetScope scope : scopes) {
+            if (scope instanceof ChainedScope && !((ChainedScope) scope).indexed) return false;
+        }
+        return true;
+    }
+
+    private int getScopeMask(int kind, @NotNull Name name) {
+        ConcurrentMap<Name, int[]> masks = scopeMasks;
+        if (masks == null) return ALL_SCOPES;
+        int[] nameMasks = masks.get(name);
+        return nameMasks != null ? nameMasks[kind] : ALL_SCOPES;
+    }
+
+    private void recordScopeMask(int kind, @NotNull Name name, int oldMask, int mask) {
+        if (!indexed || oldMask != ALL_SCOPES) return;
+
+        ConcurrentMap<Name, int[]> masks = scopeMasks;
+        if (masks == null) {
+            synchronized (this) {
+                if (scopeMasks == null) {
+                    scopeMasks = new ConcurrentHashMap<Name, int[]>();
+                }
+                masks = scopeMasks;
+            }
+        }
+        int[] nameMasks = masks.get(name);
+        if (nameMasks == null) {
+            int[] newNameMasks = new int[KINDS];
+            Arrays.fill(newNameMasks, ALL_SCOPES);
+            nameMasks = masks.putIfAbsent(name, newNameMasks);
+            if (nameMasks == null) {
+                nameMasks = newNameMasks;
+            }
+        }
+        // A racing reader may still see ALL_SCOPES here, and then it just asks all the scopes
+        nameMasks[kind] = mask;
+    }
+
+    private static boolean isInMask(int mask, int scopeIndex) {
+        return (mask & (1 << scopeIndex)) != 0;
     }
 
     @Override
     public ClassifierDescriptor getClassifier(@NotNull Name name) {
-        for (JetScope scope : scopeChain) {
-            ClassifierDescriptor classifier = scope.getClassifier(name);
-            if (classifier != null) return classifier;
+        int mask = getScopeMask(CLASSIFIER, name);
+        for (int i = 0; i < scopeChain.length; i++) {
+            if (!isInMask(mask, i)) continue;
+            ClassifierDescriptor classifier = scopeChain[i].getClassifier(name);
+            if (classifier != null) {
+                recordScopeMask(CLASSIFIER, name, mask, 1 << i);
+                return classifier;
+            }
         }
+        recordScopeMask(CLASSIFIER, name, mask, 0);
         return null;
     }
 
@@ -88,36 +164,56 @@ public class ChainedScope implements JetScope {
     @NotNull
     @Override
     public Set<VariableDescriptor> getProperties(@NotNull Name name) {
-        Set<VariableDescriptor> properties = Sets.newLinkedHashSet();
-        for (JetScope jetScope : scopeChain) {
-            properties.addAll(jetScope.getProperties(name));
+        int mask = getScopeMask(PROPERTY, name);
+        int newMask = 0;
+        Set<VariableDescriptor> properties = null;
+        for (int i = 0; i < scopeChain.length; i++) {
+            if (!isInMask(mask, i)) continue;
+            Collection<VariableDescriptor> scopeProperties = scopeChain[i].getProperties(name);
+            if (scopeProperties.isEmpty()) continue;
+            newMask |= 1 << i;
+            if (properties == null) {
+                properties = Sets.newLinkedHashSet();
+            }
+            properties.addAll(scopeProperties);
         }
-        return properties;
+        recordScopeMask(PROPERTY, name, mask, newMask);
+        return properties != null ? properties : Collections.<VariableDescriptor>emptySet();
     }
 
     @Override
     public VariableDescriptor getLocalVariable(@NotNull Name name) {
-        for (JetScope jetScope : scopeChain) {
-            VariableDescriptor variable = jetScope.getLocalVariable(name);
+        int mask = getScopeMask(LOCAL_VARIABLE, name);
+        for (int i = 0; i < scopeChain.length; i++) {
+            if (!isInMask(mask, i)) continue;
+            VariableDescriptor variable = scopeChain[i].getLocalVariable(name);
             if (variable != null) {
+                recordScopeMask(LOCAL_VARIABLE, name, mask, 1 << i);
                 return variable;
             }
         }
+        recordScopeMask(LOCAL_VARIABLE, name, mask, 0);
         return null;
     }
 
     @NotNull
     @Override
     public Set<FunctionDescriptor> getFunctions(@NotNull Name name) {
-        if (scopeChain.length == 0) {
-            return Collections.emptySet();
-        }
-
-        Set<FunctionDescriptor> result = Sets.newLinkedHashSet();
-        for (JetScope jetScope : scopeChain) {
-            result.addAll(jetScope.getFunctions(name));
+        int mask = getScopeMask(FUNCTION, name);
+        int newMask = 0;
+        Set<FunctionDescriptor> result = null;
+        for (int i = 0; i < scopeChain.length; i++) {
+            if (!isInMask(mask, i)) continue;
+            Collection<FunctionDescriptor> scopeFunctions = scopeChain[i].getFunctions(name);
+            if (scopeFunctions.isEmpty()) continue;
+            newMask |= 1 << i;
+            if (result == null) {
+                result = Sets.newLinkedHashSet();
+            }
+            result.addAll(scopeFunctions);
         }
-        return result;
+        recordScopeMask(FUNCTION, name, mask, newMask);
+        return result != null ? result : Collections.<FunctionDescriptor>emptySet();
     }
 
     @NotNull
@@ -31,6 +31,11 @@ public interface WritableScope extends JetScope {
 
     WritableScope changeLockLevel(LockLevel lockLevel);
 
+    /**
+     * Trims the storage of the scope to its contents. Called once the analysis is over, scopes are written to before that
+     */
+    void compact();
+
     void addLabeledDeclaration(@NotNull DeclarationDescriptor descriptor);
 
     void addVariableDescriptor(@NotNull VariableDescriptor variableDescriptor);
@@ -23,14 +23,16 @@ import org.jetbrains.jet.lang.descriptors.*;
 import org.jetbrains.jet.lang.resolve.name.LabelName;
 import org.jetbrains.jet.lang.resolve.name.Name;
 import org.jetbrains.jet.lang.types.checker.JetTypeChecker;
-import org.jetbrains.jet.utils.CommonSuppliers;
+import org.jetbrains.jet.utils.CompactMap;
 
 import java.util.*;
 
 public class WritableScopeImpl extends WritableScopeWithImports {
 
-    private final Collection<DeclarationDescriptor> allDescriptors = Lists.newArrayList();
-    private final Multimap<Name, DeclarationDescriptor> declaredDescriptorsAccessibleBySimpleName = HashMultimap.create();
+    // Most of the scopes are local scopes with few declarations, so all the maps are compact and created on the first write
+    private final ArrayList<DeclarationDescriptor> allDescriptors = Lists.newArrayListWithCapacity(4);
+    @Nullable
+    private CompactMap<Name, List<DeclarationDescriptor>> declaredDescriptorsAccessibleBySimpleName;
     private boolean allDescriptorsDone = false;
 
     private Set<ClassDescriptor> allObjectDescriptors = null;
@@ -39,22 +41,22 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     private final DeclarationDescriptor ownerDeclarationDescriptor;
 
     @Nullable
-    private SetMultimap<Name, FunctionDescriptor> functionGroups;
+    private CompactMap<Name, Set<FunctionDescriptor>> functionGroups;
 
     @Nullable
-    private Map<Name, DeclarationDescriptor> variableClassOrNamespaceDescriptors;
+    private CompactMap<Name, DeclarationDescriptor> variableClassOrNamespaceDescriptors;
     
     @Nullable
-    private SetMultimap<Name, VariableDescriptor> propertyGroups;
+    private CompactMap<Name, Set<VariableDescriptor>> propertyGroups;
 
     @Nullable
-    private Map<Name, NamespaceDescriptor> namespaceAliases;
+    private CompactMap<Name, NamespaceDescriptor> namespaceAliases;
 
     @Nullable
-    private Map<LabelName, List<DeclarationDescriptor>> labelsToDescriptors;
+    private CompactMap<LabelName, List<DeclarationDescriptor>> labelsToDescriptors;
     
     @Nullable
-    private Map<Name, ClassDescriptor> objectDescriptors;
+    private CompactMap<Name, ClassDescriptor> objectDescriptors;
 
     @Nullable
     private ReceiverParameterDescriptor implicitReceiver;
@@ -71,6 +73,25 @@ public class WritableScopeImpl extends WritableScopeWithImports {
         return ownerDeclarationDescriptor;
     }
 
+    // Writing to a scope after this is still allowed, it only makes the storage grow again
+    @Override
+    public void compact() {
+        allDescriptors.trimToSize();
+        compact(declaredDescriptorsAccessibleBySimpleName);
+        compact(functionGroups);
+        compact(variableClassOrNamespaceDescriptors);
+        compact(propertyGroups);
+        compact(namespaceAliases);
+        compact(labelsToDescriptors);
+        compact(objectDescriptors);
+    }
+
+    private static void compact(@Nullable CompactMap<?, ?> map) {
+        if (map != null) {
+            map.compact();
+        }
+    }
+
     @Override
     public void importScope(@NotNull JetScope imported) {
         checkMayWrite();
@@ -137,17 +158,17 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     }
 
     @NotNull
-    private Map<LabelName, List<DeclarationDescriptor>> getLabelsToDescriptors() {
+    private CompactMap<LabelName, List<DeclarationDescriptor>> getLabelsToDescriptors() {
         if (labelsToDescriptors == null) {
-            labelsToDescriptors = new HashMap<LabelName, List<DeclarationDescriptor>>();
+            labelsToDescriptors = new CompactMap<LabelName, List<DeclarationDescriptor>>();
         }
         return labelsToDescriptors;
     }
 
     @NotNull
-    private Map<Name, ClassDescriptor> getObjectDescriptorsMap() {
+    private CompactMap<Name, ClassDescriptor> getObjectDescriptorsMap() {
         if (objectDescriptors == null) {
-            objectDescriptors = Maps.newHashMap();
+            objectDescriptors = new CompactMap<Name, ClassDescriptor>();
         }
         return objectDescriptors;
     }
@@ -158,8 +179,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
         checkMayRead();
 
         Collection<DeclarationDescriptor> superResult = super.getDeclarationsByLabel(labelName);
-        Map<LabelName, List<DeclarationDescriptor>> labelsToDescriptors = getLabelsToDescriptors();
-        List<DeclarationDescriptor> declarationDescriptors = labelsToDescriptors.get(labelName);
+        List<DeclarationDescriptor> declarationDescriptors = get(labelsToDescriptors, labelName);
         if (declarationDescriptors == null) {
             return superResult;
         }
@@ -173,7 +193,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public void addLabeledDeclaration(@NotNull DeclarationDescriptor descriptor) {
         checkMayWrite();
 
-        Map<LabelName, List<DeclarationDescriptor>> labelsToDescriptors = getLabelsToDescriptors();
+        CompactMap<LabelName, List<DeclarationDescriptor>> labelsToDescriptors = getLabelsToDescriptors();
         LabelName name = new LabelName(descriptor.getName().asString());
         List<DeclarationDescriptor> declarationDescriptors = labelsToDescriptors.get(name);
         if (declarationDescriptors == null) {
@@ -184,21 +204,47 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     }
 
     @NotNull
-    private Map<Name, DeclarationDescriptor> getVariableClassOrNamespaceDescriptors() {
+    private CompactMap<Name, DeclarationDescriptor> getVariableClassOrNamespaceDescriptors() {
         if (variableClassOrNamespaceDescriptors == null) {
-            variableClassOrNamespaceDescriptors = Maps.newHashMap();
+            variableClassOrNamespaceDescriptors = new CompactMap<Name, DeclarationDescriptor>();
         }
         return variableClassOrNamespaceDescriptors;
     }
 
     @NotNull
-    private Map<Name, NamespaceDescriptor> getNamespaceAliases() {
+    private CompactMap<Name, NamespaceDescriptor> getNamespaceAliases() {
         if (namespaceAliases == null) {
-            namespaceAliases = Maps.newHashMap();
+            namespaceAliases = new CompactMap<Name, NamespaceDescriptor>();
         }
         return namespaceAliases;
     }
 
+    @Nullable
+    private static <K, V> V get(@Nullable CompactMap<K, V> map, @NotNull K key) {
+        return map == null ? null : map.get(key);
+    }
+
+    @NotNull
+    private static <D> Set<D> getGroup(@Nullable CompactMap<Name, Set<D>> groups, @NotNull Name name) {
+        Set<D> group = get(groups, name);
+        return group == null ? Collections.<D>emptySet() : group;
+    }
+
+    // A group of one descriptor (the most common case) is an immutable singleton, larger groups are linked hash sets
+    private static <D> void addToGroup(@NotNull CompactMap<Name, Set<D>> groups, @NotNull Name name, @NotNull D descriptor) {
+        Set<D> group = groups.get(name);
+        if (group == null) {
+            groups.put(name, Collections.singleton(descriptor));
+        }
+        else if (!group.contains(descriptor)) {
+            if (group.size() == 1) {
+                group = Sets.newLinkedHashSet(group);
+                groups.put(name, group);
+            }
+            group.add(descriptor);
+        }
+    }
+
     @Override
     public void addVariableDescriptor(@NotNull VariableDescriptor variableDescriptor) {
         addVariableDescriptor(variableDescriptor, false);
@@ -215,7 +261,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
         Name name = variableDescriptor.getName();
         if (isProperty) {
             checkForPropertyRedeclaration(name, variableDescriptor);
-            getPropertyGroups().put(name, variableDescriptor);
+            addToGroup(getPropertyGroups(), name, variableDescriptor);
         }
         if (variableDescriptor.getReceiverParameter() == null) {
             checkForRedeclaration(name, variableDescriptor);
@@ -231,7 +277,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public Set<VariableDescriptor> getProperties(@NotNull Name name) {
         checkMayRead();
 
-        Set<VariableDescriptor> result = Sets.newLinkedHashSet(getPropertyGroups().get(name));
+        Set<VariableDescriptor> result = Sets.newLinkedHashSet(getGroup(propertyGroups, name));
 
         result.addAll(getWorkerScope().getProperties(name));
 
@@ -244,9 +290,8 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public VariableDescriptor getLocalVariable(@NotNull Name name) {
         checkMayRead();
 
-        Map<Name, DeclarationDescriptor> variableClassOrNamespaceDescriptors = getVariableClassOrNamespaceDescriptors();
-        DeclarationDescriptor descriptor = variableClassOrNamespaceDescriptors.get(name);
-        if (descriptor instanceof VariableDescriptor && !getPropertyGroups().get(name).contains(descriptor)) {
+        DeclarationDescriptor descriptor = get(variableClassOrNamespaceDescriptors, name);
+        if (descriptor instanceof VariableDescriptor && !getGroup(propertyGroups, name).contains(descriptor)) {
             return (VariableDescriptor) descriptor;
         }
 
@@ -258,17 +303,17 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     }
 
     @NotNull
-    private SetMultimap<Name, VariableDescriptor> getPropertyGroups() {
+    private CompactMap<Name, Set<VariableDescriptor>> getPropertyGroups() {
         if (propertyGroups == null) {
-            propertyGroups = CommonSuppliers.newLinkedHashSetHashSetMultimap();
+            propertyGroups = new CompactMap<Name, Set<VariableDescriptor>>();
         }
         return propertyGroups;
     }
     
     @NotNull
-    private SetMultimap<Name, FunctionDescriptor> getFunctionGroups() {
+    private CompactMap<Name, Set<FunctionDescriptor>> getFunctionGroups() {
         if (functionGroups == null) {
-            functionGroups = CommonSuppliers.newLinkedHashSetHashSetMultimap();
+            functionGroups = new CompactMap<Name, Set<FunctionDescriptor>>();
         }
         return functionGroups;
     }
@@ -277,7 +322,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public void addFunctionDescriptor(@NotNull FunctionDescriptor functionDescriptor) {
         checkMayWrite();
 
-        getFunctionGroups().put(functionDescriptor.getName(), functionDescriptor);
+        addToGroup(getFunctionGroups(), functionDescriptor.getName(), functionDescriptor);
         allDescriptors.add(functionDescriptor);
     }
 
@@ -286,7 +331,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public Collection<FunctionDescriptor> getFunctions(@NotNull Name name) {
         checkMayRead();
 
-        Set<FunctionDescriptor> result = Sets.newLinkedHashSet(getFunctionGroups().get(name));
+        Set<FunctionDescriptor> result = Sets.newLinkedHashSet(getGroup(functionGroups, name));
 
         result.addAll(getWorkerScope().getFunctions(name));
 
@@ -350,7 +395,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
         checkMayWrite();
         
         checkForRedeclaration(name, functionDescriptor);
-        getFunctionGroups().put(name, functionDescriptor);
+        addToGroup(getFunctionGroups(), name, functionDescriptor);
         allDescriptors.add(functionDescriptor);
     }
 
@@ -365,7 +410,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     }
     
     private void checkForPropertyRedeclaration(@NotNull Name name, VariableDescriptor variableDescriptor) {
-        Set<VariableDescriptor> properties = getPropertyGroups().get(name);
+        Set<VariableDescriptor> properties = getGroup(propertyGroups, name);
         ReceiverParameterDescriptor receiverParameter = variableDescriptor.getReceiverParameter();
         for (VariableDescriptor oldProperty : properties) {
             ReceiverParameterDescriptor receiverParameterForOldVariable = oldProperty.getReceiverParameter();
@@ -377,7 +422,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     }
 
     private void checkForRedeclaration(@NotNull Name name, DeclarationDescriptor classifierDescriptor) {
-        DeclarationDescriptor originalDescriptor = getVariableClassOrNamespaceDescriptors().get(name);
+        DeclarationDescriptor originalDescriptor = get(variableClassOrNamespaceDescriptors, name);
         if (originalDescriptor != null) {
             redeclarationHandler.handleRedeclaration(originalDescriptor, classifierDescriptor);
         }
@@ -387,8 +432,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public ClassifierDescriptor getClassifier(@NotNull Name name) {
         checkMayRead();
 
-        Map<Name, DeclarationDescriptor> variableClassOrNamespaceDescriptors = getVariableClassOrNamespaceDescriptors();
-        DeclarationDescriptor descriptor = variableClassOrNamespaceDescriptors.get(name);
+        DeclarationDescriptor descriptor = get(variableClassOrNamespaceDescriptors, name);
         if (descriptor instanceof ClassifierDescriptor) return (ClassifierDescriptor) descriptor;
 
         ClassifierDescriptor classifierDescriptor = getWorkerScope().getClassifier(name);
@@ -399,7 +443,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
 
     @Override
     public ClassDescriptor getObjectDescriptor(@NotNull Name name) {
-        ClassDescriptor descriptor = getObjectDescriptorsMap().get(name);
+        ClassDescriptor descriptor = get(objectDescriptors, name);
         if (descriptor != null) return descriptor;
 
         ClassDescriptor fromWorker = getWorkerScope().getObjectDescriptor(name);
@@ -412,7 +456,9 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     @Override
     public Set<ClassDescriptor> getObjectDescriptors() {
         if (allObjectDescriptors == null) {
-            allObjectDescriptors = Sets.newHashSet(getObjectDescriptorsMap().values());
+            allObjectDescriptors = objectDescriptors == null
+                                   ? Sets.<ClassDescriptor>newHashSet()
+                                   : Sets.newHashSet(objectDescriptors.values());
             allObjectDescriptors.addAll(getWorkerScope().getObjectDescriptors());
             for (JetScope imported : getImports()) {
                 allObjectDescriptors.addAll(imported.getObjectDescriptors());
@@ -425,8 +471,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public void addNamespace(@NotNull NamespaceDescriptor namespaceDescriptor) {
         checkMayWrite();
 
-        Map<Name, DeclarationDescriptor> variableClassOrNamespaceDescriptors = getVariableClassOrNamespaceDescriptors();
-        DeclarationDescriptor oldValue = variableClassOrNamespaceDescriptors.put(namespaceDescriptor.getName(), namespaceDescriptor);
+        DeclarationDescriptor oldValue = getVariableClassOrNamespaceDescriptors().put(namespaceDescriptor.getName(), namespaceDescriptor);
         if (oldValue != null) {
             redeclarationHandler.handleRedeclaration(oldValue, namespaceDescriptor);
         }
@@ -438,8 +483,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     public NamespaceDescriptor getDeclaredNamespace(@NotNull Name name) {
         checkMayRead();
 
-        Map<Name, DeclarationDescriptor> variableClassOrNamespaceDescriptors = getVariableClassOrNamespaceDescriptors();
-        DeclarationDescriptor namespaceDescriptor = variableClassOrNamespaceDescriptors.get(name);
+        DeclarationDescriptor namespaceDescriptor = get(variableClassOrNamespaceDescriptors, name);
         if (namespaceDescriptor instanceof NamespaceDescriptor) return (NamespaceDescriptor) namespaceDescriptor;
         return null;
     }
@@ -451,7 +495,7 @@ public class WritableScopeImpl extends WritableScopeWithImports {
         NamespaceDescriptor declaredNamespace = getDeclaredNamespace(name);
         if (declaredNamespace != null) return declaredNamespace;
 
-        NamespaceDescriptor aliased = getNamespaceAliases().get(name);
+        NamespaceDescriptor aliased = get(namespaceAliases, name);
         if (aliased != null) return aliased;
 
         NamespaceDescriptor namespace = getWorkerScope().getNamespace(name);
@@ -480,19 +524,41 @@ public class WritableScopeImpl extends WritableScopeWithImports {
     }
 
     private void addToDeclared(DeclarationDescriptor descriptor) {
-        declaredDescriptorsAccessibleBySimpleName.put(descriptor.getName(), descriptor);
+        if (declaredDescriptorsAccessibleBySimpleName == null) {
+            declaredDescriptorsAccessibleBySimpleName = new CompactMap<Name, List<DeclarationDescriptor>>();
+        }
+        Name name = descriptor.getName();
+        List<DeclarationDescriptor> descriptors = declaredDescriptorsAccessibleBySimpleName.get(name);
+        if (descriptors == null) {
+            declaredDescriptorsAccessibleBySimpleName.put(name, Collections.singletonList(descriptor));
+        }
+        else if (!descriptors.contains(descriptor)) {
+            if (descriptors.size() == 1) {
+                descriptors = Lists.newArrayList(descriptors);
+                declaredDescriptorsAccessibleBySimpleName.put(name, descriptors);
+            }
+            descriptors.add(descriptor);
+        }
     }
 
+    // A snapshot is built on each call: it is only needed once per scope to check redeclarations
     @NotNull
     @Override
     public Multimap<Name, DeclarationDescriptor> getDeclaredDescriptorsAccessibleBySimpleName() {
-        return declaredDescriptorsAccessibleBySimpleName;
+        if (declaredDescriptorsAccessibleBySimpleName == null) {
+            return ImmutableMultimap.of();
+        }
+        ImmutableListMultimap.Builder<Name, DeclarationDescriptor> builder = ImmutableListMultimap.builder();
+        for (List<DeclarationDescriptor> descriptors : declaredDescriptorsAccessibleBySimpleName.values()) {
+            builder.putAll(descriptors.get(0).getName(), descriptors);
+        }
+        return builder.build();
     }
 
     @NotNull
     @Override
     public Collection<DeclarationDescriptor> getOwnDeclaredDescriptors() {
-        return declaredDescriptorsAccessibleBySimpleName.values();
+        return getDeclaredDescriptorsAccessibleBySimpleName().values();
     }
 
     private static boolean isObject(@NotNull ClassifierDescriptor classifier) {
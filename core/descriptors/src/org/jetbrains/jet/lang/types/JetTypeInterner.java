@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.types;
+
+import com.google.common.collect.MapMaker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.descriptors.annotations.AnnotationDescriptor;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Makes identical types share one {@link JetTypeImpl} instance, so that they are compared by identity before
+ * {@link JetTypeImpl#equals(Object)} falls back to a structural comparison.
+ *
+ * Types are identical if they have the same constructor, nullability and projection kinds, and their arguments are the same
+ * instances (arguments are usually interned themselves, so this works for nested types as well). Only types without annotations
+ * and without error types among arguments are interned: annotations are not part of type equality, and error types are never equal.
+ *
+ * Interned types are referenced weakly: an entry lives exactly as long as the type itself, so descriptors of a module are not
+ * retained after the module is gone.
+ */
+public class JetTypeInterner {
+    private static final ConcurrentMap<Key, JetTypeImpl> TYPES = new MapMaker().weakValues().makeMap();
+
+    private JetTypeInterner() {
+    }
+
+    /**
+     * @return an interned type with these components, or null if there is none or the type can't be interned.
+     *         In the latter cases the type should be created and passed to {@link #intern(JetTypeImpl)}
+     */
+    @Nullable
+    public static JetType findInterned(
+            @NotNull List<AnnotationDescriptor> annotations,
+            @NotNull TypeConstructor constructor,
+            boolean nullable,
+            @NotNull List<TypeProjection> arguments
+    ) {
+        if (!canBeInterned(annotations, arguments)) return null;
+        return TYPES.get(new Key(constructor, nullable, arguments));
+    }
+
+    /**
+     * @return the interned instance identical to this type, which may be the type itself
+     */
+    @NotNull
+    public static JetType intern(@NotNull JetTypeImpl type) {
+        if (!canBeInterned(type.getAnnotations(), type.getArguments())) return type;
+
+        JetTypeImpl interned = TYPES.putIfAbsent(new Key(type.getConstructor(), type.isNullable(), type.getArguments()), type);
+        return interned != null ? interned : type;
+    }
+
+    private static boolean canBeInterned(@NotNull List<AnnotationDescriptor> annotations, @NotNull List<TypeProjection> arguments) {
+        if (!annotations.isEmpty()) return false;
+        for (TypeProjection argument : arguments) {
+            if (argument.getType().isError()) return false;
+        }
+        return true;
+    }
+
+    private static class Key {
+        private final TypeConstructor constructor;
+        private final boolean nullable;
+        private final List<TypeProjection> arguments;
+        private final int hashCode;
+
+        private Key(@NotNull TypeConstructor constructor, boolean nullable, @NotNull List<TypeProjection> arguments) {
+            this.constructor = constructor;
+            this.nullable = nullable;
+            this.arguments = arguments;
+            this.hashCode = computeHashCode();
+        }
+
+        private int computeHashCode() {
+            int result = System.identityHashCode(constructor);
+            result = 31 * result + (nullable ? 1 : 0);
+            for (TypeProjection argument : arguments) {
+                result = 31 * result + argument.getProjectionKind().ordinal();
+                result = 31 * result + System.identityHashCode(argument.getType());
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key other = (Key) o;
+            if (hashCode != other.hashCode || constructor != other.constructor || nullable != other.nullable) return false;
+            if (arguments.size() != other.arguments.size()) return false;
+            for (int i = 0; i < arguments.size(); i++) {
+                TypeProjection argument = arguments.get(i);
+                TypeProjection otherArgument = other.arguments.get(i);
+                if (argument.getProjectionKind() != otherArgument.getProjectionKind()) return false;
+                if (argument.getType() != otherArgument.getType()) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -172,11 +172,16 @@ public class TypeSubstitutor {
             List<TypeProjection> substitutedArguments = substituteTypeArguments(
                     type.getConstructor().getParameters(), type.getArguments(), recursionDepth);
 
-            JetType substitutedType = new JetTypeImpl(type.getAnnotations(),   // Old annotations. This is questionable
-                                               type.getConstructor(),   // The same constructor
-                                               type.isNullable(),       // Same nullability
-                                               substitutedArguments,
-                                               new SubstitutingScope(type.getMemberScope(), this));
+            JetType substitutedType = JetTypeInterner.findInterned(type.getAnnotations(), type.getConstructor(), type.isNullable(),
+                                                                   substitutedArguments);
+            if (substitutedType == null) {
+                substitutedType = JetTypeInterner.intern(
+                        new JetTypeImpl(type.getAnnotations(),   // Old annotations. This is questionable
+                                        type.getConstructor(),   // The same constructor
+                                        type.isNullable(),       // Same nullability
+                                        substitutedArguments,
+                                        new SubstitutingScope(type.getMemberScope(), this)));
+            }
             return new TypeProjection(originalProjection.getProjectionKind(), substitutedType);
         }
     }
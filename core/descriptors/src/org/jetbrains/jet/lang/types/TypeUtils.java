@@ -121,7 +121,12 @@ public class TypeUtils {
         if (type.isError()) {
             return type;
         }
-        return new JetTypeImpl(type.getAnnotations(), type.getConstructor(), nullable, type.getArguments(), type.getMemberScope());
+        JetType interned = JetTypeInterner.findInterned(type.getAnnotations(), type.getConstructor(), nullable, type.getArguments());
+        if (interned != null) {
+            return interned;
+        }
+        return JetTypeInterner.intern(
+                new JetTypeImpl(type.getAnnotations(), type.getConstructor(), nullable, type.getArguments(), type.getMemberScope()));
     }
 
     public static boolean isIntersectionEmpty(@NotNull JetType typeA, @NotNull JetType typeB) {
@@ -19,6 +19,7 @@ package org.jetbrains.jet.lang.types.checker;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.lang.types.JetType;
 import org.jetbrains.jet.lang.types.TypeConstructor;
 
@@ -27,12 +28,56 @@ public class JetTypeChecker {
     public static final JetTypeChecker INSTANCE = new JetTypeChecker();
     public static final HashBiMap<TypeConstructor, TypeConstructor> EMPTY_AXIOMS = HashBiMap.create();
 
+    @Nullable
+    private volatile SubtypingCache subtypingCache = null;
+    private int requestedSubtypingCacheSize = 0;
+
     private JetTypeChecker() {
     }
 
+    /**
+     * Makes {@link #isSubtypeOf(JetType, JetType)} remember its results once {@link #startRequestedSubtypingCache()} is called,
+     * until {@link #disableSubtypingCache()} is called
+     */
+    public synchronized void requestSubtypingCache(int size) {
+        requestedSubtypingCacheSize = size;
+    }
+
+    /**
+     * Should be called when the class hierarchy is built, see {@link SubtypingCache} for the limitations
+     */
+    public synchronized void startRequestedSubtypingCache() {
+        if (requestedSubtypingCacheSize > 0 && subtypingCache == null) {
+            subtypingCache = new SubtypingCache(requestedSubtypingCacheSize);
+        }
+    }
+
+    /**
+     * Forgets the cached results, so that types of a finished compilation are not kept alive
+     */
+    public synchronized void disableSubtypingCache() {
+        requestedSubtypingCacheSize = 0;
+        subtypingCache = null;
+    }
+
+    @Nullable
+    public SubtypingCache getSubtypingCache() {
+        return subtypingCache;
+    }
+
     public boolean isSubtypeOf(@NotNull JetType subtype, @NotNull JetType supertype) {
 //        return new TypeCheckingProcedure().run(subtype, supertype);
-        return TYPE_CHECKER.isSubtypeOf(subtype, supertype);
+        SubtypingCache cache = subtypingCache;
+        if (cache == null) {
+            return TYPE_CHECKER.isSubtypeOf(subtype, supertype);
+        }
+
+        Boolean cached = cache.get(subtype, supertype);
+        if (cached != null) return cached;
+
+        boolean result = TYPE_CHECKER.isSubtypeOf(subtype, supertype);
+        cache.put(subtype, supertype, result);
+        return result;
     }
 
     public boolean equalTypes(@NotNull JetType a, @NotNull JetType b) {
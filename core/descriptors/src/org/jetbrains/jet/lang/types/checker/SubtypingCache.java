@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.lang.types.checker;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.types.JetType;
+import org.jetbrains.jet.lang.types.NamespaceType;
+import org.jetbrains.jet.lang.types.TypeProjection;
+import org.jetbrains.jet.lang.types.TypeUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Results of {@link JetTypeChecker#isSubtypeOf(JetType, JetType)}, keyed on structurally equal types.
+ *
+ * The table has a fixed number of slots, and a new result replaces whatever was stored in its slot, so the cache never grows.
+ * Types containing error types (which is also how unsolved type variables look) are never cached.
+ *
+ * Subtyping depends on the supertypes of classes, so the cache may only be used once the class hierarchy is built.
+ */
+public class SubtypingCache {
+    public static final int DEFAULT_SIZE = 1 << 14;
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypasses = new AtomicLong();
+
+    public SubtypingCache(int size) {
+        assert size > 0 && (size & (size - 1)) == 0 : "Size should be a power of two: " + size;
+        this.entries = new AtomicReferenceArray<Entry>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return the cached result, or null if there is none
+     */
+    @Nullable
+    public Boolean get(@NotNull JetType subtype, @NotNull JetType supertype) {
+        if (!isCacheable(subtype) || !isCacheable(supertype)) {
+            bypasses.incrementAndGet();
+            return null;
+        }
+
+        int hash = hash(subtype, supertype);
+        Entry entry = entries.get(hash & mask);
+        if (entry != null && entry.matches(hash, subtype, supertype)) {
+            hits.incrementAndGet();
+            return entry.result;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Should be called after {@link #get(JetType, JetType)} returned null
+     */
+    public void put(@NotNull JetType subtype, @NotNull JetType supertype, boolean result) {
+        if (!isCacheable(subtype) || !isCacheable(supertype)) return;
+
+        int hash = hash(subtype, supertype);
+        entries.set(hash & mask, new Entry(hash, subtype, supertype, result));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The number of checks of types that can't be cached
+     */
+    public long getBypasses() {
+        return bypasses.get();
+    }
+
+    @NotNull
+    public String render() {
+        long lookups = hits.get() + misses.get();
+        return String.format("Subtype checks: %d cached lookups, %d hits (%.1f%%), %d bypassed",
+                             lookups, hits.get(), lookups == 0 ? 0.0 : 100.0 * hits.get() / lookups, bypasses.get());
+    }
+
+    private static int hash(@NotNull JetType subtype, @NotNull JetType supertype) {
+        int h = 31 * subtype.hashCode() + supertype.hashCode();
+        // Spread higher bits, the table is indexed with the lower ones
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean isCacheable(@NotNull JetType type) {
+        if (type instanceof NamespaceType || type instanceof TypeUtils.SpecialType || type.isError()) return false;
+        for (TypeProjection projection : type.getArguments()) {
+            if (!isCacheable(projection.getType())) return false;
+        }
+        return true;
+    }
+
+    private static class Entry {
+        private final int hash;
+        private final JetType subtype;
+        private final JetType supertype;
+        private final boolean result;
+
+        private Entry(int hash, @NotNull JetType subtype, @NotNull JetType supertype, boolean result) {
+            this.hash = hash;
+            this.subtype = subtype;
+            this.supertype = supertype;
+            this.result = result;
+        }
+
+        private boolean matches(int hash, @NotNull JetType subtype, @NotNull JetType supertype) {
+            return this.hash == hash
+                   && (this.subtype == subtype || this.subtype.equals(subtype))
+                   && (this.supertype == supertype || this.supertype.equals(supertype));
+        }
+    }
+}
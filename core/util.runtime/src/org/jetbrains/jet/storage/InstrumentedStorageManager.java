@@ -0,0 +1,285 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.storage;
+
+import jet.Function0;
+import jet.Function1;
+import jet.Unit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reports hits, misses, recursion and computation time of every memoized function and lazy value to {@link StorageStatistics}.
+ *
+ * Values are grouped by the class of their computation, which is usually an anonymous class at the place where the value is created
+ */
+public class InstrumentedStorageManager implements StorageManager {
+    // Time spent in computations nested in the current one, to separate the time of the current computation itself
+    private static final ThreadLocal<long[]> NESTED_COMPUTE_NANOS = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private final StorageManager delegate;
+    private final StorageStatistics statistics;
+
+    public InstrumentedStorageManager(@NotNull StorageManager delegate, @NotNull StorageStatistics statistics) {
+        this.delegate = delegate;
+        this.statistics = statistics;
+    }
+
+    @NotNull
+    protected StorageStatistics.Counters getCounters(@NotNull Object computation) {
+        return statistics.getCounters(computation.getClass());
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(@NotNull Function1<K, V> compute) {
+        StorageStatistics.Counters counters = getCounters(compute);
+        return countingCalls(counters, delegate.createMemoizedFunction(measuring(counters, compute)));
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(@NotNull Function1<K, V> compute) {
+        StorageStatistics.Counters counters = getCounters(compute);
+        return countingCalls(counters, delegate.createMemoizedFunctionWithNullableValues(measuring(counters, compute)));
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunctionWithBoundedCache(@NotNull Function1<K, V> compute, int maxSize) {
+        StorageStatistics.Counters counters = getCounters(compute);
+        return countingCalls(counters, delegate.createMemoizedFunctionWithBoundedCache(measuring(counters, compute), maxSize));
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createSoftlyRetainedMemoizedFunction(@NotNull Function1<K, V> compute) {
+        StorageStatistics.Counters counters = getCounters(compute);
+        return countingCalls(counters, delegate.createSoftlyRetainedMemoizedFunction(measuring(counters, compute)));
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValue(@NotNull Function0<T> computable) {
+        InstrumentedNotNullLazyValue<T> value = new InstrumentedNotNullLazyValue<T>(getCounters(computable), computable);
+        value.setDelegate(delegate.createLazyValue(value.getMeasuringComputable()));
+        return value;
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createRecursionTolerantLazyValue(@NotNull Function0<T> computable, @NotNull T onRecursiveCall) {
+        InstrumentedNotNullLazyValue<T> value = new InstrumentedNotNullLazyValue<T>(getCounters(computable), computable);
+        value.setDelegate(delegate.createRecursionTolerantLazyValue(value.getMeasuringComputable(), onRecursiveCall));
+        return value;
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValueWithPostCompute(
+            @NotNull Function0<T> computable,
+            @Nullable Function1<Boolean, T> onRecursiveCall,
+            @NotNull Function1<T, Unit> postCompute
+    ) {
+        InstrumentedNotNullLazyValue<T> value = new InstrumentedNotNullLazyValue<T>(getCounters(computable), computable);
+        value.setDelegate(delegate.createLazyValueWithPostCompute(value.getMeasuringComputable(), onRecursiveCall, postCompute));
+        return value;
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValue(@NotNull Function0<T> computable) {
+        InstrumentedLazyValue<T> value = new InstrumentedLazyValue<T>(getCounters(computable), computable);
+        value.setDelegate(delegate.createNullableLazyValue(value.getMeasuringComputable()));
+        return value;
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createRecursionTolerantNullableLazyValue(@NotNull Function0<T> computable, @Nullable T onRecursiveCall) {
+        InstrumentedLazyValue<T> value = new InstrumentedLazyValue<T>(getCounters(computable), computable);
+        value.setDelegate(delegate.createRecursionTolerantNullableLazyValue(value.getMeasuringComputable(), onRecursiveCall));
+        return value;
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValueWithPostCompute(
+            @NotNull Function0<T> computable, @NotNull Function1<T, Unit> postCompute
+    ) {
+        InstrumentedLazyValue<T> value = new InstrumentedLazyValue<T>(getCounters(computable), computable);
+        value.setDelegate(delegate.createNullableLazyValueWithPostCompute(value.getMeasuringComputable(), postCompute));
+        return value;
+    }
+
+    @Override
+    public <T> T compute(@NotNull Function0<T> computable) {
+        return delegate.compute(computable);
+    }
+
+    @NotNull
+    protected static <K, V> Function1<K, V> measuring(@NotNull final StorageStatistics.Counters counters, @NotNull final Function1<K, V> compute) {
+        return new Function1<K, V>() {
+            @Override
+            public V invoke(final K input) {
+                return measure(counters, new Function0<V>() {
+                    @Override
+                    public V invoke() {
+                        return compute.invoke(input);
+                    }
+                });
+            }
+        };
+    }
+
+    @NotNull
+    protected static <K, V> MemoizedFunctionToNotNull<K, V> countingCalls(
+            @NotNull final StorageStatistics.Counters counters,
+            @NotNull final MemoizedFunctionToNotNull<K, V> function
+    ) {
+        return new MemoizedFunctionToNotNull<K, V>() {
+            @NotNull
+            @Override
+            public V invoke(K input) {
+                long start = System.nanoTime();
+                try {
+                    return function.invoke(input);
+                }
+                finally {
+                    counters.call(System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    @NotNull
+    protected static <K, V> MemoizedFunctionToNullable<K, V> countingCalls(
+            @NotNull final StorageStatistics.Counters counters,
+            @NotNull final MemoizedFunctionToNullable<K, V> function
+    ) {
+        return new MemoizedFunctionToNullable<K, V>() {
+            @Nullable
+            @Override
+            public V invoke(K input) {
+                long start = System.nanoTime();
+                try {
+                    return function.invoke(input);
+                }
+                finally {
+                    counters.call(System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    private static <T> T measure(@NotNull StorageStatistics.Counters counters, @NotNull Function0<T> computable) {
+        long[] nested = NESTED_COMPUTE_NANOS.get();
+        long outerNested = nested[0];
+        nested[0] = 0;
+
+        long start = System.nanoTime();
+        boolean exception = true;
+        try {
+            T result = computable.invoke();
+            exception = false;
+            return result;
+        }
+        finally {
+            long total = System.nanoTime() - start;
+            counters.computed(total - nested[0], total, exception);
+            nested[0] = outerNested + total;
+        }
+    }
+
+    private static class InstrumentedLazyValue<T> implements NullableLazyValue<T> {
+        private final StorageStatistics.Counters counters;
+        private final Function0<T> computable;
+        // Either NullableLazyValue or NotNullLazyValue
+        private Function0<T> delegate;
+
+        @Nullable
+        private volatile Thread computingThread = null;
+
+        public InstrumentedLazyValue(@NotNull StorageStatistics.Counters counters, @NotNull Function0<T> computable) {
+            this.counters = counters;
+            this.computable = computable;
+        }
+
+        public void setDelegate(@NotNull Function0<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @NotNull
+        public Function0<T> getMeasuringComputable() {
+            return new Function0<T>() {
+                @Override
+                public T invoke() {
+                    Thread outer = computingThread;
+                    computingThread = Thread.currentThread();
+                    try {
+                        return measure(counters, computable);
+                    }
+                    finally {
+                        computingThread = outer;
+                    }
+                }
+            };
+        }
+
+        @Override
+        public boolean isComputed() {
+            if (delegate instanceof NotNullLazyValue) {
+                return ((NotNullLazyValue) delegate).isComputed();
+            }
+            return ((NullableLazyValue) delegate).isComputed();
+        }
+
+        @Override
+        public T invoke() {
+            if (computingThread == Thread.currentThread()) {
+                counters.recursionDetected();
+            }
+
+            long start = System.nanoTime();
+            try {
+                return delegate.invoke();
+            }
+            finally {
+                counters.call(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static class InstrumentedNotNullLazyValue<T> extends InstrumentedLazyValue<T> implements NotNullLazyValue<T> {
+        public InstrumentedNotNullLazyValue(@NotNull StorageStatistics.Counters counters, @NotNull Function0<T> computable) {
+            super(counters, computable);
+        }
+
+        @NotNull
+        @Override
+        public T invoke() {
+            T result = super.invoke();
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+}
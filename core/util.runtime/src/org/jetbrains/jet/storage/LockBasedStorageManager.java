@@ -24,8 +24,14 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jet.utils.ExceptionUtils;
 import org.jetbrains.jet.utils.WrappedValues;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -38,14 +44,48 @@ public class LockBasedStorageManager implements StorageManager {
         }
     };
 
+    /**
+     * Creates a storage manager whose memoized functions and lazy values are computed under per-key locks,
+     * so that values not depending on each other can be computed by several threads simultaneously.
+     *
+     * When computations of two threads wait for each other, one of the threads computes its value without the lock
+     * (see {@link StripedLocks}), so a value may be computed twice. All threads observe the same result, but side effects
+     * of the other computation (e.g. records in a trace) remain. Computations with such side effects should either be idempotent
+     * or be used with the default, single-lock storage manager
+     */
+    @NotNull
+    public static LockBasedStorageManager createConcurrent() {
+        return new LockBasedStorageManager(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a reentrant lock for state that is computed outside of storage managers but may be needed by their computations.
+     * Threads waiting for this lock are taken into account when concurrent storage managers detect deadlocks
+     */
+    @NotNull
+    public static Lock createDeadlockAwareLock() {
+        return new StripedLocks.OwnedLock();
+    }
+
+    // Used by compute() and by subclasses to guard their own state
     protected final Lock lock;
+    private final StorageLocks computationLocks;
 
     public LockBasedStorageManager() {
         this(new ReentrantLock());
     }
 
+    /**
+     * @param concurrencyLevel the number of independent locks computations of different keys are distributed among
+     */
+    protected LockBasedStorageManager(int concurrencyLevel) {
+        this.lock = new StripedLocks.OwnedLock();
+        this.computationLocks = new StripedLocks(concurrencyLevel);
+    }
+
     private LockBasedStorageManager(@NotNull Lock lock) {
         this.lock = lock;
+        this.computationLocks = new StorageLocks.SingleLock(lock);
     }
 
     @NotNull
@@ -59,7 +99,7 @@ public class LockBasedStorageManager implements StorageManager {
             @NotNull Function1<K, V> compute,
             @NotNull ConcurrentMap<K, Object> map
     ) {
-        return new MapBasedMemoizedFunctionToNotNull<K, V>(lock, map, compute);
+        return new MapBasedMemoizedFunctionToNotNull<K, V>(computationLocks, map, compute);
     }
 
     @NotNull
@@ -73,13 +113,25 @@ public class LockBasedStorageManager implements StorageManager {
             @NotNull Function1<K, V> compute,
             @NotNull ConcurrentMap<K, Object> map
     ) {
-        return new MapBasedMemoizedFunction<K, V>(lock, map, compute);
+        return new MapBasedMemoizedFunction<K, V>(computationLocks, map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunctionWithBoundedCache(@NotNull Function1<K, V> compute, int maxSize) {
+        return createMemoizedFunction(compute, new LruConcurrentMap<K, Object>(maxSize));
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createSoftlyRetainedMemoizedFunction(@NotNull Function1<K, V> compute) {
+        return new SoftValuesMemoizedFunction<K, V>(computationLocks, compute);
     }
 
     @NotNull
     @Override
     public <T> NotNullLazyValue<T> createLazyValue(@NotNull Function0<T> computable) {
-        return new LockBasedNotNullLazyValue<T>(lock, computable);
+        return new LockBasedNotNullLazyValue<T>(computationLocks, computable);
     }
 
     @NotNull
@@ -87,7 +139,7 @@ public class LockBasedStorageManager implements StorageManager {
     public <T> NotNullLazyValue<T> createRecursionTolerantLazyValue(
             @NotNull Function0<T> computable, @NotNull final T onRecursiveCall
     ) {
-        return new LockBasedNotNullLazyValue<T>(lock, computable) {
+        return new LockBasedNotNullLazyValue<T>(computationLocks, computable) {
             @Override
             protected T recursionDetected(boolean firstTime) {
                 return onRecursiveCall;
@@ -102,7 +154,7 @@ public class LockBasedStorageManager implements StorageManager {
             final Function1<Boolean, T> onRecursiveCall,
             @NotNull final Function1<T, Unit> postCompute
     ) {
-        return new LockBasedNotNullLazyValue<T>(lock, computable) {
+        return new LockBasedNotNullLazyValue<T>(computationLocks, computable) {
             @Nullable
             @Override
             protected T recursionDetected(boolean firstTime) {
@@ -122,13 +174,13 @@ public class LockBasedStorageManager implements StorageManager {
     @NotNull
     @Override
     public <T> NullableLazyValue<T> createNullableLazyValue(@NotNull Function0<T> computable) {
-        return new LockBasedLazyValue<T>(lock, computable);
+        return new LockBasedLazyValue<T>(computationLocks, computable);
     }
 
     @NotNull
     @Override
     public <T> NullableLazyValue<T> createRecursionTolerantNullableLazyValue(@NotNull Function0<T> computable, final T onRecursiveCall) {
-        return new LockBasedLazyValue<T>(lock, computable) {
+        return new LockBasedLazyValue<T>(computationLocks, computable) {
             @Override
             protected T recursionDetected(boolean firstTime) {
                 return onRecursiveCall;
@@ -141,7 +193,7 @@ public class LockBasedStorageManager implements StorageManager {
     public <T> NullableLazyValue<T> createNullableLazyValueWithPostCompute(
             @NotNull Function0<T> computable, @NotNull final Function1<T, Unit> postCompute
     ) {
-        return new LockBasedLazyValue<T>(lock, computable) {
+        return new LockBasedLazyValue<T>(computationLocks, computable) {
             @Override
             protected void postCompute(@Nullable T value) {
                 postCompute.invoke(value);
@@ -168,14 +220,27 @@ public class LockBasedStorageManager implements StorageManager {
             RECURSION_WAS_DETECTED
         }
 
-        private final Lock lock;
+        @SuppressWarnings("unchecked")
+        private static final AtomicReferenceFieldUpdater<LockBasedLazyValue, Object> VALUE =
+                AtomicReferenceFieldUpdater.newUpdater(LockBasedLazyValue.class, Object.class, "value");
+
+        // Lazy values which the current thread computes without the lock, see computeWithoutLock()
+        private static final ThreadLocal<Map<LockBasedLazyValue<?>, NotValue>> COMPUTING_WITHOUT_LOCK =
+                new ThreadLocal<Map<LockBasedLazyValue<?>, NotValue>>() {
+                    @Override
+                    protected Map<LockBasedLazyValue<?>, NotValue> initialValue() {
+                        return new IdentityHashMap<LockBasedLazyValue<?>, NotValue>();
+                    }
+                };
+
+        private final StorageLocks locks;
         private final Function0<T> computable;
 
         @Nullable
         private volatile Object value = NotValue.NOT_COMPUTED;
 
-        public LockBasedLazyValue(@NotNull Lock lock, @NotNull Function0<T> computable) {
-            this.lock = lock;
+        public LockBasedLazyValue(@NotNull StorageLocks locks, @NotNull Function0<T> computable) {
+            this.locks = locks;
             this.computable = computable;
         }
 
@@ -187,39 +252,97 @@ public class LockBasedStorageManager implements StorageManager {
         @Override
         public T invoke() {
             Object _value = value;
-            if (!(value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
+            if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
 
-            lock.lock();
+            if (!locks.acquire(this)) {
+                // The thread holding the lock is waiting for this thread, so we compute the value ourselves
+                return computeWithoutLock();
+            }
             try {
                 _value = value;
                 if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
 
                 if (_value == NotValue.COMPUTING) {
-                    value = NotValue.RECURSION_WAS_DETECTED;
-                    return recursionDetected(/*firstTime = */ true);
+                    if (VALUE.compareAndSet(this, NotValue.COMPUTING, NotValue.RECURSION_WAS_DETECTED)) {
+                        return recursionDetected(/*firstTime = */ true);
+                    }
+                    return WrappedValues.unescapeThrowable(value);
                 }
 
                 if (_value == NotValue.RECURSION_WAS_DETECTED) {
                     return recursionDetected(/*firstTime = */ false);
                 }
 
-                value = NotValue.COMPUTING;
+                if (!VALUE.compareAndSet(this, NotValue.NOT_COMPUTED, NotValue.COMPUTING)) {
+                    return WrappedValues.unescapeThrowable(value);
+                }
                 try {
                     T typedValue = computable.invoke();
-                    value = typedValue;
-                    postCompute(typedValue);
-                    return typedValue;
+                    return publishAndPostCompute(typedValue);
                 }
                 catch (Throwable throwable) {
-                    if (value == NotValue.COMPUTING) {
-                        // Store only if it's a genuine result, not something thrown through recursionDetected()
-                        value = WrappedValues.escapeThrowable(throwable);
+                    // Store only if it's a genuine result, not something thrown through recursionDetected()
+                    if (VALUE.compareAndSet(this, NotValue.COMPUTING, WrappedValues.escapeThrowable(throwable))
+                        || value instanceof NotValue) {
+                        throw ExceptionUtils.rethrow(throwable);
                     }
+                    return WrappedValues.unescapeThrowable(value);
+                }
+            }
+            finally {
+                locks.release(this);
+            }
+        }
+
+        private T computeWithoutLock() {
+            // The shared state may be COMPUTING on behalf of the thread holding the lock, so this thread tracks its own computations
+            Map<LockBasedLazyValue<?>, NotValue> computing = COMPUTING_WITHOUT_LOCK.get();
+            NotValue state = computing.get(this);
+            if (state == NotValue.COMPUTING) {
+                computing.put(this, NotValue.RECURSION_WAS_DETECTED);
+                return recursionDetected(/*firstTime = */ true);
+            }
+            if (state == NotValue.RECURSION_WAS_DETECTED) {
+                return recursionDetected(/*firstTime = */ false);
+            }
+
+            computing.put(this, NotValue.COMPUTING);
+            T typedValue;
+            try {
+                typedValue = computable.invoke();
+            }
+            catch (Throwable throwable) {
+                // Store only if it's a genuine result, not something thrown through recursionDetected()
+                if (computing.get(this) == NotValue.RECURSION_WAS_DETECTED) {
                     throw ExceptionUtils.rethrow(throwable);
                 }
+                return WrappedValues.unescapeThrowable(publish(WrappedValues.escapeThrowable(throwable)));
             }
             finally {
-                lock.unlock();
+                computing.remove(this);
+            }
+            return publishAndPostCompute(typedValue);
+        }
+
+        private T publishAndPostCompute(T typedValue) {
+            Object published = publish(typedValue);
+            if (published != typedValue) {
+                // Another thread has computed the value first
+                return WrappedValues.unescapeThrowable(published);
+            }
+            postCompute(typedValue);
+            return typedValue;
+        }
+
+        /**
+         * @return the value all threads will see from now on
+         */
+        @Nullable
+        private Object publish(@Nullable Object newValue) {
+            while (true) {
+                Object current = value;
+                if (!(current instanceof NotValue)) return current;
+                if (VALUE.compareAndSet(this, current, newValue)) return newValue;
             }
         }
 
@@ -239,8 +362,8 @@ public class LockBasedStorageManager implements StorageManager {
 
     private static class LockBasedNotNullLazyValue<T> extends LockBasedLazyValue<T> implements NotNullLazyValue<T> {
 
-        public LockBasedNotNullLazyValue(@NotNull Lock lock, @NotNull Function0<T> computable) {
-            super(lock, computable);
+        public LockBasedNotNullLazyValue(@NotNull StorageLocks locks, @NotNull Function0<T> computable) {
+            super(locks, computable);
         }
 
         @Override
@@ -253,12 +376,12 @@ public class LockBasedStorageManager implements StorageManager {
     }
 
     private static class MapBasedMemoizedFunction<K, V> implements MemoizedFunctionToNullable<K, V> {
-        private final Lock lock;
-        private final ConcurrentMap<K, Object> cache;
+        private final StorageLocks locks;
+        protected final ConcurrentMap<K, Object> cache;
         private final Function1<K, V> compute;
 
-        public MapBasedMemoizedFunction(@NotNull Lock lock, @NotNull ConcurrentMap<K, Object> map, @NotNull Function1<K, V> compute) {
-            this.lock = lock;
+        public MapBasedMemoizedFunction(@NotNull StorageLocks locks, @NotNull ConcurrentMap<K, Object> map, @NotNull Function1<K, V> compute) {
+            this.locks = locks;
             this.cache = map;
             this.compute = compute;
         }
@@ -266,42 +389,71 @@ public class LockBasedStorageManager implements StorageManager {
         @Override
         @Nullable
         public V invoke(@NotNull K input) {
-            Object value = cache.get(input);
+            Object value = getCached(input);
             if (value != null) return WrappedValues.unescapeExceptionOrNull(value);
 
-            lock.lock();
+            if (!locks.acquire(input)) {
+                // The thread holding the lock is waiting for this thread, so we compute the value ourselves
+                return computeAndPublish(input);
+            }
             try {
-                value = cache.get(input);
+                value = getCached(input);
                 if (value != null) return WrappedValues.unescapeExceptionOrNull(value);
 
-                try {
-                    V typedValue = compute.invoke(input);
-                    Object oldValue = cache.put(input, WrappedValues.escapeNull(typedValue));
-                    assert oldValue == null : "Race condition detected";
-
-                    return typedValue;
-                }
-                catch (Throwable throwable) {
-                    Object oldValue = cache.put(input, WrappedValues.escapeThrowable(throwable));
-                    assert oldValue == null : "Race condition detected";
-
-                    throw ExceptionUtils.rethrow(throwable);
-                }
+                return computeAndPublish(input);
             }
             finally {
-                lock.unlock();
+                locks.release(input);
+            }
+        }
+
+        @Nullable
+        private V computeAndPublish(@NotNull K input) {
+            V typedValue = null;
+            Throwable thrown = null;
+            Object escaped;
+            try {
+                typedValue = compute.invoke(input);
+                escaped = WrappedValues.escapeNull(typedValue);
             }
+            catch (Throwable throwable) {
+                thrown = throwable;
+                escaped = WrappedValues.escapeThrowable(throwable);
+            }
+
+            // A value may already be there only if it was computed by a thread that could not wait for the lock
+            Object oldValue = cacheIfAbsent(input, escaped);
+            if (oldValue != null) return WrappedValues.unescapeExceptionOrNull(oldValue);
+
+            if (thrown != null) throw ExceptionUtils.rethrow(thrown);
+            return typedValue;
+        }
+
+        /**
+         * @return an escaped value, or {@code null} if it's not computed
+         */
+        @Nullable
+        protected Object getCached(@NotNull K input) {
+            return cache.get(input);
+        }
+
+        /**
+         * @return the escaped value already cached for this key, {@code null} if {@code value} was cached
+         */
+        @Nullable
+        protected Object cacheIfAbsent(@NotNull K input, @NotNull Object value) {
+            return cache.putIfAbsent(input, value);
         }
     }
 
     private static class MapBasedMemoizedFunctionToNotNull<K, V> extends MapBasedMemoizedFunction<K, V> implements MemoizedFunctionToNotNull<K, V> {
 
         public MapBasedMemoizedFunctionToNotNull(
-                @NotNull Lock lock,
+                @NotNull StorageLocks locks,
                 @NotNull ConcurrentMap<K, Object> map,
                 @NotNull Function1<K, V> compute
         ) {
-            super(lock, map, compute);
+            super(locks, map, compute);
         }
 
         @NotNull
@@ -312,4 +464,54 @@ public class LockBasedStorageManager implements StorageManager {
             return result;
         }
     }
+
+    private static class SoftValuesMemoizedFunction<K, V> extends MapBasedMemoizedFunctionToNotNull<K, V> {
+        // Values are KeyedSoftReference's to escaped values
+        private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+
+        public SoftValuesMemoizedFunction(@NotNull StorageLocks locks, @NotNull Function1<K, V> compute) {
+            super(locks, new ConcurrentHashMap<K, Object>(), compute);
+        }
+
+        @Nullable
+        @Override
+        protected Object getCached(@NotNull K input) {
+            Object reference = cache.get(input);
+            return reference == null ? null : ((KeyedSoftReference) reference).get();
+        }
+
+        @Nullable
+        @Override
+        protected Object cacheIfAbsent(@NotNull K input, @NotNull Object value) {
+            removeCollected();
+
+            KeyedSoftReference<K> newReference = new KeyedSoftReference<K>(input, value, collected);
+            while (true) {
+                Object oldReference = cache.putIfAbsent(input, newReference);
+                if (oldReference == null) return null;
+
+                Object oldValue = ((KeyedSoftReference) oldReference).get();
+                if (oldValue != null) return oldValue;
+
+                if (cache.replace(input, oldReference, newReference)) return null;
+            }
+        }
+
+        private void removeCollected() {
+            while (true) {
+                Reference<?> reference = collected.poll();
+                if (reference == null) return;
+                cache.remove(((KeyedSoftReference) reference).key, reference);
+            }
+        }
+
+        private static class KeyedSoftReference<K> extends SoftReference<Object> {
+            private final K key;
+
+            public KeyedSoftReference(@NotNull K key, @NotNull Object value, @NotNull ReferenceQueue<Object> queue) {
+                super(value, queue);
+                this.key = key;
+            }
+        }
+    }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A synchronized map that keeps at most {@code maxSize} least recently used entries
+ */
+/*package*/ class LruConcurrentMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    private final LinkedHashMap<K, V> map;
+
+    public LruConcurrentMap(final int maxSize) {
+        assert maxSize > 0 : "Max size should be positive: " + maxSize;
+        this.map = new LinkedHashMap<K, V>(16, 0.75f, /* accessOrder = */ true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public synchronized V get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public synchronized V put(K key, V value) {
+        return map.put(key, value);
+    }
+
+    @Override
+    public synchronized V remove(Object key) {
+        return map.remove(key);
+    }
+
+    @Override
+    public synchronized int size() {
+        return map.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    @Override
+    public synchronized V putIfAbsent(@NotNull K key, V value) {
+        V oldValue = map.get(key);
+        if (oldValue != null) return oldValue;
+        map.put(key, value);
+        return null;
+    }
+
+    @Override
+    public synchronized boolean remove(@NotNull Object key, Object value) {
+        V oldValue = map.get(key);
+        if (oldValue == null || !oldValue.equals(value)) return false;
+        map.remove(key);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean replace(@NotNull K key, @NotNull V oldValue, @NotNull V newValue) {
+        V currentValue = map.get(key);
+        if (currentValue == null || !currentValue.equals(oldValue)) return false;
+        map.put(key, newValue);
+        return true;
+    }
+
+    @Override
+    public synchronized V replace(@NotNull K key, @NotNull V value) {
+        if (!map.containsKey(key)) return null;
+        return map.put(key, value);
+    }
+
+    @NotNull
+    @Override
+    public synchronized Set<Entry<K, V>> entrySet() {
+        // A snapshot: iterating the access-ordered map while it's being read would fail
+        return new LinkedHashMap<K, V>(map).entrySet();
+    }
+}
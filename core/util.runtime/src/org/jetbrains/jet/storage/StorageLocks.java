@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Guards computations of memoized functions and lazy values: a computation for a given key is performed under the lock
+ * returned for this key
+ */
+/*package*/ interface StorageLocks {
+    /**
+     * @return {@code false} if the lock was not acquired because waiting for it would lead to a deadlock.
+     *         In this case the caller must proceed without the lock and must not call {@link #release(Object)}
+     */
+    boolean acquire(@NotNull Object key);
+
+    void release(@NotNull Object key);
+
+    class SingleLock implements StorageLocks {
+        private final Lock lock;
+
+        public SingleLock(@NotNull Lock lock) {
+            this.lock = lock;
+        }
+
+        @Override
+        public boolean acquire(@NotNull Object key) {
+            lock.lock();
+            return true;
+        }
+
+        @Override
+        public void release(@NotNull Object key) {
+            lock.unlock();
+        }
+    }
+}
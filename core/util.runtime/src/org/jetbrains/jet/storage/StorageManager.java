@@ -36,6 +36,23 @@ public interface StorageManager {
     @NotNull
     <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(@NotNull Function1<K, V> compute);
 
+    /**
+     * Keeps at most {@code maxSize} values, evicting the least recently used ones.
+     *
+     * NOTE: evicted values are recomputed on the next call, so a function may return different (though equal) objects for the same key.
+     *       Only use it for values that are not compared by identity and not recorded anywhere else, in particular NOT for descriptors
+     *       (they are used as keys in binding contexts). Side-effects of {@code compute} may be repeated
+     */
+    @NotNull
+    <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunctionWithBoundedCache(@NotNull Function1<K, V> compute, int maxSize);
+
+    /**
+     * Values are softly reachable and can be collected when memory is low. The same restrictions as for
+     * {@link #createMemoizedFunctionWithBoundedCache(Function1, int)} apply
+     */
+    @NotNull
+    <K, V> MemoizedFunctionToNotNull<K, V> createSoftlyRetainedMemoizedFunction(@NotNull Function1<K, V> compute);
+
     @NotNull
     <T> NotNullLazyValue<T> createLazyValue(@NotNull Function0<T> computable);
 
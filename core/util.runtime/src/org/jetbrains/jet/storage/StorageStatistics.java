@@ -0,0 +1,224 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters collected by {@link InstrumentedStorageManager} for each place where memoized functions and lazy values are created
+ */
+public class StorageStatistics {
+    private static volatile StorageStatistics global = null;
+
+    /**
+     * After this call every storage manager passed through {@link #instrumentIfEnabled(StorageManager)} reports to a fresh instance,
+     * until {@link #disableGlobally()} is called
+     */
+    @NotNull
+    public static synchronized StorageStatistics enableGlobally() {
+        global = new StorageStatistics();
+        return global;
+    }
+
+    public static synchronized void disableGlobally() {
+        global = null;
+    }
+
+    @Nullable
+    public static StorageStatistics getGlobal() {
+        return global;
+    }
+
+    @NotNull
+    public static StorageManager instrumentIfEnabled(@NotNull StorageManager storageManager) {
+        StorageStatistics statistics = global;
+        return statistics == null ? storageManager : new InstrumentedStorageManager(storageManager, statistics);
+    }
+
+    private final ConcurrentMap<Class<?>, Counters> countersByComputationClass = new ConcurrentHashMap<Class<?>, Counters>();
+
+    @NotNull
+    public Counters getCounters(@NotNull Class<?> computationClass) {
+        Counters counters = countersByComputationClass.get(computationClass);
+        if (counters != null) return counters;
+
+        Counters newCounters = new Counters(computationClass);
+        Counters oldCounters = countersByComputationClass.putIfAbsent(computationClass, newCounters);
+        return oldCounters != null ? oldCounters : newCounters;
+    }
+
+    @NotNull
+    public List<Counters> getAllCounters() {
+        List<Counters> result = new ArrayList<Counters>(countersByComputationClass.values());
+        Collections.sort(result, new Comparator<Counters>() {
+            @Override
+            public int compare(Counters c1, Counters c2) {
+                long t1 = c1.getSelfComputeNanos();
+                long t2 = c2.getSelfComputeNanos();
+                if (t1 != t2) return t1 < t2 ? 1 : -1;
+                return c1.getLabel().compareTo(c2.getLabel());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * A table sorted by the time spent in computations themselves, i.e. excluding computations of nested values
+     */
+    @NotNull
+    public String render() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-60s %10s %10s %10s %6s %9s %9s %10s %10s %10s%n",
+                                "Label", "Calls", "Hits", "Misses", "Hit%", "Recursion", "Exception", "Self ms", "Total ms", "Wait ms"));
+        for (Counters counters : getAllCounters()) {
+            long calls = counters.getCalls();
+            sb.append(String.format("%-60s %10d %10d %10d %6.1f %9d %9d %10d %10d %10d%n",
+                                    counters.getLabel(),
+                                    calls,
+                                    counters.getHits(),
+                                    counters.getMisses(),
+                                    calls == 0 ? 0.0 : 100.0 * counters.getHits() / calls,
+                                    counters.getRecursionDetections(),
+                                    counters.getExceptions(),
+                                    counters.getSelfComputeNanos() / 1000000,
+                                    counters.getTotalComputeNanos() / 1000000,
+                                    counters.getWaitNanos() / 1000000));
+        }
+        return sb.toString();
+    }
+
+    public static class Counters {
+        private final Class<?> computationClass;
+        // Computed on the first report, so that creating values costs no reflection
+        @Nullable
+        private volatile String label = null;
+
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong recursionDetections = new AtomicLong();
+        private final AtomicLong exceptions = new AtomicLong();
+        private final AtomicLong selfComputeNanos = new AtomicLong();
+        private final AtomicLong totalComputeNanos = new AtomicLong();
+        private final AtomicLong invocationNanos = new AtomicLong();
+
+        private Counters(@NotNull Class<?> computationClass) {
+            this.computationClass = computationClass;
+        }
+
+        /**
+         * The place where values are created, e.g. {@code LazyClassDescriptor.<init> (LazyClassDescriptor$3)}
+         */
+        @NotNull
+        public String getLabel() {
+            String result = label;
+            if (result == null) {
+                result = describe(computationClass);
+                label = result;
+            }
+            return result;
+        }
+
+        @NotNull
+        private static String describe(@NotNull Class<?> computationClass) {
+            String className = getSimpleBinaryName(computationClass);
+            try {
+                Method method = computationClass.getEnclosingMethod();
+                if (method != null) {
+                    return getSimpleBinaryName(method.getDeclaringClass()) + "." + method.getName() + " (" + className + ")";
+                }
+                Constructor<?> constructor = computationClass.getEnclosingConstructor();
+                if (constructor != null) {
+                    return getSimpleBinaryName(constructor.getDeclaringClass()) + ".<init> (" + className + ")";
+                }
+            }
+            catch (Throwable e) {
+                // Reflection may fail on classes with broken metadata, the class name is a label as well
+            }
+            return className;
+        }
+
+        @NotNull
+        private static String getSimpleBinaryName(@NotNull Class<?> aClass) {
+            String name = aClass.getName();
+            return name.substring(name.lastIndexOf('.') + 1);
+        }
+
+        public long getCalls() {
+            return calls.get();
+        }
+
+        public long getHits() {
+            return Math.max(0, calls.get() - misses.get());
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getRecursionDetections() {
+            return recursionDetections.get();
+        }
+
+        /**
+         * The number of computations that ended with an exception, which is then stored and rethrown on every subsequent call
+         */
+        public long getExceptions() {
+            return exceptions.get();
+        }
+
+        public long getSelfComputeNanos() {
+            return selfComputeNanos.get();
+        }
+
+        public long getTotalComputeNanos() {
+            return totalComputeNanos.get();
+        }
+
+        /**
+         * Time spent in calls but outside of computations: mostly waiting for locks held by other threads
+         */
+        public long getWaitNanos() {
+            return Math.max(0, invocationNanos.get() - totalComputeNanos.get());
+        }
+
+        /*package*/ void call(long nanos) {
+            calls.incrementAndGet();
+            invocationNanos.addAndGet(nanos);
+        }
+
+        /*package*/ void computed(long selfNanos, long totalNanos, boolean exception) {
+            misses.incrementAndGet();
+            selfComputeNanos.addAndGet(selfNanos);
+            totalComputeNanos.addAndGet(totalNanos);
+            if (exception) {
+                exceptions.incrementAndGet();
+            }
+        }
+
+        /*package*/ void recursionDetected() {
+            recursionDetections.incrementAndGet();
+        }
+    }
+}
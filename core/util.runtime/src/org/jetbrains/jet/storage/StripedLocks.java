@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks, a key is mapped to one of them by its hash code.
+ *
+ * Computations of unrelated keys do not block each other (unless the keys happen to share a stripe), but nested computations
+ * can now wait for each other in a cycle. A thread that is about to wait for a lock detects such cycles by following
+ * the "waits for" relation, which is shared between all instances, and gives up the lock in this case. The computation
+ * is then performed without the lock, concurrently with the same computation in the thread holding the lock.
+ *
+ * Waiting threads poll their lock to notice cycles which appear after they started waiting, so these locks are only worth it
+ * when several threads actually compute values.
+ */
+/*package*/ class StripedLocks implements StorageLocks {
+    private static final long POLL_INTERVAL_MILLIS = 10;
+
+    // Every thread waiting for some lock is registered here
+    private static final ConcurrentMap<Thread, OwnedLock> WAITING_FOR = new ConcurrentHashMap<Thread, OwnedLock>();
+
+    private final OwnedLock[] stripes;
+    private final int mask;
+
+    public StripedLocks(int concurrencyLevel) {
+        assert concurrencyLevel > 0 : "Concurrency level should be positive: " + concurrencyLevel;
+        int size = Integer.highestOneBit(concurrencyLevel);
+        if (size < concurrencyLevel) size <<= 1;
+
+        this.stripes = new OwnedLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new OwnedLock();
+        }
+        this.mask = size - 1;
+    }
+
+    @NotNull
+    private OwnedLock stripeFor(@NotNull Object key) {
+        int h = key.hashCode();
+        // Spread the bits, the same way java.util.HashMap does
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return stripes[h & mask];
+    }
+
+    @Override
+    public boolean acquire(@NotNull Object key) {
+        return lockUnlessDeadlocked(stripeFor(key));
+    }
+
+    @Override
+    public void release(@NotNull Object key) {
+        stripeFor(key).unlock();
+    }
+
+    /**
+     * @return {@code false} if waiting for the lock would never end
+     */
+    public static boolean lockUnlessDeadlocked(@NotNull OwnedLock lock) {
+        if (lock.tryLock()) return true;
+
+        Thread current = Thread.currentThread();
+        WAITING_FOR.put(current, lock);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (lock.tryLock(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                if (isWaitingForItself(current, lock)) {
+                    return false;
+                }
+            }
+        }
+        finally {
+            WAITING_FOR.remove(current);
+            if (interrupted) {
+                current.interrupt();
+            }
+        }
+    }
+
+    private static boolean isWaitingForItself(@NotNull Thread current, @NotNull OwnedLock lock) {
+        // The relation may change while we are traversing it, so the number of steps is bounded
+        int stepsLeft = WAITING_FOR.size() + 1;
+        OwnedLock next = lock;
+        while (next != null && stepsLeft-- > 0) {
+            Thread owner = next.getOwnerThread();
+            if (owner == null) return false;
+            if (owner == current) return true;
+            next = WAITING_FOR.get(owner);
+        }
+        return false;
+    }
+
+    /**
+     * A lock that knows its owner. Unconditional {@link #lock()} lets other threads see what this thread is waiting for,
+     * so that they can break a cycle if there is one
+     */
+    /*package*/ static class OwnedLock extends ReentrantLock {
+        @Override
+        public void lock() {
+            if (tryLock()) return;
+
+            Thread current = Thread.currentThread();
+            WAITING_FOR.put(current, this);
+            try {
+                super.lock();
+            }
+            finally {
+                WAITING_FOR.remove(current);
+            }
+        }
+
+        @Nullable
+        public Thread getOwnerThread() {
+            return getOwner();
+        }
+    }
+}
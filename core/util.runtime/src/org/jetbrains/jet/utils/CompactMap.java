@@ -0,0 +1,170 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A map for few entries: keys and values are kept in two arrays in the order of insertion and small maps are searched linearly.
+ * When the map grows above {@link #LINEAR_SEARCH_LIMIT} entries, an open-addressed table of entry indices is built over the arrays.
+ *
+ * Neither keys nor values can be null. Entries can't be removed.
+ */
+public final class CompactMap<K, V> {
+    private static final int LINEAR_SEARCH_LIMIT = 8;
+    private static final Object[] EMPTY_ARRAY = new Object[0];
+
+    private Object[] keys = EMPTY_ARRAY;
+    private Object[] values = EMPTY_ARRAY;
+    private int size;
+
+    // Indices of entries plus one (zero is a free slot), looked up by linear probing; null while the map is small
+    @Nullable
+    private int[] table;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Nullable
+    public V get(@NotNull K key) {
+        int index = indexOf(key);
+        //noinspection unchecked
+        return index < 0 ? null : (V) values[index];
+    }
+
+    public boolean containsKey(@NotNull K key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return the previous value for the key, or null if there was none
+     */
+    @Nullable
+    public V put(@NotNull K key, @NotNull V value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            //noinspection unchecked
+            V oldValue = (V) values[index];
+            values[index] = value;
+            return oldValue;
+        }
+
+        if (size == keys.length) {
+            int newLength = size == 0 ? 2 : size * 2;
+            keys = Arrays.copyOf(keys, newLength);
+            values = Arrays.copyOf(values, newLength);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+
+        if (table != null && size * 2 <= table.length) {
+            insertIntoTable(table, key, size - 1);
+        }
+        else if (size > LINEAR_SEARCH_LIMIT) {
+            rebuildTable();
+        }
+        return null;
+    }
+
+    /**
+     * @return the values in the order of insertion of their keys
+     */
+    @NotNull
+    public List<V> values() {
+        return new AbstractList<V>() {
+            @Override
+            public V get(int index) {
+                if (index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+                //noinspection unchecked
+                return (V) values[index];
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Releases the memory reserved for the entries which are not added yet
+     */
+    public void compact() {
+        if (keys.length == size) return;
+        keys = size == 0 ? EMPTY_ARRAY : Arrays.copyOf(keys, size);
+        values = size == 0 ? EMPTY_ARRAY : Arrays.copyOf(values, size);
+    }
+
+    private int indexOf(@NotNull Object key) {
+        if (table == null) {
+            for (int i = 0; i < size; i++) {
+                if (key.equals(keys[i])) return i;
+            }
+            return -1;
+        }
+
+        int mask = table.length - 1;
+        for (int slot = hash(key) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            if (key.equals(keys[index])) return index;
+        }
+        return -1;
+    }
+
+    private void rebuildTable() {
+        int[] newTable = new int[Integer.highestOneBit(size) * 4];
+        for (int i = 0; i < size; i++) {
+            insertIntoTable(newTable, keys[i], i);
+        }
+        table = newTable;
+    }
+
+    private static void insertIntoTable(@NotNull int[] table, @NotNull Object key, int index) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    private static int hash(@NotNull Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(keys[i]).append("=").append(values[i]);
+        }
+        return sb.append("}").toString();
+    }
+}
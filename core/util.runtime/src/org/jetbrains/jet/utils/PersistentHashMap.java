@@ -0,0 +1,490 @@
+/*
+ * Copyright 2010-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.jet.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * An immutable map (a hash array mapped trie): {@link #plus(Object, Object)} and {@link #minus(Object)} return a new map which shares
+ * all the unchanged nodes with the old one, so that an update takes O(log n) time and memory.
+ *
+ * Neither keys nor values can be null.
+ */
+public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<Object, Object>(null, 0);
+
+    @NotNull
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        //noinspection unchecked
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    @Nullable
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(@Nullable Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Nullable
+    public V get(@NotNull K key) {
+        if (root == null) return null;
+        //noinspection unchecked
+        return (V) root.get(key, hash(key), 0);
+    }
+
+    public boolean containsKey(@NotNull K key) {
+        return get(key) != null;
+    }
+
+    @NotNull
+    public PersistentHashMap<K, V> plus(@NotNull K key, @NotNull V value) {
+        boolean[] added = new boolean[1];
+        Node oldRoot = root != null ? root : BitmapIndexedNode.EMPTY;
+        Node newRoot = oldRoot.plus(key, hash(key), value, 0, added);
+        if (newRoot == root) return this;
+        return new PersistentHashMap<K, V>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    @NotNull
+    public PersistentHashMap<K, V> minus(@NotNull K key) {
+        if (root == null) return this;
+        boolean[] removed = new boolean[1];
+        Node newRoot = root.minus(key, hash(key), 0, removed);
+        if (newRoot == root) return this;
+        if (newRoot == null) return empty();
+        return new PersistentHashMap<K, V>(newRoot, removed[0] ? size - 1 : size);
+    }
+
+    /**
+     * Entries of this map which the base map doesn't have, or has with other values (compared by identity).
+     * Subtrees shared with the base map are skipped: if this map was made from the base one by k updates, it takes O(k log n) time
+     */
+    @NotNull
+    public List<Map.Entry<K, V>> changedEntries(@NotNull PersistentHashMap<K, V> base) {
+        List<Map.Entry<K, V>> result = new ArrayList<Map.Entry<K, V>>();
+        if (root != null) {
+            collectChangedEntries(root, base.root, 0, result);
+        }
+        return result;
+    }
+
+    private static <K, V> void collectChangedEntries(
+            @NotNull Node node,
+            @Nullable Node baseNode,
+            int shift,
+            @NotNull List<Map.Entry<K, V>> result
+    ) {
+        if (node == baseNode) return;
+
+        if (node instanceof BitmapIndexedNode && baseNode instanceof BitmapIndexedNode) {
+            BitmapIndexedNode bitmapNode = (BitmapIndexedNode) node;
+            BitmapIndexedNode baseBitmapNode = (BitmapIndexedNode) baseNode;
+            int bits = bitmapNode.bitmap;
+            for (int index = 0; bits != 0; index++) {
+                int bit = Integer.lowestOneBit(bits);
+                bits &= ~bit;
+
+                Object key = node.keyAt(index);
+                Object value = node.valueAt(index);
+                if (key != null) {
+                    if (baseNode.get(key, hash(key), shift) != value) {
+                        //noinspection unchecked
+                        result.add(new AbstractMap.SimpleImmutableEntry<K, V>((K) key, (V) value));
+                    }
+                }
+                else if ((baseBitmapNode.bitmap & bit) != 0 && baseNode.keyAt(baseBitmapNode.index(bit)) == null) {
+                    collectChangedEntries((Node) value, (Node) baseNode.valueAt(baseBitmapNode.index(bit)), shift + BITS, result);
+                }
+                else {
+                    collectEntriesNotIn((Node) value, baseNode, shift, result);
+                }
+            }
+        }
+        else {
+            collectEntriesNotIn(node, baseNode, shift, result);
+        }
+    }
+
+    private static <K, V> void collectEntriesNotIn(
+            @NotNull Node node,
+            @Nullable Node baseNode,
+            int shift,
+            @NotNull List<Map.Entry<K, V>> result
+    ) {
+        for (Iterator<Map.Entry<K, V>> iterator = new EntryIterator<K, V>(node); iterator.hasNext(); ) {
+            Map.Entry<K, V> entry = iterator.next();
+            K key = entry.getKey();
+            if (baseNode == null || baseNode.get(key, hash(key), shift) != entry.getValue()) {
+                result.add(entry);
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator<K, V>(root);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<K, V> entry : this) {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(entry.getKey()).append("=").append(entry.getValue());
+        }
+        return sb.append("}").toString();
+    }
+
+    private static int hash(@NotNull Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static abstract class Node {
+        @Nullable
+        abstract Object get(@NotNull Object key, int hash, int shift);
+
+        /**
+         * @return this node if nothing has changed
+         */
+        @NotNull
+        abstract Node plus(@NotNull Object key, int hash, @NotNull Object value, int shift, @NotNull boolean[] added);
+
+        /**
+         * @return this node if nothing has changed, null if the node becomes empty
+         */
+        @Nullable
+        abstract Node minus(@NotNull Object key, int hash, int shift, @NotNull boolean[] removed);
+
+        abstract int arraySize();
+
+        /**
+         * @return the key at this index, or null if the value at this index is a subnode
+         */
+        @Nullable
+        abstract Object keyAt(int index);
+
+        @NotNull
+        abstract Object valueAt(int index);
+    }
+
+    /**
+     * A node with up to 32 children, selected by 5 bits of the hash. The array holds (key, value) pairs,
+     * or (null, subnode) pairs for several keys with the same 5 bits
+     */
+    private static final class BitmapIndexedNode extends Node {
+        private static final BitmapIndexedNode EMPTY = new BitmapIndexedNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        private BitmapIndexedNode(int bitmap, @NotNull Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Nullable
+        @Override
+        Object get(@NotNull Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return null;
+
+            int index = index(bit);
+            Object keyOrNull = array[2 * index];
+            Object valueOrNode = array[2 * index + 1];
+            if (keyOrNull == null) {
+                return ((Node) valueOrNode).get(key, hash, shift + BITS);
+            }
+            return key.equals(keyOrNull) ? valueOrNode : null;
+        }
+
+        @NotNull
+        @Override
+        Node plus(@NotNull Object key, int hash, @NotNull Object value, int shift, @NotNull boolean[] added) {
+            int bit = bit(hash, shift);
+            int index = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, 2 * index);
+                newArray[2 * index] = key;
+                newArray[2 * index + 1] = value;
+                System.arraycopy(array, 2 * index, newArray, 2 * index + 2, array.length - 2 * index);
+                added[0] = true;
+                return new BitmapIndexedNode(bitmap | bit, newArray);
+            }
+
+            Object keyOrNull = array[2 * index];
+            Object valueOrNode = array[2 * index + 1];
+            if (keyOrNull == null) {
+                Node node = (Node) valueOrNode;
+                Node newNode = node.plus(key, hash, value, shift + BITS, added);
+                return newNode == node ? this : withValueAt(index, null, newNode);
+            }
+            if (key.equals(keyOrNull)) {
+                return value == valueOrNode ? this : withValueAt(index, keyOrNull, value);
+            }
+
+            added[0] = true;
+            Node subnode = createNode(keyOrNull, valueOrNode, key, hash, value, shift + BITS);
+            return withValueAt(index, null, subnode);
+        }
+
+        @Nullable
+        @Override
+        Node minus(@NotNull Object key, int hash, int shift, @NotNull boolean[] removed) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return this;
+
+            int index = index(bit);
+            Object keyOrNull = array[2 * index];
+            Object valueOrNode = array[2 * index + 1];
+            if (keyOrNull == null) {
+                Node node = (Node) valueOrNode;
+                Node newNode = node.minus(key, hash, shift + BITS, removed);
+                if (newNode == node) return this;
+                if (newNode == null) return without(bit, index);
+                if (newNode.arraySize() == 1 && newNode.keyAt(0) != null) {
+                    // A single key is kept right in this node, as if it was never pushed down
+                    return withValueAt(index, newNode.keyAt(0), newNode.valueAt(0));
+                }
+                return withValueAt(index, null, newNode);
+            }
+            if (!key.equals(keyOrNull)) return this;
+
+            removed[0] = true;
+            return without(bit, index);
+        }
+
+        @Nullable
+        private BitmapIndexedNode without(int bit, int index) {
+            if (bitmap == bit) return null;
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, 2 * index);
+            System.arraycopy(array, 2 * index + 2, newArray, 2 * index, array.length - 2 * index - 2);
+            return new BitmapIndexedNode(bitmap & ~bit, newArray);
+        }
+
+        @NotNull
+        private BitmapIndexedNode withValueAt(int index, @Nullable Object key, @NotNull Object valueOrNode) {
+            Object[] newArray = array.clone();
+            newArray[2 * index] = key;
+            newArray[2 * index + 1] = valueOrNode;
+            return new BitmapIndexedNode(bitmap, newArray);
+        }
+
+        @NotNull
+        private static Node createNode(
+                @NotNull Object key1, @NotNull Object value1,
+                @NotNull Object key2, int hash2, @NotNull Object value2,
+                int shift
+        ) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+            boolean[] added = new boolean[1];
+            return EMPTY.plus(key1, hash1, value1, shift, added).plus(key2, hash2, value2, shift, added);
+        }
+
+        @Override
+        int arraySize() {
+            return array.length / 2;
+        }
+
+        @Nullable
+        @Override
+        Object keyAt(int index) {
+            return array[2 * index];
+        }
+
+        @NotNull
+        @Override
+        Object valueAt(int index) {
+            return array[2 * index + 1];
+        }
+    }
+
+    /**
+     * Keys with the same full hash
+     */
+    private static final class CollisionNode extends Node {
+        private final int hash;
+        private final Object[] array;
+
+        private CollisionNode(int hash, @NotNull Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(@NotNull Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) return i;
+            }
+            return -1;
+        }
+
+        @Nullable
+        @Override
+        Object get(@NotNull Object key, int hash, int shift) {
+            if (hash != this.hash) return null;
+            int index = indexOf(key);
+            return index < 0 ? null : array[index + 1];
+        }
+
+        @NotNull
+        @Override
+        Node plus(@NotNull Object key, int hash, @NotNull Object value, int shift, @NotNull boolean[] added) {
+            if (hash != this.hash) {
+                // Push this node one level down, next to the new key
+                BitmapIndexedNode parent = new BitmapIndexedNode(bit(this.hash, shift), new Object[] {null, this});
+                return parent.plus(key, hash, value, shift, added);
+            }
+
+            int index = indexOf(key);
+            if (index >= 0) {
+                if (array[index + 1] == value) return this;
+                Object[] newArray = array.clone();
+                newArray[index + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Nullable
+        @Override
+        Node minus(@NotNull Object key, int hash, int shift, @NotNull boolean[] removed) {
+            if (hash != this.hash) return this;
+            int index = indexOf(key);
+            if (index < 0) return this;
+
+            removed[0] = true;
+            if (array.length == 2) return null;
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        int arraySize() {
+            return array.length / 2;
+        }
+
+        @NotNull
+        @Override
+        Object keyAt(int index) {
+            return array[2 * index];
+        }
+
+        @NotNull
+        @Override
+        Object valueAt(int index) {
+            return array[2 * index + 1];
+        }
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        // Nodes on the path to the next entry, and the positions in them
+        private final Deque<Node> nodes = new ArrayDeque<Node>();
+        private final Deque<Integer> positions = new ArrayDeque<Integer>();
+        private Map.Entry<K, V> next;
+
+        private EntryIterator(@Nullable Node root) {
+            if (root != null) {
+                nodes.push(root);
+                positions.push(0);
+            }
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (!nodes.isEmpty()) {
+                Node node = nodes.peek();
+                int position = positions.pop();
+                if (position == node.arraySize()) {
+                    nodes.pop();
+                    continue;
+                }
+                positions.push(position + 1);
+
+                Object key = node.keyAt(position);
+                Object value = node.valueAt(position);
+                if (key == null) {
+                    nodes.push((Node) value);
+                    positions.push(0);
+                }
+                else {
+                    //noinspection unchecked
+                    next = new AbstractMap.SimpleImmutableEntry<K, V>((K) key, (V) value);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) throw new NoSuchElementException();
+            Map.Entry<K, V> result = next;
+            advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -23,7 +23,9 @@ import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.indexing.FileBasedIndex;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jet.lang.resolve.kotlin.KotlinJvmBinaryClass;
 import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileFinder;
+import org.jetbrains.jet.lang.resolve.kotlin.VirtualFileKotlinClass;
 import org.jetbrains.jet.lang.resolve.name.FqName;
 
 import java.util.Collection;
@@ -51,4 +53,11 @@ public final class IDEVirtualFileFinder implements VirtualFileFinder {
         }
         return files.iterator().next();
     }
+
+    @Nullable
+    @Override
+    public KotlinJvmBinaryClass findKotlinClass(@NotNull FqName className) {
+        VirtualFile file = find(className);
+        return file == null ? null : new VirtualFileKotlinClass(file);
+    }
 }